@@ -0,0 +1,72 @@
+package com.sunrise.study.collection.demo;
+
+import com.sunrise.study.collection.sourcecode.ColumnarRecordStore;
+import com.sunrise.study.collection.sourcecode.RecordSchema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 对比 ArrayList 存 POJO 与列式存储在单字段扫描时的耗时。
+ * 粗略的计时演示，不是严格的基准测试，建议加 -Xmx2g 运行。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ColumnarRecordStoreDemo {
+    private static final int ROWS = 5_000_000;
+
+    static class Order {
+        int id;
+        long userId;
+        double price;
+
+        Order(int id, long userId, double price) {
+            this.id = id;
+            this.userId = userId;
+            this.price = price;
+        }
+    }
+
+    public static void main(String[] args) {
+        RecordSchema schema = RecordSchema.builder()
+                .intField("id")
+                .longField("userId")
+                .doubleField("price")
+                .build();
+        int id = schema.indexOf("id");
+        int userId = schema.indexOf("userId");
+        int price = schema.indexOf("price");
+
+        ColumnarRecordStore store = new ColumnarRecordStore(schema, ROWS);
+        List<Order> list = new ArrayList<>(ROWS);
+        Random random = new Random(42);
+        ColumnarRecordStore.Cursor c = store.cursor();
+        for (int i = 0; i < ROWS; i++) {
+            long u = random.nextInt(100_000);
+            double p = random.nextInt(10_000) / 100D;
+            c.moveTo(store.addRow()).setInt(id, i).setLong(userId, u).setDouble(price, p);
+            list.add(new Order(i, u, p));
+        }
+
+        // 多跑几轮让 JIT 编译完成
+        for (int round = 0; round < 5; round++) {
+            long t0 = System.nanoTime();
+            double s1 = 0;
+            for (Order o : list)
+                s1 += o.price;
+            long t1 = System.nanoTime();
+            double s2 = store.sumDouble(price);
+            long t2 = System.nanoTime();
+            int n = store.countDouble(price, v -> v > 50D);
+            long t3 = System.nanoTime();
+            System.out.printf("round %d: ArrayList sum=%.2f %dms, columnar sum=%.2f %dms, filter(%d) %dms%n",
+                    round, s1, (t1 - t0) / 1_000_000, s2, (t2 - t1) / 1_000_000, n, (t3 - t2) / 1_000_000);
+        }
+
+        long t0 = System.nanoTime();
+        store.sortBy(price);
+        System.out.println("sortBy(price): " + (System.nanoTime() - t0) / 1_000_000 + "ms, first = "
+                + c.moveTo(0) + ", last = " + c.moveTo(store.size() - 1));
+    }
+}
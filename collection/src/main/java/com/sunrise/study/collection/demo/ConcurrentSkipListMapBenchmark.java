@@ -0,0 +1,199 @@
+package com.sunrise.study.collection.demo;
+
+import com.sunrise.study.collection.sourcecode.ConcurrentSkipListMap;
+import com.sunrise.study.collection.sourcecode.TreeMap;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 多线程对比：ConcurrentSkipListMap 与"TreeMap + ReentrantReadWriteLock"。
+ * <p>
+ * 读线程做 ceilingEntry 点查和 subMap 范围扫描，写线程做 put/remove，
+ * 分别统计读、写吞吐。读写锁方案里，一个写操作就会挡住所有范围扫描，
+ * 跳表方案的读操作不受写操作影响。
+ * <p>
+ * 运行：java ConcurrentSkipListMapBenchmark [读线程数] [写线程数] [秒数]
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ConcurrentSkipListMapBenchmark {
+    private static final int KEY_SPACE = 1 << 20;
+    private static final int SCAN_WIDTH = 64;
+
+    /**
+     * 被测的有序索引
+     */
+    interface OrderedIndex {
+        void put(int key, int value);
+
+        void remove(int key);
+
+        Map.Entry<Integer, Integer> ceiling(int key);
+
+        /**
+         * @return [from, from + width) 范围内 value 的和
+         */
+        long scan(int from, int width);
+    }
+
+    static class SkipListIndex implements OrderedIndex {
+        private final ConcurrentSkipListMap<Integer, Integer> map = new ConcurrentSkipListMap<>();
+
+        @Override
+        public void put(int key, int value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void remove(int key) {
+            map.remove(key);
+        }
+
+        @Override
+        public Map.Entry<Integer, Integer> ceiling(int key) {
+            return map.ceilingEntry(key);
+        }
+
+        @Override
+        public long scan(int from, int width) {
+            long sum = 0;
+            for (Integer v : map.subMap(from, from + width).values())
+                sum += v;
+            return sum;
+        }
+    }
+
+    static class LockedTreeMapIndex implements OrderedIndex {
+        private final NavigableMap<Integer, Integer> map = new TreeMap<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public void put(int key, int value) {
+            lock.writeLock().lock();
+            try {
+                map.put(key, value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void remove(int key) {
+            lock.writeLock().lock();
+            try {
+                map.remove(key);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public Map.Entry<Integer, Integer> ceiling(int key) {
+            lock.readLock().lock();
+            try {
+                return map.ceilingEntry(key);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public long scan(int from, int width) {
+            lock.readLock().lock();
+            try {
+                long sum = 0;
+                for (Integer v : map.subMap(from, from + width).values())
+                    sum += v;
+                return sum;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println("readers=" + readers + ", writers=" + writers + ", seconds=" + seconds);
+        // 第一轮当作预热
+        for (int round = 0; round < 2; round++) {
+            run("ConcurrentSkipListMap", new SkipListIndex(), readers, writers, seconds);
+            run("TreeMap + RWLock     ", new LockedTreeMapIndex(), readers, writers, seconds);
+        }
+    }
+
+    private static void run(String name, OrderedIndex index, int readers, int writers, int seconds)
+            throws InterruptedException {
+        // 预先填充一半的 key
+        for (int k = 0; k < KEY_SPACE; k += 2)
+            index.put(k, k);
+
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(readers + writers);
+
+        for (int i = 0; i < readers; i++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long sink = 0;
+                awaitQuietly(start);
+                while (!stop.get()) {
+                    int key = random.nextInt(KEY_SPACE);
+                    // 一半点查，一半范围扫描
+                    if ((key & 1) == 0) {
+                        Map.Entry<Integer, Integer> e = index.ceiling(key);
+                        if (e != null)
+                            sink += e.getValue();
+                    } else {
+                        sink += index.scan(key, SCAN_WIDTH);
+                    }
+                    reads.increment();
+                }
+                if (sink == 42)
+                    System.out.print("");
+                done.countDown();
+            }, "reader-" + i).start();
+        }
+        for (int i = 0; i < writers; i++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                awaitQuietly(start);
+                while (!stop.get()) {
+                    int key = random.nextInt(KEY_SPACE);
+                    if (random.nextBoolean())
+                        index.put(key, key);
+                    else
+                        index.remove(key);
+                    writes.increment();
+                }
+                done.countDown();
+            }, "writer-" + i).start();
+        }
+
+        start.countDown();
+        TimeUnit.SECONDS.sleep(seconds);
+        stop.set(true);
+        done.await();
+        System.out.printf("%s reads: %,12d ops/s, writes: %,12d ops/s%n",
+                name, reads.sum() / seconds, writes.sum() / seconds);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
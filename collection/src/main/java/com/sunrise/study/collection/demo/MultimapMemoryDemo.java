@@ -0,0 +1,90 @@
+package com.sunrise.study.collection.demo;
+
+import com.sunrise.study.collection.sourcecode.ArrayListMultimap;
+import com.sunrise.study.collection.sourcecode.HashBiMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 粗略对比 multimap 和双向 map 的内存占用：
+ * <ul>
+ *     <li>手写的 {@code HashMap<K, ArrayList<V>>} 与 {@link ArrayListMultimap}，
+ *     每个 key 的 value 个数呈长尾分布，大部分 key 只有一个 value；</li>
+ *     <li>正反两个 HashMap 与 {@link HashBiMap}。</li>
+ * </ul>
+ * 用 -Xmx1g -XX:+UseSerialGC 运行时结果比较稳定。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class MultimapMemoryDemo {
+    private static final int KEYS = 200_000;
+
+    public static void main(String[] args) {
+        int[] valueCounts = new int[KEYS];
+        Random random = new Random(42);
+        long pairs = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int r = random.nextInt(10);
+            valueCounts[i] = r < 6 ? 1 : r < 9 ? 2 + random.nextInt(3) : 5 + random.nextInt(16);
+            pairs += valueCounts[i];
+        }
+
+        long handRolled = measure(() -> {
+            Map<Integer, List<Integer>> m = new HashMap<>();
+            for (int k = 0; k < KEYS; k++)
+                for (int j = 0; j < valueCounts[k]; j++)
+                    m.computeIfAbsent(k, x -> new ArrayList<>()).add(j);
+            return m;
+        });
+        long multimap = measure(() -> {
+            ArrayListMultimap<Integer, Integer> m = new ArrayListMultimap<>();
+            for (int k = 0; k < KEYS; k++)
+                for (int j = 0; j < valueCounts[k]; j++)
+                    m.put(k, j);
+            return m;
+        });
+        System.out.printf("HashMap<K, ArrayList<V>>: %,d bytes/pair%n", handRolled / pairs);
+        System.out.printf("ArrayListMultimap       : %,d bytes/pair%n", multimap / pairs);
+
+        // value 取 key 的相反数，避免与 key 共用 Integer 缓存
+        long twoMaps = measure(() -> {
+            Map<Integer, Integer> forward = new HashMap<>();
+            Map<Integer, Integer> backward = new HashMap<>();
+            for (int k = 0; k < KEYS; k++) {
+                Integer key = k, value = -k - 1;
+                forward.put(key, value);
+                backward.put(value, key);
+            }
+            return new Object[]{forward, backward};
+        });
+        long biMap = measure(() -> {
+            HashBiMap<Integer, Integer> m = new HashBiMap<>();
+            for (int k = 0; k < KEYS; k++)
+                m.put(k, -k - 1);
+            return m;
+        });
+        System.out.printf("two HashMaps: %,d bytes/pair%n", twoMaps / KEYS);
+        System.out.printf("HashBiMap   : %,d bytes/pair%n", biMap / KEYS);
+    }
+
+    private static long measure(java.util.function.Supplier<Object> factory) {
+        long before = usedMemory();
+        Object holder = factory.get();
+        long after = usedMemory();
+        // 保证 holder 在测量之后仍然可达
+        if (holder == null)
+            System.out.println();
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
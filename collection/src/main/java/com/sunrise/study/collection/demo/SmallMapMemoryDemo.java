@@ -0,0 +1,50 @@
+package com.sunrise.study.collection.demo;
+
+import com.sunrise.study.collection.sourcecode.HashMap;
+import com.sunrise.study.collection.sourcecode.SmallMap;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 粗略对比大量小 Map 的内存占用：每个 map 只放 ENTRIES 个元素，
+ * 模拟按请求创建的稀疏 map。用 -Xmx1g -XX:+UseSerialGC 运行时结果比较稳定。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class SmallMapMemoryDemo {
+    private static final int MAPS = 200_000;
+    private static final int ENTRIES = 3;
+
+    public static void main(String[] args) {
+        String[] keys = {"traceId", "userId", "locale", "tenant", "region"};
+
+        long hashMapBytes = measure(HashMap::new, keys);
+        long smallMapBytes = measure(SmallMap::new, keys);
+        System.out.printf("HashMap : %,d bytes/map%n", hashMapBytes / MAPS);
+        System.out.printf("SmallMap: %,d bytes/map%n", smallMapBytes / MAPS);
+    }
+
+    private static long measure(Supplier<Map<String, Object>> factory, String[] keys) {
+        Object[] holder = new Object[MAPS];
+        long before = usedMemory();
+        for (int i = 0; i < MAPS; i++) {
+            Map<String, Object> m = factory.get();
+            for (int j = 0; j < ENTRIES; j++)
+                m.put(keys[j], Boolean.TRUE);
+            holder[i] = m;
+        }
+        long after = usedMemory();
+        // 保证 holder 在测量之后仍然可达
+        if (holder[MAPS - 1] == null)
+            System.out.println();
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,698 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link Multimap} 的骨架实现。
+ * <p>
+ * 数据保存在一个 {@link CompactLinkedHashMap} 里，key 按插入顺序排列，每个 key 的槽位有两种形态：
+ * <ul>
+ *     <li>只有一个 value 时，槽位里直接放这个 value（null 用 {@link #NULL} 代替），不分配任何容器；</li>
+ *     <li>多个 value 时，槽位里放一个 {@link Group}，内部是一个紧凑的 Object[]。</li>
+ * </ul>
+ * 而手写的 {@code HashMap<K, ArrayList<V>>} 每个 key 至少要一个 ArrayList 对象加一个
+ * 默认 10 个槽的数组。value 个数减少到 1 时，Group 会退化回直接存放。
+ * <p>
+ * 子类决定是否允许同一个 key 下出现重复的 value，以及 get() 返回 List 还是 Set 视图。
+ * 非线程安全，迭代器是快速失败的。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+abstract class AbstractMultimap<K, V> implements Multimap<K, V>, java.io.Serializable {
+
+    private static final long serialVersionUID = 2447537837011683357L;
+
+    /**
+     * getOrDefault 的默认值，表示 key 不存在
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * 槽位里直接存放的 null value
+     */
+    static final Object NULL = new Object();
+
+    transient CompactLinkedHashMap<K, Object> map;
+
+    /**
+     * key-value 对的总数
+     */
+    transient int totalSize;
+
+    transient int modCount;
+
+    private transient Set<K> keySet;
+    private transient Collection<V> values;
+    private transient Collection<Map.Entry<K, V>> entries;
+    private transient Map<K, Collection<V>> asMap;
+
+    AbstractMultimap() {
+        map = new CompactLinkedHashMap<>();
+    }
+
+    /**
+     * 同一个 key 下是否允许重复的 value
+     */
+    abstract boolean allowsDuplicates();
+
+    /**
+     * 往 Group 中添加元素之后的回调，HashSetMultimap 用它建立查找索引
+     */
+    void afterAdd(Group g) {
+    }
+
+    /**
+     * 把一个槽位中的 value 拷贝到独立的集合中，removeAll 使用
+     */
+    abstract Collection<V> copyOf(Object slot);
+
+    /* ---------------- 槽位 -------------- */
+
+    /**
+     * 多个 value 的紧凑存储
+     */
+    static final class Group {
+        Object[] elements;
+        int size;
+
+        /**
+         * 元素较多时由 HashSetMultimap 建立的查找索引，与 elements 保持同步
+         */
+        SmallSet<Object> index;
+
+        Group(int capacity) {
+            elements = new Object[Math.max(capacity, 2)];
+        }
+
+        Group(Object a, Object b) {
+            elements = new Object[]{a, b};
+            size = 2;
+        }
+
+        void ensureCapacity(int minCapacity) {
+            int oldCapacity = elements.length;
+            if (minCapacity > oldCapacity) {
+                int newCapacity = oldCapacity + (oldCapacity >> 1) + 1;
+                if (newCapacity < minCapacity)
+                    newCapacity = minCapacity;
+                elements = Arrays.copyOf(elements, newCapacity);
+            }
+        }
+
+        int indexOf(Object o) {
+            if (index != null && !index.contains(o))
+                return -1;
+            Object[] es = elements;
+            for (int i = 0; i < size; i++) {
+                if (Objects.equals(o, es[i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        boolean contains(Object o) {
+            return index != null ? index.contains(o) : indexOf(o) >= 0;
+        }
+
+        void add(Object v) {
+            ensureCapacity(size + 1);
+            elements[size++] = v;
+            if (index != null)
+                index.add(v);
+        }
+
+        void add(int i, Object v) {
+            ensureCapacity(size + 1);
+            System.arraycopy(elements, i, elements, i + 1, size - i);
+            elements[i] = v;
+            size++;
+            if (index != null)
+                index.add(v);
+        }
+
+        Object removeAt(int i) {
+            Object[] es = elements;
+            Object old = es[i];
+            int numMoved = size - i - 1;
+            if (numMoved > 0)
+                System.arraycopy(es, i + 1, es, i, numMoved);
+            es[--size] = null;
+            if (index != null)
+                index.remove(old);
+            return old;
+        }
+    }
+
+    static Object mask(Object v) {
+        return v == null ? NULL : v;
+    }
+
+    static Object unmask(Object slot) {
+        return slot == NULL ? null : slot;
+    }
+
+    static int groupSize(Object slot) {
+        return slot instanceof Group ? ((Group) slot).size : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> V valueAt(Object slot, int i) {
+        if (slot instanceof Group)
+            return (V) ((Group) slot).elements[i];
+        return (V) unmask(slot);
+    }
+
+    /**
+     * 删除 key 下第 i 个 value，剩一个时退化回直接存放，一个都不剩时删除 key
+     */
+    @SuppressWarnings("unchecked")
+    V removeAt(K key, Object slot, int i) {
+        Object old;
+        if (slot instanceof Group) {
+            Group g = (Group) slot;
+            old = g.removeAt(i);
+            if (g.size == 1)
+                map.put(key, mask(g.elements[0]));
+        } else {
+            old = unmask(slot);
+            map.remove(key);
+        }
+        totalSize--;
+        modCount++;
+        return (V) old;
+    }
+
+    Object slot(Object key) {
+        return map.getOrDefault(key, ABSENT);
+    }
+
+    /* ---------------- 查询 -------------- */
+
+    @Override
+    public int size() {
+        return totalSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return totalSize == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (Object slot : map.values()) {
+            if (slot instanceof Group ? ((Group) slot).contains(value) : Objects.equals(unmask(slot), value))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsEntry(Object key, Object value) {
+        Object slot = slot(key);
+        if (slot == ABSENT)
+            return false;
+        if (slot instanceof Group)
+            return ((Group) slot).contains(value);
+        return Objects.equals(unmask(slot), value);
+    }
+
+    /* ---------------- 修改 -------------- */
+
+    @Override
+    public boolean put(K key, V value) {
+        Object slot = slot(key);
+        if (slot == ABSENT) {
+            map.put(key, mask(value));
+        } else if (slot instanceof Group) {
+            Group g = (Group) slot;
+            if (!allowsDuplicates() && g.contains(value))
+                return false;
+            g.add(value);
+            afterAdd(g);
+        } else {
+            Object v = unmask(slot);
+            if (!allowsDuplicates() && Objects.equals(v, value))
+                return false;
+            map.put(key, new Group(v, value));
+        }
+        totalSize++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean putAll(K key, java.lang.Iterable<? extends V> values) {
+        Iterator<? extends V> it = values.iterator();
+        if (!it.hasNext())
+            return false;
+        Object slot = slot(key);
+        int hint = values instanceof Collection ? ((Collection<?>) values).size() : 0;
+        Group g;
+        if (slot instanceof Group) {
+            g = (Group) slot;
+            g.ensureCapacity(g.size + hint);
+        } else {
+            g = new Group(hint + 1);
+            if (slot != ABSENT)
+                g.add(unmask(slot));
+        }
+        int before = g.size;
+        boolean dups = allowsDuplicates();
+        while (it.hasNext()) {
+            V v = it.next();
+            if (dups || !g.contains(v)) {
+                g.add(v);
+                afterAdd(g);
+            }
+        }
+        int added = g.size - before;
+        if (added == 0)
+            return false;
+        if (g != slot) {
+            // 新 key 只加了一个 value 时，仍然直接存放
+            map.put(key, g.size == 1 ? mask(g.elements[0]) : g);
+        }
+        totalSize += added;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean putAll(Multimap<? extends K, ? extends V> multimap) {
+        boolean changed = false;
+        for (Map.Entry<? extends K, ? extends Collection<? extends V>> e : multimap.asMap().entrySet())
+            changed |= putAll(e.getKey(), e.getValue());
+        return changed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key, Object value) {
+        Object slot = slot(key);
+        if (slot == ABSENT)
+            return false;
+        int i;
+        if (slot instanceof Group)
+            i = ((Group) slot).indexOf(value);
+        else
+            i = Objects.equals(unmask(slot), value) ? 0 : -1;
+        if (i < 0)
+            return false;
+        removeAt((K) key, slot, i);
+        return true;
+    }
+
+    @Override
+    public Collection<V> removeAll(Object key) {
+        Object slot = slot(key);
+        if (slot == ABSENT)
+            return copyOf(null);
+        map.remove(key);
+        totalSize -= groupSize(slot);
+        modCount++;
+        return copyOf(slot);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        totalSize = 0;
+        modCount++;
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    /**
+     * 单个 key 上的迭代器，按下标访问槽位，每次修改后重新读取槽位
+     */
+    final class KeyValueIterator implements Iterator<V> {
+        final K key;
+        Object slot;
+        int cursor;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+
+        KeyValueIterator(K key) {
+            this.key = key;
+            this.slot = slot(key);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot != ABSENT && cursor < groupSize(slot);
+        }
+
+        @Override
+        public V next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return valueAt(slot, lastRet = cursor++);
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removeAt(key, slot, lastRet);
+            cursor = lastRet;
+            lastRet = -1;
+            slot = slot(key);
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * 遍历所有 key-value 对：外层是 key 的迭代器，内层按下标遍历槽位
+     */
+    abstract class Itr<T> implements Iterator<T> {
+        final Iterator<Map.Entry<K, Object>> keyIt = map.entrySet().iterator();
+        K key;
+        Object slot;
+        int cursor;
+        int groupSize;
+        boolean canRemove;
+        int expectedModCount = modCount;
+
+        @Override
+        public final boolean hasNext() {
+            return cursor < groupSize || keyIt.hasNext();
+        }
+
+        final V nextValue() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (cursor >= groupSize) {
+                Map.Entry<K, Object> e = keyIt.next();
+                key = e.getKey();
+                slot = e.getValue();
+                groupSize = groupSize(slot);
+                cursor = 0;
+            }
+            canRemove = true;
+            return valueAt(slot, cursor++);
+        }
+
+        @Override
+        public final void remove() {
+            if (!canRemove)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            canRemove = false;
+            if (groupSize == 1) {
+                // 必须通过 key 迭代器删除，否则它会失效
+                keyIt.remove();
+                groupSize = cursor = 0;
+                totalSize--;
+                modCount++;
+            } else {
+                // 退化时只替换槽位的值，不是结构修改，key 迭代器不受影响；
+                // 这里继续持有原来的 Group，剩下的元素仍然在它的数组里
+                removeAt(key, slot, --cursor);
+                groupSize--;
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) == null ? (keySet = new KeySet()) : ks;
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values) == null ? (values = new Values()) : vs;
+    }
+
+    @Override
+    public Collection<Map.Entry<K, V>> entries() {
+        Collection<Map.Entry<K, V>> es;
+        return (es = entries) == null ? (entries = new Entries()) : es;
+    }
+
+    @Override
+    public Map<K, Collection<V>> asMap() {
+        Map<K, Collection<V>> m;
+        return (m = asMap) == null ? (asMap = new AsMap()) : m;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return !AbstractMultimap.this.removeAll(o).isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            AbstractMultimap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new Iterator<K>() {
+                final Iterator<Map.Entry<K, Object>> it = map.entrySet().iterator();
+                Object lastSlot = ABSENT;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    Map.Entry<K, Object> e = it.next();
+                    lastSlot = e.getValue();
+                    return e.getKey();
+                }
+
+                @Override
+                public void remove() {
+                    if (lastSlot == ABSENT)
+                        throw new IllegalStateException();
+                    it.remove();
+                    totalSize -= groupSize(lastSlot);
+                    modCount++;
+                    lastSlot = ABSENT;
+                }
+            };
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return totalSize;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            AbstractMultimap.this.clear();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Itr<V>() {
+                @Override
+                public V next() {
+                    return nextValue();
+                }
+            };
+        }
+    }
+
+    final class Entries extends AbstractCollection<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return totalSize;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return containsEntry(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return AbstractMultimap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void clear() {
+            AbstractMultimap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Itr<Map.Entry<K, V>>() {
+                @Override
+                public Map.Entry<K, V> next() {
+                    V v = nextValue();
+                    return new AbstractMap.SimpleImmutableEntry<>(key, v);
+                }
+            };
+        }
+    }
+
+    final class AsMap extends AbstractMap<K, Collection<V>> {
+        private transient Set<Map.Entry<K, Collection<V>>> entrySet;
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<V> get(Object key) {
+            return map.containsKey(key) ? AbstractMultimap.this.get((K) key) : null;
+        }
+
+        @Override
+        public Collection<V> remove(Object key) {
+            return map.containsKey(key) ? removeAll(key) : null;
+        }
+
+        @Override
+        public void clear() {
+            AbstractMultimap.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<K, Collection<V>>> entrySet() {
+            Set<Map.Entry<K, Collection<V>>> es;
+            return (es = entrySet) != null ? es : (entrySet = new AbstractSet<Map.Entry<K, Collection<V>>>() {
+                @Override
+                public int size() {
+                    return map.size();
+                }
+
+                @Override
+                public void clear() {
+                    AbstractMultimap.this.clear();
+                }
+
+                @Override
+                public Iterator<Map.Entry<K, Collection<V>>> iterator() {
+                    final Iterator<K> it = AbstractMultimap.this.keySet().iterator();
+                    return new Iterator<Map.Entry<K, Collection<V>>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<K, Collection<V>> next() {
+                            K key = it.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(key, AbstractMultimap.this.get(key));
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+            });
+        }
+    }
+
+    /* ---------------- Object -------------- */
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof Multimap))
+            return false;
+        return asMap().equals(((Multimap<?, ?>) o).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /* ---------------- 序列化 -------------- */
+
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(map.size());
+        for (Map.Entry<K, Object> e : map.entrySet()) {
+            Object slot = e.getValue();
+            int n = groupSize(slot);
+            s.writeObject(e.getKey());
+            s.writeInt(n);
+            for (int i = 0; i < n; i++)
+                s.writeObject(valueAt(slot, i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int keys = s.readInt();
+        if (keys < 0)
+            throw new java.io.InvalidObjectException("Illegal key count: " + keys);
+        map = new CompactLinkedHashMap<>(keys);
+        for (int i = 0; i < keys; i++) {
+            K key = (K) s.readObject();
+            int n = s.readInt();
+            for (int j = 0; j < n; j++)
+                put(key, (V) s.readObject());
+        }
+    }
+}
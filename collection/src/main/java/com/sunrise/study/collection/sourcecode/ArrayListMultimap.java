@@ -0,0 +1,150 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 允许重复 value 的 {@link Multimap}，同一个 key 下的 value 按插入顺序保存，
+ * 可以代替 {@code HashMap<K, ArrayList<V>>}。
+ * <p>
+ * 只有一个 value 的 key 不分配任何容器；多个 value 用一个紧凑的数组保存，
+ * 按 1.5 倍扩容，而不是 ArrayList 默认的 10 个槽。
+ * {@link #get(Object)} 返回的 List 是实时视图，对它的修改会反映到 multimap 上，
+ * 对一个不存在的 key 调用 add 也会创建这个 key。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ArrayListMultimap<K, V> extends AbstractMultimap<K, V> {
+
+    private static final long serialVersionUID = -3280523916357206522L;
+
+    public ArrayListMultimap() {
+    }
+
+    public ArrayListMultimap(Multimap<? extends K, ? extends V> multimap) {
+        putAll(multimap);
+    }
+
+    @Override
+    boolean allowsDuplicates() {
+        return true;
+    }
+
+    @Override
+    List<V> copyOf(Object slot) {
+        if (slot == null)
+            return new ArrayList<>();
+        int n = groupSize(slot);
+        List<V> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            list.add(valueAt(slot, i));
+        return list;
+    }
+
+    @Override
+    public List<V> get(K key) {
+        return new KeyList(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<V> removeAll(Object key) {
+        return (List<V>) super.removeAll(key);
+    }
+
+    /**
+     * 单个 key 的 List 视图，不持有槽位，每次操作都重新查找，
+     * 这样槽位在直接存放和 Group 之间切换时视图仍然有效
+     */
+    final class KeyList extends AbstractList<V> implements RandomAccess {
+        final K key;
+
+        KeyList(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public int size() {
+            Object slot = slot(key);
+            return slot == ABSENT ? 0 : groupSize(slot);
+        }
+
+        @Override
+        public V get(int index) {
+            Object slot = slot(key);
+            rangeCheck(slot, index);
+            return valueAt(slot, index);
+        }
+
+        @Override
+        public V set(int index, V element) {
+            Object slot = slot(key);
+            rangeCheck(slot, index);
+            V old = valueAt(slot, index);
+            if (slot instanceof Group)
+                ((Group) slot).elements[index] = element;
+            else
+                map.put(key, mask(element));
+            return old;
+        }
+
+        @Override
+        public boolean add(V v) {
+            return put(key, v);
+        }
+
+        @Override
+        public void add(int index, V element) {
+            Object slot = slot(key);
+            int size = slot == ABSENT ? 0 : groupSize(slot);
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            if (index == size) {
+                put(key, element);
+                return;
+            }
+            if (slot instanceof Group) {
+                ((Group) slot).add(index, element);
+            } else {
+                // 这里 index 只能是 0，新元素排在原来的 value 前面
+                map.put(key, new Group(element, unmask(slot)));
+            }
+            totalSize++;
+            ArrayListMultimap.this.modCount++;
+            modCount++;
+        }
+
+        @Override
+        public V remove(int index) {
+            Object slot = slot(key);
+            rangeCheck(slot, index);
+            this.modCount++;
+            return removeAt(key, slot, index);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends V> c) {
+            return putAll(key, c);
+        }
+
+        @Override
+        public void clear() {
+            ArrayListMultimap.this.removeAll(key);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new KeyValueIterator(key);
+        }
+
+        private void rangeCheck(Object slot, int index) {
+            int size = slot == ABSENT ? 0 : groupSize(slot);
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
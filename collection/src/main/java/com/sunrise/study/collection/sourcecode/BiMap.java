@@ -0,0 +1,38 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 双向映射：value 也是唯一的，可以通过 {@link #inverse()} 按 value 反查 key。
+ * <p>
+ * 用来替代手工维护的一对 {@code Map<K, V>} 和 {@code Map<V, K>}，
+ * 实现类只保存一份数据，两个方向共用同一批 Entry。
+ * @author huangzihua
+ * @date 2026-10-19
+ * @see HashBiMap
+ */
+public interface BiMap<K, V> extends Map<K, V> {
+
+    /**
+     * @throws IllegalArgumentException value 已经映射到另一个 key
+     */
+    @Override
+    V put(K key, V value);
+
+    /**
+     * 与 put 相同，但如果 value 已经映射到另一个 key，会先删除那个映射
+     */
+    V forcePut(K key, V value);
+
+    /**
+     * value 唯一，所以 values() 是一个 Set
+     */
+    @Override
+    Set<V> values();
+
+    /**
+     * @return 反向视图，与当前 map 共享数据
+     */
+    BiMap<V, K> inverse();
+}
@@ -0,0 +1,559 @@
+package com.sunrise.study.collection.sourcecode;
+
+import com.sunrise.study.collection.sourcecode.RecordSchema.ColumnType;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * 列式（struct-of-arrays）记录存储。
+ * <p>
+ * 用 ArrayList 存大量小对象时，每条记录都是一个独立的对象，散落在堆上，
+ * 只扫描其中一个字段也要把整个对象拉进缓存。这里按 {@link RecordSchema}
+ * 把每个字段单独存成一个基本类型数组，扫描某一列就是顺序遍历一个
+ * int[]/long[]/double[]，没有指针跳转也没有装箱。
+ * <p>
+ * 记录通过 {@link Cursor} 访问，Cursor 是一个享元（flyweight），
+ * 本身只保存一个行号，可以反复 {@link Cursor#moveTo(int)} 复用，遍历时不产生垃圾。
+ * <p>
+ * 非线程安全，与 ArrayList 一样需要外部同步。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ColumnarRecordStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * 与 ArrayList 保持一致：有些 VM 会在数组中保留头部信息
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final RecordSchema schema;
+
+    /**
+     * 每个字段一列，元素的实际类型是 int[]、long[] 或 double[]，
+     * 所有列的长度相同，都等于当前容量
+     */
+    private final Object[] columns;
+
+    /**
+     * 记录条数
+     */
+    private int size;
+
+    /**
+     * 结构修改次数，用于 Cursor 遍历时的快速失败
+     */
+    private int modCount;
+
+    public ColumnarRecordStore(RecordSchema schema) {
+        this(schema, DEFAULT_CAPACITY);
+    }
+
+    public ColumnarRecordStore(RecordSchema schema, int initialCapacity) {
+        if (schema == null)
+            throw new NullPointerException();
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        this.schema = schema;
+        this.columns = new Object[schema.fieldCount()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = newColumn(schema.type(i), initialCapacity);
+    }
+
+    public RecordSchema schema() {
+        return schema;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 在末尾追加一条所有字段为 0 的记录
+     * @return 新记录的行号
+     */
+    public int addRow() {
+        ensureCapacity(size + 1);
+        modCount++;
+        return size++;
+    }
+
+    /**
+     * 追加一条记录，并返回一个指向它的新 Cursor，方便链式赋值：
+     * <pre>store.append().setInt(id, 1).setDouble(price, 9.9);</pre>
+     * 批量写入时建议用 {@link #addRow()} 加一个复用的 Cursor，避免每行创建对象。
+     */
+    public Cursor append() {
+        Cursor c = new Cursor();
+        c.row = addRow();
+        return c;
+    }
+
+    /**
+     * @return 一个未定位的 Cursor，需要先 {@link Cursor#moveTo(int)} 或 {@link Cursor#next()}
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 删除最后一条记录
+     */
+    public void removeLast() {
+        if (size == 0)
+            throw new IllegalStateException("Store is empty");
+        modCount++;
+        int last = --size;
+        // 把空出来的位置清零，保证 addRow() 拿到的总是全 0 记录
+        for (int f = 0; f < columns.length; f++) {
+            switch (schema.type(f)) {
+                case INT:    ((int[]) columns[f])[last] = 0; break;
+                case LONG:   ((long[]) columns[f])[last] = 0L; break;
+                case DOUBLE: ((double[]) columns[f])[last] = 0D; break;
+            }
+        }
+    }
+
+    public void clear() {
+        modCount++;
+        for (int f = 0; f < columns.length; f++) {
+            switch (schema.type(f)) {
+                case INT:    Arrays.fill((int[]) columns[f], 0, size, 0); break;
+                case LONG:   Arrays.fill((long[]) columns[f], 0, size, 0L); break;
+                case DOUBLE: Arrays.fill((double[]) columns[f], 0, size, 0D); break;
+            }
+        }
+        size = 0;
+    }
+
+    // ------------------------- 随机访问 -------------------------
+
+    public int getInt(int row, int field) {
+        return intColumn(field)[checkRow(row)];
+    }
+
+    public long getLong(int row, int field) {
+        return longColumn(field)[checkRow(row)];
+    }
+
+    public double getDouble(int row, int field) {
+        return doubleColumn(field)[checkRow(row)];
+    }
+
+    public void setInt(int row, int field, int value) {
+        intColumn(field)[checkRow(row)] = value;
+    }
+
+    public void setLong(int row, int field, long value) {
+        longColumn(field)[checkRow(row)] = value;
+    }
+
+    public void setDouble(int row, int field, double value) {
+        doubleColumn(field)[checkRow(row)] = value;
+    }
+
+    // ------------------------- 列扫描 -------------------------
+    /*
+     * 下面的扫描方法都只碰一个数组，循环体内没有方法调用以外的间接访问，
+     * JIT 可以做边界检查消除和循环展开（sum 类方法还可以向量化），
+     * 吞吐量基本只受内存带宽限制。
+     */
+
+    public long sumInt(int field) {
+        int[] col = intColumn(field);
+        long sum = 0L;
+        for (int i = 0, n = size; i < n; i++)
+            sum += col[i];
+        return sum;
+    }
+
+    public long sumLong(int field) {
+        long[] col = longColumn(field);
+        long sum = 0L;
+        for (int i = 0, n = size; i < n; i++)
+            sum += col[i];
+        return sum;
+    }
+
+    public double sumDouble(int field) {
+        double[] col = doubleColumn(field);
+        double sum = 0D;
+        for (int i = 0, n = size; i < n; i++)
+            sum += col[i];
+        return sum;
+    }
+
+    public int countInt(int field, IntPredicate filter) {
+        int[] col = intColumn(field);
+        int count = 0;
+        for (int i = 0, n = size; i < n; i++) {
+            if (filter.test(col[i]))
+                count++;
+        }
+        return count;
+    }
+
+    public int countLong(int field, LongPredicate filter) {
+        long[] col = longColumn(field);
+        int count = 0;
+        for (int i = 0, n = size; i < n; i++) {
+            if (filter.test(col[i]))
+                count++;
+        }
+        return count;
+    }
+
+    public int countDouble(int field, DoublePredicate filter) {
+        double[] col = doubleColumn(field);
+        int count = 0;
+        for (int i = 0, n = size; i < n; i++) {
+            if (filter.test(col[i]))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * 过滤扫描
+     * @return 满足条件的行号，升序排列
+     */
+    public int[] selectInt(int field, IntPredicate filter) {
+        int[] col = intColumn(field);
+        int[] rows = new int[Math.min(size, DEFAULT_CAPACITY)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(col[i])) {
+                if (n == rows.length)
+                    rows = Arrays.copyOf(rows, rows.length + (rows.length >> 1) + 1);
+                rows[n++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    public int[] selectLong(int field, LongPredicate filter) {
+        long[] col = longColumn(field);
+        int[] rows = new int[Math.min(size, DEFAULT_CAPACITY)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(col[i])) {
+                if (n == rows.length)
+                    rows = Arrays.copyOf(rows, rows.length + (rows.length >> 1) + 1);
+                rows[n++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    public int[] selectDouble(int field, DoublePredicate filter) {
+        double[] col = doubleColumn(field);
+        int[] rows = new int[Math.min(size, DEFAULT_CAPACITY)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(col[i])) {
+                if (n == rows.length)
+                    rows = Arrays.copyOf(rows, rows.length + (rows.length >> 1) + 1);
+                rows[n++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    /**
+     * 用一个复用的 Cursor 顺序访问每条记录，整个遍历过程只创建一个对象
+     */
+    public void forEach(Consumer<? super Cursor> action) {
+        Cursor c = new Cursor();
+        int expectedModCount = modCount;
+        for (int i = 0; i < size && modCount == expectedModCount; i++) {
+            c.row = i;
+            action.accept(c);
+        }
+        if (modCount != expectedModCount)
+            throw new java.util.ConcurrentModificationException();
+    }
+
+    // ------------------------- 排序 -------------------------
+
+    /**
+     * 按某一列升序稳定排序，所有列按同一个置换重排。
+     * double 列的顺序与 {@link Double#compare(double, double)} 一致。
+     */
+    public void sortBy(int field) {
+        if (size < 2)
+            return;
+        int[] perm;
+        switch (schema.type(field)) {
+            case INT:
+                perm = sortedOrder((int[]) columns[field], size);
+                break;
+            case LONG:
+                final long[] lc = (long[]) columns[field];
+                perm = sortedOrder(size, (a, b) -> Long.compare(lc[a], lc[b]));
+                break;
+            default:
+                final double[] dc = (double[]) columns[field];
+                perm = sortedOrder(size, (a, b) -> Double.compare(dc[a], dc[b]));
+                break;
+        }
+        permute(perm);
+        modCount++;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity - capacity() > 0)
+            grow(minCapacity);
+    }
+
+    /**
+     * 把每一列的容量缩小到当前记录数
+     */
+    public void trimToSize() {
+        if (size < capacity()) {
+            modCount++;
+            resize(size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarRecordStore{size=" + size + ", " + schema + '}';
+    }
+
+    // ------------------------- 内部实现 -------------------------
+
+    private int capacity() {
+        switch (schema.type(0)) {
+            case INT:  return ((int[]) columns[0]).length;
+            case LONG: return ((long[]) columns[0]).length;
+            default:   return ((double[]) columns[0]).length;
+        }
+    }
+
+    /**
+     * 与 ArrayList.grow() 相同的 1.5 倍扩容策略
+     */
+    private void grow(int minCapacity) {
+        int oldCapacity = capacity();
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0) {
+            if (minCapacity < 0)
+                throw new OutOfMemoryError();
+            newCapacity = (minCapacity > MAX_ARRAY_SIZE) ? Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+        }
+        resize(newCapacity);
+    }
+
+    private void resize(int newCapacity) {
+        for (int f = 0; f < columns.length; f++) {
+            switch (schema.type(f)) {
+                case INT:    columns[f] = Arrays.copyOf((int[]) columns[f], newCapacity); break;
+                case LONG:   columns[f] = Arrays.copyOf((long[]) columns[f], newCapacity); break;
+                case DOUBLE: columns[f] = Arrays.copyOf((double[]) columns[f], newCapacity); break;
+            }
+        }
+    }
+
+    private static Object newColumn(ColumnType type, int capacity) {
+        switch (type) {
+            case INT:  return new int[capacity];
+            case LONG: return new long[capacity];
+            default:   return new double[capacity];
+        }
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        return row;
+    }
+
+    private int[] intColumn(int field) {
+        return (int[]) columns[schema.checkType(field, ColumnType.INT)];
+    }
+
+    private long[] longColumn(int field) {
+        return (long[]) columns[schema.checkType(field, ColumnType.LONG)];
+    }
+
+    private double[] doubleColumn(int field) {
+        return (double[]) columns[schema.checkType(field, ColumnType.DOUBLE)];
+    }
+
+    /**
+     * int 列：把 (值, 行号) 打包成一个 long 再用基本类型排序，
+     * 高 32 位是有符号的值，低 32 位是非负的行号，所以结果天然稳定
+     */
+    private static int[] sortedOrder(int[] col, int n) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = ((long) col[i] << 32) | i;
+        Arrays.sort(keys);
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++)
+            perm[i] = (int) keys[i];
+        return perm;
+    }
+
+    private interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * long/double 列：对行号数组做归并排序（稳定），比较时直接读列数组，不装箱
+     */
+    private static int[] sortedOrder(int n, RowComparator cmp) {
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++)
+            perm[i] = i;
+        int[] tmp = new int[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n - width; lo += width << 1) {
+                int mid = lo + width, hi = Math.min(lo + (width << 1), n);
+                // 已经有序的区段直接跳过
+                if (cmp.compare(perm[mid - 1], perm[mid]) <= 0)
+                    continue;
+                System.arraycopy(perm, lo, tmp, lo, hi - lo);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi)
+                    perm[k++] = cmp.compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+                while (i < mid)
+                    perm[k++] = tmp[i++];
+                while (j < hi)
+                    perm[k++] = tmp[j++];
+            }
+        }
+        return perm;
+    }
+
+    private void permute(int[] perm) {
+        int n = size, cap = capacity();
+        for (int f = 0; f < columns.length; f++) {
+            switch (schema.type(f)) {
+                case INT: {
+                    int[] src = (int[]) columns[f], dst = new int[cap];
+                    for (int i = 0; i < n; i++)
+                        dst[i] = src[perm[i]];
+                    columns[f] = dst;
+                    break;
+                }
+                case LONG: {
+                    long[] src = (long[]) columns[f], dst = new long[cap];
+                    for (int i = 0; i < n; i++)
+                        dst[i] = src[perm[i]];
+                    columns[f] = dst;
+                    break;
+                }
+                case DOUBLE: {
+                    double[] src = (double[]) columns[f], dst = new double[cap];
+                    for (int i = 0; i < n; i++)
+                        dst[i] = src[perm[i]];
+                    columns[f] = dst;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 指向某一行的享元游标。
+     * <p>
+     * 游标只记录行号，每次读写都直接落到对应的列数组上。
+     * 用法：
+     * <pre>
+     * Cursor c = store.cursor();
+     * while (c.next()) {
+     *     total += c.getDouble(price);
+     * }
+     * </pre>
+     */
+    public final class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public Cursor moveTo(int row) {
+            this.row = checkRow(row);
+            return this;
+        }
+
+        /**
+         * 移动到下一行
+         * @return 如果已经没有下一行则返回 false
+         */
+        public boolean next() {
+            if (row + 1 < size) {
+                row++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 回到第一行之前，配合 {@link #next()} 重新遍历
+         */
+        public Cursor reset() {
+            row = -1;
+            return this;
+        }
+
+        public int getInt(int field) {
+            return ColumnarRecordStore.this.getInt(row, field);
+        }
+
+        public long getLong(int field) {
+            return ColumnarRecordStore.this.getLong(row, field);
+        }
+
+        public double getDouble(int field) {
+            return ColumnarRecordStore.this.getDouble(row, field);
+        }
+
+        public Cursor setInt(int field, int value) {
+            ColumnarRecordStore.this.setInt(row, field, value);
+            return this;
+        }
+
+        public Cursor setLong(int field, long value) {
+            ColumnarRecordStore.this.setLong(row, field, value);
+            return this;
+        }
+
+        public Cursor setDouble(int field, double value) {
+            ColumnarRecordStore.this.setDouble(row, field, value);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            if (row < 0 || row >= size)
+                return "Cursor{row=" + row + '}';
+            StringBuilder sb = new StringBuilder("Cursor{row=").append(row);
+            for (int f = 0; f < schema.fieldCount(); f++) {
+                sb.append(", ").append(schema.name(f)).append('=');
+                switch (schema.type(f)) {
+                    case INT:    sb.append(getInt(f)); break;
+                    case LONG:   sb.append(getLong(f)); break;
+                    case DOUBLE: sb.append(getDouble(f)); break;
+                }
+            }
+            return sb.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * 保持插入顺序的紧凑哈希表，参考 CPython 3.6 / PyPy 的 compact dict。
+ * <p>
+ * LinkedHashMap 为了记录插入顺序，在 HashMap.Node（hash、key、value、next）的基础上
+ * 又给每个 Entry 加了 before、after 两个指针，一个元素就是一个 40 字节左右的对象。
+ * 这里把哈希表拆成两部分：
+ * <pre>
+ *   index:   [ -1 ,  1 , -1 ,  0 , -2 ,  2 , -1 , -1 ]   稀疏的 int 数组，开放寻址
+ *                    |         |         |
+ *                    v         v         v
+ *   hashes:  [ h0 , h1 , h2 ]                           稠密数组，按插入顺序追加
+ *   keys:    [ k0 , k1 , k2 ]
+ *   values:  [ v0 , v1 , v2 ]
+ * </pre>
+ * index 中存的是元素在稠密数组中的下标，-1 表示空槽，-2 表示被删除的槽（墓碑）。
+ * 稠密数组只在尾部追加，所以遍历就是按下标顺序扫描数组，天然是插入顺序，
+ * 也不需要每个元素一个 Entry 对象。删除时把 keys[i] 置为 {@link #DELETED}，
+ * 等到扩容时再统一压缩。
+ * <p>
+ * 它可以替换只需要插入顺序（accessOrder = false）的 LinkedHashMap，
+ * 同样支持 {@link #removeEldestEntry(Map.Entry)} 实现 FIFO 缓存；不支持访问顺序。
+ * 允许 null key 和 null value，非线程安全，迭代器是快速失败的。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class CompactLinkedHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 1735629214502217839L;
+
+    /**
+     * index 的默认长度，必须是 2 的幂
+     */
+    static final int DEFAULT_INDEX_SIZE = 8;
+
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * index 槽的两种特殊值
+     */
+    private static final int FREE = -1;
+    private static final int DUMMY = -2;
+
+    /**
+     * 稠密数组中已删除元素的 key
+     */
+    private static final Object DELETED = new Object();
+
+    /**
+     * 开放寻址的索引表，长度是 2 的幂
+     */
+    transient int[] index;
+
+    transient int[] hashes;
+    transient Object[] keys;
+    transient Object[] values;
+
+    /**
+     * 稠密数组中已使用的位置数，包括已删除的元素
+     */
+    transient int used;
+
+    /**
+     * index 中被占用的槽数（有效元素 + 墓碑），决定何时重建 index
+     */
+    transient int filled;
+
+    /**
+     * 有效元素个数
+     */
+    transient int size;
+
+    /**
+     * 第一个有效元素的下标，removeEldestEntry 用它做到 O(1)
+     */
+    transient int head;
+
+    transient int modCount;
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+    private transient Set<K> keySet;
+    private transient Collection<V> values0;
+
+    public CompactLinkedHashMap() {
+        this(DEFAULT_INDEX_SIZE * 2 / 3);
+    }
+
+    /**
+     * @param initialCapacity 预计的元素个数，在这个数量内不需要扩容
+     */
+    public CompactLinkedHashMap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        init(initialCapacity);
+    }
+
+    public CompactLinkedHashMap(Map<? extends K, ? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    private void init(int capacity) {
+        int n = indexSizeFor(capacity);
+        index = new int[n];
+        Arrays.fill(index, FREE);
+        int cap = n * 2 / 3;
+        hashes = new int[cap];
+        keys = new Object[cap];
+        values = new Object[cap];
+        used = filled = size = head = 0;
+    }
+
+    /**
+     * 能容纳 capacity 个元素（装载因子 2/3）的最小 index 长度
+     */
+    static int indexSizeFor(int capacity) {
+        int n = DEFAULT_INDEX_SIZE;
+        while (n * 2 / 3 < capacity && n < MAXIMUM_CAPACITY)
+            n <<= 1;
+        return n;
+    }
+
+    /**
+     * 与 HashMap.hash() 相同：把高 16 位异或到低 16 位
+     */
+    static int hash(Object key) {
+        int h;
+        return (key == null) ? 0 : (h = key.hashCode()) ^ (h >>> 16);
+    }
+
+    /**
+     * @return key 在稠密数组中的下标，不存在返回 -1
+     */
+    final int findEntry(Object key, int h) {
+        int[] idx = index;
+        int mask = idx.length - 1;
+        for (int i = h & mask;; i = (i + 1) & mask) {
+            int ix = idx[i];
+            if (ix == FREE)
+                return -1;
+            if (ix >= 0 && hashes[ix] == h) {
+                Object k = keys[ix];
+                if (k == key || (key != null && key.equals(k)))
+                    return ix;
+            }
+        }
+    }
+
+    /**
+     * @return key 所在的 index 槽位，不存在返回 -1
+     */
+    private int findSlot(Object key, int h) {
+        int[] idx = index;
+        int mask = idx.length - 1;
+        for (int i = h & mask;; i = (i + 1) & mask) {
+            int ix = idx[i];
+            if (ix == FREE)
+                return -1;
+            if (ix >= 0 && hashes[ix] == h) {
+                Object k = keys[ix];
+                if (k == key || (key != null && key.equals(k)))
+                    return i;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int ix = findEntry(key, hash(key));
+        return ix < 0 ? null : (V) values[ix];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int ix = findEntry(key, hash(key));
+        return ix < 0 ? defaultValue : (V) values[ix];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findEntry(key, hash(key)) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Object[] ks = keys, vs = values;
+        for (int i = head, n = used; i < n; i++) {
+            if (ks[i] != DELETED) {
+                Object v = vs[i];
+                if (v == value || (value != null && value.equals(v)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int mc = modCount;
+        V old = putVal(hash(key), key, value, false);
+        if (mc != modCount)
+            afterInsertion();
+        return old;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int mc = modCount;
+        V old = putVal(hash(key), key, value, true);
+        if (mc != modCount)
+            afterInsertion();
+        return old;
+    }
+
+    /**
+     * 与 LinkedHashMap.afterNodeInsertion() 一样，插入新元素后询问是否删除最老的元素
+     */
+    private void afterInsertion() {
+        Map.Entry<K, V> first = eldest();
+        if (first != null && removeEldestEntry(first))
+            removeAtEntry(head, findSlot(keys[head], hashes[head]));
+    }
+
+    @SuppressWarnings("unchecked")
+    final V putVal(int h, K key, V value, boolean onlyIfAbsent) {
+        int ix = findEntry(key, h);
+        if (ix >= 0) {
+            V old = (V) values[ix];
+            if (!onlyIfAbsent || old == null)
+                values[ix] = value;
+            return old;
+        }
+        // 新元素：先保证 index 和稠密数组都有空间
+        if ((filled + 1) * 3 > index.length * 2 || used == keys.length)
+            resize();
+        int[] idx = index;
+        int mask = idx.length - 1;
+        int i = h & mask;
+        // 找第一个空槽或墓碑，墓碑可以复用
+        while (idx[i] >= 0)
+            i = (i + 1) & mask;
+        if (idx[i] == FREE)
+            filled++;
+        int n = used++;
+        idx[i] = n;
+        hashes[n] = h;
+        keys[n] = key;
+        values[n] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int h = hash(key);
+        int slot = findSlot(key, h);
+        if (slot < 0)
+            return null;
+        return (V) removeAtEntry(index[slot], slot);
+    }
+
+    /**
+     * 删除稠密数组下标为 ix、index 槽位为 slot 的元素
+     */
+    final Object removeAtEntry(int ix, int slot) {
+        Object old = values[ix];
+        index[slot] = DUMMY;
+        keys[ix] = DELETED;
+        values[ix] = null;
+        size--;
+        modCount++;
+        if (size == 0) {
+            // 全部删光时直接复位，避免稠密数组里留一串墓碑
+            Arrays.fill(index, FREE);
+            Arrays.fill(keys, 0, used, null);
+            used = filled = head = 0;
+        } else if (ix == head) {
+            advanceHead();
+        }
+        return old;
+    }
+
+    private void advanceHead() {
+        Object[] ks = keys;
+        int i = head;
+        while (i < used && ks[i] == DELETED)
+            i++;
+        head = i;
+    }
+
+    /**
+     * 扩容或压缩：有效元素不到容量的一半时（说明大部分位置是墓碑），只压缩不扩容；
+     * 否则 index 长度翻倍。两种情况都会去掉稠密数组中的空洞并重建 index，
+     * 之后至少有一半容量是空闲的，所以均摊下来插入仍然是 O(1)。
+     */
+    private void resize() {
+        int newIndexSize = index.length;
+        if (size + 1 > newIndexSize / 3) {
+            if (newIndexSize >= MAXIMUM_CAPACITY)
+                throw new IllegalStateException("Map too large");
+            newIndexSize <<= 1;
+        }
+        int cap = newIndexSize * 2 / 3;
+        int[] newHashes = new int[cap];
+        Object[] newKeys = new Object[cap];
+        Object[] newValues = new Object[cap];
+        int[] newIndex = new int[newIndexSize];
+        Arrays.fill(newIndex, FREE);
+        int mask = newIndexSize - 1;
+        int n = 0;
+        for (int i = head; i < used; i++) {
+            Object k = keys[i];
+            if (k == DELETED)
+                continue;
+            int h = hashes[i];
+            newHashes[n] = h;
+            newKeys[n] = k;
+            newValues[n] = values[i];
+            int j = h & mask;
+            while (newIndex[j] != FREE)
+                j = (j + 1) & mask;
+            newIndex[j] = n++;
+        }
+        index = newIndex;
+        hashes = newHashes;
+        keys = newKeys;
+        values = newValues;
+        used = filled = n;
+        head = 0;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        if (size > 0 || used > 0) {
+            Arrays.fill(index, FREE);
+            Arrays.fill(keys, 0, used, null);
+            Arrays.fill(values, 0, used, null);
+        }
+        used = filled = size = head = 0;
+    }
+
+    /**
+     * 插入新元素后调用，返回 true 时删除最老的元素。默认不删除。
+     * 用法与 {@link LinkedHashMap} 相同，例如实现固定大小的 FIFO 缓存。
+     */
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return false;
+    }
+
+    private Map.Entry<K, V> eldest() {
+        return size == 0 ? null : new DenseEntry(head);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int mc = modCount;
+        Object[] ks = keys, vs = values;
+        for (int i = head; i < used && modCount == mc; i++) {
+            Object k = ks[i];
+            if (k != DELETED)
+                action.accept((K) k, (V) vs[i]);
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int mc = modCount;
+        Object[] ks = keys, vs = values;
+        for (int i = head; i < used && modCount == mc; i++) {
+            Object k = ks[i];
+            if (k != DELETED)
+                vs[i] = function.apply((K) k, (V) vs[i]);
+        }
+        if (modCount != mc)
+            throw new ConcurrentModificationException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompactLinkedHashMap<K, V> clone() {
+        CompactLinkedHashMap<K, V> result;
+        try {
+            result = (CompactLinkedHashMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+        result.index = index.clone();
+        result.hashes = hashes.clone();
+        result.keys = keys.clone();
+        result.values = values.clone();
+        result.entrySet = null;
+        result.keySet = null;
+        result.values0 = null;
+        return result;
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySet) == null ? (keySet = new KeySet()) : ks;
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> vs;
+        return (vs = values0) == null ? (values0 = new Values()) : vs;
+    }
+
+    /**
+     * 按下标顺序扫描稠密数组，跳过已删除的位置。
+     * 通过迭代器删除只会留下墓碑，不会移动其他元素，所以游标不需要调整。
+     */
+    abstract class DenseIterator<T> implements Iterator<T> {
+        int next;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+
+        DenseIterator() {
+            next = head;
+            skipDeleted();
+        }
+
+        private void skipDeleted() {
+            Object[] ks = keys;
+            while (next < used && ks[next] == DELETED)
+                next++;
+        }
+
+        @Override
+        public final boolean hasNext() {
+            return next < used;
+        }
+
+        final int nextIndex() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int i = next;
+            if (i >= used)
+                throw new NoSuchElementException();
+            lastRet = i;
+            next = i + 1;
+            skipDeleted();
+            return i;
+        }
+
+        @Override
+        public final void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int ix = lastRet;
+            lastRet = -1;
+            removeAtEntry(ix, findSlot(keys[ix], hashes[ix]));
+            if (size == 0)
+                next = 0; // removeAtEntry 复位了稠密数组
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends DenseIterator<K> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            return (K) keys[nextIndex()];
+        }
+    }
+
+    final class ValueIterator extends DenseIterator<V> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            return (V) values[nextIndex()];
+        }
+    }
+
+    final class EntryIterator extends DenseIterator<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            return new DenseEntry(nextIndex());
+        }
+    }
+
+    /**
+     * 指向稠密数组某个下标的 Entry，只有迭代和 removeEldestEntry 时才会创建
+     */
+    final class DenseEntry implements Map.Entry<K, V> {
+        private final K key;
+        private final int ix;
+        private final int[] hs;
+
+        @SuppressWarnings("unchecked")
+        DenseEntry(int ix) {
+            this.ix = ix;
+            this.key = (K) keys[ix];
+            this.hs = hashes;
+        }
+
+        /**
+         * 扩容后稠密数组会被替换，这时退回到按 key 查找
+         */
+        private boolean valid() {
+            return hs == hashes && ix < used && keys[ix] == key;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return valid() ? (V) values[ix] : get(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            if (valid()) {
+                V old = (V) values[ix];
+                values[ix] = value;
+                return old;
+            }
+            return putVal(hash(key), key, value, false);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            CompactLinkedHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object key) {
+            int slot = findSlot(key, hash(key));
+            if (slot < 0)
+                return false;
+            removeAtEntry(index[slot], slot);
+            return true;
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            CompactLinkedHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            CompactLinkedHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            int ix = findEntry(key, hash(key));
+            return ix >= 0 && Objects.equals(values[ix], e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            int slot = findSlot(key, hash(key));
+            if (slot < 0 || !Objects.equals(values[index[slot]], e.getValue()))
+                return false;
+            removeAtEntry(index[slot], slot);
+            return true;
+        }
+    }
+
+    /* ---------------- 序列化 -------------- */
+
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for (int i = head; i < used; i++) {
+            if (keys[i] != DELETED) {
+                s.writeObject(keys[i]);
+                s.writeObject(values[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int mappings = s.readInt();
+        if (mappings < 0)
+            throw new java.io.InvalidObjectException("Illegal mappings count: " + mappings);
+        init(Math.min(mappings, MAXIMUM_CAPACITY));
+        for (int i = 0; i < mappings; i++) {
+            K key = (K) s.readObject();
+            V value = (V) s.readObject();
+            putVal(hash(key), key, value, false);
+        }
+    }
+}
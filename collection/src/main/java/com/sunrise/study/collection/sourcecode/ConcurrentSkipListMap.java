@@ -0,0 +1,2073 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 基于跳表的无锁并发有序 Map，用来替代"TreeMap + ReentrantReadWriteLock"的用法。
+ * <p>
+ * 实现思路与 JDK 的 ConcurrentSkipListMap 相同（Doug Lea 对 Harris/Michael 无锁链表的扩展）：
+ * <ul>
+ *     <li>最底层是按 key 有序的单链表（Node），保存全部数据；</li>
+ *     <li>上面若干层是索引（Index），每层都是底层的一个随机子集，用来跳跃查找；</li>
+ *     <li>所有修改都只用 CAS 完成，读操作（get、ceilingEntry、迭代等）不加任何锁，
+ *     也不会被写操作阻塞。</li>
+ * </ul>
+ * 删除分三步，保证并发插入不会挂到被删除的节点后面：
+ * <pre>
+ *   (1) CAS 把 node.value 置为 null，这一刻起逻辑上已经删除；
+ *   (2) 在 node 后面追加一个 marker 节点（value 指向自己），之后没有人能再 CAS node.next；
+ *   (3) CAS 前驱的 next，把 node 和 marker 一起摘掉。
+ *
+ *        +------+       +------+      +------+
+ *   ...  |   b  |------>|   n  |----->|   f  | ...
+ *        +------+       +------+      +------+
+ *
+ *        +------+       +------+      +------+       +------+
+ *   ...  |   b  |------>|   n  |----->|marker|------>|   f  | ...
+ *        +------+       +------+      +------+       +------+
+ *
+ *        +------+                                    +------+
+ *   ...  |   b  |----------------------------------->|   f  | ...
+ *        +------+                                    +------+
+ * </pre>
+ * 任何线程遍历时发现 value 为 null 的节点，都会顺手帮忙完成 (2)、(3)（helpDelete）。
+ * <p>
+ * 迭代器和 subMap/headMap/tailMap 等视图都是弱一致的：不会抛出
+ * ConcurrentModificationException，能看到创建之后的部分修改，但不保证全部看到。
+ * size() 需要遍历整条链表，是 O(n) 的，并且在并发修改时只是一个估计值。
+ * <p>
+ * 与 TreeMap 不同，key 和 value 都不允许为 null（null 被用来表示"已删除"）。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ConcurrentSkipListMap<K, V> extends AbstractMap<K, V>
+        implements ConcurrentNavigableMap<K, V> {
+
+    /**
+     * 底层链表头节点的 value，用来和普通节点区分
+     */
+    private static final Object BASE_HEADER = new Object();
+
+    /**
+     * findNear() 的查找关系
+     */
+    private static final int EQ = 1;
+    private static final int LT = 2;
+    private static final int GT = 0; // 没有 LT 就是 GT
+
+    /**
+     * 比较器，为 null 时使用 key 的自然顺序
+     */
+    final Comparator<? super K> comparator;
+
+    /**
+     * 最高层的索引头
+     */
+    private transient volatile HeadIndex<K, V> head;
+
+    private transient KeySet<K> keySet;
+    private transient EntrySet<K, V> entrySet;
+    private transient Values<V> values;
+    private transient ConcurrentNavigableMap<K, V> descendingMap;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentSkipListMap, HeadIndex> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentSkipListMap.class, HeadIndex.class, "head");
+
+    public ConcurrentSkipListMap() {
+        this.comparator = null;
+        initialize();
+    }
+
+    public ConcurrentSkipListMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        initialize();
+    }
+
+    public ConcurrentSkipListMap(Map<? extends K, ? extends V> m) {
+        this.comparator = null;
+        initialize();
+        putAll(m);
+    }
+
+    private void initialize() {
+        keySet = null;
+        entrySet = null;
+        values = null;
+        descendingMap = null;
+        head = new HeadIndex<K, V>(new Node<K, V>(null, BASE_HEADER, null), null, null, 1);
+    }
+
+    private boolean casHead(HeadIndex<K, V> cmp, HeadIndex<K, V> val) {
+        return HEAD.compareAndSet(this, cmp, val);
+    }
+
+    /* ---------------- 节点 -------------- */
+
+    /**
+     * 底层链表节点。
+     * value 为 null 表示已删除；value 指向自己表示这是一个 marker 节点。
+     */
+    static final class Node<K, V> {
+        final K key;
+        volatile Object value;
+        volatile Node<K, V> next;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        Node(K key, Object value, Node<K, V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        /**
+         * 创建 marker 节点
+         */
+        Node(Node<K, V> next) {
+            this.key = null;
+            this.value = this;
+            this.next = next;
+        }
+
+        boolean casValue(Object cmp, Object val) {
+            return VALUE.compareAndSet(this, cmp, val);
+        }
+
+        boolean casNext(Node<K, V> cmp, Node<K, V> val) {
+            return NEXT.compareAndSet(this, cmp, val);
+        }
+
+        boolean isMarker() {
+            return value == this;
+        }
+
+        boolean isBaseHeader() {
+            return value == BASE_HEADER;
+        }
+
+        /**
+         * 在当前节点后追加 marker，删除的第 (2) 步
+         */
+        boolean appendMarker(Node<K, V> f) {
+            return casNext(f, new Node<K, V>(f));
+        }
+
+        /**
+         * 帮助完成删除：先追加 marker，再把前驱 b 的 next 指向 marker 的后继
+         */
+        void helpDelete(Node<K, V> b, Node<K, V> f) {
+            // 先确认 f 仍然是当前后继、b 仍然是当前前驱，否则什么也不做
+            if (f == next && this == b.next) {
+                if (f == null || f.value != f) // 还没有 marker
+                    casNext(f, new Node<K, V>(f));
+                else
+                    b.casNext(this, f.next);
+            }
+        }
+
+        /**
+         * @return 有效的 value，已删除节点、marker、头节点返回 null
+         */
+        @SuppressWarnings("unchecked")
+        V getValidValue() {
+            Object v = value;
+            if (v == this || v == BASE_HEADER)
+                return null;
+            return (V) v;
+        }
+
+        /**
+         * @return 当前映射的不可变快照，节点已删除时返回 null
+         */
+        Map.Entry<K, V> createSnapshot() {
+            V v = getValidValue();
+            if (v == null)
+                return null;
+            return new AbstractMap.SimpleImmutableEntry<K, V>(key, v);
+        }
+    }
+
+    /* ---------------- 索引 -------------- */
+
+    static class Index<K, V> {
+        final Node<K, V> node;
+        final Index<K, V> down;
+        volatile Index<K, V> right;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+        Index(Node<K, V> node, Index<K, V> down, Index<K, V> right) {
+            this.node = node;
+            this.down = down;
+            this.right = right;
+        }
+
+        final boolean casRight(Index<K, V> cmp, Index<K, V> val) {
+            return RIGHT.compareAndSet(this, cmp, val);
+        }
+
+        final boolean indexesDeletedNode() {
+            return node.value == null;
+        }
+
+        /**
+         * 在当前索引和 succ 之间插入 newSucc，当前节点已删除则失败
+         */
+        final boolean link(Index<K, V> succ, Index<K, V> newSucc) {
+            Node<K, V> n = node;
+            newSucc.right = succ;
+            return n.value != null && casRight(succ, newSucc);
+        }
+
+        /**
+         * 摘除右侧的 succ，当前节点已删除则失败
+         */
+        final boolean unlink(Index<K, V> succ) {
+            return node.value != null && casRight(succ, succ.right);
+        }
+    }
+
+    /**
+     * 每一层索引的头，额外记录层号
+     */
+    static final class HeadIndex<K, V> extends Index<K, V> {
+        final int level;
+
+        HeadIndex(Node<K, V> node, Index<K, V> down, Index<K, V> right, int level) {
+            super(node, down, right);
+            this.level = level;
+        }
+    }
+
+    /* ---------------- 核心算法 -------------- */
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int cpr(Comparator c, Object x, Object y) {
+        return (c != null) ? c.compare(x, y) : ((Comparable) x).compareTo(y);
+    }
+
+    /**
+     * 沿索引层向右、向下查找，返回底层链表中 key 的某个前驱节点（不一定是直接前驱）。
+     * 顺带摘除遇到的、指向已删除节点的索引。
+     */
+    private Node<K, V> findPredecessor(Object key, Comparator<? super K> cmp) {
+        if (key == null)
+            throw new NullPointerException();
+        for (;;) {
+            for (Index<K, V> q = head, r = q.right, d;;) {
+                if (r != null) {
+                    Node<K, V> n = r.node;
+                    K k = n.key;
+                    if (n.value == null) {
+                        if (!q.unlink(r))
+                            break;           // q 自己被删了，从头重来
+                        r = q.right;
+                        continue;
+                    }
+                    if (cpr(cmp, key, k) > 0) {
+                        q = r;
+                        r = r.right;
+                        continue;
+                    }
+                }
+                if ((d = q.down) == null)
+                    return q.node;
+                q = d;
+                r = d.right;
+            }
+        }
+    }
+
+    /**
+     * 查找 key 对应的底层节点，不存在返回 null。
+     * <p>
+     * 循环里的几个判断在 doPut、doRemove、findNear 中会反复出现：
+     * <ul>
+     *     <li>n != b.next：读到的 next 已经过期，重新查找；</li>
+     *     <li>n.value == null：n 正在被删除，帮忙删完再重来；</li>
+     *     <li>b.value == null || v == n：b 被删除了，或 n 是 marker，重来。</li>
+     * </ul>
+     */
+    private Node<K, V> findNode(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        Comparator<? super K> cmp = comparator;
+        outer:
+        for (;;) {
+            for (Node<K, V> b = findPredecessor(key, cmp), n = b.next;;) {
+                Object v;
+                int c;
+                if (n == null)
+                    break outer;
+                Node<K, V> f = n.next;
+                if (n != b.next)
+                    break;
+                if ((v = n.value) == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n)
+                    break;
+                if ((c = cpr(cmp, key, n.key)) == 0)
+                    return n;
+                if (c < 0)
+                    break outer;
+                b = n;
+                n = f;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V doGet(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        Comparator<? super K> cmp = comparator;
+        outer:
+        for (;;) {
+            for (Node<K, V> b = findPredecessor(key, cmp), n = b.next;;) {
+                Object v;
+                int c;
+                if (n == null)
+                    break outer;
+                Node<K, V> f = n.next;
+                if (n != b.next)
+                    break;
+                if ((v = n.value) == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n)
+                    break;
+                if ((c = cpr(cmp, key, n.key)) == 0)
+                    return (V) v;
+                if (c < 0)
+                    break outer;
+                b = n;
+                n = f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 插入或替换
+     * @param onlyIfAbsent 为 true 时不替换已有的值
+     * @return 旧值，没有则返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        Node<K, V> z;
+        if (key == null)
+            throw new NullPointerException();
+        Comparator<? super K> cmp = comparator;
+        // 1. 在底层链表中找到位置并插入
+        outer:
+        for (;;) {
+            for (Node<K, V> b = findPredecessor(key, cmp), n = b.next;;) {
+                if (n != null) {
+                    Object v;
+                    int c;
+                    Node<K, V> f = n.next;
+                    if (n != b.next)
+                        break;
+                    if ((v = n.value) == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n)
+                        break;
+                    if ((c = cpr(cmp, key, n.key)) > 0) {
+                        b = n;
+                        n = f;
+                        continue;
+                    }
+                    if (c == 0) {
+                        if (onlyIfAbsent || n.casValue(v, value))
+                            return (V) v;
+                        break; // 替换值时 CAS 失败，重来
+                    }
+                }
+                z = new Node<K, V>(key, value, n);
+                if (!b.casNext(n, z))
+                    break;
+                break outer;
+            }
+        }
+
+        // 2. 随机决定索引层数：1/4 的概率建索引，之后每层再减半
+        int rnd = ThreadLocalRandom.current().nextInt();
+        if ((rnd & 0x80000001) == 0) { // 最高位和最低位都是 0
+            int level = 1, max;
+            while (((rnd >>>= 1) & 1) != 0)
+                ++level;
+            Index<K, V> idx = null;
+            HeadIndex<K, V> h = head;
+            if (level <= (max = h.level)) {
+                for (int i = 1; i <= level; ++i)
+                    idx = new Index<K, V>(z, idx, null);
+            } else {
+                // 最多只增加一层
+                level = max + 1;
+                @SuppressWarnings("unchecked")
+                Index<K, V>[] idxs = (Index<K, V>[]) new Index<?, ?>[level + 1];
+                for (int i = 1; i <= level; ++i)
+                    idxs[i] = idx = new Index<K, V>(z, idx, null);
+                for (;;) {
+                    h = head;
+                    int oldLevel = h.level;
+                    if (level <= oldLevel) // 被其他线程抢先加了层
+                        break;
+                    HeadIndex<K, V> newh = h;
+                    Node<K, V> oldbase = h.node;
+                    for (int j = oldLevel + 1; j <= level; ++j)
+                        newh = new HeadIndex<K, V>(oldbase, newh, idxs[j], j);
+                    if (casHead(h, newh)) {
+                        h = newh;
+                        idx = idxs[level = oldLevel];
+                        break;
+                    }
+                }
+            }
+            // 3. 自上而下把索引逐层接入
+            splice:
+            for (int insertionLevel = level;;) {
+                int j = h.level;
+                for (Index<K, V> q = h, r = q.right, t = idx;;) {
+                    if (q == null || t == null)
+                        break splice;
+                    if (r != null) {
+                        Node<K, V> n = r.node;
+                        int c = cpr(cmp, key, n.key);
+                        if (n.value == null) {
+                            if (!q.unlink(r))
+                                break;
+                            r = q.right;
+                            continue;
+                        }
+                        if (c > 0) {
+                            q = r;
+                            r = r.right;
+                            continue;
+                        }
+                    }
+
+                    if (j == insertionLevel) {
+                        if (!q.link(r, t))
+                            break; // 重来
+                        if (t.node.value == null) {
+                            // 节点在接索引的过程中被删除了，清理掉刚接上的索引
+                            findNode(key);
+                            break splice;
+                        }
+                        if (--insertionLevel == 0)
+                            break splice;
+                    }
+
+                    if (--j >= insertionLevel && j < level)
+                        t = t.down;
+                    q = q.down;
+                    r = q.right;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 删除
+     * @param value 不为 null 时只有当前值与之相等才删除
+     * @return 被删除的值，没有删除则返回 null
+     */
+    @SuppressWarnings("unchecked")
+    final V doRemove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        Comparator<? super K> cmp = comparator;
+        outer:
+        for (;;) {
+            for (Node<K, V> b = findPredecessor(key, cmp), n = b.next;;) {
+                Object v;
+                int c;
+                if (n == null)
+                    break outer;
+                Node<K, V> f = n.next;
+                if (n != b.next)
+                    break;
+                if ((v = n.value) == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n)
+                    break;
+                if ((c = cpr(cmp, key, n.key)) < 0)
+                    break outer;
+                if (c > 0) {
+                    b = n;
+                    n = f;
+                    continue;
+                }
+                if (value != null && !value.equals(v))
+                    break outer;
+                if (!n.casValue(v, null))
+                    break;
+                if (!n.appendMarker(f) || !b.casNext(n, f))
+                    findNode(key);                  // 通过 findNode 帮忙完成删除
+                else {
+                    findPredecessor(key, cmp);      // 清理索引
+                    if (head.right == null)
+                        tryReduceLevel();
+                }
+                return (V) v;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 最上面三层索引都空了时降一层。
+     * 降层后如果发现又有人往原来的顶层加了索引，就恢复回去。
+     */
+    private void tryReduceLevel() {
+        HeadIndex<K, V> h = head;
+        HeadIndex<K, V> d;
+        HeadIndex<K, V> e;
+        if (h.level > 3 &&
+                (d = (HeadIndex<K, V>) h.down) != null &&
+                (e = (HeadIndex<K, V>) d.down) != null &&
+                e.right == null &&
+                d.right == null &&
+                h.right == null &&
+                casHead(h, d) &&
+                h.right != null)
+            casHead(d, h);
+    }
+
+    /**
+     * @return 第一个有效节点，map 为空时返回 null
+     */
+    final Node<K, V> findFirst() {
+        for (Node<K, V> b, n;;) {
+            if ((n = (b = head.node).next) == null)
+                return null;
+            if (n.value != null)
+                return n;
+            n.helpDelete(b, n.next);
+        }
+    }
+
+    private Map.Entry<K, V> doRemoveFirstEntry() {
+        for (Node<K, V> b, n;;) {
+            if ((n = (b = head.node).next) == null)
+                return null;
+            Node<K, V> f = n.next;
+            if (n != b.next)
+                continue;
+            Object v = n.value;
+            if (v == null) {
+                n.helpDelete(b, f);
+                continue;
+            }
+            if (!n.casValue(v, null))
+                continue;
+            if (!n.appendMarker(f) || !b.casNext(n, f))
+                findFirst();
+            clearIndexToFirst();
+            @SuppressWarnings("unchecked")
+            V vv = (V) v;
+            return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, vv);
+        }
+    }
+
+    /**
+     * 删除第一个节点后，清理每一层指向已删除节点的第一个索引
+     */
+    private void clearIndexToFirst() {
+        for (;;) {
+            for (Index<K, V> q = head;;) {
+                Index<K, V> r = q.right;
+                if (r != null && r.indexesDeletedNode() && !q.unlink(r))
+                    break;
+                if ((q = q.down) == null) {
+                    if (head.right == null)
+                        tryReduceLevel();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 最后一个有效节点，map 为空时返回 null
+     */
+    final Node<K, V> findLast() {
+        Index<K, V> q = head;
+        for (;;) {
+            Index<K, V> d, r;
+            if ((r = q.right) != null) {
+                if (r.indexesDeletedNode()) {
+                    q.unlink(r);
+                    q = head; // 从头重来
+                } else
+                    q = r;
+            } else if ((d = q.down) != null) {
+                q = d;
+            } else {
+                for (Node<K, V> b = q.node, n = b.next;;) {
+                    if (n == null)
+                        return b.isBaseHeader() ? null : b;
+                    Node<K, V> f = n.next;
+                    if (n != b.next)
+                        break;
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n)
+                        break;
+                    b = n;
+                    n = f;
+                }
+                q = head; // 从头重来
+            }
+        }
+    }
+
+    /**
+     * @return 最后一个节点的某个前驱（可能是头节点）
+     */
+    private Node<K, V> findPredecessorOfLast() {
+        for (;;) {
+            for (Index<K, V> q = head;;) {
+                Index<K, V> d, r;
+                if ((r = q.right) != null) {
+                    if (r.indexesDeletedNode()) {
+                        q.unlink(r);
+                        break;    // 必须从头重来，否则可能跳过删除
+                    }
+                    // 只在右边节点还有后继时才前进
+                    if (r.node.next != null) {
+                        q = r;
+                        continue;
+                    }
+                }
+                if ((d = q.down) != null)
+                    q = d;
+                else
+                    return q.node;
+            }
+        }
+    }
+
+    private Map.Entry<K, V> doRemoveLastEntry() {
+        for (;;) {
+            Node<K, V> b = findPredecessorOfLast();
+            Node<K, V> n = b.next;
+            if (n == null) {
+                if (b.isBaseHeader())
+                    return null;
+                else
+                    continue; // 链表末尾被修改过，重来
+            }
+            for (;;) {
+                Node<K, V> f = n.next;
+                if (n != b.next)
+                    break;
+                Object v = n.value;
+                if (v == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n)
+                    break;
+                if (f != null) {
+                    b = n;
+                    n = f;
+                    continue;
+                }
+                if (!n.casValue(v, null))
+                    break;
+                K key = n.key;
+                if (!n.appendMarker(f) || !b.casNext(n, f))
+                    findNode(key);
+                else {
+                    findPredecessor(key, comparator);
+                    if (head.right == null)
+                        tryReduceLevel();
+                }
+                @SuppressWarnings("unchecked")
+                V vv = (V) v;
+                return new AbstractMap.SimpleImmutableEntry<K, V>(key, vv);
+            }
+        }
+    }
+
+    /**
+     * 按关系 rel 查找离 key 最近的节点：
+     * GT 大于、GT|EQ 大于等于、LT 小于、LT|EQ 小于等于
+     */
+    final Node<K, V> findNear(K key, int rel, Comparator<? super K> cmp) {
+        if (key == null)
+            throw new NullPointerException();
+        for (;;) {
+            for (Node<K, V> b = findPredecessor(key, cmp), n = b.next;;) {
+                Object v;
+                if (n == null)
+                    return ((rel & LT) == 0 || b.isBaseHeader()) ? null : b;
+                Node<K, V> f = n.next;
+                if (n != b.next)
+                    break;
+                if ((v = n.value) == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n)
+                    break;
+                int c = cpr(cmp, key, n.key);
+                if ((c == 0 && (rel & EQ) != 0) ||
+                        (c < 0 && (rel & LT) == 0))
+                    return n;
+                if (c <= 0 && (rel & LT) != 0)
+                    return b.isBaseHeader() ? null : b;
+                b = n;
+                n = f;
+            }
+        }
+    }
+
+    final AbstractMap.SimpleImmutableEntry<K, V> getNear(K key, int rel) {
+        Comparator<? super K> cmp = comparator;
+        for (;;) {
+            Node<K, V> n = findNear(key, rel, cmp);
+            if (n == null)
+                return null;
+            V v = n.getValidValue();
+            if (v != null)
+                return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, v);
+        }
+    }
+
+    /* ---------------- Map 接口 -------------- */
+
+    @Override
+    public boolean containsKey(Object key) {
+        return doGet(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return doGet(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return (v = doGet(key)) == null ? defaultValue : v;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        return doPut(key, value, false);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return doRemove(key, null);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+            V v = n.getValidValue();
+            if (v != null && value.equals(v))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 遍历整条底层链表计数，O(n)，并发修改时结果只是一个估计值
+     */
+    @Override
+    public int size() {
+        long count = 0;
+        for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+            if (n.getValidValue() != null)
+                ++count;
+        }
+        return (count >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return findFirst() == null;
+    }
+
+    @Override
+    public void clear() {
+        initialize();
+    }
+
+    /* ---------------- ConcurrentMap 接口 -------------- */
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        return doPut(key, value, true);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && doRemove(key, value) != null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        for (;;) {
+            Node<K, V> n;
+            Object v;
+            if ((n = findNode(key)) == null)
+                return false;
+            if ((v = n.value) != null) {
+                if (!oldValue.equals(v))
+                    return false;
+                if (n.casValue(v, newValue))
+                    return true;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        for (;;) {
+            Node<K, V> n;
+            Object v;
+            if ((n = findNode(key)) == null)
+                return null;
+            if ((v = n.value) != null && n.casValue(v, value))
+                return (V) v;
+        }
+    }
+
+    /* ---------------- SortedMap / NavigableMap 接口 -------------- */
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public K firstKey() {
+        Node<K, V> n = findFirst();
+        if (n == null)
+            throw new NoSuchElementException();
+        return n.key;
+    }
+
+    @Override
+    public K lastKey() {
+        Node<K, V> n = findLast();
+        if (n == null)
+            throw new NoSuchElementException();
+        return n.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return getNear(key, LT);
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        Node<K, V> n = findNear(key, LT, comparator);
+        return (n == null) ? null : n.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return getNear(key, LT | EQ);
+    }
+
+    @Override
+    public K floorKey(K key) {
+        Node<K, V> n = findNear(key, LT | EQ, comparator);
+        return (n == null) ? null : n.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return getNear(key, GT | EQ);
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        Node<K, V> n = findNear(key, GT | EQ, comparator);
+        return (n == null) ? null : n.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return getNear(key, GT);
+    }
+
+    @Override
+    public K higherKey(K key) {
+        Node<K, V> n = findNear(key, GT, comparator);
+        return (n == null) ? null : n.key;
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        for (;;) {
+            Node<K, V> n = findFirst();
+            if (n == null)
+                return null;
+            Map.Entry<K, V> e = n.createSnapshot();
+            if (e != null)
+                return e;
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        for (;;) {
+            Node<K, V> n = findLast();
+            if (n == null)
+                return null;
+            Map.Entry<K, V> e = n.createSnapshot();
+            if (e != null)
+                return e;
+        }
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return doRemoveFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return doRemoveLastEntry();
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    @Override
+    public NavigableSet<K> keySet() {
+        KeySet<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet<K>(this));
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        Values<V> vs = values;
+        return (vs != null) ? vs : (values = new Values<V>(this));
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        EntrySet<K, V> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet<K, V>(this));
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> descendingMap() {
+        ConcurrentNavigableMap<K, V> dm = descendingMap;
+        return (dm != null) ? dm : (descendingMap = new SubMap<K, V>(this, null, false, null, false, true));
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K, V>(this, fromKey, fromInclusive, toKey, toInclusive, false);
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        if (toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K, V>(this, null, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        if (fromKey == null)
+            throw new NullPointerException();
+        return new SubMap<K, V>(this, fromKey, inclusive, null, false, false);
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ConcurrentNavigableMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * 底层链表上的弱一致迭代器，创建时和每次 next() 时都会预读下一个有效节点
+     */
+    abstract class Iter<T> implements Iterator<T> {
+        Node<K, V> lastReturned;
+        Node<K, V> next;
+        V nextValue;
+
+        Iter() {
+            while ((next = findFirst()) != null) {
+                V x = next.getValidValue();
+                if (x != null) {
+                    nextValue = x;
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final void advance() {
+            if (next == null)
+                throw new NoSuchElementException();
+            lastReturned = next;
+            while ((next = next.next) != null) {
+                V x = next.getValidValue();
+                if (x != null) {
+                    nextValue = x;
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void remove() {
+            Node<K, V> l = lastReturned;
+            if (l == null)
+                throw new IllegalStateException();
+            // 直接按 key 删除，比在链表上原地删除简单，效果相同
+            ConcurrentSkipListMap.this.remove(l.key);
+            lastReturned = null;
+        }
+    }
+
+    final class KeyIterator extends Iter<K> {
+        @Override
+        public K next() {
+            Node<K, V> n = next;
+            advance();
+            return n.key;
+        }
+    }
+
+    final class ValueIterator extends Iter<V> {
+        @Override
+        public V next() {
+            V v = nextValue;
+            advance();
+            return v;
+        }
+    }
+
+    final class EntryIterator extends Iter<Map.Entry<K, V>> {
+        @Override
+        public Map.Entry<K, V> next() {
+            Node<K, V> n = next;
+            V v = nextValue;
+            advance();
+            return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, v);
+        }
+    }
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator();
+    }
+
+    Iterator<V> valueIterator() {
+        return new ValueIterator();
+    }
+
+    Iterator<Map.Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+
+    /* ---------------- 视图类 -------------- */
+
+    static <E> List<E> toList(Collection<E> c) {
+        List<E> list = new ArrayList<E>();
+        for (E e : c)
+            list.add(e);
+        return list;
+    }
+
+    /**
+     * key 视图，同时用于主 map 和 SubMap，也被 {@link ConcurrentSkipListSet} 复用
+     */
+    static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+        final ConcurrentNavigableMap<E, ?> m;
+
+        KeySet(ConcurrentNavigableMap<E, ?> map) {
+            m = map;
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return m.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return m.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public E lower(E e) {
+            return m.lowerKey(e);
+        }
+
+        @Override
+        public E floor(E e) {
+            return m.floorKey(e);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return m.ceilingKey(e);
+        }
+
+        @Override
+        public E higher(E e) {
+            return m.higherKey(e);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return m.comparator();
+        }
+
+        @Override
+        public E first() {
+            return m.firstKey();
+        }
+
+        @Override
+        public E last() {
+            return m.lastKey();
+        }
+
+        @Override
+        public E pollFirst() {
+            Map.Entry<E, ?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+
+        @Override
+        public E pollLast() {
+            Map.Entry<E, ?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentSkipListMap)
+                return ((ConcurrentSkipListMap<E, Object>) m).keyIterator();
+            else
+                return ((SubMap<E, Object>) m).keyIterator();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Set))
+                return false;
+            Collection<?> c = (Collection<?>) o;
+            try {
+                return containsAll(c) && c.containsAll(this);
+            } catch (ClassCastException | NullPointerException unused) {
+                return false;
+            }
+        }
+
+        // 先拷贝到 ArrayList 再转数组，避免并发修改时 size 与实际元素个数不一致
+        @Override
+        public Object[] toArray() {
+            return toList(this).toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return toList(this).toArray(a);
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            return new KeySet<E>(m.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<E>(m.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<E>(m.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<E>(m.descendingMap());
+        }
+    }
+
+    static final class Values<E> extends AbstractCollection<E> {
+        final ConcurrentNavigableMap<?, E> m;
+
+        Values(ConcurrentNavigableMap<?, E> map) {
+            m = map;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentSkipListMap)
+                return ((ConcurrentSkipListMap<?, E>) m).valueIterator();
+            else
+                return ((SubMap<?, E>) m).valueIterator();
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return m.containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return toList(this).toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return toList(this).toArray(a);
+        }
+    }
+
+    static final class EntrySet<K1, V1> extends AbstractSet<Map.Entry<K1, V1>> {
+        final ConcurrentNavigableMap<K1, V1> m;
+
+        EntrySet(ConcurrentNavigableMap<K1, V1> map) {
+            m = map;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K1, V1>> iterator() {
+            if (m instanceof ConcurrentSkipListMap)
+                return ((ConcurrentSkipListMap<K1, V1>) m).entryIterator();
+            else
+                return ((SubMap<K1, V1>) m).entryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            V1 v = m.get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return m.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return toList(this).toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return toList(this).toArray(a);
+        }
+    }
+
+    /**
+     * subMap/headMap/tailMap/descendingMap 返回的视图。
+     * <p>
+     * 视图本身不保存数据，只记录上下界和方向，所有操作都转发给底层 map，
+     * 并过滤掉范围外的 key，所以它和底层 map 一样是无锁、弱一致的。
+     * 对范围外的 key 执行 put 会抛出 IllegalArgumentException。
+     */
+    static final class SubMap<K, V> extends AbstractMap<K, V>
+            implements ConcurrentNavigableMap<K, V> {
+        final ConcurrentSkipListMap<K, V> m;
+        /**
+         * 下界，为 null 表示没有下界
+         */
+        private final K lo;
+        /**
+         * 上界，为 null 表示没有上界
+         */
+        private final K hi;
+        private final boolean loInclusive;
+        private final boolean hiInclusive;
+        /**
+         * 是否为降序视图
+         */
+        private final boolean isDescending;
+
+        private transient KeySet<K> keySetView;
+        private transient Set<Map.Entry<K, V>> entrySetView;
+        private transient Collection<V> valuesView;
+
+        SubMap(ConcurrentSkipListMap<K, V> map,
+               K fromKey, boolean fromInclusive,
+               K toKey, boolean toInclusive,
+               boolean isDescending) {
+            Comparator<? super K> cmp = map.comparator;
+            if (fromKey != null && toKey != null && cpr(cmp, fromKey, toKey) > 0)
+                throw new IllegalArgumentException("inconsistent range");
+            this.m = map;
+            this.lo = fromKey;
+            this.hi = toKey;
+            this.loInclusive = fromInclusive;
+            this.hiInclusive = toInclusive;
+            this.isDescending = isDescending;
+        }
+
+        /* ----------------  工具方法 -------------- */
+
+        boolean tooLow(Object key, Comparator<? super K> cmp) {
+            int c;
+            return (lo != null && ((c = cpr(cmp, key, lo)) < 0 ||
+                    (c == 0 && !loInclusive)));
+        }
+
+        boolean tooHigh(Object key, Comparator<? super K> cmp) {
+            int c;
+            return (hi != null && ((c = cpr(cmp, key, hi)) > 0 ||
+                    (c == 0 && !hiInclusive)));
+        }
+
+        boolean inBounds(Object key, Comparator<? super K> cmp) {
+            return !tooLow(key, cmp) && !tooHigh(key, cmp);
+        }
+
+        void checkKeyBounds(K key, Comparator<? super K> cmp) {
+            if (key == null)
+                throw new NullPointerException();
+            if (!inBounds(key, cmp))
+                throw new IllegalArgumentException("key out of range");
+        }
+
+        /**
+         * @return n 是否还没有越过上界
+         */
+        boolean isBeforeEnd(Node<K, V> n, Comparator<? super K> cmp) {
+            if (n == null)
+                return false;
+            if (hi == null)
+                return true;
+            K k = n.key;
+            if (k == null) // marker 或头节点
+                return true;
+            int c = cpr(cmp, k, hi);
+            return !(c > 0 || (c == 0 && !hiInclusive));
+        }
+
+        /**
+         * @return 范围内（按升序）第一个节点，可能已经越过上界
+         */
+        Node<K, V> loNode(Comparator<? super K> cmp) {
+            if (lo == null)
+                return m.findFirst();
+            else if (loInclusive)
+                return m.findNear(lo, GT | EQ, cmp);
+            else
+                return m.findNear(lo, GT, cmp);
+        }
+
+        /**
+         * @return 范围内（按升序）最后一个节点，可能已经低于下界
+         */
+        Node<K, V> hiNode(Comparator<? super K> cmp) {
+            if (hi == null)
+                return m.findLast();
+            else if (hiInclusive)
+                return m.findNear(hi, LT | EQ, cmp);
+            else
+                return m.findNear(hi, LT, cmp);
+        }
+
+        K lowestKey() {
+            Comparator<? super K> cmp = m.comparator;
+            Node<K, V> n = loNode(cmp);
+            if (isBeforeEnd(n, cmp))
+                return n.key;
+            else
+                throw new NoSuchElementException();
+        }
+
+        K highestKey() {
+            Comparator<? super K> cmp = m.comparator;
+            Node<K, V> n = hiNode(cmp);
+            if (n != null) {
+                K last = n.key;
+                if (inBounds(last, cmp))
+                    return last;
+            }
+            throw new NoSuchElementException();
+        }
+
+        Map.Entry<K, V> lowestEntry() {
+            Comparator<? super K> cmp = m.comparator;
+            for (;;) {
+                Node<K, V> n = loNode(cmp);
+                if (!isBeforeEnd(n, cmp))
+                    return null;
+                Map.Entry<K, V> e = n.createSnapshot();
+                if (e != null)
+                    return e;
+            }
+        }
+
+        Map.Entry<K, V> highestEntry() {
+            Comparator<? super K> cmp = m.comparator;
+            for (;;) {
+                Node<K, V> n = hiNode(cmp);
+                if (n == null || !inBounds(n.key, cmp))
+                    return null;
+                Map.Entry<K, V> e = n.createSnapshot();
+                if (e != null)
+                    return e;
+            }
+        }
+
+        Map.Entry<K, V> removeLowest() {
+            Comparator<? super K> cmp = m.comparator;
+            for (;;) {
+                Node<K, V> n = loNode(cmp);
+                if (n == null)
+                    return null;
+                K k = n.key;
+                if (!inBounds(k, cmp))
+                    return null;
+                V v = m.doRemove(k, null);
+                if (v != null)
+                    return new AbstractMap.SimpleImmutableEntry<K, V>(k, v);
+            }
+        }
+
+        Map.Entry<K, V> removeHighest() {
+            Comparator<? super K> cmp = m.comparator;
+            for (;;) {
+                Node<K, V> n = hiNode(cmp);
+                if (n == null)
+                    return null;
+                K k = n.key;
+                if (!inBounds(k, cmp))
+                    return null;
+                V v = m.doRemove(k, null);
+                if (v != null)
+                    return new AbstractMap.SimpleImmutableEntry<K, V>(k, v);
+            }
+        }
+
+        /**
+         * 降序视图下把查找关系翻转，再交给底层 map 按升序查找
+         */
+        private int adjustRel(int rel) {
+            if (isDescending) {
+                if ((rel & LT) == 0)
+                    rel |= LT;
+                else
+                    rel &= ~LT;
+            }
+            return rel;
+        }
+
+        Map.Entry<K, V> getNearEntry(K key, int rel) {
+            Comparator<? super K> cmp = m.comparator;
+            rel = adjustRel(rel);
+            if (tooLow(key, cmp))
+                return ((rel & LT) != 0) ? null : lowestEntry();
+            if (tooHigh(key, cmp))
+                return ((rel & LT) != 0) ? highestEntry() : null;
+            for (;;) {
+                Node<K, V> n = m.findNear(key, rel, cmp);
+                if (n == null || !inBounds(n.key, cmp))
+                    return null;
+                K k = n.key;
+                V v = n.getValidValue();
+                if (v != null)
+                    return new AbstractMap.SimpleImmutableEntry<K, V>(k, v);
+            }
+        }
+
+        K getNearKey(K key, int rel) {
+            Comparator<? super K> cmp = m.comparator;
+            rel = adjustRel(rel);
+            if (tooLow(key, cmp)) {
+                if ((rel & LT) == 0) {
+                    Node<K, V> n = loNode(cmp);
+                    if (isBeforeEnd(n, cmp))
+                        return n.key;
+                }
+                return null;
+            }
+            if (tooHigh(key, cmp)) {
+                if ((rel & LT) != 0) {
+                    Node<K, V> n = hiNode(cmp);
+                    if (n != null) {
+                        K last = n.key;
+                        if (inBounds(last, cmp))
+                            return last;
+                    }
+                }
+                return null;
+            }
+            for (;;) {
+                Node<K, V> n = m.findNear(key, rel, cmp);
+                if (n == null || !inBounds(n.key, cmp))
+                    return null;
+                K k = n.key;
+                V v = n.getValidValue();
+                if (v != null)
+                    return k;
+            }
+        }
+
+        /* ----------------  Map 接口 -------------- */
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (key == null)
+                throw new NullPointerException();
+            return inBounds(key, m.comparator) && m.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key == null)
+                throw new NullPointerException();
+            return (!inBounds(key, m.comparator)) ? null : m.get(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return (!inBounds(key, m.comparator)) ? null : m.remove(key);
+        }
+
+        @Override
+        public int size() {
+            Comparator<? super K> cmp = m.comparator;
+            long count = 0;
+            for (Node<K, V> n = loNode(cmp); isBeforeEnd(n, cmp); n = n.next) {
+                if (n.getValidValue() != null)
+                    ++count;
+            }
+            return count >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            Comparator<? super K> cmp = m.comparator;
+            return !isBeforeEnd(loNode(cmp), cmp);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            if (value == null)
+                throw new NullPointerException();
+            Comparator<? super K> cmp = m.comparator;
+            for (Node<K, V> n = loNode(cmp); isBeforeEnd(n, cmp); n = n.next) {
+                V v = n.getValidValue();
+                if (v != null && value.equals(v))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            Comparator<? super K> cmp = m.comparator;
+            for (Node<K, V> n = loNode(cmp); isBeforeEnd(n, cmp); n = n.next) {
+                if (n.getValidValue() != null)
+                    m.remove(n.key);
+            }
+        }
+
+        /* ----------------  ConcurrentMap 接口 -------------- */
+
+        @Override
+        public V putIfAbsent(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.putIfAbsent(key, value);
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            return inBounds(key, m.comparator) && m.remove(key, value);
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            checkKeyBounds(key, m.comparator);
+            return m.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public V replace(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.replace(key, value);
+        }
+
+        /* ----------------  SortedMap 接口 -------------- */
+
+        @Override
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> cmp = m.comparator();
+            if (isDescending)
+                return Collections.reverseOrder(cmp);
+            else
+                return cmp;
+        }
+
+        /**
+         * 在当前范围内再截取一段，新范围不能超出当前范围
+         */
+        SubMap<K, V> newSubMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            Comparator<? super K> cmp = m.comparator;
+            if (isDescending) { // 降序视图下 from/to 对调
+                K tk = fromKey;
+                fromKey = toKey;
+                toKey = tk;
+                boolean ti = fromInclusive;
+                fromInclusive = toInclusive;
+                toInclusive = ti;
+            }
+            if (lo != null) {
+                if (fromKey == null) {
+                    fromKey = lo;
+                    fromInclusive = loInclusive;
+                } else {
+                    int c = cpr(cmp, fromKey, lo);
+                    if (c < 0 || (c == 0 && !loInclusive && fromInclusive))
+                        throw new IllegalArgumentException("key out of range");
+                }
+            }
+            if (hi != null) {
+                if (toKey == null) {
+                    toKey = hi;
+                    toInclusive = hiInclusive;
+                } else {
+                    int c = cpr(cmp, toKey, hi);
+                    if (c > 0 || (c == 0 && !hiInclusive && toInclusive))
+                        throw new IllegalArgumentException("key out of range");
+                }
+            }
+            return new SubMap<K, V>(m, fromKey, fromInclusive, toKey, toInclusive, isDescending);
+        }
+
+        @Override
+        public SubMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (fromKey == null || toKey == null)
+                throw new NullPointerException();
+            return newSubMap(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        @Override
+        public SubMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (toKey == null)
+                throw new NullPointerException();
+            return newSubMap(null, false, toKey, inclusive);
+        }
+
+        @Override
+        public SubMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (fromKey == null)
+                throw new NullPointerException();
+            return newSubMap(fromKey, inclusive, null, false);
+        }
+
+        @Override
+        public SubMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SubMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SubMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        @Override
+        public SubMap<K, V> descendingMap() {
+            return new SubMap<K, V>(m, lo, loInclusive, hi, hiInclusive, !isDescending);
+        }
+
+        /* ----------------  NavigableMap 接口 -------------- */
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return getNearEntry(key, GT | EQ);
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return getNearKey(key, GT | EQ);
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return getNearEntry(key, LT);
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return getNearKey(key, LT);
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return getNearEntry(key, LT | EQ);
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return getNearKey(key, LT | EQ);
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return getNearEntry(key, GT);
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return getNearKey(key, GT);
+        }
+
+        @Override
+        public K firstKey() {
+            return isDescending ? highestKey() : lowestKey();
+        }
+
+        @Override
+        public K lastKey() {
+            return isDescending ? lowestKey() : highestKey();
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return isDescending ? highestEntry() : lowestEntry();
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return isDescending ? lowestEntry() : highestEntry();
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            return isDescending ? removeHighest() : removeLowest();
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            return isDescending ? removeLowest() : removeHighest();
+        }
+
+        /* ---------------- 视图 -------------- */
+
+        @Override
+        public NavigableSet<K> keySet() {
+            KeySet<K> ks = keySetView;
+            return (ks != null) ? ks : (keySetView = new KeySet<K>(this));
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return keySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return (vs != null) ? vs : (valuesView = new Values<V>(this));
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            Set<Map.Entry<K, V>> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new EntrySet<K, V>(this));
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        Iterator<K> keyIterator() {
+            return new SubMapKeyIterator();
+        }
+
+        Iterator<V> valueIterator() {
+            return new SubMapValueIterator();
+        }
+
+        Iterator<Map.Entry<K, V>> entryIterator() {
+            return new SubMapEntryIterator();
+        }
+
+        /**
+         * 视图上的迭代器：升序时沿链表向后走，降序时每次用 findNear(LT) 找前一个
+         */
+        abstract class SubMapIter<T> implements Iterator<T> {
+            Node<K, V> lastReturned;
+            Node<K, V> next;
+            V nextValue;
+
+            SubMapIter() {
+                Comparator<? super K> cmp = m.comparator;
+                for (;;) {
+                    next = isDescending ? hiNode(cmp) : loNode(cmp);
+                    if (next == null)
+                        break;
+                    V x = next.getValidValue();
+                    if (x != null) {
+                        if (!inBounds(next.key, cmp))
+                            next = null;
+                        else
+                            nextValue = x;
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public final boolean hasNext() {
+                return next != null;
+            }
+
+            final void advance() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                lastReturned = next;
+                if (isDescending)
+                    descend();
+                else
+                    ascend();
+            }
+
+            private void ascend() {
+                Comparator<? super K> cmp = m.comparator;
+                for (;;) {
+                    next = next.next;
+                    if (next == null)
+                        break;
+                    V x = next.getValidValue();
+                    if (x != null) {
+                        if (tooHigh(next.key, cmp))
+                            next = null;
+                        else
+                            nextValue = x;
+                        break;
+                    }
+                }
+            }
+
+            private void descend() {
+                Comparator<? super K> cmp = m.comparator;
+                for (;;) {
+                    next = m.findNear(lastReturned.key, LT, cmp);
+                    if (next == null)
+                        break;
+                    V x = next.getValidValue();
+                    if (x != null) {
+                        if (tooLow(next.key, cmp))
+                            next = null;
+                        else
+                            nextValue = x;
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void remove() {
+                Node<K, V> l = lastReturned;
+                if (l == null)
+                    throw new IllegalStateException();
+                m.remove(l.key);
+                lastReturned = null;
+            }
+        }
+
+        final class SubMapValueIterator extends SubMapIter<V> {
+            @Override
+            public V next() {
+                V v = nextValue;
+                advance();
+                return v;
+            }
+        }
+
+        final class SubMapKeyIterator extends SubMapIter<K> {
+            @Override
+            public K next() {
+                Node<K, V> n = next;
+                advance();
+                return n.key;
+            }
+        }
+
+        final class SubMapEntryIterator extends SubMapIter<Map.Entry<K, V>> {
+            @Override
+            public Map.Entry<K, V> next() {
+                Node<K, V> n = next;
+                V v = nextValue;
+                advance();
+                return new AbstractMap.SimpleImmutableEntry<K, V>(n.key, v);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+/**
+ * 基于 {@link ConcurrentSkipListMap} 的无锁并发有序 Set，
+ * 元素作为 key 存入 map，value 统一为 Boolean.TRUE。
+ * <p>
+ * 与 TreeSet 的关系就像 ConcurrentSkipListMap 与 TreeMap：读操作不加锁，
+ * 迭代器和 subSet/headSet/tailSet 视图是弱一致的，size() 是 O(n) 的，
+ * 不允许 null 元素。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ConcurrentSkipListSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+    private final ConcurrentNavigableMap<E, Object> m;
+
+    public ConcurrentSkipListSet() {
+        m = new ConcurrentSkipListMap<E, Object>();
+    }
+
+    public ConcurrentSkipListSet(Comparator<? super E> comparator) {
+        m = new ConcurrentSkipListMap<E, Object>(comparator);
+    }
+
+    public ConcurrentSkipListSet(Collection<? extends E> c) {
+        m = new ConcurrentSkipListMap<E, Object>();
+        addAll(c);
+    }
+
+    /**
+     * 视图构造器，subSet 等方法使用
+     */
+    ConcurrentSkipListSet(ConcurrentNavigableMap<E, Object> m) {
+        this.m = m;
+    }
+
+    @Override
+    public int size() {
+        return m.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return m.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return m.containsKey(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        return m.putIfAbsent(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return m.remove(o, Boolean.TRUE);
+    }
+
+    @Override
+    public void clear() {
+        m.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return m.navigableKeySet().iterator();
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return m.descendingKeySet().iterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof Set))
+            return false;
+        Collection<?> c = (Collection<?>) o;
+        try {
+            return containsAll(c) && c.containsAll(this);
+        } catch (ClassCastException | NullPointerException unused) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object e : c) {
+            if (remove(e))
+                modified = true;
+        }
+        return modified;
+    }
+
+    /* ---------------- NavigableSet 接口 -------------- */
+
+    @Override
+    public E lower(E e) {
+        return m.lowerKey(e);
+    }
+
+    @Override
+    public E floor(E e) {
+        return m.floorKey(e);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return m.ceilingKey(e);
+    }
+
+    @Override
+    public E higher(E e) {
+        return m.higherKey(e);
+    }
+
+    @Override
+    public E pollFirst() {
+        Map.Entry<E, Object> e = m.pollFirstEntry();
+        return (e == null) ? null : e.getKey();
+    }
+
+    @Override
+    public E pollLast() {
+        Map.Entry<E, Object> e = m.pollLastEntry();
+        return (e == null) ? null : e.getKey();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return m.comparator();
+    }
+
+    @Override
+    public E first() {
+        return m.firstKey();
+    }
+
+    @Override
+    public E last() {
+        return m.lastKey();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return new ConcurrentSkipListSet<E>(m.subMap(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new ConcurrentSkipListSet<E>(m.headMap(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new ConcurrentSkipListSet<E>(m.tailMap(fromElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new ConcurrentSkipListSet<E>(m.descendingMap());
+    }
+}
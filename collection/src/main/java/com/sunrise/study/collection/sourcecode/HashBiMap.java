@@ -0,0 +1,757 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 基于哈希表的 {@link BiMap}。
+ * <p>
+ * 手写的双向映射通常是两个 HashMap，每个 key-value 对要两个 Node。
+ * 这里每个 key-value 对只有一个 {@link BiEntry}，它同时挂在按 key 散列的 kTable
+ * 和按 value 散列的 vTable 两条链上，正向和反向查找都是 O(1)，
+ * 而 {@link #inverse()} 只是同一份数据的另一种视图，不复制任何东西。
+ * <p>
+ * 迭代顺序没有保证。非线程安全，迭代器是快速失败的。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class HashBiMap<K, V> extends AbstractMap<K, V> implements BiMap<K, V>, java.io.Serializable {
+
+    private static final long serialVersionUID = -1765474981582232245L;
+
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    static final float LOAD_FACTOR = 0.75f;
+
+    static final class BiEntry<K, V> {
+        final K key;
+        final int keyHash;
+        V value;
+        int valueHash;
+        BiEntry<K, V> nextInKeyBucket;
+        BiEntry<K, V> nextInValueBucket;
+
+        BiEntry(K key, int keyHash, V value, int valueHash) {
+            this.key = key;
+            this.keyHash = keyHash;
+            this.value = value;
+            this.valueHash = valueHash;
+        }
+    }
+
+    transient BiEntry<K, V>[] kTable;
+    transient BiEntry<K, V>[] vTable;
+    transient int size;
+    transient int threshold;
+    transient int modCount;
+
+    private transient Set<K> keySetView;
+    private transient Set<V> valuesView;
+    private transient Set<Map.Entry<K, V>> entrySetView;
+    private transient BiMap<V, K> inverse;
+
+    public HashBiMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public HashBiMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + expectedSize);
+        init(tableSizeFor((int) (expectedSize / LOAD_FACTOR) + 1));
+    }
+
+    public HashBiMap(Map<? extends K, ? extends V> m) {
+        this(Math.max(m.size(), DEFAULT_INITIAL_CAPACITY));
+        putAll(m);
+    }
+
+    static int hash(Object o) {
+        int h;
+        return (o == null) ? 0 : (h = o.hashCode()) ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int cap) {
+        int n = cap - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 2) ? 2 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void init(int capacity) {
+        kTable = (BiEntry<K, V>[]) new BiEntry[capacity];
+        vTable = (BiEntry<K, V>[]) new BiEntry[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /* ---------------- 哈希表操作 -------------- */
+
+    final BiEntry<K, V> seekByKey(Object key, int keyHash) {
+        for (BiEntry<K, V> e = kTable[keyHash & (kTable.length - 1)]; e != null; e = e.nextInKeyBucket) {
+            if (e.keyHash == keyHash && Objects.equals(key, e.key))
+                return e;
+        }
+        return null;
+    }
+
+    final BiEntry<K, V> seekByValue(Object value, int valueHash) {
+        for (BiEntry<K, V> e = vTable[valueHash & (vTable.length - 1)]; e != null; e = e.nextInValueBucket) {
+            if (e.valueHash == valueHash && Objects.equals(value, e.value))
+                return e;
+        }
+        return null;
+    }
+
+    private void linkKey(BiEntry<K, V> e) {
+        int i = e.keyHash & (kTable.length - 1);
+        e.nextInKeyBucket = kTable[i];
+        kTable[i] = e;
+    }
+
+    private void linkValue(BiEntry<K, V> e) {
+        int i = e.valueHash & (vTable.length - 1);
+        e.nextInValueBucket = vTable[i];
+        vTable[i] = e;
+    }
+
+    private void unlinkKey(BiEntry<K, V> e) {
+        int i = e.keyHash & (kTable.length - 1);
+        BiEntry<K, V> prev = null;
+        for (BiEntry<K, V> p = kTable[i]; p != null; prev = p, p = p.nextInKeyBucket) {
+            if (p == e) {
+                if (prev == null)
+                    kTable[i] = e.nextInKeyBucket;
+                else
+                    prev.nextInKeyBucket = e.nextInKeyBucket;
+                return;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private void unlinkValue(BiEntry<K, V> e) {
+        int i = e.valueHash & (vTable.length - 1);
+        BiEntry<K, V> prev = null;
+        for (BiEntry<K, V> p = vTable[i]; p != null; prev = p, p = p.nextInValueBucket) {
+            if (p == e) {
+                if (prev == null)
+                    vTable[i] = e.nextInValueBucket;
+                else
+                    prev.nextInValueBucket = e.nextInValueBucket;
+                return;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private void insert(BiEntry<K, V> e) {
+        linkKey(e);
+        linkValue(e);
+        modCount++;
+        if (++size > threshold)
+            resize();
+    }
+
+    final void delete(BiEntry<K, V> e) {
+        unlinkKey(e);
+        unlinkValue(e);
+        size--;
+        modCount++;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void resize() {
+        BiEntry<K, V>[] oldTab = kTable;
+        int oldCap = oldTab.length;
+        if (oldCap >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        int newCap = oldCap << 1;
+        kTable = (BiEntry<K, V>[]) new BiEntry[newCap];
+        vTable = (BiEntry<K, V>[]) new BiEntry[newCap];
+        threshold = (int) (newCap * LOAD_FACTOR);
+        // 沿着旧的 key 链就能访问到所有 entry，两张表一起重建
+        for (BiEntry<K, V> head : oldTab) {
+            for (BiEntry<K, V> e = head, next; e != null; e = next) {
+                next = e.nextInKeyBucket;
+                linkKey(e);
+                linkValue(e);
+            }
+        }
+    }
+
+    /* ---------------- 正向操作 -------------- */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return seekByKey(key, hash(key)) != null;
+    }
+
+    /**
+     * 与 HashMap 不同，这里是 O(1) 的
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        return seekByValue(value, hash(value)) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        BiEntry<K, V> e = seekByKey(key, hash(key));
+        return e == null ? null : e.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V forcePut(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean force) {
+        int keyHash = hash(key);
+        int valueHash = hash(value);
+        BiEntry<K, V> oldByKey = seekByKey(key, keyHash);
+        if (oldByKey != null && oldByKey.valueHash == valueHash && Objects.equals(value, oldByKey.value))
+            return value;
+        BiEntry<K, V> oldByValue = seekByValue(value, valueHash);
+        if (oldByValue != null) {
+            if (!force)
+                throw new IllegalArgumentException("value already present: " + value);
+            delete(oldByValue);
+        }
+        if (oldByKey != null)
+            delete(oldByKey);
+        insert(new BiEntry<>(key, keyHash, value, valueHash));
+        return oldByKey == null ? null : oldByKey.value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        BiEntry<K, V> e = seekByKey(key, hash(key));
+        if (e == null)
+            return null;
+        delete(e);
+        return e.value;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            java.util.Arrays.fill(kTable, null);
+            java.util.Arrays.fill(vTable, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    /* ---------------- 反向操作 -------------- */
+
+    private K putInverse(V value, K key, boolean force) {
+        int valueHash = hash(value);
+        int keyHash = hash(key);
+        BiEntry<K, V> oldByValue = seekByValue(value, valueHash);
+        if (oldByValue != null && oldByValue.keyHash == keyHash && Objects.equals(key, oldByValue.key))
+            return key;
+        BiEntry<K, V> oldByKey = seekByKey(key, keyHash);
+        if (oldByKey != null) {
+            if (!force)
+                throw new IllegalArgumentException("key already present: " + key);
+            delete(oldByKey);
+        }
+        if (oldByValue != null)
+            delete(oldByValue);
+        insert(new BiEntry<>(key, keyHash, value, valueHash));
+        return oldByValue == null ? null : oldByValue.key;
+    }
+
+    /**
+     * 修改 entry 的 value，只需要在 vTable 中重新挂链，key 链不变，
+     * 所以按 key 遍历的迭代器不受影响
+     */
+    final V setValue(BiEntry<K, V> e, V value) {
+        if (seekByKey(e.key, e.keyHash) != e)
+            throw new IllegalStateException("entry no longer in map");
+        V old = e.value;
+        int valueHash = hash(value);
+        if (valueHash == e.valueHash && Objects.equals(value, old))
+            return old;
+        if (seekByValue(value, valueHash) != null)
+            throw new IllegalArgumentException("value already present: " + value);
+        unlinkValue(e);
+        e.value = value;
+        e.valueHash = valueHash;
+        linkValue(e);
+        return old;
+    }
+
+    /**
+     * 与 setValue 对称，在反向视图中修改 key
+     */
+    final K setKey(BiEntry<K, V> e, K key) {
+        if (seekByValue(e.value, e.valueHash) != e)
+            throw new IllegalStateException("entry no longer in map");
+        K old = e.key;
+        int keyHash = hash(key);
+        if (keyHash == e.keyHash && Objects.equals(key, old))
+            return old;
+        if (seekByKey(key, keyHash) != null)
+            throw new IllegalArgumentException("key already present: " + key);
+        // key 是 final 的，换一个 entry，保持它在 vTable 中的位置不变
+        BiEntry<K, V> n = new BiEntry<>(key, keyHash, e.value, e.valueHash);
+        unlinkKey(e);
+        replaceInValueBucket(e, n);
+        linkKey(n);
+        return old;
+    }
+
+    private void replaceInValueBucket(BiEntry<K, V> e, BiEntry<K, V> n) {
+        int i = e.valueHash & (vTable.length - 1);
+        n.nextInValueBucket = e.nextInValueBucket;
+        if (vTable[i] == e) {
+            vTable[i] = n;
+            return;
+        }
+        for (BiEntry<K, V> p = vTable[i]; p != null; p = p.nextInValueBucket) {
+            if (p.nextInValueBucket == e) {
+                p.nextInValueBucket = n;
+                return;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Override
+    public BiMap<V, K> inverse() {
+        BiMap<V, K> inv;
+        return (inv = inverse) == null ? (inverse = new Inverse()) : inv;
+    }
+
+    /* ---------------- 迭代器 -------------- */
+
+    /**
+     * byValue 为 false 时沿 kTable 遍历，否则沿 vTable 遍历
+     */
+    abstract class Itr<T> implements Iterator<T> {
+        final boolean byValue;
+        final BiEntry<K, V>[] table;
+        BiEntry<K, V> next;
+        BiEntry<K, V> lastReturned;
+        int index;
+        int expectedModCount = modCount;
+
+        Itr(boolean byValue) {
+            this.byValue = byValue;
+            this.table = byValue ? vTable : kTable;
+            advance();
+        }
+
+        private void advance() {
+            while (next == null && index < table.length)
+                next = table[index++];
+        }
+
+        @Override
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final BiEntry<K, V> nextEntry() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            BiEntry<K, V> e = next;
+            if (e == null)
+                throw new NoSuchElementException();
+            next = byValue ? e.nextInValueBucket : e.nextInKeyBucket;
+            advance();
+            return lastReturned = e;
+        }
+
+        @Override
+        public final void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            // 反向视图的 setValue 会替换 entry，按 value 重新找一次
+            delete(byValue ? seekByValue(lastReturned.value, lastReturned.valueHash) : lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class EntryView implements Map.Entry<K, V> {
+        BiEntry<K, V> e;
+
+        EntryView(BiEntry<K, V> e) {
+            this.e = e;
+        }
+
+        @Override
+        public K getKey() {
+            return e.key;
+        }
+
+        @Override
+        public V getValue() {
+            return e.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            return HashBiMap.this.setValue(e, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return Objects.equals(e.key, that.getKey()) && Objects.equals(e.value, that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(e.key) ^ Objects.hashCode(e.value);
+        }
+
+        @Override
+        public String toString() {
+            return e.key + "=" + e.value;
+        }
+    }
+
+    final class InverseEntryView implements Map.Entry<V, K> {
+        BiEntry<K, V> e;
+
+        InverseEntryView(BiEntry<K, V> e) {
+            this.e = e;
+        }
+
+        @Override
+        public V getKey() {
+            return e.value;
+        }
+
+        @Override
+        public K getValue() {
+            return e.key;
+        }
+
+        @Override
+        public K setValue(K key) {
+            BiEntry<K, V> old = e;
+            K result = setKey(old, key);
+            // setKey 可能换了 entry
+            BiEntry<K, V> cur = seekByValue(old.value, old.valueHash);
+            if (cur != null)
+                e = cur;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return Objects.equals(e.value, that.getKey()) && Objects.equals(e.key, that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(e.value) ^ Objects.hashCode(e.key);
+        }
+
+        @Override
+        public String toString() {
+            return e.value + "=" + e.key;
+        }
+    }
+
+    /* ---------------- 视图 -------------- */
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> ks;
+        return (ks = keySetView) == null ? (keySetView = new KeySet()) : ks;
+    }
+
+    @Override
+    public Set<V> values() {
+        Set<V> vs;
+        return (vs = valuesView) == null ? (valuesView = new ValueSet()) : vs;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySetView) == null ? (entrySetView = new EntrySet()) : es;
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            BiEntry<K, V> e = seekByKey(o, hash(o));
+            if (e == null)
+                return false;
+            delete(e);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashBiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new Itr<K>(false) {
+                @Override
+                public K next() {
+                    return nextEntry().key;
+                }
+            };
+        }
+    }
+
+    final class ValueSet extends AbstractSet<V> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            BiEntry<K, V> e = seekByValue(o, hash(o));
+            if (e == null)
+                return false;
+            delete(e);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashBiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Itr<V>(true) {
+                @Override
+                public V next() {
+                    return nextEntry().value;
+                }
+            };
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> me = (Map.Entry<?, ?>) o;
+            BiEntry<K, V> e = seekByKey(me.getKey(), hash(me.getKey()));
+            return e != null && Objects.equals(e.value, me.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> me = (Map.Entry<?, ?>) o;
+            BiEntry<K, V> e = seekByKey(me.getKey(), hash(me.getKey()));
+            if (e == null || !Objects.equals(e.value, me.getValue()))
+                return false;
+            delete(e);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            HashBiMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Itr<Map.Entry<K, V>>(false) {
+                @Override
+                public Map.Entry<K, V> next() {
+                    return new EntryView(nextEntry());
+                }
+            };
+        }
+    }
+
+    /**
+     * 反向视图，与 HashBiMap 共用同一份 entry
+     */
+    final class Inverse extends AbstractMap<V, K> implements BiMap<V, K> {
+        private transient Set<Map.Entry<V, K>> inverseEntrySet;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object value) {
+            return HashBiMap.this.containsValue(value);
+        }
+
+        @Override
+        public boolean containsValue(Object key) {
+            return HashBiMap.this.containsKey(key);
+        }
+
+        @Override
+        public K get(Object value) {
+            BiEntry<K, V> e = seekByValue(value, hash(value));
+            return e == null ? null : e.key;
+        }
+
+        @Override
+        public K put(V value, K key) {
+            return putInverse(value, key, false);
+        }
+
+        @Override
+        public K forcePut(V value, K key) {
+            return putInverse(value, key, true);
+        }
+
+        @Override
+        public K remove(Object value) {
+            BiEntry<K, V> e = seekByValue(value, hash(value));
+            if (e == null)
+                return null;
+            delete(e);
+            return e.key;
+        }
+
+        @Override
+        public void clear() {
+            HashBiMap.this.clear();
+        }
+
+        @Override
+        public Set<V> keySet() {
+            return HashBiMap.this.values();
+        }
+
+        @Override
+        public Set<K> values() {
+            return HashBiMap.this.keySet();
+        }
+
+        @Override
+        public Set<Map.Entry<V, K>> entrySet() {
+            Set<Map.Entry<V, K>> es;
+            return (es = inverseEntrySet) != null ? es : (inverseEntrySet = new AbstractSet<Map.Entry<V, K>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?, ?> me = (Map.Entry<?, ?>) o;
+                    BiEntry<K, V> e = seekByValue(me.getKey(), hash(me.getKey()));
+                    return e != null && Objects.equals(e.key, me.getValue());
+                }
+
+                @Override
+                public void clear() {
+                    HashBiMap.this.clear();
+                }
+
+                @Override
+                public Iterator<Map.Entry<V, K>> iterator() {
+                    // 沿 vTable 遍历，setValue 修改 key 只会改动 kTable
+                    return new Itr<Map.Entry<V, K>>(true) {
+                        @Override
+                        public Map.Entry<V, K> next() {
+                            return new InverseEntryView(nextEntry());
+                        }
+                    };
+                }
+            });
+        }
+
+        @Override
+        public BiMap<K, V> inverse() {
+            return HashBiMap.this;
+        }
+    }
+
+    /* ---------------- 序列化 -------------- */
+
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for (BiEntry<K, V> head : kTable) {
+            for (BiEntry<K, V> e = head; e != null; e = e.nextInKeyBucket) {
+                s.writeObject(e.key);
+                s.writeObject(e.value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        init(tableSizeFor((int) (n / LOAD_FACTOR) + 1));
+        for (int i = 0; i < n; i++)
+            put((K) s.readObject(), (V) s.readObject());
+    }
+}
@@ -0,0 +1,117 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 同一个 key 下不允许重复 value 的 {@link Multimap}，可以代替 {@code HashMap<K, HashSet<V>>}。
+ * <p>
+ * 存储方式与 {@link ArrayListMultimap} 相同：单个 value 直接存放，多个 value 放在紧凑数组里，
+ * 保持插入顺序。value 个数不超过 {@link #INDEX_THRESHOLD} 时线性查重，
+ * 超过之后为这个 key 额外建立一个 {@link SmallSet} 索引，避免大分组的查重退化成 O(n)。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class HashSetMultimap<K, V> extends AbstractMultimap<K, V> {
+
+    private static final long serialVersionUID = 6021563582815416148L;
+
+    /**
+     * 分组大小超过该值时建立查找索引
+     */
+    static final int INDEX_THRESHOLD = 8;
+
+    public HashSetMultimap() {
+    }
+
+    public HashSetMultimap(Multimap<? extends K, ? extends V> multimap) {
+        putAll(multimap);
+    }
+
+    @Override
+    boolean allowsDuplicates() {
+        return false;
+    }
+
+    @Override
+    void afterAdd(Group g) {
+        if (g.index == null && g.size > INDEX_THRESHOLD) {
+            SmallSet<Object> index = new SmallSet<>();
+            for (int i = 0; i < g.size; i++)
+                index.add(g.elements[i]);
+            g.index = index;
+        }
+    }
+
+    @Override
+    Set<V> copyOf(Object slot) {
+        if (slot == null)
+            return new LinkedHashSet<>();
+        int n = groupSize(slot);
+        Set<V> set = new LinkedHashSet<>(Math.max((int) (n / .75f) + 1, 16));
+        for (int i = 0; i < n; i++)
+            set.add(valueAt(slot, i));
+        return set;
+    }
+
+    @Override
+    public Set<V> get(K key) {
+        return new KeyValueSet(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<V> removeAll(Object key) {
+        return (Set<V>) super.removeAll(key);
+    }
+
+    /**
+     * 单个 key 的 Set 视图，每次操作都重新查找槽位
+     */
+    final class KeyValueSet extends AbstractSet<V> {
+        final K key;
+
+        KeyValueSet(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public int size() {
+            Object slot = slot(key);
+            return slot == ABSENT ? 0 : groupSize(slot);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsEntry(key, o);
+        }
+
+        @Override
+        public boolean add(V v) {
+            return put(key, v);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends V> c) {
+            return putAll(key, c);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return HashSetMultimap.this.remove(key, o);
+        }
+
+        @Override
+        public void clear() {
+            HashSetMultimap.this.removeAll(key);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new KeyValueIterator(key);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一个 key 可以对应多个 value 的映射，用来替代手写的 {@code Map<K, List<V>>}。
+ * <p>
+ * 与手写嵌套相比，实现类不需要为每个 key 分配一个 ArrayList/HashSet：
+ * 只有一个 value 的 key 直接把 value 存在 map 里，多个 value 时才使用一个紧凑的数组。
+ * <p>
+ * 所有视图（{@link #get(Object)}、{@link #keySet()}、{@link #values()}、
+ * {@link #entries()}、{@link #asMap()}）都是实时的，对视图的修改会反映到 multimap 上，反之亦然。
+ * @param <K> key 的类型
+ * @param <V> value 的类型
+ * @author huangzihua
+ * @date 2026-10-19
+ * @see ArrayListMultimap
+ * @see HashSetMultimap
+ */
+public interface Multimap<K, V> {
+
+    /**
+     * @return 所有 key-value 对的个数，不是 key 的个数
+     */
+    int size();
+
+    boolean isEmpty();
+
+    boolean containsKey(Object key);
+
+    boolean containsValue(Object value);
+
+    boolean containsEntry(Object key, Object value);
+
+    /**
+     * 添加一个 key-value 对
+     * @return 是否发生了修改，SetMultimap 中 value 已存在时返回 false
+     */
+    boolean put(K key, V value);
+
+    /**
+     * 批量添加同一个 key 的多个 value，只查找一次 key，并且一次性扩容
+     * @return 是否发生了修改
+     */
+    boolean putAll(K key, java.lang.Iterable<? extends V> values);
+
+    boolean putAll(Multimap<? extends K, ? extends V> multimap);
+
+    /**
+     * 删除一个 key-value 对
+     * @return 是否发生了修改
+     */
+    boolean remove(Object key, Object value);
+
+    /**
+     * 删除 key 对应的所有 value
+     * @return 被删除的 value，key 不存在时返回空集合
+     */
+    Collection<V> removeAll(Object key);
+
+    void clear();
+
+    /**
+     * @return key 对应的所有 value 的实时视图，key 不存在时返回空视图，
+     * 往空视图中添加元素会创建这个 key
+     */
+    Collection<V> get(K key);
+
+    /**
+     * @return 所有不同 key 的视图
+     */
+    Set<K> keySet();
+
+    /**
+     * @return 所有 value 的视图，包含重复值
+     */
+    Collection<V> values();
+
+    /**
+     * @return 所有 key-value 对的视图
+     */
+    Collection<Map.Entry<K, V>> entries();
+
+    /**
+     * @return 把每个 key 映射到它的 value 集合的 Map 视图
+     */
+    Map<K, Collection<V>> asMap();
+}
@@ -0,0 +1,133 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 列式存储 {@link ColumnarRecordStore} 的记录结构定义。
+ * 一条记录由若干个具名字段组成，每个字段只能是基本类型，
+ * 在存储中对应一个独立的基本类型数组（列）。
+ * <p>
+ * 字段的下标就是它在 builder 中声明的顺序，热点代码应直接使用下标访问，
+ * 按名字查找（{@link #indexOf(String)}）只适合在初始化时调用一次。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public final class RecordSchema {
+
+    /**
+     * 列的基本类型
+     */
+    public enum ColumnType {
+        INT, LONG, DOUBLE
+    }
+
+    private final String[] names;
+    private final ColumnType[] types;
+    private final Map<String, Integer> indexes;
+
+    private RecordSchema(String[] names, ColumnType[] types) {
+        this.names = names;
+        this.types = types;
+        Map<String, Integer> m = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++)
+            m.put(names[i], i);
+        this.indexes = m;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 字段个数，也就是列数
+     */
+    public int fieldCount() {
+        return names.length;
+    }
+
+    public String name(int field) {
+        return names[field];
+    }
+
+    public ColumnType type(int field) {
+        return types[field];
+    }
+
+    /**
+     * 根据字段名查找字段下标
+     * @throws IllegalArgumentException 字段不存在
+     */
+    public int indexOf(String name) {
+        Integer i = indexes.get(name);
+        if (i == null)
+            throw new IllegalArgumentException("No such field: " + name);
+        return i;
+    }
+
+    /**
+     * 校验字段类型，类型不匹配时抛出 IllegalArgumentException
+     */
+    int checkType(int field, ColumnType expected) {
+        if (types[field] != expected)
+            throw new IllegalArgumentException("Field " + names[field] + " is " +
+                    types[field] + ", not " + expected);
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RecordSchema{");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(names[i]).append(':').append(types[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    public static final class Builder {
+        private String[] names = new String[8];
+        private ColumnType[] types = new ColumnType[8];
+        private int count;
+
+        private Builder() {
+        }
+
+        public Builder intField(String name) {
+            return field(name, ColumnType.INT);
+        }
+
+        public Builder longField(String name) {
+            return field(name, ColumnType.LONG);
+        }
+
+        public Builder doubleField(String name) {
+            return field(name, ColumnType.DOUBLE);
+        }
+
+        public Builder field(String name, ColumnType type) {
+            if (name == null || type == null)
+                throw new NullPointerException();
+            for (int i = 0; i < count; i++) {
+                if (names[i].equals(name))
+                    throw new IllegalArgumentException("Duplicate field: " + name);
+            }
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count << 1);
+                types = Arrays.copyOf(types, count << 1);
+            }
+            names[count] = name;
+            types[count] = type;
+            count++;
+            return this;
+        }
+
+        public RecordSchema build() {
+            if (count == 0)
+                throw new IllegalStateException("Schema has no fields");
+            return new RecordSchema(Arrays.copyOf(names, count), Arrays.copyOf(types, count));
+        }
+    }
+}
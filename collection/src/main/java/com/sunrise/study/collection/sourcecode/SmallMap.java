@@ -0,0 +1,455 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 面向小数据量的自适应 Map。
+ * <p>
+ * 大部分 Map 只有不到 8 个元素，但 HashMap 哪怕只放一个元素也要分配 16 个槽的 table，
+ * 再为每个元素分配一个 Node 对象。SmallMap 在元素较少时把 key、value 交替存放在
+ * 一个 Object[] 里（[k0, v0, k1, v1, ...]），查找就是线性扫描，没有 hash 计算，
+ * 也没有额外的 Node 对象；对于这种规模，线性扫描比哈希查找更快。
+ * <ul>
+ *     <li>元素个数超过 {@link #PROMOTE_THRESHOLD} 时，升级为一个 {@link HashMap}；</li>
+ *     <li>升级后通过 {@link #remove(Object)} 删除到 {@link #DEMOTE_THRESHOLD} 个以下时，
+ *     降级回数组。两个阈值之间留有空间，避免在边界上来回升降级。</li>
+ * </ul>
+ * 没有选择按 key 排序的数组加二分查找，因为 key 不一定实现 Comparable，
+ * 而且 8 个元素以内二分查找并不比线性扫描快。
+ * <p>
+ * 与 HashMap 一样允许 null key 和 null value，迭代顺序不作保证（数组模式下是插入顺序），
+ * 非线程安全，迭代器是快速失败的。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class SmallMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = -6529021520381337482L;
+
+    /**
+     * 超过这个元素个数就升级为 HashMap
+     */
+    static final int PROMOTE_THRESHOLD = 8;
+
+    /**
+     * 升级后删除到这个元素个数时降级回数组
+     */
+    static final int DEMOTE_THRESHOLD = 4;
+
+    /**
+     * 共享的空数组，空 map 不分配任何数组
+     */
+    private static final Object[] EMPTY_TABLE = {};
+
+    /**
+     * 数组模式下的存储：table[2i] 是 key，table[2i + 1] 是 value。
+     * 升级为 HashMap 后为 null
+     */
+    transient Object[] table;
+
+    /**
+     * 升级后的存储，数组模式下为 null
+     */
+    transient HashMap<K, V> delegate;
+
+    /**
+     * 数组模式下的元素个数
+     */
+    transient int size;
+
+    /**
+     * 数组模式下的结构修改次数
+     */
+    transient int modCount;
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    public SmallMap() {
+        table = EMPTY_TABLE;
+    }
+
+    public SmallMap(Map<? extends K, ? extends V> m) {
+        table = EMPTY_TABLE;
+        putAll(m);
+    }
+
+    /**
+     * @return 当前是否已经升级为 HashMap，方便观察和调试
+     */
+    public boolean isPromoted() {
+        return delegate != null;
+    }
+
+    @Override
+    public int size() {
+        HashMap<K, V> d = delegate;
+        return d != null ? d.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 线性扫描查找 key
+     * @return key 在 table 中的下标（偶数），不存在返回 -1
+     */
+    private int indexOf(Object key) {
+        Object[] tab = table;
+        int n = size << 1;
+        if (key == null) {
+            for (int i = 0; i < n; i += 2) {
+                if (tab[i] == null)
+                    return i;
+            }
+        } else {
+            for (int i = 0; i < n; i += 2) {
+                Object k = tab[i];
+                // 先比较引用，大部分场景下 key 是同一个对象（如字符串常量）
+                if (k == key || key.equals(k))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        HashMap<K, V> d = delegate;
+        if (d != null)
+            return d.get(key);
+        int i = indexOf(key);
+        return i < 0 ? null : (V) table[i + 1];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        HashMap<K, V> d = delegate;
+        if (d != null)
+            return d.containsKey(key);
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        HashMap<K, V> d = delegate;
+        if (d != null)
+            return d.containsValue(value);
+        Object[] tab = table;
+        for (int i = 1, n = size << 1; i < n; i += 2) {
+            Object v = tab[i];
+            if (v == value || (value != null && value.equals(v)))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        HashMap<K, V> d = delegate;
+        if (d != null)
+            return d.put(key, value);
+        int i = indexOf(key);
+        if (i >= 0) {
+            // 只修改 value 不算结构修改，与 HashMap 一致
+            V old = (V) table[i + 1];
+            table[i + 1] = value;
+            return old;
+        }
+        if (size == PROMOTE_THRESHOLD) {
+            promote().put(key, value);
+            return null;
+        }
+        Object[] tab = table;
+        int n = size << 1;
+        if (n == tab.length)
+            // 容量按 1、2、4、8 个元素翻倍，最多 16 个槽
+            table = tab = Arrays.copyOf(tab, tab.length == 0 ? 2 : tab.length << 1);
+        tab[n] = key;
+        tab[n + 1] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        HashMap<K, V> d = delegate;
+        if (d != null) {
+            boolean present = d.containsKey(key);
+            V old = d.remove(key);
+            if (present && d.size() <= DEMOTE_THRESHOLD)
+                demote();
+            return old;
+        }
+        int i = indexOf(key);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    /**
+     * 删除 table[i]、table[i + 1] 处的映射，后面的元素整体前移，保持插入顺序
+     */
+    @SuppressWarnings("unchecked")
+    private V removeAt(int i) {
+        Object[] tab = table;
+        V old = (V) tab[i + 1];
+        int n = size << 1;
+        int numMoved = n - i - 2;
+        if (numMoved > 0)
+            System.arraycopy(tab, i + 2, tab, i, numMoved);
+        // 清空最后一个位置，让 GC 回收
+        tab[n - 2] = null;
+        tab[n - 1] = null;
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        // clear 之后回到最省内存的状态
+        delegate = null;
+        table = EMPTY_TABLE;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * 数组 -> HashMap
+     */
+    @SuppressWarnings("unchecked")
+    private HashMap<K, V> promote() {
+        Object[] tab = table;
+        HashMap<K, V> d = new HashMap<K, V>();
+        for (int i = 0, n = size << 1; i < n; i += 2)
+            d.put((K) tab[i], (V) tab[i + 1]);
+        delegate = d;
+        table = null;
+        size = 0;
+        modCount++;
+        return d;
+    }
+
+    /**
+     * HashMap -> 数组，数组长度正好够放当前的元素
+     */
+    private void demote() {
+        HashMap<K, V> d = delegate;
+        Object[] tab = new Object[d.size() << 1];
+        int i = 0;
+        for (Map.Entry<K, V> e : d.entrySet()) {
+            tab[i++] = e.getKey();
+            tab[i++] = e.getValue();
+        }
+        table = tab;
+        size = i >> 1;
+        delegate = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es;
+        return (es = entrySet) == null ? (entrySet = new EntrySet()) : es;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SmallMap<K, V> clone() {
+        SmallMap<K, V> result;
+        try {
+            result = (SmallMap<K, V>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        result.entrySet = null;
+        if (delegate != null)
+            result.delegate = (HashMap<K, V>) delegate.clone();
+        else
+            result.table = size == 0 ? EMPTY_TABLE : Arrays.copyOf(table, size << 1);
+        return result;
+    }
+
+    /**
+     * entrySet 视图。升级后直接使用 HashMap 的迭代器；
+     * 通过迭代器删除元素不会触发降级，否则正在使用的迭代器会失效。
+     */
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return SmallMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SmallMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            HashMap<K, V> d = delegate;
+            if (d != null)
+                return d.entrySet().iterator();
+            return new ArrayIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object key = e.getKey();
+            if (!containsKey(key))
+                return false;
+            Object v = get(key), value = e.getValue();
+            return v == value || (v != null && v.equals(value));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                SmallMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    final class ArrayIterator implements Iterator<Map.Entry<K, V>> {
+        /**
+         * 下一个要返回的元素下标（按元素计，不是按槽计）
+         */
+        int cursor;
+        int lastRet = -1;
+        int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size && delegate == null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            checkForComodification();
+            int i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            cursor = i + 1;
+            return new ArrayEntry(lastRet = i);
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            removeAt(lastRet << 1);
+            // 后面的元素前移了一位，游标跟着回退
+            cursor = lastRet;
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount || delegate != null)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * 数组模式下的 Entry，读写直接落到 table 上。
+     * 创建之后如果 map 发生了结构修改，这个 Entry 就不再可靠，与 HashMap 的 Node 行为类似。
+     */
+    final class ArrayEntry implements Map.Entry<K, V> {
+        private final int index;
+        private final K key;
+
+        @SuppressWarnings("unchecked")
+        ArrayEntry(int index) {
+            this.index = index;
+            this.key = (K) table[index << 1];
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            Object[] tab = table;
+            int i = index << 1;
+            if (tab != null && i < (size << 1) && tab[i] == key)
+                return (V) tab[i + 1];
+            return get(key);
+        }
+
+        @Override
+        public V setValue(V value) {
+            Object[] tab = table;
+            int i = index << 1;
+            if (tab != null && i < (size << 1) && tab[i] == key) {
+                @SuppressWarnings("unchecked")
+                V old = (V) tab[i + 1];
+                tab[i + 1] = value;
+                return old;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object k = e.getKey(), v = e.getValue(), value = getValue();
+            return (key == null ? k == null : key.equals(k)) &&
+                    (value == null ? v == null : value.equals(v));
+        }
+
+        @Override
+        public int hashCode() {
+            V value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size());
+        for (Map.Entry<K, V> e : entrySet()) {
+            s.writeObject(e.getKey());
+            s.writeObject(e.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int mappings = s.readInt();
+        if (mappings < 0)
+            throw new java.io.InvalidObjectException("Illegal mappings count: " + mappings);
+        table = EMPTY_TABLE;
+        for (int i = 0; i < mappings; i++)
+            put((K) s.readObject(), (V) s.readObject());
+    }
+}
@@ -0,0 +1,103 @@
+package com.sunrise.study.collection.sourcecode;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * 面向小数据量的自适应 Set，基于 {@link SmallMap} 实现，
+ * 就像 HashSet 基于 HashMap 实现一样：元素作为 key，value 统一为 PRESENT。
+ * <p>
+ * 元素少时存放在数组里线性查找，超过阈值后升级为 HashMap，删除到阈值以下时降级。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class SmallSet<E> extends AbstractSet<E> implements Set<E>, Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = 4217439468725135912L;
+
+    // 与 HashSet 一样，所有 key 共用同一个 value
+    private static final Object PRESENT = new Object();
+
+    private transient SmallMap<E, Object> map;
+
+    public SmallSet() {
+        map = new SmallMap<>();
+    }
+
+    public SmallSet(Collection<? extends E> c) {
+        map = new SmallMap<>();
+        addAll(c);
+    }
+
+    public boolean isPromoted() {
+        return map.isPromoted();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        return map.put(e, PRESENT) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) == PRESENT;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SmallSet<E> clone() {
+        try {
+            SmallSet<E> newSet = (SmallSet<E>) super.clone();
+            newSet.map = map.clone();
+            return newSet;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    // PRESENT 不可序列化，与 HashSet 一样只写出元素
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(map.size());
+        for (E e : map.keySet())
+            s.writeObject(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        map = new SmallMap<>();
+        for (int i = 0; i < size; i++)
+            map.put((E) s.readObject(), PRESENT);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sunrise.study.thread.juc_demo.atomic;
+
+import com.sunrise.study.thread.sourcecode.LatencyHistogram;
+import com.sunrise.study.thread.sourcecode.atomic.StripedCountMinSketch;
+import com.sunrise.study.thread.sourcecode.atomic.StripedHistogram;
+import com.sunrise.study.thread.sourcecode.atomic.StripedLongSummary;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 分散记录的指标与共享一份计数器的写法对比记录吞吐。
+ * <p>
+ * n 个线程不停地记录，依次测：单个 {@link LatencyHistogram} 与 {@link StripedHistogram}、
+ * 两个 AtomicLong 统计个数和总和与 {@link StripedLongSummary}、{@link StripedCountMinSketch}。
+ * 结束后输出合并后的结果和 cell 个数，用来确认读取时合并没有丢数据。
+ * 参数为 n 的列表，不给时跑 1 4 16 64。单核机器上线程之间几乎没有同时的 CAS，cells 很少创建，
+ * 两种写法差别不大；多核上共享的写法随 n 增加吞吐下降，分散的写法基本不变。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class StripedMetricsBenchmark {
+    private static final long MILLIS = 1000;
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {1, 4, 16, 64};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int n : threads) {
+                LatencyHistogram shared = new LatencyHistogram();
+                run("LatencyHistogram", n, shared::record);
+                System.out.println("    " + shared.snapshot());
+
+                StripedHistogram striped = new StripedHistogram();
+                run("StripedHistogram", n, striped::record);
+                System.out.println("    " + striped.snapshot() + " cells=" + striped.getCellCount());
+
+                AtomicLong count = new AtomicLong(), sum = new AtomicLong();
+                run("AtomicLong x2", n, v -> {
+                    count.incrementAndGet();
+                    sum.addAndGet(v);
+                });
+                System.out.println("    count=" + count + " sum=" + sum);
+
+                StripedLongSummary summary = new StripedLongSummary();
+                run("StripedLongSummary", n, summary::record);
+                System.out.println("    " + summary.snapshot() + " cells=" + summary.getCellCount());
+
+                StripedCountMinSketch sketch = new StripedCountMinSketch();
+                run("StripedCountMinSketch", n, v -> sketch.record(v & 0xff));
+                StripedCountMinSketch.Snapshot s = sketch.snapshot();
+                System.out.println("    " + s + " estimate(0)=" + s.estimate(0L) + " cells=" + sketch.getCellCount());
+            }
+        }
+    }
+
+    private static void run(String name, int n, LongConsumer recorder) throws InterruptedException {
+        long[] counts = new long[n];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(n);
+        long[] end = new long[1];
+        for (int t = 0; t < n; t++) {
+            int id = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long ops = 0;
+                while (System.nanoTime() - end[0] < 0) {
+                    // 模拟 100ns ~ 1.6ms 的延迟值，每次记录前不调用 nanoTime 以突出记录本身的开销
+                    for (int i = 0; i < 64; i++)
+                        recorder.accept(100L << ((ops + i) & 0xf));
+                    ops += 64;
+                }
+                counts[id] = ops;
+                done.countDown();
+            }).start();
+        }
+        end[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        start.countDown();
+        done.await();
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        System.out.printf("%-22s threads=%-3d %,14.0f records/s%n", name, n, total * 1000.0 / MILLIS);
+    }
+}
@@ -0,0 +1,84 @@
+package com.sunrise.study.thread.juc_demo.atomic;
+
+import com.sunrise.study.thread.sourcecode.atomic.LongAdder;
+import com.sunrise.study.thread.sourcecode.atomic.WindowedLongAdder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 用 {@link WindowedLongAdder} 统计 QPS，与"定时读 LongAdder.sum() 再减去上一次的值"对比。
+ * <p>
+ * 第一部分：n 个线程按每秒变化的速率计数（1 倍、4 倍、1 倍……），报告线程每 300ms 输出一次两种读数。
+ * 采样的写法只有报告线程自己能算，结果取决于它两次读之间的时间段，需要保存上一次的值；
+ * rate() 是最近一个完整窗口的平均值，任何线程随时可读，负载变化时按时间片逐步过渡。
+ * 第二部分：n 个线程不停地计数，比较 increment 的吞吐，WindowedLongAdder 多出一次 nanoTime 和一次数组读，
+ * nanoTime 较慢的机器上差距明显，已经取过时间的调用方（例如统计延迟时）用 add(x, nanoTime) 可以省掉这一次。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class WindowedRateDemo {
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        rate();
+        throughput(new LongAdder()::increment, "LongAdder");
+        throughput(new WindowedLongAdder()::increment, "WindowedLongAdder");
+    }
+
+    private static void rate() throws InterruptedException {
+        LongAdder total = new LongAdder();
+        WindowedLongAdder windowed = new WindowedLongAdder(1, TimeUnit.SECONDS, 10);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(4);
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                long now;
+                while ((now = System.nanoTime()) - end < 0) {
+                    // 奇数秒负载为 4 倍
+                    int burst = ((now - start) / 1_000_000_000L & 1) == 1 ? 4 : 1;
+                    for (int i = 0; i < burst; i++) {
+                        total.increment();
+                        windowed.add(1L, now);
+                    }
+                    LockSupport.parkNanos(50_000);
+                }
+            }).start();
+        }
+        long last = 0, lastTime = System.nanoTime();
+        while (System.nanoTime() - end < 0) {
+            Thread.sleep(300);
+            long sum = total.sum(), now = System.nanoTime();
+            System.out.printf("t=%5dms  sampled %,10.0f/s  windowed %,10.0f/s  last 1s %,8d%n",
+                    TimeUnit.NANOSECONDS.toMillis(now - start),
+                    (sum - last) * 1e9 / (now - lastTime), windowed.rate(TimeUnit.SECONDS), windowed.sum());
+            last = sum;
+            lastTime = now;
+        }
+    }
+
+    private static void throughput(Runnable increment, String name) throws InterruptedException {
+        long[] counts = new long[THREADS];
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            new Thread(() -> {
+                long ops = 0;
+                while (System.nanoTime() - end < 0) {
+                    for (int i = 0; i < 64; i++)
+                        increment.run();
+                    ops += 64;
+                }
+                counts[id] = ops;
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long sum = 0;
+        for (long c : counts)
+            sum += c;
+        System.out.printf("%-18s %,14d increments/s%n", name, sum);
+    }
+}
@@ -0,0 +1,70 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.AdaptivePoolSizer;
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 演示 {@link AdaptivePoolSizer} 的扩容、缩容和撤销扩容。
+ * <ol>
+ *     <li>阻塞负载：每 2ms 提交一个 sleep 10ms 的任务，需要 5 个以上线程，
+ *     单线程起步的线程池排队时长迅速超标，控制器逐步扩容直到 p99 回到目标以下；</li>
+ *     <li>空闲：不再提交任务，线程数每 5 个周期减少 1 个，直到下限；</li>
+ *     <li>CPU 负载：每 2ms 提交 CPU 核数个忙循环 3ms 的任务，超出了 CPU 的处理能力，
+ *     线程数超过 CPU 核数后扩容不再提高吞吐，控制器撤销扩容并暂停一段时间。</li>
+ * </ol>
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class AdaptivePoolSizerDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        int cpus = Runtime.getRuntime().availableProcessors();
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(executor, 20, TimeUnit.MILLISECONDS, 1, 64).start();
+
+        System.out.println("== blocking load");
+        submitFor(executor, sizer, 4, 1, () -> sleep(10));
+        System.out.println("== idle");
+        for (int i = 0; i < 6; i++) {
+            sleep(500);
+            System.out.println(sizer.snapshot());
+        }
+        System.out.println("== cpu load, " + cpus + " cpus");
+        long spin = TimeUnit.MILLISECONDS.toNanos(3);
+        submitFor(executor, sizer, 4, cpus, () -> {
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < spin)
+                ;
+        });
+
+        sizer.close();
+        executor.shutdownNow();
+    }
+
+    private static void submitFor(ThreadPoolExecutor executor, AdaptivePoolSizer sizer,
+                                  int seconds, int batch, Runnable task) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = System.nanoTime();
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < batch; i++)
+                executor.execute(task);
+            sleep(2);
+            if (System.nanoTime() - nextReport >= 0) {
+                System.out.println(sizer.snapshot());
+                nextReport += TimeUnit.MILLISECONDS.toNanos(500);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.Batcher;
+import com.sunrise.study.thread.sourcecode.BatchingExecutor;
+import com.sunrise.study.thread.sourcecode.Executor;
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 微任务的分发开销：直接提交给 ThreadPoolExecutor，与经过 {@link BatchingExecutor} 攒批后再提交的对比，
+ * 以及 {@link Batcher} 带逐条结果（CompletableFuture）时的吞吐。
+ * <p>
+ * 任务只做一次 countDown，耗时基本都是分发开销。参数为提交线程数，默认 1 和 4 各跑一遍。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class BatchingExecutorBenchmark {
+    private static final int TASKS = 2_000_000;
+    private static final int POOL_SIZE = 4;
+    private static final int MAX_BATCH = 256;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] submitters = {1, 4};
+        if (args.length > 0)
+            submitters = new int[]{Integer.parseInt(args[0])};
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int n : submitters) {
+                direct(n);
+                batching(n, 0);
+                batching(n, 1);
+                batcher(n);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newPool() {
+        return new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+    }
+
+    private static void direct(int submitters) throws InterruptedException {
+        ThreadPoolExecutor pool = newPool();
+        run("direct", submitters, pool::execute);
+        pool.shutdown();
+    }
+
+    private static void batching(int submitters, long maxDelayMillis) throws InterruptedException {
+        ThreadPoolExecutor pool = newPool();
+        BatchingExecutor executor = new BatchingExecutor(pool, MAX_BATCH, maxDelayMillis, TimeUnit.MILLISECONDS);
+        run("batching delay=" + maxDelayMillis + "ms", submitters, executor);
+        executor.close();
+        pool.shutdown();
+    }
+
+    private static void run(String name, int submitters, Executor executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Runnable task = done::countDown;
+        int perThread = TASKS / submitters;
+        Thread[] threads = new Thread[submitters];
+        long start = System.nanoTime();
+        for (int t = 0; t < submitters; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    executor.execute(task);
+            });
+            threads[t].start();
+        }
+        done.await();
+        report(name, submitters, System.nanoTime() - start);
+    }
+
+    private static void batcher(int submitters) throws InterruptedException {
+        ThreadPoolExecutor pool = newPool();
+        Batcher<Integer, Integer> batcher = new Batcher<>(pool, MAX_BATCH, 0, TimeUnit.MILLISECONDS, values -> {
+            List<Integer> results = new ArrayList<>(values.size());
+            for (Integer v : values)
+                results.add(v + 1);
+            return results;
+        });
+        CountDownLatch done = new CountDownLatch(TASKS);
+        int perThread = TASKS / submitters;
+        Thread[] threads = new Thread[submitters];
+        long start = System.nanoTime();
+        for (int t = 0; t < submitters; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    CompletableFuture<Integer> f = batcher.submit(i & 1023);
+                    f.thenRun(done::countDown);
+                }
+            });
+            threads[t].start();
+        }
+        done.await();
+        report("batcher futures", submitters, System.nanoTime() - start);
+        batcher.close();
+        pool.shutdown();
+    }
+
+    private static void report(String name, int submitters, long elapsed) {
+        System.out.printf("%-20s submitters=%d %,6d ms %,12.0f tasks/s%n", name, submitters,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), TASKS * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,175 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.Executors;
+import com.sunrise.study.thread.sourcecode.ScopedContext;
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把请求上下文（4 个值）带到线程池任务中的几种写法，比较吞吐和读到的值是否正确。
+ * <ul>
+ *     <li>none：不传递上下文，作为基准；</li>
+ *     <li>InheritableThreadLocal：池线程创建时从提交线程复制一次，之后提交线程换了值，任务读到的仍是旧值，
+ *     输出中的 stale 是读到旧值的任务数；</li>
+ *     <li>ThreadLocal copy：每个任务包装一次，提交时把 4 个值复制到数组，执行前逐个 set、执行后逐个 remove；</li>
+ *     <li>ScopedContext：{@link ThreadPoolExecutor#setContextPropagation(boolean)}，提交时读一次当前上下文的引用，
+ *     runWorker 前后各切换一次，池线程是 FastThreadLocalThread。</li>
+ * </ul>
+ * 每种写法向 2 个线程的线程池提交 100 万个只读上下文的小任务，每个"请求"（1000 个任务）换一次上下文的值。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ContextPropagationBenchmark {
+    private static final int TASKS = 1_000_000;
+    private static final int TASKS_PER_REQUEST = 1000;
+    private static final int ROUNDS = 3;
+
+    private static final InheritableThreadLocal<String> TRACE_ID = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<String> TENANT = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<String> USER = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<String> LOCALE = new InheritableThreadLocal<>();
+
+    private static final ScopedContext.Key<String> TRACE_ID_KEY = ScopedContext.Key.newInstance("traceId");
+    private static final ScopedContext.Key<String> TENANT_KEY = ScopedContext.Key.newInstance("tenant");
+    private static final ScopedContext.Key<String> USER_KEY = ScopedContext.Key.newInstance("user");
+    private static final ScopedContext.Key<String> LOCALE_KEY = ScopedContext.Key.newInstance("locale");
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            none();
+            inheritable();
+            threadLocalCopy();
+            scoped();
+        }
+    }
+
+    private static ThreadPoolExecutor newPool() {
+        return new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                Executors.fastThreadLocalThreadFactory());
+    }
+
+    private static void none() throws InterruptedException {
+        ThreadPoolExecutor executor = newPool();
+        CountDownLatch done = new CountDownLatch(TASKS);
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++)
+            executor.execute(done::countDown);
+        done.await();
+        report("none", start, 0);
+        executor.shutdown();
+    }
+
+    private static void inheritable() throws InterruptedException {
+        setThreadLocals(0);
+        ThreadPoolExecutor executor = newPool();
+        executor.prestartAllCoreThreads();
+        CountDownLatch done = new CountDownLatch(TASKS);
+        LongAdder stale = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            if (i % TASKS_PER_REQUEST == 0)
+                setThreadLocals(i / TASKS_PER_REQUEST);
+            String expected = TRACE_ID.get();
+            executor.execute(() -> {
+                if (!expected.equals(TRACE_ID.get()) || TENANT.get() == null || USER.get() == null
+                        || LOCALE.get() == null)
+                    stale.increment();
+                done.countDown();
+            });
+        }
+        done.await();
+        report("InheritableThreadLocal", start, stale.sum());
+        executor.shutdown();
+        clearThreadLocals();
+    }
+
+    private static void threadLocalCopy() throws InterruptedException {
+        ThreadPoolExecutor executor = newPool();
+        CountDownLatch done = new CountDownLatch(TASKS);
+        LongAdder stale = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            if (i % TASKS_PER_REQUEST == 0)
+                setThreadLocals(i / TASKS_PER_REQUEST);
+            String expected = TRACE_ID.get();
+            Runnable task = () -> {
+                if (!expected.equals(TRACE_ID.get()) || TENANT.get() == null || USER.get() == null
+                        || LOCALE.get() == null)
+                    stale.increment();
+                done.countDown();
+            };
+            String[] captured = {TRACE_ID.get(), TENANT.get(), USER.get(), LOCALE.get()};
+            executor.execute(() -> {
+                TRACE_ID.set(captured[0]);
+                TENANT.set(captured[1]);
+                USER.set(captured[2]);
+                LOCALE.set(captured[3]);
+                try {
+                    task.run();
+                } finally {
+                    TRACE_ID.remove();
+                    TENANT.remove();
+                    USER.remove();
+                    LOCALE.remove();
+                }
+            });
+        }
+        done.await();
+        report("ThreadLocal copy", start, stale.sum());
+        executor.shutdown();
+        clearThreadLocals();
+    }
+
+    private static void scoped() throws InterruptedException {
+        ThreadPoolExecutor executor = newPool();
+        executor.setContextPropagation(true);
+        CountDownLatch done = new CountDownLatch(TASKS);
+        LongAdder stale = new LongAdder();
+        long start = System.nanoTime();
+        for (int r = 0; r < TASKS / TASKS_PER_REQUEST; r++) {
+            String traceId = "trace-" + r;
+            ScopedContext.where(TRACE_ID_KEY, traceId)
+                    .where(TENANT_KEY, "tenant-" + (r & 7))
+                    .where(USER_KEY, "user-" + (r & 63))
+                    .where(LOCALE_KEY, "zh_CN")
+                    .run(() -> {
+                        for (int i = 0; i < TASKS_PER_REQUEST; i++) {
+                            executor.execute(() -> {
+                                if (!traceId.equals(TRACE_ID_KEY.get()) || !TENANT_KEY.isBound()
+                                        || !USER_KEY.isBound() || !LOCALE_KEY.isBound())
+                                    stale.increment();
+                                done.countDown();
+                            });
+                        }
+                    });
+        }
+        done.await();
+        report("ScopedContext", start, stale.sum());
+        executor.shutdown();
+    }
+
+    private static void setThreadLocals(int request) {
+        TRACE_ID.set("trace-" + request);
+        TENANT.set("tenant-" + (request & 7));
+        USER.set("user-" + (request & 63));
+        LOCALE.set("zh_CN");
+    }
+
+    private static void clearThreadLocals() {
+        TRACE_ID.remove();
+        TENANT.remove();
+        USER.remove();
+        LOCALE.remove();
+    }
+
+    private static void report(String name, long start, long stale) {
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-24s %,12.0f tasks/s  %6.1f ns/task  stale %,d%n", name,
+                TASKS * 1e9 / elapsed, (double) elapsed / TASKS, stale);
+    }
+}
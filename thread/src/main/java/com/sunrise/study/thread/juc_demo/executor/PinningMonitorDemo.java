@@ -0,0 +1,54 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.ExecutorService;
+import com.sunrise.study.thread.sourcecode.Executors;
+import com.sunrise.study.thread.sourcecode.PinningMonitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 演示 {@link PinningMonitor}：一半任务在 synchronized 方法里 sleep（会 pin 住 carrier），
+ * 一半在 synchronized 外面 sleep，最后打印按阻塞点汇总的报告。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class PinningMonitorDemo {
+
+    private static final Object LOCK = new Object();
+
+    public static void main(String[] args) throws InterruptedException {
+        PinningMonitor monitor = new PinningMonitor(20, TimeUnit.MILLISECONDS, 5, TimeUnit.MILLISECONDS,
+                e -> System.out.println("pinned: " + e)).start();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(100, monitor);
+        PinningMonitorDemo demo = new PinningMonitorDemo();
+        for (int i = 0; i < 200; i++) {
+            if (i % 2 == 0)
+                executor.execute(demo::pinned);
+            else
+                executor.execute(PinningMonitorDemo::unpinned);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        monitor.close();
+        System.out.println(monitor.snapshot());
+    }
+
+    private synchronized void pinned() {
+        sleep(50);
+    }
+
+    private static void unpinned() {
+        synchronized (LOCK) {
+            // 只在 synchronized 中做很短的事
+        }
+        sleep(50);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
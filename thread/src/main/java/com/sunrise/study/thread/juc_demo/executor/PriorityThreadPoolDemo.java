@@ -0,0 +1,101 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.LatencyHistogram;
+import com.sunrise.study.thread.sourcecode.PriorityThreadPoolExecutor;
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过载时 {@link PriorityThreadPoolExecutor} 对高优先级任务的保护。
+ * <p>
+ * 4 个线程，每个任务 sleep 1ms，处理能力约 4000 个/秒。每 2ms 提交 12 个批处理任务和 1 个高优先级任务，
+ * 到达速率约 6500 个/秒，持续过载。输出两类任务从提交到开始执行的时长分布：
+ * <ol>
+ *     <li>FIFO：普通线程池加无界 LinkedBlockingQueue，两类任务一起排队，时长随积压不断增长；</li>
+ *     <li>优先级：agingInterval 为 100ms，最高和最低优先级相差 900ms。积压不到 900ms 时高优先级任务几乎不用排队，
+ *     积压超过 900ms 后老化开始起作用，等得最久的批处理任务排到前面，高优先级任务的排队时长也随之上升；</li>
+ *     <li>优先级 + 队列容量 + 截止时间：批处理任务 200ms 内没开始就丢弃，队列满了挤掉排名最后的任务，
+ *     批处理任务的积压不会超过 200ms，老化不会起作用，高优先级任务始终排在前面。</li>
+ * </ol>
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class PriorityThreadPoolDemo {
+    private static final int THREADS = 4;
+    private static final int SECONDS = 3;
+    private static final int BATCH_PER_TICK = 12;
+
+    public static void main(String[] args) throws InterruptedException {
+        ThreadPoolExecutor fifo = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        run("fifo", fifo, null, false);
+
+        PriorityThreadPoolExecutor priority = new PriorityThreadPoolExecutor(THREADS, 100, TimeUnit.MILLISECONDS);
+        run("priority", priority, priority, false);
+
+        PriorityThreadPoolExecutor bounded = new PriorityThreadPoolExecutor(THREADS, 100, TimeUnit.MILLISECONDS,
+                1000, Executors.defaultThreadFactory());
+        run("priority+shedding", bounded, bounded, true);
+    }
+
+    private static void run(String name, ThreadPoolExecutor executor, PriorityThreadPoolExecutor p,
+                            boolean deadline) throws InterruptedException {
+        LatencyHistogram high = new LatencyHistogram();
+        LatencyHistogram batch = new LatencyHistogram();
+        long rejected = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        while (System.nanoTime() - end < 0) {
+            for (int i = 0; i < BATCH_PER_TICK; i++) {
+                if (!submit(executor, p, new Job(batch), PriorityThreadPoolExecutor.MIN_PRIORITY, deadline))
+                    rejected++;
+            }
+            if (!submit(executor, p, new Job(high), PriorityThreadPoolExecutor.MAX_PRIORITY, false))
+                rejected++;
+            Thread.sleep(2);
+        }
+        int backlog = executor.getQueue().size();
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println("== " + name + ", backlog at end " + backlog + ", rejected " + rejected
+                + (p == null ? "" : ", expired " + p.getExpiredCount() + ", evicted " + p.getEvictedCount()));
+        System.out.println("high  " + high.snapshot().toString(TimeUnit.MILLISECONDS));
+        System.out.println("batch " + batch.snapshot().toString(TimeUnit.MILLISECONDS));
+    }
+
+    private static boolean submit(ThreadPoolExecutor executor, PriorityThreadPoolExecutor p, Job job,
+                                  int priority, boolean deadline) {
+        try {
+            if (p == null)
+                executor.execute(job);
+            else if (deadline)
+                p.submit(job, priority, 200, TimeUnit.MILLISECONDS);
+            else
+                p.submit(job, priority);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static final class Job implements Runnable {
+        final long submitted = System.nanoTime();
+        final LatencyHistogram latency;
+
+        Job(LatencyHistogram latency) {
+            this.latency = latency;
+        }
+
+        public void run() {
+            latency.record(System.nanoTime() - submitted);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
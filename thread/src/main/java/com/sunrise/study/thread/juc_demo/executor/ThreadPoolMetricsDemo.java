@@ -0,0 +1,88 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+import com.sunrise.study.thread.sourcecode.ThreadPoolMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 演示 {@link ThreadPoolMetrics}：
+ * <ol>
+ *     <li>有界队列的线程池上混合提交三类任务，输出排队时长、执行时长、按任务类型的耗时排行、
+ *     拒绝次数和工作线程的创建/退出次数；</li>
+ *     <li>空任务的吞吐对比，开启统计与不开启统计，看统计本身的开销。</li>
+ * </ol>
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ThreadPoolMetricsDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 8, 100, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(100));
+        ThreadPoolMetrics metrics = executor.enableMetrics().startSampling(50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 2000; i++) {
+            try {
+                if (i % 10 == 0)
+                    executor.execute(new SlowQuery());
+                else if (i % 3 == 0)
+                    executor.submit(new CacheLookup());
+                else
+                    executor.execute(new CacheLookup());
+            } catch (RejectedExecutionException e) {
+                // 统计里会记录拒绝次数
+            }
+            if (i % 50 == 0)
+                Thread.sleep(5);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println(metrics.snapshot());
+        metrics.close();
+
+        for (int round = 0; round < 3; round++) {
+            overhead(false);
+            overhead(true);
+        }
+    }
+
+    private static void overhead(boolean enabled) throws InterruptedException {
+        int tasks = 1_000_000;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        if (enabled)
+            executor.enableMetrics();
+        CountDownLatch done = new CountDownLatch(tasks);
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++)
+            executor.execute(done::countDown);
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.printf("metrics %-8s %,12.0f tasks/s%n", enabled ? "on" : "off", tasks * 1e9 / elapsed);
+    }
+
+    private static final class SlowQuery implements Runnable {
+        public void run() {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class CacheLookup implements Runnable {
+        public void run() {
+            long x = System.nanoTime();
+            for (int i = 0; i < 1000; i++)
+                x ^= x << 13;
+            if (x == 42)
+                System.out.println();
+        }
+    }
+}
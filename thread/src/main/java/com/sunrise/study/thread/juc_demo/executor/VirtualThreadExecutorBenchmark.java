@@ -0,0 +1,64 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.ExecutorService;
+import com.sunrise.study.thread.sourcecode.Executors;
+import com.sunrise.study.thread.sourcecode.VirtualThreads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大量阻塞任务下，虚拟线程执行器与固定大小线程池的吞吐对比。
+ * 每个任务 sleep BLOCK_MILLIS 模拟一次阻塞 I/O。
+ * <p>
+ * 参数为任务数，默认依次跑 10k、100k、1M。固定线程池的耗时约为 任务数 * BLOCK_MILLIS / 线程数，
+ * 任务数超过 100k 时跳过。不支持虚拟线程的 JVM 上，虚拟线程执行器会退化为平台线程，
+ * 此时只跑有并发上限的版本。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class VirtualThreadExecutorBenchmark {
+    private static final long BLOCK_MILLIS = 10;
+    private static final int POOL_SIZE = 200;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] counts = {10_000, 100_000, 1_000_000};
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                counts[i] = Integer.parseInt(args[i]);
+        }
+        boolean virtual = VirtualThreads.isSupported();
+        int bound = virtual ? 10_000 : 1_000;
+        System.out.println("virtual threads supported: " + virtual);
+
+        for (int n : counts) {
+            if (virtual)
+                run("virtual per task", Executors.newVirtualThreadPerTaskExecutor(), n);
+            run("virtual, max " + bound, Executors.newVirtualThreadPerTaskExecutor(bound), n);
+            if (n <= 100_000)
+                run("fixed pool " + POOL_SIZE, Executors.newFixedThreadPool(POOL_SIZE), n);
+        }
+    }
+
+    private static void run(String name, ExecutorService executor, int tasks) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(BLOCK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.printf("%-20s %,9d tasks %,8d ms %,12.0f tasks/s%n", name, tasks,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), tasks * 1e9 / elapsed);
+    }
+}
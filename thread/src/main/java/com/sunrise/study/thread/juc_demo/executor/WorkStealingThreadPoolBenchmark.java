@@ -0,0 +1,96 @@
+package com.sunrise.study.thread.juc_demo.executor;
+
+import com.sunrise.study.thread.sourcecode.ExecutorService;
+import com.sunrise.study.thread.sourcecode.Executors;
+import com.sunrise.study.thread.sourcecode.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 微任务场景下，普通固定线程池与工作窃取线程池的吞吐对比。
+ * <p>
+ * 两种负载：
+ * <ul>
+ *     <li>fan-out：每个任务在工作线程内再提交两个子任务，直到深度 DEPTH，
+ *     普通线程池所有子任务都挤在同一个 LinkedBlockingQueue 的锁上，工作窃取模式下进入本地双端队列；</li>
+ *     <li>external：主线程逐个提交空任务，两种模式都走共享队列，用来确认外部提交没有变慢。</li>
+ * </ul>
+ * 参数为线程数，默认为 CPU 核数。单核机器上看不出窃取带来的并行收益，只能看到少了锁竞争的部分。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class WorkStealingThreadPoolBenchmark {
+    private static final int DEPTH = 18;
+    private static final int EXTERNAL_TASKS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("threads: " + threads);
+        for (int round = 0; round < ROUNDS; round++) {
+            fanOut("fixed pool", Executors.newFixedThreadPool(threads));
+            fanOut("stealing LIFO", Executors.newWorkStealingThreadPool(threads, ThreadPoolExecutor.LocalOrder.LIFO));
+            fanOut("stealing FIFO", Executors.newWorkStealingThreadPool(threads, ThreadPoolExecutor.LocalOrder.FIFO));
+            external("fixed pool", Executors.newFixedThreadPool(threads));
+            external("stealing LIFO", Executors.newWorkStealingThreadPool(threads, ThreadPoolExecutor.LocalOrder.LIFO));
+        }
+    }
+
+    private static void fanOut(String name, ExecutorService executor) throws InterruptedException {
+        long tasks = (1L << (DEPTH + 1)) - 1;
+        AtomicLong count = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        executor.execute(new Node(executor, 0, count, tasks, done));
+        done.await();
+        report("fan-out", name, tasks, System.nanoTime() - start);
+        shutdown(executor);
+    }
+
+    private static void external(String name, ExecutorService executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(EXTERNAL_TASKS);
+        long start = System.nanoTime();
+        for (int i = 0; i < EXTERNAL_TASKS; i++)
+            executor.execute(done::countDown);
+        done.await();
+        report("external", name, EXTERNAL_TASKS, System.nanoTime() - start);
+        shutdown(executor);
+    }
+
+    private static void shutdown(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private static void report(String workload, String name, long tasks, long elapsed) {
+        System.out.printf("%-9s %-14s %,10d tasks %,6d ms %,12.0f tasks/s%n", workload, name, tasks,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), tasks * 1e9 / elapsed);
+    }
+
+    private static final class Node implements Runnable {
+        private final ExecutorService executor;
+        private final int depth;
+        private final AtomicLong count;
+        private final long total;
+        private final CountDownLatch done;
+
+        Node(ExecutorService executor, int depth, AtomicLong count, long total, CountDownLatch done) {
+            this.executor = executor;
+            this.depth = depth;
+            this.count = count;
+            this.total = total;
+            this.done = done;
+        }
+
+        public void run() {
+            if (depth < DEPTH) {
+                executor.execute(new Node(executor, depth + 1, count, total, done));
+                executor.execute(new Node(executor, depth + 1, count, total, done));
+            }
+            if (count.incrementAndGet() == total)
+                done.countDown();
+        }
+    }
+}
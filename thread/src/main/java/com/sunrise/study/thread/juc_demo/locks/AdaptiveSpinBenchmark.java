@@ -0,0 +1,94 @@
+package com.sunrise.study.thread.juc_demo.locks;
+
+import com.sunrise.study.thread.sourcecode.LatencyHistogram;
+import com.sunrise.study.thread.sourcecode.ReentrantLock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应自旋（{@link ReentrantLock#setAdaptiveSpinning(boolean)}）对不同长度临界区的影响。
+ * <p>
+ * n 个线程争抢同一把非公平 ReentrantLock，临界区分别忙等 0、200ns、2us、50us，临界区外忙等同样的时长，
+ * 每个线程执行固定的时间。输出总吞吐和 lock() 的耗时分布（p50/p99），分别关闭和开启自旋。
+ * 预期短临界区开启后 lock() 的延迟明显下降（省掉 park/unpark），长临界区预算很快降到下限，两者持平。
+ * 参数为 n 的列表，不给时跑 2 4 8。单核机器上 setAdaptiveSpinning 不生效，两组结果相同。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class AdaptiveSpinBenchmark {
+    private static final long[] SECTIONS = {0, 200, 2_000, 50_000};
+    private static final long MILLIS = 1000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {2, 4, 8};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (long section : SECTIONS) {
+                for (int n : threads) {
+                    run(n, section, false);
+                    run(n, section, true);
+                }
+            }
+        }
+    }
+
+    private static void run(int n, long section, boolean spinning) throws InterruptedException {
+        ReentrantLock lock = new ReentrantLock();
+        lock.setAdaptiveSpinning(spinning);
+        LatencyHistogram latency = new LatencyHistogram();
+        long[] counts = new long[n];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(n);
+        long[] end = new long[1];
+        for (int t = 0; t < n; t++) {
+            int id = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long ops = 0;
+                while (System.nanoTime() - end[0] < 0) {
+                    long begin = System.nanoTime();
+                    lock.lock();
+                    try {
+                        latency.record(System.nanoTime() - begin);
+                        busy(section);
+                    } finally {
+                        lock.unlock();
+                    }
+                    busy(section);
+                    ops++;
+                }
+                counts[id] = ops;
+                done.countDown();
+            }).start();
+        }
+        end[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        start.countDown();
+        done.await();
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        System.out.printf("section=%-6d threads=%-3d spinning=%-5s %,12.0f ops/s  lock() p50 %,8d ns  p99 %,10d ns%n",
+                section, n, spinning, total * 1000.0 / MILLIS,
+                s.valueAtPercentile(50), s.valueAtPercentile(99));
+    }
+
+    private static void busy(long nanos) {
+        if (nanos == 0)
+            return;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() - end < 0)
+            ;
+    }
+}
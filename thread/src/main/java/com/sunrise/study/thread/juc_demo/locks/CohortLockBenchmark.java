@@ -0,0 +1,95 @@
+package com.sunrise.study.thread.juc_demo.locks;
+
+import com.sunrise.study.thread.sourcecode.Lock;
+import com.sunrise.study.thread.sourcecode.locks.CohortLock;
+import com.sunrise.study.thread.sourcecode.locks.NonReentrantLock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link CohortLock} 与 {@link NonReentrantLock} 的吞吐和跨 cluster 交接比例。
+ * <p>
+ * 线程按名字中的序号平均分到 clusters 个 cluster，每次持有锁时改写一个 1KB 的共享数组（模拟临界区数据），
+ * 并记录上一个持有者的 cluster，统计锁交给另一个 cluster 的线程的比例。多路服务器上应当按 socket 绑核后运行
+ * （例如 numactl 把每组线程绑到一个 socket），跨 socket 交接的比例越低，临界区数据越少在 socket 之间搬运。
+ * 单 socket 机器上只能看到交接比例的变化，看不出吞吐的差别。
+ * 参数：线程数 cluster数，不给时为 8 2。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class CohortLockBenchmark {
+    private static final long MILLIS = 1000;
+    private static final int ROUNDS = 3;
+
+    private static final long[] shared = new long[128];
+    private static int lastCluster = -1;
+    private static long migrations;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int clusters = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            run("NonReentrantLock", threads, clusters, NonReentrantLock::new);
+            for (int maxHandoffs : new int[]{1, 16, CohortLock.DEFAULT_MAX_HANDOFFS, 1024})
+                run("CohortLock(maxHandoffs=" + maxHandoffs + ")", threads, clusters,
+                        () -> new CohortLock(clusters, CohortLockBenchmark::clusterOf, maxHandoffs));
+        }
+    }
+
+    private static int clusterOf(Thread t) {
+        return Integer.parseInt(t.getName().substring(t.getName().lastIndexOf('-') + 1));
+    }
+
+    private static void run(String name, int threads, int clusters, Supplier<Lock> factory)
+            throws InterruptedException {
+        Lock lock = factory.get();
+        lastCluster = -1;
+        migrations = 0;
+        long[] counts = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] end = new long[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            int cluster = t % clusters;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long ops = 0;
+                while (System.nanoTime() - end[0] < 0) {
+                    lock.lock();
+                    try {
+                        if (lastCluster != cluster) {
+                            lastCluster = cluster;
+                            migrations++;
+                        }
+                        for (int i = 0; i < shared.length; i++)
+                            shared[i]++;
+                    } finally {
+                        lock.unlock();
+                    }
+                    ops++;
+                }
+                counts[id] = ops;
+                done.countDown();
+            }, "worker-" + t + "-" + cluster).start();
+        }
+        end[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        start.countDown();
+        done.await();
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        for (long c : counts) {
+            total += c;
+            min = Math.min(min, c);
+        }
+        System.out.printf("%-32s %,12.0f ops/s  cross-cluster %5.1f%%  slowest thread %5.1f%% of mean%n",
+                name, total * 1000.0 / MILLIS, 100.0 * migrations / total, 100.0 * min * threads / total);
+    }
+}
@@ -1,10 +1,10 @@
 package com.sunrise.study.thread.juc_demo.locks;
 
+import com.sunrise.study.thread.sourcecode.Condition;
 import com.sunrise.study.thread.sourcecode.locks.NonReentrantLock;
 
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Condition;
 
 /**
  * @author huangzihua
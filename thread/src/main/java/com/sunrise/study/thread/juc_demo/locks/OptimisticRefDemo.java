@@ -0,0 +1,84 @@
+package com.sunrise.study.thread.juc_demo.locks;
+
+import com.sunrise.study.thread.sourcecode.locks.OptimisticLongPair;
+import com.sunrise.study.thread.sourcecode.locks.OptimisticRef;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用 {@link OptimisticLongPair} 和 {@link OptimisticRef} 改写 {@link StampedLockTest} 中的点，不再手写乐观读的校验和退化。
+ * <p>
+ * n 个线程对同一个点做 distanceFromOrigin（乐观读）、move（写锁）和 moveIfAtOrigin（乐观检查后升级为写锁），
+ * 写比例从 0.1% 到 10%，输出吞吐和重试、退化、升级失败的次数，可以据此调整 optimisticRetries：
+ * 写比例高时重试多半仍会失败，retries 接近 fallbacks 说明重试没有意义。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class OptimisticRefDemo {
+    private static final int[] WRITE_PERMILLE = {1, 10, 100};
+    private static final int THREADS = 4;
+    private static final long MILLIS = 1000;
+
+    /** 坐标放大 1000 倍存成 long */
+    private final OptimisticLongPair point = new OptimisticLongPair();
+
+    /** 不可变的对象放在 OptimisticRef 里，写时整体替换 */
+    private final OptimisticRef<String> label = new OptimisticRef<>("origin");
+
+    double distanceFromOrigin() {
+        return point.read((x, y) -> Math.sqrt((double) x * x + (double) y * y) / 1000);
+    }
+
+    void move(long deltaX, long deltaY) {
+        point.add(deltaX, deltaY);
+    }
+
+    boolean moveIfAtOrigin(long newX, long newY) {
+        return point.compareAndSet(0L, 0L, newX, newY);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int permille : WRITE_PERMILLE)
+            run(permille);
+    }
+
+    private static void run(int writePermille) throws InterruptedException {
+        OptimisticRefDemo demo = new OptimisticRefDemo();
+        long[] counts = new long[THREADS];
+        CountDownLatch done = new CountDownLatch(THREADS);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                double sink = 0;
+                while (System.nanoTime() - end < 0) {
+                    int r = random.nextInt(1000);
+                    if (r < writePermille) {
+                        if ((r & 1) == 0)
+                            demo.move(1000, -1000);
+                        else if (demo.moveIfAtOrigin(1000, 1000))
+                            demo.label.set("moved by " + Thread.currentThread().getName());
+                        else
+                            demo.point.set(0L, 0L);
+                    } else {
+                        sink += demo.distanceFromOrigin();
+                        sink += demo.label.read(String::length);
+                    }
+                    ops++;
+                }
+                counts[id] = ops + (sink < 0 ? 1 : 0);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        System.out.printf("writes=%4.1f%% %,12.0f ops/s%n  point %s%n  label %s%n", writePermille / 10.0,
+                total * 1000.0 / MILLIS, demo.point, demo.label);
+    }
+}
@@ -0,0 +1,148 @@
+package com.sunrise.study.thread.juc_demo.locks;
+
+import com.sunrise.study.thread.sourcecode.ReentrantLock;
+import com.sunrise.study.thread.sourcecode.locks.ClhLock;
+import com.sunrise.study.thread.sourcecode.locks.FIFOMutex;
+import com.sunrise.study.thread.sourcecode.locks.McsLock;
+import com.sunrise.study.thread.sourcecode.locks.NonReentrantLock;
+import com.sunrise.study.thread.sourcecode.locks.TimePublishedLock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 队列锁 {@link McsLock}、{@link ClhLock}、{@link TimePublishedLock} 与 {@link FIFOMutex}、{@link NonReentrantLock}、
+ * {@link ReentrantLock}（公平和非公平）的对比。
+ * <p>
+ * n 个线程争抢一把锁，临界区递增一个共享计数并忙等 section 纳秒，临界区外忙等同样的时长，每个线程执行固定的时间。
+ * 输出总吞吐，以及最慢的线程相对平均值的比例（越接近 100% 越公平）。
+ * 线程数超过 CPU 数时可以看到严格 FIFO 的锁（FIFOMutex、公平 ReentrantLock、MCS、CLH）把锁交给没在运行的线程的代价，
+ * 以及 TimePublishedLock 越过这些线程的效果。
+ * 参数为 n 的列表，不给时跑 1 2 4 8 16。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class QueueLockBenchmark {
+    private static final long[] SECTIONS = {0, 1_000};
+    private static final long MILLIS = 1000;
+    private static final int ROUNDS = 3;
+
+    private static long shared;
+
+    interface Mutex {
+        void lock();
+
+        void unlock();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {1, 2, 4, 8, 16};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (long section : SECTIONS) {
+                for (int n : threads) {
+                    run("FIFOMutex", n, section, () -> {
+                        FIFOMutex m = new FIFOMutex();
+                        return mutex(m::lock, m::unlock);
+                    });
+                    run("NonReentrantLock", n, section, () -> {
+                        NonReentrantLock l = new NonReentrantLock();
+                        return mutex(l::lock, l::unlock);
+                    });
+                    run("ReentrantLock(unfair)", n, section, () -> {
+                        ReentrantLock l = new ReentrantLock(false);
+                        return mutex(l::lock, l::unlock);
+                    });
+                    run("ReentrantLock(fair)", n, section, () -> {
+                        ReentrantLock l = new ReentrantLock(true);
+                        return mutex(l::lock, l::unlock);
+                    });
+                    run("McsLock", n, section, () -> {
+                        McsLock l = new McsLock();
+                        return mutex(l::lock, l::unlock);
+                    });
+                    run("ClhLock", n, section, () -> {
+                        ClhLock l = new ClhLock();
+                        return mutex(l::lock, l::unlock);
+                    });
+                    run("TimePublishedLock", n, section, () -> {
+                        TimePublishedLock l = new TimePublishedLock();
+                        return mutex(l::lock, l::unlock);
+                    });
+                }
+            }
+        }
+    }
+
+    private static Mutex mutex(Runnable lock, Runnable unlock) {
+        return new Mutex() {
+            @Override
+            public void lock() {
+                lock.run();
+            }
+
+            @Override
+            public void unlock() {
+                unlock.run();
+            }
+        };
+    }
+
+    private static void run(String name, int n, long section, Supplier<Mutex> factory)
+            throws InterruptedException {
+        Mutex mutex = factory.get();
+        long[] counts = new long[n];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(n);
+        long[] end = new long[1];
+        for (int t = 0; t < n; t++) {
+            int id = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long ops = 0;
+                while (System.nanoTime() - end[0] < 0) {
+                    mutex.lock();
+                    try {
+                        shared++;
+                        busy(section);
+                    } finally {
+                        mutex.unlock();
+                    }
+                    busy(section);
+                    ops++;
+                }
+                counts[id] = ops;
+                done.countDown();
+            }).start();
+        }
+        end[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        start.countDown();
+        done.await();
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        for (long c : counts) {
+            total += c;
+            min = Math.min(min, c);
+        }
+        System.out.printf("%-22s section=%-5d threads=%-3d %,12.0f ops/s  slowest thread %5.1f%% of mean%n",
+                name, section, n, total * 1000.0 / MILLIS, 100.0 * min * n / total);
+    }
+
+    private static void busy(long nanos) {
+        if (nanos == 0)
+            return;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() - end < 0)
+            ;
+    }
+}
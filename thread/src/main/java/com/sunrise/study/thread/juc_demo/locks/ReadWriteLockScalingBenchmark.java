@@ -0,0 +1,98 @@
+package com.sunrise.study.thread.juc_demo.locks;
+
+import com.sunrise.study.thread.sourcecode.Lock;
+import com.sunrise.study.thread.sourcecode.ReentrantReadWriteLock;
+import com.sunrise.study.thread.sourcecode.locks.BiasedReadWriteLock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读多写少时 {@link BiasedReadWriteLock} 与 {@link ReentrantReadWriteLock} 的吞吐随线程数的变化。
+ * <p>
+ * n 个线程，每次操作以 writePermille/1000 的概率获取写锁，否则获取读锁，临界区读（写）一个小数组。
+ * 写比例取 0、0.1%、1%、10%。ReentrantReadWriteLock 的读锁每次都 CAS 同一个 state，吞吐在几个核之后就不再增长；
+ * BiasedReadWriteLock 偏向读时读线程只改自己的计数器，吞吐应随核数线性增长，写比例变高后退化为 ReentrantReadWriteLock。
+ * 参数为 n 的列表，不给时跑 1 2 4 8 16 32 64，线程数超过 CPU 数时看不出扩展性。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ReadWriteLockScalingBenchmark {
+    private static final int[] WRITE_PERMILLE = {0, 1, 10, 100};
+    private static final long MILLIS = 1000;
+    private static final int ROUNDS = 3;
+
+    private static final long[] data = new long[8];
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {1, 2, 4, 8, 16, 32, 64};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int permille : WRITE_PERMILLE) {
+                for (int n : threads) {
+                    ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+                    run("ReentrantReadWriteLock", n, permille, rw.readLock(), rw.writeLock());
+                    BiasedReadWriteLock biased = new BiasedReadWriteLock();
+                    run("BiasedReadWriteLock", n, permille, biased.readLock(), biased.writeLock());
+                }
+            }
+        }
+    }
+
+    private static void run(String name, int n, int writePermille, Lock read, Lock write)
+            throws InterruptedException {
+        long[] counts = new long[n];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(n);
+        long[] end = new long[1];
+        for (int t = 0; t < n; t++) {
+            int id = t;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long ops = 0;
+                long sink = 0;
+                while (System.nanoTime() - end[0] < 0) {
+                    if (writePermille > 0 && random.nextInt(1000) < writePermille) {
+                        write.lock();
+                        try {
+                            for (int i = 0; i < data.length; i++)
+                                data[i]++;
+                        } finally {
+                            write.unlock();
+                        }
+                    } else {
+                        read.lock();
+                        try {
+                            for (long d : data)
+                                sink += d;
+                        } finally {
+                            read.unlock();
+                        }
+                    }
+                    ops++;
+                }
+                counts[id] = ops + (sink == 42 ? 1 : 0);
+                done.countDown();
+            }).start();
+        }
+        end[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MILLIS);
+        start.countDown();
+        done.await();
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        System.out.printf("%-24s writes=%4.1f%% threads=%-3d %,14.0f ops/s%n",
+                name, writePermille / 10.0, n, total * 1000.0 / MILLIS);
+    }
+}
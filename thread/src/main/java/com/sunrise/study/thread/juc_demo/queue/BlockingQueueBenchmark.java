@@ -0,0 +1,78 @@
+package com.sunrise.study.thread.juc_demo.queue;
+
+import com.sunrise.study.thread.sourcecode.MpmcArrayBlockingQueue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 有界阻塞队列的吞吐对比：ArrayBlockingQueue、LinkedBlockingQueue 和 {@link MpmcArrayBlockingQueue}。
+ * <p>
+ * n 个生产者 put、n 个消费者 take，n 取 1 到 64，容量 1024，每轮共传递 2M 个元素，输出每秒传递的元素数。
+ * 参数为 n 的列表，不给时跑 1 2 4 8 16 32 64。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class BlockingQueueBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final int ELEMENTS = 2_000_000;
+    private static final int ROUNDS = 3;
+    private static final Integer ELEMENT = 42;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {1, 2, 4, 8, 16, 32, 64};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int n : threads) {
+                run("ArrayBlockingQueue", n, () -> new ArrayBlockingQueue<>(CAPACITY));
+                run("LinkedBlockingQueue", n, () -> new LinkedBlockingQueue<>(CAPACITY));
+                run("MpmcArrayBlockingQueue", n, () -> new MpmcArrayBlockingQueue<>(CAPACITY));
+            }
+        }
+    }
+
+    private static void run(String name, int n, Supplier<BlockingQueue<Integer>> factory)
+            throws InterruptedException {
+        BlockingQueue<Integer> queue = factory.get();
+        int perThread = ELEMENTS / n;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2 * n);
+        for (int t = 0; t < n; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++)
+                        queue.put(ELEMENT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++)
+                        queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%-24s producers=consumers=%-3d %,6d ms %,14.0f elements/s%n", name, n,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), (double) perThread * n * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,81 @@
+package com.sunrise.study.thread.juc_demo.queue;
+
+import com.sunrise.study.thread.sourcecode.ArrayBlockingQueue;
+import com.sunrise.study.thread.sourcecode.BulkBlockingQueue;
+import com.sunrise.study.thread.sourcecode.LinkedBlockingQueue;
+import com.sunrise.study.thread.sourcecode.MpmcArrayBlockingQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link BulkBlockingQueue} 批量操作的吞吐：生产者每次 putAll 一批，消费者每次限时 drainTo 最多一批，
+ * 批大小从 1 到 1024，对比三种队列。
+ * <p>
+ * 2 个生产者、2 个消费者，容量 2048，每轮共传递 4M 个元素。参数为生产者（消费者）个数。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class BulkBlockingQueueBenchmark {
+    private static final int CAPACITY = 2048;
+    private static final int ELEMENTS = 4_000_000;
+    private static final int ROUNDS = 3;
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256, 1024};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int batch : BATCH_SIZES) {
+                run("ArrayBlockingQueue", threads, batch, () -> new ArrayBlockingQueue<>(CAPACITY));
+                run("LinkedBlockingQueue", threads, batch, () -> new LinkedBlockingQueue<>(CAPACITY));
+                run("MpmcArrayBlockingQueue", threads, batch, () -> new MpmcArrayBlockingQueue<>(CAPACITY));
+            }
+        }
+    }
+
+    private static void run(String name, int threads, int batch, Supplier<BulkBlockingQueue<Integer>> factory)
+            throws InterruptedException {
+        BulkBlockingQueue<Integer> queue = factory.get();
+        int batches = ELEMENTS / threads / batch;
+        long perThread = (long) batches * batch;
+        List<Integer> elements = Collections.nCopies(batch, 42);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2 * threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < batches; i++)
+                        queue.putAll(elements);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                List<Integer> buffer = new ArrayList<>(batch);
+                try {
+                    start.await();
+                    for (long n = 0; n < perThread; ) {
+                        buffer.clear();
+                        n += queue.drainTo(buffer, (int) Math.min(batch, perThread - n), 1, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%-24s batch=%-5d %,6d ms %,14.0f elements/s%n", name, batch,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), (double) perThread * threads * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,143 @@
+package com.sunrise.study.thread.juc_demo.queue;
+
+import com.sunrise.study.thread.sourcecode.ConcurrentLinkedQueue;
+import com.sunrise.study.thread.sourcecode.LinkedBlockingQueue;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 伪共享对吞吐的影响：填充后的队列和 java.util.concurrent 中的原版对比。
+ * <ol>
+ *     <li>两个线程各自递增一个 volatile long，两个计数器相邻或者隔开 128 字节，最直接地体现伪共享的代价；</li>
+ *     <li>一个生产者、一个消费者，ConcurrentLinkedQueue 上 offer/poll，消费者取不到时自旋；</li>
+ *     <li>一个生产者、一个消费者，LinkedBlockingQueue 上 put/take，容量 1024。</li>
+ * </ol>
+ * 生产者和消费者要在不同的核上才会争抢缓存行，单核机器上看不出差别，建议用 taskset 把进程绑到两个物理核上运行。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class FalseSharingBenchmark {
+    private static final int ELEMENTS = 10_000_000;
+    private static final long INCREMENTS = 100_000_000L;
+    private static final int ROUNDS = 3;
+    private static final Integer ELEMENT = 42;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            counters("adjacent counters", new Counters());
+            counters("padded counters", new PaddedCounters());
+            spsc("ConcurrentLinkedQueue (padded)", ConcurrentLinkedQueue::new);
+            spsc("ConcurrentLinkedQueue (juc)", java.util.concurrent.ConcurrentLinkedQueue::new);
+            spsc("LinkedBlockingQueue (padded)", () -> new LinkedBlockingQueue<>(1024));
+            spsc("LinkedBlockingQueue (juc)", () -> new java.util.concurrent.LinkedBlockingQueue<>(1024));
+        }
+    }
+
+    private static void counters(String name, Counters counters) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread a = new Thread(() -> {
+            await(start);
+            for (long i = 0; i < INCREMENTS; i++)
+                counters.a++;
+        });
+        Thread b = new Thread(() -> {
+            await(start);
+            for (long i = 0; i < INCREMENTS; i++)
+                counters.incrementB();
+        });
+        a.start();
+        b.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        a.join();
+        b.join();
+        print(name, System.nanoTime() - begin, 2 * INCREMENTS, "increments/s");
+    }
+
+    private static void spsc(String name, Supplier<Queue<Integer>> factory) throws InterruptedException {
+        Queue<Integer> queue = factory.get();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            await(start);
+            try {
+                for (int i = 0; i < ELEMENTS; i++) {
+                    if (queue instanceof BlockingQueue)
+                        ((BlockingQueue<Integer>) queue).put(ELEMENT);
+                    else
+                        queue.offer(ELEMENT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            await(start);
+            try {
+                for (int i = 0; i < ELEMENTS; i++) {
+                    if (queue instanceof BlockingQueue)
+                        ((BlockingQueue<Integer>) queue).take();
+                    else {
+                        while (queue.poll() == null)
+                            Thread.yield();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        consumer.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        producer.join();
+        consumer.join();
+        print(name, System.nanoTime() - begin, ELEMENTS, "elements/s");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void print(String name, long elapsed, long operations, String unit) {
+        System.out.printf("%-32s %,6d ms %,16.0f %s%n", name, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                operations * 1e9 / elapsed, unit);
+    }
+
+    private static class Counters {
+        volatile long a;
+        volatile long b;
+
+        void incrementB() {
+            b++;
+        }
+    }
+
+    /**
+     * 子类的字段排在父类字段之后，b 与 a 之间隔着 128 字节
+     */
+    private static final class PaddedCounters extends Counters {
+        byte p000, p001, p002, p003, p004, p005, p006, p007, p008, p009, p010, p011, p012, p013, p014, p015;
+        byte p016, p017, p018, p019, p020, p021, p022, p023, p024, p025, p026, p027, p028, p029, p030, p031;
+        byte p032, p033, p034, p035, p036, p037, p038, p039, p040, p041, p042, p043, p044, p045, p046, p047;
+        byte p048, p049, p050, p051, p052, p053, p054, p055, p056, p057, p058, p059, p060, p061, p062, p063;
+        byte p064, p065, p066, p067, p068, p069, p070, p071, p072, p073, p074, p075, p076, p077, p078, p079;
+        byte p080, p081, p082, p083, p084, p085, p086, p087, p088, p089, p090, p091, p092, p093, p094, p095;
+        byte p096, p097, p098, p099, p100, p101, p102, p103, p104, p105, p106, p107, p108, p109, p110, p111;
+        byte p112, p113, p114, p115, p116, p117, p118, p119, p120, p121, p122, p123, p124, p125, p126, p127;
+        volatile long paddedB;
+
+        @Override
+        void incrementB() {
+            paddedB++;
+        }
+    }
+}
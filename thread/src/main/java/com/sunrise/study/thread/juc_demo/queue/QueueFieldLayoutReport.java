@@ -0,0 +1,99 @@
+package com.sunrise.study.thread.juc_demo.queue;
+
+import com.sunrise.study.thread.sourcecode.ArrayBlockingQueue;
+import com.sunrise.study.thread.sourcecode.ConcurrentLinkedQueue;
+import com.sunrise.study.thread.sourcecode.LinkedBlockingQueue;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 打印队列实例字段的偏移量，检查热点字段是否落在不同的缓存行上。
+ * <p>
+ * 和 JOL 的 ClassLayout 一样用 Unsafe.objectFieldOffset 取偏移量（项目不依赖 JOL）。连续的填充字段合并成一行输出，
+ * 最后给出每对热点字段的距离，不小于 128 字节（相邻两行，应对相邻行预取）时记为 ok。
+ * LinkedBlockingQueue 的 count 是单独的对象，另外打印它的布局，value 后面应该跟着填充。
+ * 对比 java.util.concurrent 中未填充的原版。
+ * <p>
+ * 偏移量与 JVM 版本、压缩指针等参数有关，可以加上 -XX:-UseCompressedOops 等参数再跑一次。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class QueueFieldLayoutReport {
+    private static final int SEPARATION = 128;
+    private static final Unsafe UNSAFE;
+
+    static {
+        try {
+            Field f = Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (Unsafe) f.get(null);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        report(ConcurrentLinkedQueue.class, "head", "tail");
+        report(java.util.concurrent.ConcurrentLinkedQueue.class, "head", "tail");
+        report(LinkedBlockingQueue.class, "head", "last");
+        report(Class.forName(LinkedBlockingQueue.class.getName() + "$PaddedAtomicInteger"));
+        report(java.util.concurrent.LinkedBlockingQueue.class, "head", "last");
+        report(ArrayBlockingQueue.class, "takeIndex", "putIndex", "count");
+        report(java.util.concurrent.ArrayBlockingQueue.class, "takeIndex", "putIndex", "count");
+    }
+
+    private static void report(Class<?> type, String... hot) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers()))
+                    fields.add(f);
+            }
+        }
+        fields.sort(Comparator.comparingLong(UNSAFE::objectFieldOffset));
+
+        System.out.println("== " + type.getName());
+        for (int i = 0; i < fields.size(); ) {
+            Field f = fields.get(i);
+            long offset = UNSAFE.objectFieldOffset(f);
+            int j = i + 1;
+            if (isPadding(f)) {
+                while (j < fields.size() && isPadding(fields.get(j)))
+                    j++;
+            }
+            if (j - i > 1)
+                System.out.printf("%6d  %-48s (%d padding fields)%n", offset,
+                        f.getDeclaringClass().getSimpleName() + ".<padding>", j - i);
+            else
+                System.out.printf("%6d  %-48s %s%n", offset,
+                        f.getDeclaringClass().getSimpleName() + "." + f.getName(), f.getType().getSimpleName());
+            i = j;
+        }
+        for (int i = 0; i < hot.length; i++) {
+            for (int j = i + 1; j < hot.length; j++) {
+                long distance = Math.abs(offset(fields, hot[i]) - offset(fields, hot[j]));
+                System.out.printf("  %s <-> %s: %d bytes %s%n", hot[i], hot[j], distance,
+                        distance >= SEPARATION ? "ok" : "SHARED");
+            }
+        }
+    }
+
+    private static boolean isPadding(Field f) {
+        String name = f.getName();
+        return name.length() == 4 && Character.isLowerCase(name.charAt(0)) && Character.isDigit(name.charAt(1))
+                && Character.isDigit(name.charAt(2)) && Character.isDigit(name.charAt(3));
+    }
+
+    private static long offset(List<Field> fields, String name) {
+        for (Field f : fields) {
+            if (f.getName().equals(name))
+                return UNSAFE.objectFieldOffset(f);
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -0,0 +1,77 @@
+package com.sunrise.study.thread.juc_demo.queue;
+
+import com.sunrise.study.thread.sourcecode.SynchronousQueue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link SynchronousQueue} 几种竞争处理方式的交接吞吐：原始双栈（双队列）、加消除数组、flat combining。
+ * <p>
+ * n 个生产者 put、n 个消费者 take，n 取 1 到 64，每轮共交接 1M 个元素，输出每秒交接的元素数。
+ * 参数为 n 的列表，不给时跑 1 2 4 8 16 32 64。消除数组只在多核机器上启用，单核机器上 ELIMINATION 与 PLAIN 相同。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class SynchronousQueueBenchmark {
+    private static final int ELEMENTS = 1_000_000;
+    private static final int ROUNDS = 3;
+    private static final Integer ELEMENT = 42;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threads = {1, 2, 4, 8, 16, 32, 64};
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                threads[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int n : threads) {
+                run("stack", n, () -> new SynchronousQueue<>(false, SynchronousQueue.PLAIN));
+                run("stack+elimination", n, () -> new SynchronousQueue<>(false, SynchronousQueue.ELIMINATION));
+                run("combining", n, () -> new SynchronousQueue<>(false, SynchronousQueue.COMBINING));
+                run("queue", n, () -> new SynchronousQueue<>(true, SynchronousQueue.PLAIN));
+                run("queue+elimination", n, () -> new SynchronousQueue<>(true, SynchronousQueue.ELIMINATION));
+            }
+        }
+    }
+
+    private static void run(String name, int n, Supplier<BlockingQueue<Integer>> factory)
+            throws InterruptedException {
+        BlockingQueue<Integer> queue = factory.get();
+        int perThread = ELEMENTS / n;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2 * n);
+        for (int t = 0; t < n; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++)
+                        queue.put(ELEMENT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++)
+                        queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%-20s producers=consumers=%-3d %,6d ms %,12.0f elements/s%n", name, n,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), (double) perThread * n * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,98 @@
+package com.sunrise.study.thread.juc_demo.threadlocal;
+
+import com.sunrise.study.thread.sourcecode.FastThreadLocal;
+import com.sunrise.study.thread.sourcecode.FastThreadLocalThread;
+
+/**
+ * {@link FastThreadLocal} 与 ThreadLocal 的 get 耗时对比。
+ * <p>
+ * 每种情况在一个新线程中反复读 8 个变量，输出每次 get 的平均纳秒数：
+ * <ul>
+ *     <li>ThreadLocal：线程里另外设置了 n 个 ThreadLocal，其中一半随后丢弃并 GC，留下过期的 Entry，
+ *     模拟长期运行的池线程，get 时可能要探测多个位置；</li>
+ *     <li>FastThreadLocal 运行在 {@link FastThreadLocalThread} 上；</li>
+ *     <li>FastThreadLocal 运行在普通线程上，多一次 ThreadLocalMap 查找。</li>
+ * </ul>
+ * 参数为 n 的列表，不给时跑 0 64 1024。sourcecode 下的 ThreadLocal 是注释用的副本（getMap 返回 null），
+ * 不能实际使用，这里对比的是 JDK 的 java.lang.ThreadLocal。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class FastThreadLocalBenchmark {
+    private static final int VARIABLES = 8;
+    private static final int ITERATIONS = 20_000_000;
+    private static final int ROUNDS = 3;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ThreadLocal<Integer>[] THREAD_LOCALS = new ThreadLocal[VARIABLES];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final FastThreadLocal<Integer>[] FAST_THREAD_LOCALS = new FastThreadLocal[VARIABLES];
+
+    static {
+        for (int i = 0; i < VARIABLES; i++) {
+            int v = i;
+            THREAD_LOCALS[i] = ThreadLocal.withInitial(() -> v);
+            FAST_THREAD_LOCALS[i] = FastThreadLocal.withInitial(() -> v);
+        }
+    }
+
+    private static volatile long sink;
+    /** 读循环的耗时，不含线程启动和准备工作 */
+    private static volatile long elapsed;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] others = {0, 64, 1024};
+        if (args.length > 0) {
+            others = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                others[i] = Integer.parseInt(args[i]);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.println("== round " + round);
+            for (int n : others) {
+                int fill = n;
+                run("ThreadLocal", n, new Thread(() -> threadLocal(fill)));
+            }
+            run("FastThreadLocal", 0, new FastThreadLocalThread(FastThreadLocalBenchmark::fastThreadLocal));
+            run("FastThreadLocal (fallback)", 0, new Thread(FastThreadLocalBenchmark::fastThreadLocal));
+        }
+    }
+
+    private static void run(String name, int others, Thread thread) throws InterruptedException {
+        thread.start();
+        thread.join();
+        System.out.printf("%-28s others=%-5d %6.2f ns/get%n", name, others,
+                (double) elapsed / ((long) ITERATIONS * VARIABLES));
+    }
+
+    private static void threadLocal(int others) {
+        ThreadLocal<?>[] extra = new ThreadLocal<?>[others];
+        for (int i = 0; i < others; i++) {
+            ThreadLocal<Object> tl = new ThreadLocal<>();
+            tl.set(i);
+            extra[i] = tl;
+        }
+        for (int i = 0; i < others; i += 2)
+            extra[i] = null;
+        System.gc();
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (ThreadLocal<Integer> tl : THREAD_LOCALS)
+                sum += tl.get();
+        }
+        elapsed = System.nanoTime() - start;
+        sink = sum + extra.length;
+    }
+
+    private static void fastThreadLocal() {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (FastThreadLocal<Integer> tl : FAST_THREAD_LOCALS)
+                sum += tl.get();
+        }
+        elapsed = System.nanoTime() - start;
+        sink = sum;
+    }
+}
@@ -0,0 +1,323 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BatchingExecutor} 和 {@link Batcher} 共用的攒批逻辑：按 key 把提交的元素攒成批，
+ * 整批作为一个任务交给下层执行器，由 {@link #runBatch} 处理。
+ * <p>
+ * 每个 key 一个缓冲区，状态转换如下：
+ * <pre>
+ *   IDLE --第一个元素--> SCHEDULED --满 maxBatchSize 或等满 maxDelay--> QUEUED --下层线程开始执行--> RUNNING
+ *   RUNNING --执行完，缓冲区为空--> 移除缓冲区
+ *   RUNNING --执行完，还有元素--> QUEUED（已满或已超时）或 SCHEDULED（等剩余的延迟）
+ * </pre>
+ * maxDelay 为 0 时没有 SCHEDULED 状态，第一个元素就提交批任务，批任务真正开始执行前到达的元素都会被带上，
+ * 也就是下层越忙批越大（natural batching），空闲时不增加延迟。
+ * 同一个 key 同时最多只有一个批在排队或执行，所以同一个 key 的元素按提交顺序串行处理。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+abstract class AbstractBatcher<E> implements AutoCloseable {
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int QUEUED = 2;
+    private static final int RUNNING = 3;
+
+    /**
+     * key 为 null 时使用的 key
+     */
+    private static final Object DEFAULT_KEY = new Object();
+
+    private final Executor delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ConcurrentHashMap<Object, Buffer> buffers = new ConcurrentHashMap<>();
+    /**
+     * 等待 maxDelay 的定时器，maxDelay 为 0 时为 null
+     */
+    private final ScheduledThreadPoolExecutor timer;
+    private volatile boolean closed;
+
+    AbstractBatcher(Executor delegate, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (delegate == null || unit == null)
+            throw new NullPointerException();
+        if (maxBatchSize < 1 || maxDelay < 0)
+            throw new IllegalArgumentException();
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        if (maxDelayNanos > 0) {
+            timer = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "batcher-timer");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+        } else {
+            timer = null;
+        }
+    }
+
+    /**
+     * 处理一批元素，在下层执行器的线程中调用
+     */
+    abstract void runBatch(Object key, List<E> batch);
+
+    /**
+     * 下层执行器拒绝了批任务，这些元素不会再被处理
+     */
+    abstract void rejected(List<E> batch, RejectedExecutionException e);
+
+    /**
+     * 一个 key 的缓冲区，所有字段由 this 保护
+     */
+    private final class Buffer implements Runnable {
+        final Object key;
+        /**
+         * 正在攒的批，满 maxBatchSize 后移入 full
+         */
+        ArrayList<E> items = new ArrayList<>();
+        /**
+         * 已经攒满、等待执行的批。下层忙不过来时积压的元素按批存放，取出一批是 O(1)
+         */
+        final ArrayDeque<ArrayList<E>> full = new ArrayDeque<>();
+        int state = IDLE;
+        /**
+         * 当前这批第一个元素的加入时间
+         */
+        long firstNanos;
+        /**
+         * 每次进入 SCHEDULED 加一，用来识别过期的定时任务
+         */
+        int window;
+        /**
+         * 已从 buffers 中移除，不能再加入元素
+         */
+        boolean removed;
+
+        Buffer(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * 批任务
+         */
+        public void run() {
+            List<E> batch;
+            synchronized (this) {
+                state = RUNNING;
+                batch = take();
+            }
+            try {
+                runBatch(key, batch);
+            } finally {
+                afterRun();
+            }
+        }
+
+        private List<E> take() {
+            ArrayList<E> batch = full.poll();
+            if (batch == null) {
+                batch = items;
+                items = new ArrayList<>();
+            }
+            return batch;
+        }
+
+        boolean isEmpty() {
+            return items.isEmpty() && full.isEmpty();
+        }
+
+        int size() {
+            return full.size() * maxBatchSize + items.size();
+        }
+
+        /**
+         * 加入一个元素，返回加入后是否有攒满的批
+         */
+        boolean append(E e) {
+            ArrayList<E> a = items;
+            a.add(e);
+            if (a.size() >= maxBatchSize) {
+                full.add(a);
+                items = new ArrayList<>();
+            }
+            return !full.isEmpty();
+        }
+
+        /**
+         * 取出所有元素
+         */
+        List<E> drain() {
+            ArrayList<E> all = new ArrayList<>(size());
+            for (ArrayList<E> a; (a = full.poll()) != null; )
+                all.addAll(a);
+            all.addAll(items);
+            items = new ArrayList<>();
+            return all;
+        }
+
+        private void afterRun() {
+            boolean submit = false;
+            synchronized (this) {
+                if (isEmpty()) {
+                    state = IDLE;
+                    removed = true;
+                    buffers.remove(key, this);
+                } else if (maxDelayNanos == 0 || closed || !full.isEmpty()
+                        || System.nanoTime() - firstNanos >= maxDelayNanos) {
+                    state = QUEUED;
+                    submit = true;
+                } else if (!schedule(maxDelayNanos - (System.nanoTime() - firstNanos))) {
+                    state = QUEUED;
+                    submit = true;
+                }
+            }
+            // 重新提交而不是在本线程继续循环，让其他 key 的批和其他任务也有机会执行
+            if (submit)
+                dispatchQuietly(this);
+        }
+
+        /**
+         * 进入 SCHEDULED，调用时持有 this 的锁。定时器已经关闭时返回 false，由调用者立即提交
+         */
+        boolean schedule(long delayNanos) {
+            int w = ++window;
+            try {
+                timer.schedule(() -> expire(w), delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            state = SCHEDULED;
+            return true;
+        }
+
+        /**
+         * 定时器到期
+         */
+        void expire(int w) {
+            synchronized (this) {
+                if (state != SCHEDULED || window != w)
+                    return;
+                state = QUEUED;
+            }
+            dispatchQuietly(this);
+        }
+    }
+
+    /**
+     * 加入一个元素
+     *
+     * @throws RejectedExecutionException 已经关闭，或者下层执行器拒绝了批任务
+     */
+    final void add(Object key, E e) {
+        if (closed)
+            throw new RejectedExecutionException("batcher is closed");
+        if (key == null)
+            key = DEFAULT_KEY;
+        for (;;) {
+            Buffer b = buffers.get(key);
+            if (b == null)
+                b = buffers.computeIfAbsent(key, Buffer::new);
+            boolean submit = false;
+            synchronized (b) {
+                if (b.removed)
+                    continue;
+                if (timer != null && b.isEmpty())
+                    b.firstNanos = System.nanoTime();
+                boolean hasFull = b.append(e);
+                if (b.state == IDLE) {
+                    if (timer == null || hasFull || !b.schedule(maxDelayNanos)) {
+                        b.state = QUEUED;
+                        submit = true;
+                    }
+                } else if (b.state == SCHEDULED && hasFull) {
+                    b.state = QUEUED;
+                    submit = true;
+                }
+            }
+            if (submit)
+                dispatch(b);
+            return;
+        }
+    }
+
+    /**
+     * 把批任务交给下层执行器，被拒绝时缓冲区里的元素交给 {@link #rejected} 后抛出异常
+     */
+    private void dispatch(Buffer b) {
+        try {
+            delegate.execute(b);
+        } catch (RejectedExecutionException e) {
+            List<E> dropped;
+            synchronized (b) {
+                dropped = b.drain();
+                b.state = IDLE;
+                b.removed = true;
+                buffers.remove(b.key, b);
+            }
+            rejected(dropped, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 在下层线程和定时器线程中提交，被拒绝的元素已经由 rejected 处理，不再向上抛出
+     */
+    private void dispatchQuietly(Buffer b) {
+        try {
+            dispatch(b);
+        } catch (RejectedExecutionException ignore) {
+        }
+    }
+
+    /**
+     * 立即提交所有等待中的批，不再等 maxDelay
+     */
+    public void flush() {
+        for (Buffer b : buffers.values()) {
+            synchronized (b) {
+                if (b.state != SCHEDULED)
+                    continue;
+                b.state = QUEUED;
+            }
+            dispatchQuietly(b);
+        }
+    }
+
+    /**
+     * 不再接受新的元素，已经加入的元素立即提交，然后停止定时器。不关闭下层执行器
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+        if (timer != null)
+            timer.shutdown();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 还没有开始处理的元素数
+     */
+    public int pendingCount() {
+        int n = 0;
+        for (Buffer b : buffers.values()) {
+            synchronized (b) {
+                n += b.size();
+            }
+        }
+        return n;
+    }
+}
@@ -17,6 +17,11 @@ public abstract class AbstractOwnableSynchronizer {
     // 设置独占线程
     protected final void setExclusiveOwnerThread(Thread thread) {
         exclusiveOwnerThread = thread;
+        exclusiveOwnerChanged(thread);
+    }
+
+    // 独占线程变化时的回调，AQS用它统计持有时长
+    void exclusiveOwnerChanged(Thread thread) {
     }
 
     // 获取独占线程
@@ -130,6 +130,22 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
      */
     private volatile int state;
 
+    /**
+     * 竞争统计，为null时不统计，见{@link #enableProfiling(String)}
+     */
+    private transient volatile ContentionProfile profile;
+
+    /**
+     * 独占模式下当前持有者获得锁的时间，只由持有者读写，0表示开启统计前就已持有
+     */
+    private transient long ownerSince;
+
+    /**
+     * 自适应自旋的预算，即入队前最多自旋几次，0表示不自旋，见{@link #setAdaptiveSpinning(boolean)}。
+     * 多个线程不加同步地读写，偶尔丢失一次调整不影响效果
+     */
+    private transient int spinBudget;
+
     /**
      * Returns the current value of synchronization state.
      * This operation has memory semantics of a {@code volatile} read.
@@ -524,6 +540,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
      * @return {@code true} if interrupted
      */
     private final boolean parkAndCheckInterrupt() {
+        recordPark();
         LockSupport.park(this);
         return Thread.interrupted();
     }
@@ -550,6 +567,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
     final boolean acquireQueued(final Node node, int arg) {
         // 失败标志
         boolean failed = true;
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             // 中断标志，记录线程是否在等待过程中被中断
             boolean interrupted = false;
@@ -592,6 +611,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
             // 上述循环过程中，如果因为未知的原因导致方法结束，则取消当前线程的竞争
             if (failed)
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, false, !failed);
         }
     }
 
@@ -606,6 +627,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         final Node node = addWaiter(Node.EXCLUSIVE);
         // 失败标志
         boolean failed = true;
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             // 死循环，确保线程能获取到锁资源
             for (;;) {
@@ -629,6 +652,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, false, !failed);
         }
     }
 
@@ -651,6 +676,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         // 把当前线程封装成Node对象，并加入到wait队列
         final Node node = addWaiter(Node.EXCLUSIVE);
         boolean failed = true;
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             // 死循环
             for (;;) {
@@ -668,8 +695,10 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
 
                 // 是否应该挂起等待，如果是则判断剩余等待时间是否大于自旋时间，大于则执行park
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                        nanosTimeout > spinForTimeoutThreshold)
+                        nanosTimeout > spinForTimeoutThreshold) {
+                    recordPark();
                     LockSupport.parkNanos(this, nanosTimeout);  // 挂起指定时间段
+                }
 
                 // 如果当前线程被其他线程中断，则直接抛出中断异常
                 if (Thread.interrupted())
@@ -679,6 +708,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
             if (failed)
                 // 如果在指定时间内没获取到资源或者线程被中断，则取消当前node
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, false, !failed);
         }
     }
 
@@ -693,6 +724,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
 
         /* 下面就是获取锁的过程 */
         boolean failed = true;  // 失败标志
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             boolean interrupted = false;    // 中断标志
             for (;;) {
@@ -724,6 +757,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, true, !failed);
         }
     }
 
@@ -737,6 +772,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         // 封装SHARED模式的节点，追加到AQS队列尾
         final Node node = addWaiter(Node.SHARED);
         boolean failed = true;
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             // 死循环
             for (;;) {
@@ -761,6 +798,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, true, !failed);
         }
     }
 
@@ -778,6 +817,8 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         final long deadline = System.nanoTime() + nanosTimeout;
         final Node node = addWaiter(Node.SHARED);
         boolean failed = true;
+        ContentionProfile profile = this.profile;
+        long enqueuedAt = (profile == null) ? 0L : profile.recordEnqueued();
         try {
             for (;;) {
                 final Node p = node.predecessor();
@@ -794,14 +835,18 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
                 if (nanosTimeout <= 0L)
                     return false;
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                        nanosTimeout > spinForTimeoutThreshold)
+                        nanosTimeout > spinForTimeoutThreshold) {
+                    recordPark();
                     LockSupport.parkNanos(this, nanosTimeout);
+                }
                 if (Thread.interrupted())
                     throw new InterruptedException();
             }
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (profile != null)
+                profile.recordDequeued(enqueuedAt, true, !failed);
         }
     }
 
@@ -972,6 +1017,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
           acquireQueued()方法自旋获取锁资源，若获取失败就挂起
         */
         if (!tryAcquire(arg) &&
+                !spinForAcquire(arg) &&
                 acquireQueued(addWaiter(Node.EXCLUSIVE), arg))
             // 若acquireQueued返回true，表明线程阻塞过程中曾被中断，所以这里要恢复线程的中断标志
             selfInterrupt();
@@ -999,7 +1045,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
             throw new InterruptedException();
 
         // 尝试获取锁资源
-        if (!tryAcquire(arg))
+        if (!tryAcquire(arg) && !spinForAcquire(arg))
             // 调用tryAcquire()失败时，就调用AQS的可中断方法获取锁资源
             doAcquireInterruptibly(arg);
     }
@@ -1031,6 +1077,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         // 调tryAcquire方法尝试获取锁资源，若成功则直接返回true
         // 若失败，则调用doAcquireNanos来获取锁资源，在指定时间内没有拿到资源则返回false。
         return tryAcquire(arg) ||
+                spinForAcquire(arg) ||
                 doAcquireNanos(arg, nanosTimeout);
     }
 
@@ -1072,7 +1119,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         先调用tryAcquireShared()方法尝试获取共享锁，如果该方法返回值不小于0，说明获取共享锁成功，当前方法结束
         tryAcquireShared()方法为抽象方法，具体由AQS的实现类去实现
         */
-        if (tryAcquireShared(arg) < 0)
+        if (tryAcquireShared(arg) < 0 && !spinForAcquireShared(arg))
            /*
            如果tryAcquireShared获取失败，再调doAcquireShared()方法
            该方法为AQS的方法，会把当前线程添加到wait队列
@@ -1100,7 +1147,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         if (Thread.interrupted())
             throw new InterruptedException();
         // 尝试获取共享锁，该方法由子类实现
-        if (tryAcquireShared(arg) < 0)
+        if (tryAcquireShared(arg) < 0 && !spinForAcquireShared(arg))
             // 如果获取失败，需要根据当前线程创建一个
             // mode为SHARE的Node放入队列中并循环获取
             doAcquireSharedInterruptibly(arg);
@@ -1127,6 +1174,7 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         if (Thread.interrupted())
             throw new InterruptedException();
         return tryAcquireShared(arg) >= 0 ||
+                spinForAcquireShared(arg) ||
                 doAcquireSharedNanos(arg, nanosTimeout);
     }
 
@@ -1151,6 +1199,145 @@ public class AbstractQueuedSynchronizer extends AbstractOwnableSynchronizer {
         return false;
     }
 
+    // Adaptive spinning
+
+    /** CPU个数，单核上自旋没有意义 */
+    static final int NCPUS = Runtime.getRuntime().availableProcessors();
+
+    /** 开启自适应自旋时的初始预算 */
+    static final int INITIAL_SPINS = 1 << 8;
+
+    /** 预算的下限，保持少量自旋，锁的持有时间变短后还能重新学到 */
+    static final int MIN_SPINS = 1 << 4;
+
+    /** 预算的上限，大约是几微秒，与一次park/unpark的开销相当 */
+    static final int MAX_SPINS = 1 << 12;
+
+    /**
+     * 开启或关闭自适应自旋（参考HotSpot对synchronized的自适应自旋）。
+     * <p>
+     * 默认tryAcquire失败后立即入队，前驱是head时再试一次就park。临界区只有几百纳秒时，
+     * park/unpark一个来回的开销远大于等待本身。开启后tryAcquire失败且队列为空时，先反复tryAcquire最多spinBudget次：
+     * 自旋中拿到锁说明持有者释放得快，预算加倍；没拿到则减半，然后照常入队park。
+     * 预算按锁学习，临界区长的锁很快退回到最少的自旋。队列不为空时不自旋，不与已经排队的线程抢锁；
+     * 单核机器上不自旋。
+     *
+     * @param on true开启
+     */
+    public final void setAdaptiveSpinning(boolean on) {
+        spinBudget = (on && NCPUS > 1) ? INITIAL_SPINS : 0;
+    }
+
+    /**
+     * 是否开启了自适应自旋，单核机器上总是false
+     */
+    public final boolean isAdaptiveSpinning() {
+        return spinBudget != 0;
+    }
+
+    /**
+     * tryAcquire失败后、入队前的自旋
+     *
+     * @return true表示自旋中获得了锁
+     */
+    private boolean spinForAcquire(int arg) {
+        int budget = spinBudget;
+        if (budget == 0 || head != tail)
+            return false;
+        for (int i = 0; i < budget; ++i) {
+            if (tryAcquire(arg))
+                return spinSucceeded(budget);
+        }
+        return spinFailed(budget);
+    }
+
+    /**
+     * tryAcquireShared失败后、入队前的自旋
+     *
+     * @return true表示自旋中获得了锁
+     */
+    private boolean spinForAcquireShared(int arg) {
+        int budget = spinBudget;
+        if (budget == 0 || head != tail)
+            return false;
+        for (int i = 0; i < budget; ++i) {
+            if (tryAcquireShared(arg) >= 0)
+                return spinSucceeded(budget);
+        }
+        return spinFailed(budget);
+    }
+
+    private boolean spinSucceeded(int budget) {
+        if (budget < MAX_SPINS && spinBudget != 0)
+            spinBudget = budget << 1;
+        ContentionProfile p = profile;
+        if (p != null)
+            p.recordSpin(true);
+        return true;
+    }
+
+    private boolean spinFailed(int budget) {
+        if (budget > MIN_SPINS && spinBudget != 0)
+            spinBudget = budget >>> 1;
+        ContentionProfile p = profile;
+        if (p != null)
+            p.recordSpin(false);
+        return false;
+    }
+
+    // Contention profiling
+
+    /**
+     * 开启竞争统计，统计数据登记在名字对应的{@link ContentionProfile}中，同名的同步器合并统计。
+     * 未开启时各个记录点只多一次volatile读。
+     *
+     * @param name 统计的名字
+     * @return the profile
+     */
+    public final ContentionProfile enableProfiling(String name) {
+        ContentionProfile p = ContentionProfile.forName(name);
+        profile = p;
+        return p;
+    }
+
+    /**
+     * 关闭竞争统计，已记录的数据仍保留在{@link ContentionProfile}中
+     */
+    public final void disableProfiling() {
+        profile = null;
+    }
+
+    /**
+     * 返回竞争统计，未开启时返回null
+     */
+    public final ContentionProfile getProfile() {
+        return profile;
+    }
+
+    private void recordPark() {
+        ContentionProfile p = profile;
+        if (p != null)
+            p.recordPark();
+    }
+
+    /**
+     * 独占持有者变化时由{@link #setExclusiveOwnerThread}调用：设为当前线程时开始计时，设为null时记录持有时长。
+     * 重入不会再次调用setExclusiveOwnerThread，所以只记录最外层的持有
+     */
+    @Override
+    final void exclusiveOwnerChanged(Thread thread) {
+        ContentionProfile p = profile;
+        if (p == null) {
+            if (ownerSince != 0L)
+                ownerSince = 0L;
+        } else if (thread != null) {
+            ownerSince = System.nanoTime();
+        } else if (ownerSince != 0L) {
+            p.recordHold(System.nanoTime() - ownerSince);
+            ownerSince = 0L;
+        }
+    }
+
     // Queue inspection methods
 
     /**
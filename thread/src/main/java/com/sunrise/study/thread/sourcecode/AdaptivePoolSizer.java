@@ -0,0 +1,267 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据排队时长自动调整 {@link ThreadPoolExecutor} 线程数的控制器。
+ * <p>
+ * ThreadPoolExecutor 只有在 workQueue.offer 失败时才会超过 corePoolSize 创建线程，
+ * 使用无界的 LinkedBlockingQueue 时线程数永远停在 corePoolSize，任务只会越排越长。
+ * 控制器启动时开启线程池的运行统计（{@link ThreadPoolExecutor#enableMetrics()}），后台线程每隔 samplePeriod
+ * 对比前后两次排队时长快照得到这段时间内的 p99，再加上完成任务数（吞吐），按下面的规则调整 corePoolSize（需要时一并调大 maximumPoolSize）：
+ * <ul>
+ *     <li>p99 连续 {@link #GROW_AFTER} 个周期高于目标：扩容，每次增加当前线程数的 1/4（至少 1 个）；</li>
+ *     <li>p99 连续 {@link #SHRINK_AFTER} 个周期低于目标的 {@link #LOW_WATERMARK}，且有空闲线程：缩容 1 个；</li>
+ *     <li>介于两者之间是死区，不做调整。扩容快、缩容慢，加上死区，避免线程数来回震荡。</li>
+ * </ul>
+ * 扩容之后还要检查效果，这一步借鉴了 .NET 线程池的 hill climbing：如果扩容后下一个周期的吞吐
+ * 没有提升 {@link #MIN_GAIN}，而 p99 仍然超标，说明瓶颈不在线程数（例如 CPU 已经打满，或者下游资源饱和），
+ * 此时撤销这次扩容，并在 {@link #HOLD_TICKS} 个周期内不再扩容。
+ * <p>
+ * 线程池关闭后控制线程自动退出。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class AdaptivePoolSizer implements AutoCloseable {
+
+    /**
+     * 连续多少个周期超标后扩容
+     */
+    static final int GROW_AFTER = 2;
+
+    /**
+     * 连续多少个周期低于下限后缩容
+     */
+    static final int SHRINK_AFTER = 5;
+
+    /**
+     * 缩容的下限，目标值的比例
+     */
+    static final double LOW_WATERMARK = 0.5;
+
+    /**
+     * 扩容后吞吐至少要提升的比例，否则撤销扩容
+     */
+    static final double MIN_GAIN = 0.05;
+
+    /**
+     * 撤销扩容后暂停扩容的周期数
+     */
+    static final int HOLD_TICKS = 10;
+
+    private final ThreadPoolExecutor executor;
+    private final long targetNanos;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long samplePeriodNanos;
+    /**
+     * 创建时的 maximumPoolSize，缩容时不低于这个值，保留有界队列下原有的临时线程
+     */
+    private final int baseMaximumPoolSize;
+
+    // 以下状态只由控制线程访问
+    private ThreadPoolMetrics metrics;
+    private LatencyHistogram.Snapshot lastQueueWait;
+    private long lastTickNanos;
+    private long lastCompleted;
+    private double lastThroughput;
+    private int lastGrowth;
+    private int highTicks;
+    private int lowTicks;
+    private int holdTicks;
+    private long grows;
+    private long shrinks;
+    private long reverts;
+
+    private volatile Snapshot last;
+    private volatile Thread controller;
+
+    /**
+     * 默认每 100 毫秒采样一次
+     *
+     * @param targetP99 排队时长 p99 的目标
+     */
+    public AdaptivePoolSizer(ThreadPoolExecutor executor, long targetP99, TimeUnit unit,
+                             int minPoolSize, int maxPoolSize) {
+        this(executor, targetP99, unit, minPoolSize, maxPoolSize, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param targetP99    排队时长 p99 的目标
+     * @param minPoolSize  corePoolSize 的下限，至少为 1
+     * @param maxPoolSize  corePoolSize 的上限
+     * @param samplePeriod 采样周期
+     */
+    public AdaptivePoolSizer(ThreadPoolExecutor executor, long targetP99, TimeUnit unit,
+                             int minPoolSize, int maxPoolSize,
+                             long samplePeriod, TimeUnit samplePeriodUnit) {
+        if (executor == null)
+            throw new NullPointerException();
+        if (targetP99 <= 0 || minPoolSize < 1 || maxPoolSize < minPoolSize || samplePeriod <= 0)
+            throw new IllegalArgumentException();
+        this.executor = executor;
+        this.targetNanos = unit.toNanos(targetP99);
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.samplePeriodNanos = samplePeriodUnit.toNanos(samplePeriod);
+        this.baseMaximumPoolSize = executor.getMaximumPoolSize();
+    }
+
+    /**
+     * 开启线程池的运行统计并启动控制线程，重复调用无效。
+     * corePoolSize 不在 [minPoolSize, maxPoolSize] 内时先调整到边界
+     */
+    public synchronized AdaptivePoolSizer start() {
+        if (controller == null) {
+            int size = executor.getCorePoolSize();
+            if (size < minPoolSize || size > maxPoolSize)
+                resize(Math.min(Math.max(size, minPoolSize), maxPoolSize));
+            metrics = executor.enableMetrics();
+            lastQueueWait = metrics.queueWaitSnapshot();
+            lastTickNanos = System.nanoTime();
+            lastCompleted = executor.getCompletedTaskCount();
+            Thread t = new Thread(this::controlLoop, "adaptive-pool-sizer");
+            t.setDaemon(true);
+            controller = t;
+            t.start();
+        }
+        return this;
+    }
+
+    /**
+     * 停止控制线程，线程数保持在当前值，线程池的运行统计不受影响
+     */
+    @Override
+    public synchronized void close() {
+        Thread t = controller;
+        if (t != null) {
+            controller = null;
+            t.interrupt();
+        }
+    }
+
+    private void controlLoop() {
+        Thread me = Thread.currentThread();
+        while (controller == me && !executor.isShutdown()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(samplePeriodNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            tick();
+        }
+    }
+
+    /**
+     * 一个控制周期
+     */
+    void tick() {
+        long now = System.nanoTime();
+        LatencyHistogram.Snapshot total = metrics.queueWaitSnapshot();
+        LatencyHistogram.Snapshot wait = total.since(lastQueueWait);
+        lastQueueWait = total;
+        long completed = executor.getCompletedTaskCount();
+        double throughput = (completed - lastCompleted) * 1e9 / Math.max(1, now - lastTickNanos);
+        lastTickNanos = now;
+        lastCompleted = completed;
+
+        long p99 = wait.valueAtPercentile(99);
+        int size = executor.getCorePoolSize();
+        int target = size;
+        if (holdTicks > 0)
+            holdTicks--;
+
+        if (p99 > targetNanos) {
+            highTicks++;
+            lowTicks = 0;
+        } else if (p99 < targetNanos * LOW_WATERMARK) {
+            lowTicks++;
+            highTicks = 0;
+        } else {
+            highTicks = lowTicks = 0;
+        }
+
+        if (lastGrowth > 0 && p99 > targetNanos && throughput < lastThroughput * (1 + MIN_GAIN)) {
+            // 上次扩容没有换来吞吐，退回去并暂停扩容
+            target = Math.max(minPoolSize, size - lastGrowth);
+            holdTicks = HOLD_TICKS;
+            highTicks = 0;
+            reverts++;
+        } else if (highTicks >= GROW_AFTER && holdTicks == 0 && size < maxPoolSize) {
+            target = Math.min(maxPoolSize, size + Math.max(1, size >> 2));
+            highTicks = 0;
+            grows++;
+        } else if (lowTicks >= SHRINK_AFTER && size > minPoolSize && executor.getActiveCount() < size) {
+            target = size - 1;
+            lowTicks = 0;
+            shrinks++;
+        }
+
+        lastGrowth = target > size ? target - size : 0;
+        lastThroughput = throughput;
+        if (target != size)
+            resize(target);
+        last = new Snapshot(target, p99, wait.getTotalCount(), throughput,
+                executor.getQueue().size(), grows, shrinks, reverts);
+    }
+
+    /**
+     * corePoolSize 改为 n，保证 maximumPoolSize 不小于它
+     */
+    private void resize(int n) {
+        if (n > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(n);
+            executor.setCorePoolSize(n);
+        } else {
+            executor.setCorePoolSize(n);
+            int max = Math.max(n, baseMaximumPoolSize);
+            if (executor.getMaximumPoolSize() > max)
+                executor.setMaximumPoolSize(max);
+        }
+    }
+
+    /**
+     * 最近一个控制周期的状态，还没有完成过周期时返回 null
+     */
+    public Snapshot snapshot() {
+        return last;
+    }
+
+    /**
+     * 一个控制周期结束时的状态
+     */
+    public static final class Snapshot {
+        public final int corePoolSize;
+        /**
+         * 这个周期内排队时长的 p99，纳秒
+         */
+        public final long queueWaitP99Nanos;
+        public final long samples;
+        /**
+         * 这个周期内每秒完成的任务数
+         */
+        public final double throughput;
+        public final int queuedTasks;
+        public final long grows;
+        public final long shrinks;
+        public final long reverts;
+
+        Snapshot(int corePoolSize, long queueWaitP99Nanos, long samples, double throughput,
+                 int queuedTasks, long grows, long shrinks, long reverts) {
+            this.corePoolSize = corePoolSize;
+            this.queueWaitP99Nanos = queueWaitP99Nanos;
+            this.samples = samples;
+            this.throughput = throughput;
+            this.queuedTasks = queuedTasks;
+            this.grows = grows;
+            this.shrinks = shrinks;
+            this.reverts = reverts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("core=%d p99=%.2fms samples=%d throughput=%.0f/s queued=%d grows=%d shrinks=%d reverts=%d",
+                    corePoolSize, queueWaitP99Nanos / 1e6, samples, throughput, queuedTasks, grows, shrinks, reverts);
+        }
+    }
+}
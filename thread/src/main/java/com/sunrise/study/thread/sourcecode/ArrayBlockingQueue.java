@@ -10,6 +10,7 @@ import java.util.concurrent.TimeUnit;
  *   1.基于数组的线程安全的有界队列；FIFO排序；
  *   2.使用全局锁实现线程安全，同时只能有一个线程进行入队、出队操作；
  *   3.底层数组是一个循环数组，队列的头尾位置通过takeIndex和putIndex属性标记；
+ *   4.实现了BulkBlockingQueue，offerAll/putAll/限时drainTo一次加锁处理一批元素；
  *
  * A bounded {@linkplain BlockingQueue blocking queue} backed by an
  * array.  This queue orders elements FIFO (first-in-first-out).  The
@@ -46,7 +47,7 @@ import java.util.concurrent.TimeUnit;
  * @param <E> the type of elements held in this collection
  */
 public class ArrayBlockingQueue<E> extends AbstractQueue<E>
-        implements BlockingQueue<E>, java.io.Serializable  {
+        implements BulkBlockingQueue<E>, java.io.Serializable  {
 
     /**
      * Serialization ID. This class relies on default serialization
@@ -144,6 +145,45 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         notEmpty.signal();  // 唤醒出队线程
     }
 
+    /**
+     * 从a[from]开始批量入队，直到队列满或者a中的元素都已入队，返回入队的个数。
+     * 入队k个元素后最多唤醒k个等待的出队线程，而不是每个元素signal一次。
+     * Call only when holding lock.
+     */
+    private int enqueueAll(Object[] a, int from) {
+        // assert lock.getHoldCount() == 1;
+        final Object[] items = this.items;
+        int n = Math.min(a.length - from, items.length - count);
+        if (n <= 0)
+            return 0;
+        int put = putIndex;
+        // 循环数组，最多分两段复制
+        int first = Math.min(n, items.length - put);
+        System.arraycopy(a, from, items, put, first);
+        System.arraycopy(a, from + first, items, 0, n - first);
+        put += n;
+        if (put >= items.length)
+            put -= items.length;
+        putIndex = put;
+        count += n;
+        for (int i = n; i > 0 && lock.hasWaiters(notEmpty); i--)
+            notEmpty.signal();
+        return n;
+    }
+
+    /**
+     * 批量操作的参数校验，返回c中元素的快照
+     */
+    private Object[] checkedBatch(Collection<? extends E> c) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            checkNotNull(e);
+        return a;
+    }
+
     /**
      * Extracts element at current take position, advances, and signals.
      * Call only when holding lock.
@@ -378,6 +418,47 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * 批量入队，一次加锁放入能放下的元素。若队列已满，直接返回0。
+     *
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = checkedBatch(c);
+        if (a.length == 0)
+            return 0;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return enqueueAll(a, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量入队。队列满时进入notFull条件队列等待，被唤醒后一次放入能放下的所有元素。
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = checkedBatch(c);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (int i = 0; i < a.length; ) {
+                while (count == items.length)
+                    notFull.await();
+                i += enqueueAll(a, i);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * 出队。若队列为空，直接返回null。
      */
@@ -760,6 +841,36 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * 批量出队。若队列为空，进入notEmpty条件队列等待指定时间，有元素后一次取走最多maxElements个。
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            // 已经持有锁，drainTo中再次加锁只是重入
+            return drainTo(c, maxElements);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
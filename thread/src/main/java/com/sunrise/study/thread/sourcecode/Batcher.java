@@ -0,0 +1,112 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 把逐个提交的数据攒成批，一次调用批处理函数，再把结果分发给每个提交者。
+ * <p>
+ * 典型用法是把大量单条查询或写入合并成批量请求：{@link #submit} 立即返回一个 {@link CompletableFuture}，
+ * 数据按 key 攒到 maxBatchSize 条或等满 maxDelay 后，在下层执行器的线程中调用一次
+ * batchFunction(List&lt;T&gt;)，返回的 List&lt;R&gt; 与输入一一对应，第 i 个结果完成第 i 个提交者的 future。
+ * 批处理函数抛出异常、返回 null 或者结果个数不对，或者下层执行器拒绝执行时，这一批的 future 全部异常完成。
+ * <p>
+ * 只需要批量消费、不需要结果时使用 {@link #ofConsumer}，future 在这一批处理完后以 null 完成。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class Batcher<T, R> extends AbstractBatcher<Batcher.Item<T, R>> {
+
+    private final Function<? super List<T>, ? extends List<? extends R>> batchFunction;
+
+    /**
+     * @param delegate      执行批处理函数的执行器
+     * @param maxBatchSize  一批最多的数据条数
+     * @param maxDelay      第一条数据最多等待多久就要提交，0 表示不等待
+     * @param batchFunction 批处理函数，返回的结果必须与输入一一对应
+     */
+    public Batcher(Executor delegate, int maxBatchSize, long maxDelay, TimeUnit unit,
+                   Function<? super List<T>, ? extends List<? extends R>> batchFunction) {
+        super(delegate, maxBatchSize, maxDelay, unit);
+        if (batchFunction == null)
+            throw new NullPointerException();
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * 创建只消费数据的 Batcher
+     */
+    public static <T> Batcher<T, Void> ofConsumer(Executor delegate, int maxBatchSize, long maxDelay,
+                                                 TimeUnit unit, Consumer<? super List<T>> consumer) {
+        if (consumer == null)
+            throw new NullPointerException();
+        return new Batcher<T, Void>(delegate, maxBatchSize, maxDelay, unit, batch -> {
+            consumer.accept(batch);
+            // 每个提交者一个 null 结果，nCopies 不复制数组
+            return Collections.<Void>nCopies(batch.size(), null);
+        });
+    }
+
+    static final class Item<T, R> {
+        final T value;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Item(T value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 提交一条数据，与所有不带 key 的数据放在同一批中
+     */
+    public CompletableFuture<R> submit(T value) {
+        return submit(null, value);
+    }
+
+    /**
+     * 提交一条数据，与同一个 key 的数据放在同一批中
+     *
+     * @throws RejectedExecutionException 已经关闭，或者下层执行器拒绝了批任务
+     */
+    public CompletableFuture<R> submit(Object key, T value) {
+        Item<T, R> item = new Item<>(value);
+        add(key, item);
+        return item.future;
+    }
+
+    @Override
+    void runBatch(Object key, List<Item<T, R>> batch) {
+        List<T> values = new ArrayList<>(batch.size());
+        for (Item<T, R> item : batch)
+            values.add(item.value);
+        List<? extends R> results;
+        try {
+            results = batchFunction.apply(values);
+        } catch (Throwable e) {
+            for (Item<T, R> item : batch)
+                item.future.completeExceptionally(e);
+            return;
+        }
+        if (results == null || results.size() != batch.size()) {
+            IllegalStateException e = new IllegalStateException("batch function returned "
+                    + (results == null ? "null" : results.size() + " results") + " for " + batch.size() + " items");
+            for (Item<T, R> item : batch)
+                item.future.completeExceptionally(e);
+        } else {
+            for (int i = 0; i < batch.size(); i++)
+                batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    @Override
+    void rejected(List<Item<T, R>> batch, RejectedExecutionException e) {
+        for (Item<T, R> item : batch)
+            item.future.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,73 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把大量很小的 Runnable 攒成批再交给下层执行器的执行器。
+ * <p>
+ * 直接提交给 {@link ThreadPoolExecutor} 时，每个任务都要付出一次入队、出队，往往还有一次唤醒工作线程的代价，
+ * 任务本身只要不到一微秒时，这些开销远大于任务。这里把任务按 key（或者全部放在一起）攒到
+ * maxBatchSize 个或者等满 maxDelay，整批作为一个 Runnable 交给下层执行器，在同一个工作线程里依次执行。
+ * maxDelay 为 0 时不等待，批任务开始执行前到达的任务都会被带上，详见 {@link AbstractBatcher}。
+ * <p>
+ * 同一个 key 的任务按提交顺序串行执行。一批中某个任务抛出异常不影响同批其余任务，
+ * 整批执行完后再把第一个异常抛给下层执行器（其余的作为 suppressed）。
+ * 下层执行器拒绝批任务时，该 key 还未执行的任务都被丢弃，触发提交的调用者收到 RejectedExecutionException。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class BatchingExecutor extends AbstractBatcher<Runnable> implements Executor {
+
+    /**
+     * @param delegate     实际执行批任务的执行器
+     * @param maxBatchSize 一批最多的任务数
+     * @param maxDelay     第一个任务最多等待多久就要提交，0 表示不等待
+     */
+    public BatchingExecutor(Executor delegate, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        super(delegate, maxBatchSize, maxDelay, unit);
+    }
+
+    /**
+     * 提交任务，与所有不带 key 的任务放在同一批中
+     */
+    public void execute(Runnable command) {
+        execute(null, command);
+    }
+
+    /**
+     * 提交任务，与同一个 key 的任务放在同一批中，同一个 key 的任务串行执行
+     */
+    public void execute(Object key, Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        add(key, command);
+    }
+
+    @Override
+    void runBatch(Object key, List<Runnable> batch) {
+        Throwable failure = null;
+        for (Runnable r : batch) {
+            try {
+                r.run();
+            } catch (Throwable t) {
+                if (failure == null)
+                    failure = t;
+                else
+                    failure.addSuppressed(t);
+            }
+        }
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new RuntimeException(failure);
+    }
+
+    @Override
+    void rejected(List<Runnable> batch, RejectedExecutionException e) {
+        // 任务没有结果对象可以通知，直接丢弃
+    }
+}
@@ -0,0 +1,47 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持批量入队和出队的{@link BlockingQueue}。
+ * <p>
+ * 逐个offer/poll时每个元素都要加锁、解锁一次，还可能唤醒一次对端线程。批量方法一次加锁处理一批元素，
+ * 每批最多唤醒与元素个数相同的等待线程（LinkedBlockingQueue只唤醒一个，由被唤醒的线程依次传递）。
+ * 消费者可以用{@link #drainTo(Collection, int, long, TimeUnit)}等到第一个元素后把已有的元素一次取走，
+ * 不必在poll上循环。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public interface BulkBlockingQueue<E> extends BlockingQueue<E> {
+
+    /**
+     * 按c的迭代顺序立即放入能放下的元素，不等待
+     *
+     * @return 放入的元素个数
+     * @throws NullPointerException c或者c中的元素为null，此时队列不变
+     * @throws IllegalArgumentException c就是这个队列
+     */
+    int offerAll(Collection<? extends E> c);
+
+    /**
+     * 按c的迭代顺序放入所有元素，队列满时等待空位。队列有空位时一次放入能放下的所有元素
+     *
+     * @throws InterruptedException 等待时被中断，此时已经放入的元素留在队列中
+     * @throws NullPointerException c或者c中的元素为null，此时队列不变
+     * @throws IllegalArgumentException c就是这个队列
+     */
+    void putAll(Collection<? extends E> c) throws InterruptedException;
+
+    /**
+     * 最多等待timeout直到队列中有元素，然后把最多maxElements个元素一次移到c中
+     *
+     * @return 移动的元素个数，超时返回0
+     * @throws InterruptedException 等待时被中断
+     * @throws NullPointerException c为null
+     * @throws IllegalArgumentException c就是这个队列
+     */
+    int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+        throws InterruptedException;
+}
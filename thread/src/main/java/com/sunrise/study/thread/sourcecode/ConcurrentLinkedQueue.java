@@ -10,10 +10,11 @@ import java.util.function.Consumer;
  *   3.采用非阻塞模式实现，即无锁，通过自旋和CAS实现线程安全；
  *   4.不允许传入null值元素；
  *   5.具有弱一致性；
- *   6.实现了私有静态内部类Node作为链表的元素；
+ *   6.实现了静态内部类Node作为链表的元素，包级可见，供父类中的head、tail字段声明使用；
  *   7.当Node类的item属性为null时，说明该元素已被移除，是无效节点；
  *   8.重点是保证head指向的节点是有效节点，即item不为null，且next不是指向自身；而tail则不要求必须是队列的最后一个节点；
- *   9.head和tail采用延迟更新策略（HOPS）的设计，详情查看offer()和poll()方法
+ *   9.head和tail采用延迟更新策略（HOPS）的设计，详情查看offer()和poll()方法；
+ *   10.head和tail分别被出队线程和入队线程CAS修改，两个字段通过父类中的填充字段各占独立的缓存行，避免伪共享
  *
  * An unbounded thread-safe {@linkplain Queue queue} based on linked nodes.
  * This queue orders elements FIFO (first-in-first-out).
@@ -71,7 +72,7 @@ import java.util.function.Consumer;
  * @author Doug Lea
  * @param <E> the type of elements held in this collection
  */
-public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
+public class ConcurrentLinkedQueue<E> extends ConcurrentLinkedQueuePad2<E>
         implements Queue<E>, java.io.Serializable {
     private static final long serialVersionUID = 196745693267521676L;
 
@@ -149,7 +150,7 @@ public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
     /**
      * 单向链表
      */
-    private static class Node<E> {
+    static class Node<E> {
         volatile E item;
         volatile Node<E> next;
 
@@ -212,36 +213,6 @@ public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
         }
     }
 
-    /**
-     * 链表头节点
-     * A node from which the first live (non-deleted) node (if any)
-     * can be reached in O(1) time.
-     * Invariants:
-     * - all live nodes are reachable from head via succ()
-     * - head != null
-     * - (tmp = head).next != tmp || tmp != head
-     * Non-invariants:
-     * - head.item may or may not be null.
-     * - it is permitted for tail to lag behind head, that is, for tail
-     *   to not be reachable from head!
-     */
-    private transient volatile Node<E> head;
-
-    /**
-     * 链表尾节点
-     * A node from which the last node on list (that is, the unique
-     * node with node.next == null) can be reached in O(1) time.
-     * Invariants:
-     * - the last node is always reachable from tail via succ()
-     * - tail != null
-     * Non-invariants:
-     * - tail.item may or may not be null.
-     * - it is permitted for tail to lag behind head, that is, for tail
-     *   to not be reachable from head!
-     * - tail.next may or may not be self-pointing to tail.
-     */
-    private transient volatile Node<E> tail;
-
     /**
      * 无参构造器。会初始化一个空值的哨兵节点
      * Creates a {@code ConcurrentLinkedQueue} that is initially empty.
@@ -1017,13 +988,86 @@ public class ConcurrentLinkedQueue<E> extends AbstractQueue<E>
     static {
         try {
             UNSAFE = sun.misc.Unsafe.getUnsafe();
-            Class<?> k = ConcurrentLinkedQueue.class;
+            // head和tail声明在父类中
             headOffset = UNSAFE.objectFieldOffset
-                (k.getDeclaredField("head"));
+                (ConcurrentLinkedQueueHeadField.class.getDeclaredField("head"));
             tailOffset = UNSAFE.objectFieldOffset
-                (k.getDeclaredField("tail"));
+                (ConcurrentLinkedQueueTailField.class.getDeclaredField("tail"));
         } catch (Exception e) {
             throw new Error(e);
         }
     }
 }
+
+/*
+ * ConcurrentLinkedQueue的字段布局：填充 | head | 填充 | tail | 填充 | ConcurrentLinkedQueue自己的字段。
+ * HotSpot总是先排父类的字段，JDK 15之后子类字段还会填进父类布局的空隙中，所以填充用byte字段，
+ * 不留空隙。每段填充128字节，覆盖相邻缓存行预取的范围，效果相当于@Contended，但不需要-XX:-RestrictContended。
+ */
+
+abstract class ConcurrentLinkedQueuePad0<E> extends AbstractQueue<E> {
+    byte p000, p001, p002, p003, p004, p005, p006, p007, p008, p009, p010, p011, p012, p013, p014, p015;
+    byte p016, p017, p018, p019, p020, p021, p022, p023, p024, p025, p026, p027, p028, p029, p030, p031;
+    byte p032, p033, p034, p035, p036, p037, p038, p039, p040, p041, p042, p043, p044, p045, p046, p047;
+    byte p048, p049, p050, p051, p052, p053, p054, p055, p056, p057, p058, p059, p060, p061, p062, p063;
+    byte p064, p065, p066, p067, p068, p069, p070, p071, p072, p073, p074, p075, p076, p077, p078, p079;
+    byte p080, p081, p082, p083, p084, p085, p086, p087, p088, p089, p090, p091, p092, p093, p094, p095;
+    byte p096, p097, p098, p099, p100, p101, p102, p103, p104, p105, p106, p107, p108, p109, p110, p111;
+    byte p112, p113, p114, p115, p116, p117, p118, p119, p120, p121, p122, p123, p124, p125, p126, p127;
+}
+
+abstract class ConcurrentLinkedQueueHeadField<E> extends ConcurrentLinkedQueuePad0<E> {
+    /**
+     * 链表头节点
+     * A node from which the first live (non-deleted) node (if any)
+     * can be reached in O(1) time.
+     * Invariants:
+     * - all live nodes are reachable from head via succ()
+     * - head != null
+     * - (tmp = head).next != tmp || tmp != head
+     * Non-invariants:
+     * - head.item may or may not be null.
+     * - it is permitted for tail to lag behind head, that is, for tail
+     *   to not be reachable from head!
+     */
+    transient volatile ConcurrentLinkedQueue.Node<E> head;
+}
+
+abstract class ConcurrentLinkedQueuePad1<E> extends ConcurrentLinkedQueueHeadField<E> {
+    byte q000, q001, q002, q003, q004, q005, q006, q007, q008, q009, q010, q011, q012, q013, q014, q015;
+    byte q016, q017, q018, q019, q020, q021, q022, q023, q024, q025, q026, q027, q028, q029, q030, q031;
+    byte q032, q033, q034, q035, q036, q037, q038, q039, q040, q041, q042, q043, q044, q045, q046, q047;
+    byte q048, q049, q050, q051, q052, q053, q054, q055, q056, q057, q058, q059, q060, q061, q062, q063;
+    byte q064, q065, q066, q067, q068, q069, q070, q071, q072, q073, q074, q075, q076, q077, q078, q079;
+    byte q080, q081, q082, q083, q084, q085, q086, q087, q088, q089, q090, q091, q092, q093, q094, q095;
+    byte q096, q097, q098, q099, q100, q101, q102, q103, q104, q105, q106, q107, q108, q109, q110, q111;
+    byte q112, q113, q114, q115, q116, q117, q118, q119, q120, q121, q122, q123, q124, q125, q126, q127;
+}
+
+abstract class ConcurrentLinkedQueueTailField<E> extends ConcurrentLinkedQueuePad1<E> {
+    /**
+     * 链表尾节点
+     * A node from which the last node on list (that is, the unique
+     * node with node.next == null) can be reached in O(1) time.
+     * Invariants:
+     * - the last node is always reachable from tail via succ()
+     * - tail != null
+     * Non-invariants:
+     * - tail.item may or may not be null.
+     * - it is permitted for tail to lag behind head, that is, for tail
+     *   to not be reachable from head!
+     * - tail.next may or may not be self-pointing to tail.
+     */
+    transient volatile ConcurrentLinkedQueue.Node<E> tail;
+}
+
+abstract class ConcurrentLinkedQueuePad2<E> extends ConcurrentLinkedQueueTailField<E> {
+    byte r000, r001, r002, r003, r004, r005, r006, r007, r008, r009, r010, r011, r012, r013, r014, r015;
+    byte r016, r017, r018, r019, r020, r021, r022, r023, r024, r025, r026, r027, r028, r029, r030, r031;
+    byte r032, r033, r034, r035, r036, r037, r038, r039, r040, r041, r042, r043, r044, r045, r046, r047;
+    byte r048, r049, r050, r051, r052, r053, r054, r055, r056, r057, r058, r059, r060, r061, r062, r063;
+    byte r064, r065, r066, r067, r068, r069, r070, r071, r072, r073, r074, r075, r076, r077, r078, r079;
+    byte r080, r081, r082, r083, r084, r085, r086, r087, r088, r089, r090, r091, r092, r093, r094, r095;
+    byte r096, r097, r098, r099, r100, r101, r102, r103, r104, r105, r106, r107, r108, r109, r110, r111;
+    byte r112, r113, r114, r115, r116, r117, r118, r119, r120, r121, r122, r123, r124, r125, r126, r127;
+}
@@ -0,0 +1,212 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link AbstractQueuedSynchronizer} 的竞争统计，按名字登记，由 {@link AbstractQueuedSynchronizer#enableProfiling(String)}
+ * 挂到同步器上（ReentrantLock、ReentrantReadWriteLock、CountDownLatch、NonReentrantLock 都有同名的方法）。
+ * 同名的多个同步器共用一个 ContentionProfile，数据合并统计。
+ * <p>
+ * AQS 在下面几个位置回调这里的 record 方法，未开启时只多一次 volatile 读：
+ * <ul>
+ *     <li>tryAcquire 失败进入等待队列（acquireQueued、doAcquire* 的入口和出口）：独占和共享分别记录等待时长直方图，
+ *     超时或被中断而放弃的次数，以及入队时队列中的线程数（直方图和最大值）；</li>
+ *     <li>每次 park：park 次数；</li>
+ *     <li>开启了自适应自旋时（见 {@link AbstractQueuedSynchronizer#setAdaptiveSpinning(boolean)}）：
+ *     自旋中拿到锁和自旋后仍要入队的次数；</li>
+ *     <li>setExclusiveOwnerThread：独占模式下从获得锁到完全释放的持有时长直方图，重入不重新计时，
+ *     Condition.await 释放锁时结束一次持有。</li>
+ * </ul>
+ * 快速路径上直接拿到锁的获取不计入等待直方图，等待直方图的 count 就是发生竞争的次数。
+ * 直方图用 {@link LatencyHistogram}，计数用 LongAdder，记录本身不分配对象。
+ * <p>
+ * {@link #snapshot()} 和 {@link #snapshotAndReset()} 导出不可变的 {@link Snapshot}，
+ * {@link #snapshotAll()} 导出所有登记过的统计，可以交给监控系统定期采集，不再需要 AQSPrint 那样打印队列。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ContentionProfile {
+
+    private static final ConcurrentHashMap<String, ContentionProfile> PROFILES = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private final LatencyHistogram exclusiveWait = new LatencyHistogram();
+    private final LatencyHistogram sharedWait = new LatencyHistogram();
+    private final LatencyHistogram hold = new LatencyHistogram();
+    private final LatencyHistogram queueDepth = new LatencyHistogram();
+    private final LongAdder parks = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder spinAcquires = new LongAdder();
+    private final LongAdder spinFailures = new LongAdder();
+
+    // 正在等待的线程数和最大值
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    private ContentionProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 返回名字对应的统计，不存在时创建并登记
+     */
+    public static ContentionProfile forName(String name) {
+        if (name == null)
+            throw new NullPointerException();
+        ContentionProfile p = PROFILES.get(name);
+        return p != null ? p : PROFILES.computeIfAbsent(name, ContentionProfile::new);
+    }
+
+    /**
+     * 取消登记，已经挂到同步器上的统计继续记录，但不再出现在 {@link #snapshotAll()} 中
+     */
+    public static ContentionProfile remove(String name) {
+        return PROFILES.remove(name);
+    }
+
+    /**
+     * 所有登记过的统计的快照，按名字排序
+     */
+    public static List<Snapshot> snapshotAll() {
+        List<Snapshot> list = new ArrayList<>();
+        for (ContentionProfile p : PROFILES.values())
+            list.add(p.snapshot());
+        list.sort((a, b) -> a.name.compareTo(b.name));
+        return Collections.unmodifiableList(list);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 线程进入等待队列
+     *
+     * @return 入队时间，传给 {@link #recordDequeued}
+     */
+    long recordEnqueued() {
+        int depth = queued.incrementAndGet();
+        int m;
+        while (depth > (m = maxQueued.get()) && !maxQueued.compareAndSet(m, depth))
+            ;
+        queueDepth.record(depth);
+        return System.nanoTime();
+    }
+
+    /**
+     * 线程离开等待队列
+     *
+     * @param acquired false 表示超时、被中断或者 tryAcquire 抛出异常
+     */
+    void recordDequeued(long enqueuedAt, boolean shared, boolean acquired) {
+        queued.decrementAndGet();
+        if (acquired)
+            (shared ? sharedWait : exclusiveWait).record(System.nanoTime() - enqueuedAt);
+        else
+            abandoned.increment();
+    }
+
+    void recordPark() {
+        parks.increment();
+    }
+
+    void recordHold(long nanos) {
+        hold.record(nanos);
+    }
+
+    void recordSpin(boolean acquired) {
+        (acquired ? spinAcquires : spinFailures).increment();
+    }
+
+    /**
+     * 当前累计数据的快照，不影响后续记录
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(name, exclusiveWait.snapshot(), sharedWait.snapshot(), hold.snapshot(),
+                queueDepth.snapshot(), parks.sum(), abandoned.sum(), spinAcquires.sum(), spinFailures.sum(),
+                queued.get(), maxQueued.get());
+    }
+
+    /**
+     * 取出自上次重置以来的数据并清零，用于按时间间隔统计。当前等待的线程数不清零，最大值从当前值重新开始
+     */
+    public Snapshot snapshotAndReset() {
+        int current = queued.get();
+        return new Snapshot(name, exclusiveWait.snapshotAndReset(), sharedWait.snapshotAndReset(),
+                hold.snapshotAndReset(), queueDepth.snapshotAndReset(), parks.sumThenReset(),
+                abandoned.sumThenReset(), spinAcquires.sumThenReset(), spinFailures.sumThenReset(),
+                current, maxQueued.getAndSet(current));
+    }
+
+    /**
+     * 竞争统计的不可变快照，时长单位都是纳秒
+     */
+    public static final class Snapshot {
+        public final String name;
+        /** 独占模式进入队列后的等待时长 */
+        public final LatencyHistogram.Snapshot exclusiveWait;
+        /** 共享模式进入队列后的等待时长 */
+        public final LatencyHistogram.Snapshot sharedWait;
+        /** 独占模式的持有时长 */
+        public final LatencyHistogram.Snapshot hold;
+        /** 入队时队列中的线程数（包括自己） */
+        public final LatencyHistogram.Snapshot queueDepth;
+        public final long parks;
+        /** 进入队列后因超时、中断放弃的次数 */
+        public final long abandoned;
+        /** 自旋中拿到锁的次数 */
+        public final long spinAcquires;
+        /** 自旋后仍要入队的次数 */
+        public final long spinFailures;
+        public final int queued;
+        public final int maxQueued;
+
+        Snapshot(String name, LatencyHistogram.Snapshot exclusiveWait, LatencyHistogram.Snapshot sharedWait,
+                 LatencyHistogram.Snapshot hold, LatencyHistogram.Snapshot queueDepth,
+                 long parks, long abandoned, long spinAcquires, long spinFailures, int queued, int maxQueued) {
+            this.name = name;
+            this.exclusiveWait = exclusiveWait;
+            this.sharedWait = sharedWait;
+            this.hold = hold;
+            this.queueDepth = queueDepth;
+            this.parks = parks;
+            this.abandoned = abandoned;
+            this.spinAcquires = spinAcquires;
+            this.spinFailures = spinFailures;
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+        }
+
+        /**
+         * 发生竞争（进入过等待队列）的获取次数
+         */
+        public long contendedAcquires() {
+            return exclusiveWait.getTotalCount() + sharedWait.getTotalCount();
+        }
+
+        /**
+         * 独占获取中发生竞争的比例，持有次数为 0 时返回 0
+         */
+        public double exclusiveContentionRatio() {
+            long holds = hold.getTotalCount();
+            return holds == 0 ? 0 : (double) exclusiveWait.getTotalCount() / holds;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": contended " + contendedAcquires() + ", parks " + parks + ", abandoned " + abandoned
+                    + ", spin acquired " + spinAcquires + "/" + (spinAcquires + spinFailures)
+                    + ", queued " + queued + " (max " + maxQueued + ")"
+                    + "\n  exclusive wait " + exclusiveWait.toString(TimeUnit.MICROSECONDS)
+                    + "\n  shared wait    " + sharedWait.toString(TimeUnit.MICROSECONDS)
+                    + "\n  hold           " + hold.toString(TimeUnit.MICROSECONDS);
+        }
+    }
+}
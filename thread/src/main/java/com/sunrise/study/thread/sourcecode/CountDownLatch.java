@@ -285,6 +285,23 @@ public class CountDownLatch {
         return sync.getCount();
     }
 
+    /**
+     * 开启竞争统计，见{@link ContentionProfile}
+     *
+     * @param name 统计的名字，同名的同步器合并统计
+     * @return the profile
+     */
+    public ContentionProfile enableProfiling(String name) {
+        return sync.enableProfiling(name);
+    }
+
+    /**
+     * 关闭竞争统计，已记录的数据仍保留在{@link ContentionProfile}中
+     */
+    public void disableProfiling() {
+        sync.disableProfiling();
+    }
+
     /**
      * Returns a string identifying this latch, as well as its state.
      * The state, in brackets, includes the String {@code "Count ="}
@@ -95,6 +95,101 @@ public class Executors {
              null, true);
     }
 
+    /**
+     * 创建一个工作窃取模式的固定大小线程池：每个工作线程有自己的任务队列，
+     * 工作线程内部提交的任务按localOrder的顺序放入自己的队列，空闲的工作线程随机窃取其他队列的任务，
+     * 减少大量小任务对共享阻塞队列的竞争。与newWorkStealingPool不同，返回的仍是ThreadPoolExecutor，
+     * beforeExecute/afterExecute等钩子照常可用
+     *
+     * @param nThreads the number of threads in the pool
+     * @param localOrder the order in which workers run their own tasks
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0}
+     * @throws NullPointerException if localOrder is null
+     */
+    public static ExecutorService newWorkStealingThreadPool(int nThreads,
+                                                            ThreadPoolExecutor.LocalOrder localOrder) {
+        if (localOrder == null)
+            throw new NullPointerException();
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new LinkedBlockingQueue<Runnable>(),
+                                      defaultThreadFactory(),
+                                      new ThreadPoolExecutor.AbortPolicy(),
+                                      localOrder);
+    }
+
+    /**
+     * 创建一个线程数自动调整的线程池：初始为minThreads个线程，使用无界队列，
+     * 由{@link AdaptivePoolSizer}根据排队时长的p99在[minThreads, maxThreads]之间调整线程数，
+     * 线程池关闭后控制线程随之退出
+     *
+     * @param minThreads the minimum number of threads
+     * @param maxThreads the maximum number of threads
+     * @param targetP99 the target 99th percentile of queueing delay
+     * @param unit the time unit of the targetP99 argument
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code minThreads < 1},
+     *         {@code maxThreads < minThreads} or {@code targetP99 <= 0}
+     */
+    public static ExecutorService newAdaptiveThreadPool(int minThreads, int maxThreads,
+                                                        long targetP99, TimeUnit unit) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(minThreads, minThreads,
+                                                             0L, TimeUnit.MILLISECONDS,
+                                                             new LinkedBlockingQueue<Runnable>());
+        new AdaptivePoolSizer(executor, targetP99, unit, minThreads, maxThreads).start();
+        return executor;
+    }
+
+    /**
+     * 创建一个固定大小、传递{@link ScopedContext}的线程池：提交任务时捕获提交线程的上下文，
+     * 工作线程执行任务时切换到该上下文，结束后恢复。工作线程是{@link FastThreadLocalThread}，
+     * 切换上下文只是两次数组读写
+     *
+     * @param nThreads the number of threads in the pool
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0}
+     * @see ThreadPoolExecutor#setContextPropagation(boolean)
+     */
+    public static ExecutorService newContextPropagatingThreadPool(int nThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads,
+                                                             0L, TimeUnit.MILLISECONDS,
+                                                             new LinkedBlockingQueue<Runnable>(),
+                                                             fastThreadLocalThreadFactory());
+        executor.setContextPropagation(true);
+        return executor;
+    }
+
+    /**
+     * 同上，线程数不固定，同{@link #newCachedThreadPool()}
+     *
+     * @return the newly created thread pool
+     */
+    public static ExecutorService newContextPropagatingCachedThreadPool() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                                                             60L, TimeUnit.SECONDS,
+                                                             new SynchronousQueue<Runnable>(),
+                                                             fastThreadLocalThreadFactory());
+        executor.setContextPropagation(true);
+        return executor;
+    }
+
+    /**
+     * 创建一个按优先级和截止时间调度的固定大小线程池，使用无界的优先级队列。
+     * 返回具体类型，以便使用带优先级和截止时间的submit方法
+     *
+     * @param nThreads the number of threads in the pool
+     * @param agingInterval how much earlier a task one priority level higher is treated as submitted
+     * @param unit the time unit of the agingInterval argument
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0} or {@code agingInterval <= 0}
+     * @see PriorityThreadPoolExecutor
+     */
+    public static PriorityThreadPoolExecutor newPriorityThreadPool(int nThreads,
+                                                                   long agingInterval, TimeUnit unit) {
+        return new PriorityThreadPoolExecutor(nThreads, agingInterval, unit);
+    }
+
     /**
      * 同上newFixedThreadPool(int nThreads)方法，只是使用自定义的线程工厂
      * Creates a thread pool that reuses a fixed number of threads
@@ -209,6 +304,57 @@ public class Executors {
                                       threadFactory);
     }
 
+    /**
+     * 为每个任务创建一个新的虚拟线程，线程数不设上限，适合大量阻塞 I/O 的扇出。
+     * 运行在不支持虚拟线程的 JVM 上时退化为平台线程，见 {@link VirtualThreads}，
+     * 此时应该使用带 maxConcurrency 的版本
+     *
+     * @return the newly created executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return new ThreadPerTaskExecutor(VirtualThreads.factory("virtual-"));
+    }
+
+    /**
+     * 同上，但最多同时运行 maxConcurrency 个任务，许可用完时 execute 阻塞调用者，
+     * 用来保护下游资源（连接池、限流的服务等）
+     *
+     * @param maxConcurrency the maximum number of tasks running at once
+     * @return the newly created executor
+     * @throws IllegalArgumentException if {@code maxConcurrency <= 0}
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(int maxConcurrency) {
+        return newVirtualThreadPerTaskExecutor(maxConcurrency, null);
+    }
+
+    /**
+     * 同上，并把任务线程登记到 pinningMonitor，用来检测在 synchronized 中阻塞、
+     * pin 住 carrier 线程的任务。pinningMonitor 需要调用方自己 start 和 close
+     *
+     * @param maxConcurrency the maximum number of tasks running at once
+     * @param pinningMonitor the monitor to register task threads with, may be null
+     * @return the newly created executor
+     * @throws IllegalArgumentException if {@code maxConcurrency <= 0}
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(int maxConcurrency,
+                                                                  PinningMonitor pinningMonitor) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException();
+        return new ThreadPerTaskExecutor(VirtualThreads.factory("virtual-"),
+                                         maxConcurrency, pinningMonitor);
+    }
+
+    /**
+     * 使用给定的线程工厂，为每个任务创建一个新线程
+     *
+     * @param threadFactory the factory to use when creating new threads
+     * @return the newly created executor
+     * @throws NullPointerException if threadFactory is null
+     */
+    public static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        return new ThreadPerTaskExecutor(threadFactory);
+    }
+
     /**
      * Creates a single-threaded executor that can schedule commands
      * to run after a given delay, or to execute periodically.
@@ -365,6 +511,16 @@ public class Executors {
         return new PrivilegedThreadFactory();
     }
 
+    /**
+     * 与 {@link #defaultThreadFactory()} 相同，但创建的是 {@link FastThreadLocalThread}，
+     * 池中线程上的 {@link FastThreadLocal} 读写直接按下标访问线程自己的数组
+     *
+     * @return a thread factory
+     */
+    public static ThreadFactory fastThreadLocalThreadFactory() {
+        return new FastThreadLocalThreadFactory();
+    }
+
     /**
      * 把Runnable封装成一个Callable对象，并返回。
      * 返回一个Callable接口实现类对象，当该对象被调用时，会运行指定的任务task并返回给定的结果result
@@ -599,15 +755,31 @@ public class Executors {
          * @return
          */
         public Thread newThread(Runnable r) {
-            Thread t = new Thread(group, r,
-                                  namePrefix + threadNumber.getAndIncrement(),
-                                  0);
+            Thread t = newThread(group, r,
+                                 namePrefix + threadNumber.getAndIncrement());
             if (t.isDaemon())
                 t.setDaemon(false);
             if (t.getPriority() != Thread.NORM_PRIORITY)
                 t.setPriority(Thread.NORM_PRIORITY);
             return t;
         }
+
+        /**
+         * 创建线程对象，子类可以改为创建Thread的子类
+         */
+        Thread newThread(ThreadGroup group, Runnable r, String name) {
+            return new Thread(group, r, name, 0);
+        }
+    }
+
+    /**
+     * 创建FastThreadLocalThread的线程工厂，其余设置同DefaultThreadFactory
+     */
+    static class FastThreadLocalThreadFactory extends DefaultThreadFactory {
+        @Override
+        Thread newThread(ThreadGroup group, Runnable r, String name) {
+            return new FastThreadLocalThread(group, r, name, 0);
+        }
     }
 
     /**
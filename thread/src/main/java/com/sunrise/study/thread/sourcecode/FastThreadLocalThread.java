@@ -0,0 +1,55 @@
+package com.sunrise.study.thread.sourcecode;
+
+/**
+ * 自带 {@link FastThreadLocal} 存储的线程。在这种线程上 FastThreadLocal 的读写不经过任何哈希表，
+ * 直接按下标访问 {@link #threadLocalMap()} 里的数组；线程结束后数组随线程对象一起回收。
+ * <p>
+ * 线程池使用 {@link Executors#fastThreadLocalThreadFactory()} 创建这种线程，自己创建线程时直接 new，
+ * 构造器与 Thread 相同。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class FastThreadLocalThread extends Thread {
+
+    /** 只由本线程读写，不需要volatile */
+    private IndexedThreadLocalMap threadLocalMap;
+
+    public FastThreadLocalThread() {
+    }
+
+    public FastThreadLocalThread(Runnable target) {
+        super(target);
+    }
+
+    public FastThreadLocalThread(ThreadGroup group, Runnable target) {
+        super(group, target);
+    }
+
+    public FastThreadLocalThread(String name) {
+        super(name);
+    }
+
+    public FastThreadLocalThread(ThreadGroup group, String name) {
+        super(group, name);
+    }
+
+    public FastThreadLocalThread(Runnable target, String name) {
+        super(target, name);
+    }
+
+    public FastThreadLocalThread(ThreadGroup group, Runnable target, String name) {
+        super(group, target, name);
+    }
+
+    public FastThreadLocalThread(ThreadGroup group, Runnable target, String name, long stackSize) {
+        super(group, target, name, stackSize);
+    }
+
+    final IndexedThreadLocalMap threadLocalMap() {
+        return threadLocalMap;
+    }
+
+    final void setThreadLocalMap(IndexedThreadLocalMap threadLocalMap) {
+        this.threadLocalMap = threadLocalMap;
+    }
+}
@@ -168,6 +168,17 @@ public class FutureTask<V> implements RunnableFuture<V> {
         this.state = NEW;       // ensure visibility of callable
     }
 
+    /**
+     * 返回实际任务的类型，供线程池按任务类型统计。由Runnable构造的返回该Runnable的类型；
+     * 运行结束后callable已被置为null，此时返回FutureTask自身的类型
+     */
+    Class<?> taskClass() {
+        Callable<V> c = callable;
+        if (c instanceof Executors.RunnableAdapter)
+            return ((Executors.RunnableAdapter<V>) c).task.getClass();
+        return c != null ? c.getClass() : getClass();
+    }
+
     /**
      * 判断任务是否被取消或被中断
      * @return true表示任务已被取消或被中断
@@ -0,0 +1,157 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link FastThreadLocal} 的存储：每个线程一个按下标访问的 Object 数组。
+ * <p>
+ * 每个 FastThreadLocal 构造时分配一个全局递增的下标，值放在数组的这个位置上，没有设置过的位置是 {@link #UNSET}。
+ * 与 {@link ThreadLocal} 的 ThreadLocalMap 相比，没有哈希、线性探测，也没有清理过期 Entry 的工作，
+ * 代价是下标不回收：数组长度取决于线程用到的最大下标，所以 FastThreadLocal 应该像 ThreadLocal 一样声明为 static final，
+ * 不要为每个对象创建一个。
+ * <p>
+ * {@link FastThreadLocalThread} 把数组放在自己的字段里，读取只是一次 instanceof 和一次字段读；
+ * 其他线程退化为用一个 java.lang.ThreadLocal 保存数组，多一次 ThreadLocalMap 的查找，之后同样按下标访问。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+final class IndexedThreadLocalMap {
+
+    /** 没有设置值的位置 */
+    static final Object UNSET = new Object();
+
+    /** 初始数组长度 */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** 下标上限，留出数组头部，同ArrayList.MAX_ARRAY_SIZE */
+    private static final int MAX_INDEX = Integer.MAX_VALUE - 8;
+
+    private static final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * 普通线程的数组放在这里
+     */
+    private static final java.lang.ThreadLocal<IndexedThreadLocalMap> slowThreadLocalMap =
+            new java.lang.ThreadLocal<>();
+
+    private Object[] indexedVariables;
+
+    private IndexedThreadLocalMap() {
+        Object[] array = new Object[INITIAL_CAPACITY];
+        Arrays.fill(array, UNSET);
+        indexedVariables = array;
+    }
+
+    /**
+     * 分配一个新的下标
+     */
+    static int nextVariableIndex() {
+        int index = nextIndex.getAndIncrement();
+        if (index < 0 || index >= MAX_INDEX) {
+            nextIndex.set(MAX_INDEX);
+            throw new IllegalStateException("too many thread-local indexed variables");
+        }
+        return index;
+    }
+
+    /**
+     * 已经分配的下标个数
+     */
+    static int variableCount() {
+        return Math.min(nextIndex.get(), MAX_INDEX);
+    }
+
+    /**
+     * 当前线程的数组，没有时创建
+     */
+    static IndexedThreadLocalMap get() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof FastThreadLocalThread)
+            return fastGet((FastThreadLocalThread) thread);
+        return slowGet();
+    }
+
+    /**
+     * 当前线程的数组，没有时返回null
+     */
+    static IndexedThreadLocalMap getIfSet() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof FastThreadLocalThread)
+            return ((FastThreadLocalThread) thread).threadLocalMap();
+        return slowThreadLocalMap.get();
+    }
+
+    private static IndexedThreadLocalMap fastGet(FastThreadLocalThread thread) {
+        IndexedThreadLocalMap map = thread.threadLocalMap();
+        if (map == null)
+            thread.setThreadLocalMap(map = new IndexedThreadLocalMap());
+        return map;
+    }
+
+    private static IndexedThreadLocalMap slowGet() {
+        IndexedThreadLocalMap map = slowThreadLocalMap.get();
+        if (map == null)
+            slowThreadLocalMap.set(map = new IndexedThreadLocalMap());
+        return map;
+    }
+
+    /**
+     * 丢弃当前线程的整个数组
+     */
+    static void remove() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof FastThreadLocalThread)
+            ((FastThreadLocalThread) thread).setThreadLocalMap(null);
+        else
+            slowThreadLocalMap.remove();
+    }
+
+    Object indexedVariable(int index) {
+        Object[] lookup = indexedVariables;
+        return index < lookup.length ? lookup[index] : UNSET;
+    }
+
+    /**
+     * @return 这个位置原来是否没有值
+     */
+    boolean setIndexedVariable(int index, Object value) {
+        Object[] lookup = indexedVariables;
+        if (index < lookup.length) {
+            Object old = lookup[index];
+            lookup[index] = value;
+            return old == UNSET;
+        }
+        expandIndexedVariables(index, value);
+        return true;
+    }
+
+    private void expandIndexedVariables(int index, Object value) {
+        Object[] oldArray = indexedVariables;
+        int oldCapacity = oldArray.length;
+        // 取不小于index + 1的2的幂
+        int newCapacity = index >= MAX_INDEX >>> 1 ? MAX_INDEX : Integer.highestOneBit(index) << 1;
+        Object[] newArray = Arrays.copyOf(oldArray, newCapacity);
+        Arrays.fill(newArray, oldCapacity, newArray.length, UNSET);
+        newArray[index] = value;
+        indexedVariables = newArray;
+    }
+
+    /**
+     * @return 原来的值，没有时返回UNSET
+     */
+    Object removeIndexedVariable(int index) {
+        Object[] lookup = indexedVariables;
+        if (index < lookup.length) {
+            Object v = lookup[index];
+            lookup[index] = UNSET;
+            return v;
+        }
+        return UNSET;
+    }
+
+    boolean isIndexedVariableSet(int index) {
+        Object[] lookup = indexedVariables;
+        return index < lookup.length && lookup[index] != UNSET;
+    }
+}
@@ -0,0 +1,232 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR 风格的并发延迟直方图，记录非负的 long 值（通常是纳秒）。
+ * <p>
+ * 桶按"对数-线性"划分：小于 2^precision 的值每个值一个桶；之后每个 2 的幂区间 [2^e, 2^(e+1))
+ * 再均分成 2^precision 个子桶，所以任何值的相对误差都不超过 1/2^precision，
+ * 覆盖整个 long 范围只需要 (64 - precision) * 2^precision 个桶。
+ * <p>
+ * {@link #record} 只做一次 {@link AtomicLongArray#getAndIncrement} 加上几次 CAS，不分配对象；
+ * 读取时调用 {@link #snapshot()} 或 {@link #snapshotAndReset()} 得到不可变的 {@link Snapshot} 再计算分位数。
+ * snapshotAndReset 对每个桶做 getAndSet(0)，与并发的 record 交错时，每个样本要么算进这次快照，要么留给下一次，不会丢失。
+ * <p>
+ * 所有线程共用 sum 和 max，几十个线程高频记录时这两个字段会成为热点，这时改用按 Striped64 方式分散记录的
+ * {@link com.sunrise.study.thread.sourcecode.atomic.StripedHistogram}。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class LatencyHistogram {
+
+    /**
+     * 默认精度，每个 2 的幂区间 32 个子桶，相对误差约 3%
+     */
+    static final int DEFAULT_PRECISION = 5;
+
+    private final int precision;
+    private final int subBucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision 子桶位数，取值 1 ~ 10
+     */
+    public LatencyHistogram(int precision) {
+        if (precision < 1 || precision > 10)
+            throw new IllegalArgumentException();
+        this.precision = precision;
+        this.subBucketCount = 1 << precision;
+        this.counts = new AtomicLongArray((64 - precision) * subBucketCount);
+    }
+
+    /**
+     * 记录一个值，负数按 0 处理
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.getAndIncrement(indexOf(value));
+        sum.getAndAdd(value);
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value))
+            ;
+    }
+
+    /**
+     * 与 record 相同，但 sum 只 CAS 一次，失败（有其他线程同时在记录）时什么也不记录并返回 false。
+     * 供 {@link com.sunrise.study.thread.sourcecode.atomic.StripedHistogram} 像 Striped64 那样据此发现竞争、换一个直方图记录
+     */
+    public boolean tryRecord(long value) {
+        if (value < 0)
+            value = 0;
+        long s = sum.get();
+        if (!sum.compareAndSet(s, s + value))
+            return false;
+        counts.getAndIncrement(indexOf(value));
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value))
+            ;
+        return true;
+    }
+
+    int indexOf(long value) {
+        if (value < subBucketCount)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - precision;
+        // value >>> shift 落在 [subBucketCount, 2 * subBucketCount) 内
+        return (shift << precision) + (int) (value >>> shift);
+    }
+
+    /**
+     * 下标为 index 的桶能表示的最小值
+     */
+    long lowestValueAt(int index) {
+        if (index < subBucketCount)
+            return index;
+        int shift = (index - subBucketCount) >>> precision;
+        long sub = (index & (subBucketCount - 1)) + subBucketCount;
+        return sub << shift;
+    }
+
+    /**
+     * 下标为 index 的桶能表示的最大值
+     */
+    long highestValueAt(int index) {
+        if (index < subBucketCount)
+            return index;
+        int shift = (index - subBucketCount) >>> precision;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * 当前累计数据的快照，不影响后续记录
+     */
+    public Snapshot snapshot() {
+        long[] c = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < c.length; i++)
+            total += (c[i] = counts.get(i));
+        return new Snapshot(this, c, total, sum.get(), max.get());
+    }
+
+    /**
+     * 取出自上次重置以来的数据并清零，用于按时间间隔统计
+     */
+    public Snapshot snapshotAndReset() {
+        long[] c = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < c.length; i++) {
+            if (counts.get(i) != 0)
+                total += (c[i] = counts.getAndSet(i, 0));
+        }
+        return new Snapshot(this, c, total, sum.getAndSet(0), max.getAndSet(0));
+    }
+
+    /**
+     * 直方图的不可变快照，所有值与 record 时的单位相同
+     */
+    public static final class Snapshot {
+        private final LatencyHistogram histogram;
+        private final long[] counts;
+        private final long totalCount;
+        private final long sum;
+        private final long max;
+
+        Snapshot(LatencyHistogram histogram, long[] counts, long totalCount, long sum, long max) {
+            this.histogram = histogram;
+            this.counts = counts;
+            this.totalCount = totalCount;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return totalCount == 0 ? 0 : (double) sum / totalCount;
+        }
+
+        /**
+         * 返回不小于 percentile% 样本的值（所在桶的上界，不超过 max），没有样本时返回 0
+         *
+         * @param percentile 0 ~ 100
+         */
+        public long valueAtPercentile(double percentile) {
+            if (totalCount == 0)
+                return 0;
+            double p = Math.min(Math.max(percentile, 0), 100);
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if ((seen += counts[i]) >= rank)
+                    return Math.min(histogram.highestValueAt(i), max);
+            }
+            return max;
+        }
+
+        /**
+         * 返回从 earlier 到这个快照之间新增的样本，两个快照必须来自同一个直方图，且 earlier 在前。
+         * 区间内的最大值取最高非空桶的上界
+         */
+        public Snapshot since(Snapshot earlier) {
+            if (earlier.histogram != histogram)
+                throw new IllegalArgumentException();
+            long[] c = new long[counts.length];
+            long total = 0, m = 0;
+            for (int i = 0; i < c.length; i++) {
+                if ((c[i] = counts[i] - earlier.counts[i]) > 0) {
+                    total += c[i];
+                    m = histogram.highestValueAt(i);
+                }
+            }
+            return new Snapshot(histogram, c, total, sum - earlier.sum, Math.min(m, max));
+        }
+
+        /**
+         * 合并两个快照，两个直方图的精度必须相同。结果沿用这个快照的直方图，可以继续与同一来源的快照调用 since
+         */
+        public Snapshot plus(Snapshot other) {
+            if (other.counts.length != counts.length)
+                throw new IllegalArgumentException();
+            long[] c = new long[counts.length];
+            for (int i = 0; i < c.length; i++)
+                c[i] = counts[i] + other.counts[i];
+            return new Snapshot(histogram, c, totalCount + other.totalCount, sum + other.sum,
+                    Math.max(max, other.max));
+        }
+
+        /**
+         * 按 unit 输出常用分位数，用于日志
+         */
+        public String toString(TimeUnit unit) {
+            return String.format("count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f (%s)",
+                    totalCount, convert(getMean(), unit), convert(valueAtPercentile(50), unit),
+                    convert(valueAtPercentile(90), unit), convert(valueAtPercentile(99), unit),
+                    convert(valueAtPercentile(99.9), unit), convert(max, unit), unit);
+        }
+
+        private static double convert(double nanos, TimeUnit unit) {
+            return nanos / unit.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return toString(TimeUnit.MICROSECONDS);
+        }
+    }
+}
@@ -15,6 +15,8 @@ import java.util.function.Consumer;
  *   5.队列的notEmpty和notFull属性是Condition对象，当队列为空或满时，取元素或插入元素会阻塞；
  *   6.实现的是生产-消费模型；
  *   7.吞吐量通常要高于ArrayBlockingQueue；
+ *   8.实现了BulkBlockingQueue，批量入队时节点链表在锁外建好，加锁后一次接到队尾，只唤醒一次；
+ *   9.head和last分别只被出队线程和入队线程修改，两个字段通过父类中的填充字段各占独立的缓存行，避免伪共享；
  *
  * An optionally-bounded {@linkplain BlockingQueue blocking queue} based on
  * linked nodes.
@@ -46,8 +48,8 @@ import java.util.function.Consumer;
  * @author Doug Lea
  * @param <E> the type of elements held in this collection
  */
-public class LinkedBlockingQueue<E> extends AbstractQueue<E>
-        implements BlockingQueue<E>, java.io.Serializable {
+public class LinkedBlockingQueue<E> extends LinkedBlockingQueuePad2<E>
+        implements BulkBlockingQueue<E>, java.io.Serializable {
     private static final long serialVersionUID = -6903933977591709194L;
 
     /*
@@ -107,23 +109,6 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
      * The capacity bound, or Integer.MAX_VALUE if none */
     private final int capacity;
 
-    /**
-     * 元素个数
-     * Current number of elements */
-    private final AtomicInteger count = new AtomicInteger();
-
-    /**
-     * Head of linked list.
-     * Invariant: head.item == null
-     */
-    transient Node<E> head;
-
-    /**
-     * Tail of linked list.
-     * Invariant: last.next == null
-     */
-    private transient Node<E> last;
-
     /**
      * 保证同时只有一个线程操作头节点
      * Lock held by take, poll, etc */
@@ -132,6 +117,13 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
     /** Wait queue for waiting takes */
     private final Condition notEmpty = takeLock.newCondition();
 
+    /**
+     * 元素个数。读写两端都会修改，带尾部填充，并且在两把锁之间创建：
+     * 字段初始化按声明顺序分配对象，count隔开了takeLock和putLock内部AQS的state，
+     * 出队线程和入队线程抢各自的锁时不会互相使对方的缓存行失效（对象被GC移动后相对顺序通常不变）
+     * Current number of elements */
+    private final AtomicInteger count = new PaddedAtomicInteger();
+
     /**
      * 保证同时只有一个线程操作尾节点
      * Lock held by put, offer, etc */
@@ -140,6 +132,21 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
     /** Wait queue for waiting puts */
     private final Condition notFull = putLock.newCondition();
 
+    /**
+     * 在value之后填充128字节的AtomicInteger
+     */
+    static final class PaddedAtomicInteger extends AtomicInteger {
+        private static final long serialVersionUID = -3117359548417389924L;
+        byte p000, p001, p002, p003, p004, p005, p006, p007, p008, p009, p010, p011, p012, p013, p014, p015;
+        byte p016, p017, p018, p019, p020, p021, p022, p023, p024, p025, p026, p027, p028, p029, p030, p031;
+        byte p032, p033, p034, p035, p036, p037, p038, p039, p040, p041, p042, p043, p044, p045, p046, p047;
+        byte p048, p049, p050, p051, p052, p053, p054, p055, p056, p057, p058, p059, p060, p061, p062, p063;
+        byte p064, p065, p066, p067, p068, p069, p070, p071, p072, p073, p074, p075, p076, p077, p078, p079;
+        byte p080, p081, p082, p083, p084, p085, p086, p087, p088, p089, p090, p091, p092, p093, p094, p095;
+        byte p096, p097, p098, p099, p100, p101, p102, p103, p104, p105, p106, p107, p108, p109, p110, p111;
+        byte p112, p113, p114, p115, p116, p117, p118, p119, p120, p121, p122, p123, p124, p125, p126, p127;
+    }
+
     /**
      * 唤醒因notEmpty条件等待的线程
      * 只在put()、offer()方法中有调用
@@ -185,6 +192,40 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         last = last.next = node;
     }
 
+    /**
+     * 批量操作的参数校验，在锁外把c中的元素建成链表，nodes[i].next == nodes[i + 1]
+     */
+    private Node<E>[] linkedBatch(Collection<? extends E> c) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        @SuppressWarnings("unchecked")
+        Node<E>[] nodes = (Node<E>[]) new Node<?>[a.length];
+        Node<E> next = null;
+        for (int i = a.length - 1; i >= 0; i--) {
+            if (a[i] == null)
+                throw new NullPointerException();
+            @SuppressWarnings("unchecked")
+            Node<E> node = new Node<E>((E) a[i]);
+            node.next = next;
+            nodes[i] = next = node;
+        }
+        return nodes;
+    }
+
+    /**
+     * 把nodes[from, from + n)一次接到队尾，后面的节点留到下一批
+     */
+    private void enqueueAll(Node<E>[] nodes, int from, int n) {
+        // assert putLock.isHeldByCurrentThread();
+        Node<E> tail = nodes[from + n - 1];
+        tail.next = null;
+        last.next = nodes[from];
+        last = tail;
+    }
+
     /**
      * 获取并删除头节点（即哨兵节点的下一个节点）
      * Removes a node from head of queue.
@@ -447,6 +488,70 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         return c >= 0;
     }
 
+    /**
+     * 批量插入元素（非阻塞），一次加锁放入能放下的元素，若队列满了就直接返回0。
+     * 与offer一样，插入后若还有空位则唤醒下一个写线程，若队列原来是空的则唤醒一个读线程，由读线程依次传递
+     *
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Node<E>[] nodes = linkedBatch(c);
+        final AtomicInteger count = this.count;
+        if (nodes.length == 0 || count.get() == capacity)
+            return 0;
+        int prev = -1;
+        int n = 0;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            // count只会被读线程减小，这里算出的空位数不会偏大
+            n = Math.min(nodes.length, capacity - count.get());
+            if (n > 0) {
+                enqueueAll(nodes, 0, n);
+                prev = count.getAndAdd(n);
+                if (prev + n < capacity)
+                    notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (prev == 0)
+            signalNotEmpty();
+        return n;
+    }
+
+    /**
+     * 批量插入元素，若队列满了就等待，每次有空位时放入能放下的所有元素
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Node<E>[] nodes = linkedBatch(c);
+        final AtomicInteger count = this.count;
+        final ReentrantLock putLock = this.putLock;
+        for (int i = 0; i < nodes.length; ) {
+            int prev = -1;
+            putLock.lockInterruptibly();
+            try {
+                while (count.get() == capacity)
+                    notFull.await();
+                int n = Math.min(nodes.length - i, capacity - count.get());
+                enqueueAll(nodes, i, n);
+                prev = count.getAndAdd(n);
+                if (prev + n < capacity)
+                    notFull.signal();
+                i += n;
+            } finally {
+                putLock.unlock();
+            }
+            if (prev == 0)
+                signalNotEmpty();
+        }
+    }
+
     /**
      * 获取并删除头节点，如果队列为空，则进入条件等待，直到队列有元素
      * @return
@@ -801,6 +906,64 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * 批量获取并删除头部的元素，如果队列为空，则等待指定时间。
+     * 取走后队列中还有元素时与take一样继续唤醒下一个读线程。
+     * 这里不能在持有takeLock时调用drainTo(c, max)：外层仍持有takeLock时它会去获取putLock（signalNotFull），
+     * 与fullyLock先putLock后takeLock的加锁顺序相反，可能死锁
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        boolean signalNotFull = false;
+        final AtomicInteger count = this.count;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(maxElements, count.get());
+            Node<E> h = head;
+            int i = 0;
+            try {
+                while (i < n) {
+                    Node<E> p = h.next;
+                    c.add(p.item);
+                    p.item = null;
+                    h.next = h;
+                    h = p;
+                    ++i;
+                }
+                return n;
+            } finally {
+                if (i > 0) {
+                    head = h;
+                    int prev = count.getAndAdd(-i);
+                    if (prev > i)
+                        notEmpty.signal();
+                    signalNotFull = (prev == capacity);
+                }
+            }
+        } finally {
+            takeLock.unlock();
+            if (signalNotFull)
+                signalNotFull();
+        }
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
@@ -1081,3 +1244,57 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 }
+
+/*
+ * LinkedBlockingQueue的字段布局：填充 | head | 填充 | last | 填充 | LinkedBlockingQueue自己的字段。
+ * 做法与ConcurrentLinkedQueue相同，填充用byte字段，每段128字节
+ */
+
+abstract class LinkedBlockingQueuePad0<E> extends AbstractQueue<E> {
+    byte p000, p001, p002, p003, p004, p005, p006, p007, p008, p009, p010, p011, p012, p013, p014, p015;
+    byte p016, p017, p018, p019, p020, p021, p022, p023, p024, p025, p026, p027, p028, p029, p030, p031;
+    byte p032, p033, p034, p035, p036, p037, p038, p039, p040, p041, p042, p043, p044, p045, p046, p047;
+    byte p048, p049, p050, p051, p052, p053, p054, p055, p056, p057, p058, p059, p060, p061, p062, p063;
+    byte p064, p065, p066, p067, p068, p069, p070, p071, p072, p073, p074, p075, p076, p077, p078, p079;
+    byte p080, p081, p082, p083, p084, p085, p086, p087, p088, p089, p090, p091, p092, p093, p094, p095;
+    byte p096, p097, p098, p099, p100, p101, p102, p103, p104, p105, p106, p107, p108, p109, p110, p111;
+    byte p112, p113, p114, p115, p116, p117, p118, p119, p120, p121, p122, p123, p124, p125, p126, p127;
+}
+
+abstract class LinkedBlockingQueueHeadField<E> extends LinkedBlockingQueuePad0<E> {
+    /**
+     * Head of linked list.
+     * Invariant: head.item == null
+     */
+    transient LinkedBlockingQueue.Node<E> head;
+}
+
+abstract class LinkedBlockingQueuePad1<E> extends LinkedBlockingQueueHeadField<E> {
+    byte q000, q001, q002, q003, q004, q005, q006, q007, q008, q009, q010, q011, q012, q013, q014, q015;
+    byte q016, q017, q018, q019, q020, q021, q022, q023, q024, q025, q026, q027, q028, q029, q030, q031;
+    byte q032, q033, q034, q035, q036, q037, q038, q039, q040, q041, q042, q043, q044, q045, q046, q047;
+    byte q048, q049, q050, q051, q052, q053, q054, q055, q056, q057, q058, q059, q060, q061, q062, q063;
+    byte q064, q065, q066, q067, q068, q069, q070, q071, q072, q073, q074, q075, q076, q077, q078, q079;
+    byte q080, q081, q082, q083, q084, q085, q086, q087, q088, q089, q090, q091, q092, q093, q094, q095;
+    byte q096, q097, q098, q099, q100, q101, q102, q103, q104, q105, q106, q107, q108, q109, q110, q111;
+    byte q112, q113, q114, q115, q116, q117, q118, q119, q120, q121, q122, q123, q124, q125, q126, q127;
+}
+
+abstract class LinkedBlockingQueueLastField<E> extends LinkedBlockingQueuePad1<E> {
+    /**
+     * Tail of linked list.
+     * Invariant: last.next == null
+     */
+    transient LinkedBlockingQueue.Node<E> last;
+}
+
+abstract class LinkedBlockingQueuePad2<E> extends LinkedBlockingQueueLastField<E> {
+    byte r000, r001, r002, r003, r004, r005, r006, r007, r008, r009, r010, r011, r012, r013, r014, r015;
+    byte r016, r017, r018, r019, r020, r021, r022, r023, r024, r025, r026, r027, r028, r029, r030, r031;
+    byte r032, r033, r034, r035, r036, r037, r038, r039, r040, r041, r042, r043, r044, r045, r046, r047;
+    byte r048, r049, r050, r051, r052, r053, r054, r055, r056, r057, r058, r059, r060, r061, r062, r063;
+    byte r064, r065, r066, r067, r068, r069, r070, r071, r072, r073, r074, r075, r076, r077, r078, r079;
+    byte r080, r081, r082, r083, r084, r085, r086, r087, r088, r089, r090, r091, r092, r093, r094, r095;
+    byte r096, r097, r098, r099, r100, r101, r102, r103, r104, r105, r106, r107, r108, r109, r110, r111;
+    byte r112, r113, r114, r115, r116, r117, r118, r119, r120, r121, r122, r123, r124, r125, r126, r127;
+}
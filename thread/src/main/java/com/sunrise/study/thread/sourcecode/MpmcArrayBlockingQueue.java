@@ -0,0 +1,462 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于数组的有界无锁多生产者多消费者队列（Dmitry Vyukov 的 bounded MPMC queue），实现了{@link BulkBlockingQueue}。
+ * <p>
+ * {@link ArrayBlockingQueue}的两端共用一把ReentrantLock，{@link LinkedBlockingQueue}两端各一把锁，
+ * 但每次入队都要分配一个Node。这里数组的每个槽位带一个序号，入队和出队各自只需要对位置计数器做一次CAS：
+ * <ul>
+ *     <li>槽位序号等于入队位置pos时槽位空闲，CAS把enqueuePos从pos改为pos+1后写入元素，再把序号设为pos+1；</li>
+ *     <li>槽位序号等于出队位置pos+1时槽位有元素，CAS把dequeuePos从pos改为pos+1后取出元素，
+ *     再把序号设为pos+capacity，也就是下一圈入队时的位置；</li>
+ *     <li>序号小于期望值说明队列满（入队）或空（出队）。</li>
+ * </ul>
+ * 元素的可见性由序号的volatile写和读保证。出队用getAndSet取走元素，与{@link #remove(Object)}对同一槽位的CAS互斥。
+ * <p>
+ * 阻塞方法先自旋重试一定次数（单核时不自旋），再把当前线程登记到等待队列后park。
+ * 登记之后还会再试一次，而入队/出队成功后先写序号再检查等待队列，两边都是volatile操作，
+ * 所以不会出现元素已经入队、等待的线程却没有被唤醒的情况。被唤醒的线程如果已经在登记后的那次重试中拿到了元素，
+ * 就把唤醒转交给下一个等待的线程。
+ * <p>
+ * 与ArrayBlockingQueue的区别：
+ * <ul>
+ *     <li>容量向上取整为2的幂（至少为2）；</li>
+ *     <li>size()只是近似值，并发修改时可能比实际大或小；</li>
+ *     <li>迭代器基于调用时的快照，它的remove只在元素仍在原来的位置时删除它；</li>
+ *     <li>删除队列中间的元素（{@link #remove(Object)}、迭代器的remove）只是把槽位CAS为删除标记，
+ *     消费者经过时跳过它并空出槽位。在此之前该槽位仍占用容量，size()也仍然计入它。</li>
+ * </ul>
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class MpmcArrayBlockingQueue<E> extends AbstractQueue<E> implements BulkBlockingQueue<E> {
+
+    private static final int NCPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * park之前自旋重试的次数，单核时自旋没有意义
+     */
+    static final int SPINS = NCPUS < 2 ? 0 : 128;
+
+    /**
+     * 被删除的元素所在槽位的标记
+     */
+    private static final Object REMOVED = new Object();
+
+    private final AtomicReferenceArray<Object> buffer;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+
+    /**
+     * 等待元素的线程
+     */
+    private final ConcurrentLinkedQueue<Thread> notEmptyWaiters = new ConcurrentLinkedQueue<>();
+    /**
+     * 等待空位的线程
+     */
+    private final ConcurrentLinkedQueue<Thread> notFullWaiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     * @throws IllegalArgumentException if {@code capacity < 1} or is too large
+     */
+    public MpmcArrayBlockingQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException();
+        int n = capacity < 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new AtomicReferenceArray<>(n);
+        sequence = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++)
+            sequence.set(i, i);
+        mask = n - 1;
+    }
+
+    /**
+     * 实际容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private boolean tryEnqueue(E e) {
+        long pos = enqueuePos.get();
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequence.get(index) - pos;
+            if (diff == 0L) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, e);
+                    // 这里必须是volatile写，与随后读取等待队列构成Dekker式的检查
+                    sequence.set(index, pos + 1);
+                    return true;
+                }
+                pos = enqueuePos.get();
+            } else if (diff < 0L) {
+                return false;
+            } else {
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E tryDequeue() {
+        long pos = dequeuePos.get();
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequence.get(index) - (pos + 1);
+            if (diff == 0L) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    Object e = buffer.getAndSet(index, null);
+                    sequence.set(index, pos + mask + 1);
+                    if (e != REMOVED)
+                        return (E) e;
+                    // 已被删除的元素，槽位已经空出来，继续取下一个
+                    signal(notFullWaiters);
+                }
+                pos = dequeuePos.get();
+            } else if (diff < 0L) {
+                return null;
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    private static void signal(ConcurrentLinkedQueue<Thread> waiters) {
+        if (!waiters.isEmpty()) {
+            Thread t = waiters.poll();
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * 最多唤醒n个等待的线程
+     */
+    private static void signal(ConcurrentLinkedQueue<Thread> waiters, int n) {
+        for (Thread t; n > 0 && !waiters.isEmpty() && (t = waiters.poll()) != null; n--)
+            LockSupport.unpark(t);
+    }
+
+    private boolean enqueue(E e) {
+        if (!tryEnqueue(e))
+            return false;
+        signal(notEmptyWaiters);
+        return true;
+    }
+
+    private E dequeue() {
+        E e = tryDequeue();
+        if (e != null)
+            signal(notFullWaiters);
+        return e;
+    }
+
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        return enqueue(e);
+    }
+
+    public void put(E e) throws InterruptedException {
+        if (e == null)
+            throw new NullPointerException();
+        awaitEnqueue(e, false, 0L);
+    }
+
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null)
+            throw new NullPointerException();
+        return awaitEnqueue(e, true, unit.toNanos(timeout));
+    }
+
+    public E poll() {
+        return dequeue();
+    }
+
+    public E take() throws InterruptedException {
+        return awaitDequeue(false, 0L);
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitDequeue(true, unit.toNanos(timeout));
+    }
+
+    /**
+     * 自旋，然后登记到notFullWaiters后park，直到入队成功、超时或者被中断
+     */
+    private boolean awaitEnqueue(E e, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Thread w = Thread.currentThread();
+        int spins = SPINS;
+        for (;;) {
+            if (enqueue(e))
+                return true;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return false;
+            if (spins > 0) {
+                --spins;
+                continue;
+            }
+            notFullWaiters.add(w);
+            boolean done = enqueue(e);
+            if (!done) {
+                if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+            // 已经被出队的线程从等待队列中取走，如果登记后的重试已经成功，把唤醒转交出去
+            if (!notFullWaiters.remove(w) && done && remainingCapacity() > 0)
+                signal(notFullWaiters);
+            if (done)
+                return true;
+        }
+    }
+
+    /**
+     * 自旋，然后登记到notEmptyWaiters后park，直到取到元素、超时或者被中断
+     */
+    private E awaitDequeue(boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Thread w = Thread.currentThread();
+        int spins = SPINS;
+        for (;;) {
+            E e = dequeue();
+            if (e != null)
+                return e;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return null;
+            if (spins > 0) {
+                --spins;
+                continue;
+            }
+            notEmptyWaiters.add(w);
+            e = dequeue();
+            if (e == null) {
+                if (timed)
+                    LockSupport.parkNanos(this, nanos);
+                else
+                    LockSupport.park(this);
+            }
+            if (!notEmptyWaiters.remove(w) && e != null && !isEmpty())
+                signal(notEmptyWaiters);
+            if (e != null)
+                return e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        for (;;) {
+            long pos = dequeuePos.get();
+            int index = (int) pos & mask;
+            if (sequence.get(index) - (pos + 1) < 0L)
+                return null;
+            Object e = buffer.get(index);
+            if (e == REMOVED) {
+                // 队头的元素已被删除，替消费者跳过它
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, null);
+                    sequence.set(index, pos + mask + 1);
+                    signal(notFullWaiters);
+                }
+            } else if (e != null && dequeuePos.get() == pos) {
+                return (E) e;
+            }
+        }
+    }
+
+    /**
+     * 近似的元素个数
+     */
+    public int size() {
+        for (;;) {
+            long before = dequeuePos.get();
+            long tail = enqueuePos.get();
+            if (dequeuePos.get() == before) {
+                long n = tail - before;
+                return n <= 0L ? 0 : (int) Math.min(n, mask + 1);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    public int remainingCapacity() {
+        return mask + 1 - size();
+    }
+
+    /**
+     * 删除队列中第一个与o相等的元素。只是把槽位标记为已删除，槽位等消费者经过时才空出来
+     */
+    public boolean remove(Object o) {
+        if (o == null)
+            return false;
+        long pos = dequeuePos.get();
+        long tail = enqueuePos.get();
+        for (; pos - tail < 0L; pos++) {
+            int index = (int) pos & mask;
+            if (sequence.get(index) != pos + 1)
+                continue;
+            Object e = buffer.get(index);
+            if (e != null && e != REMOVED && o.equals(e) && tryRemove(pos, e))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 如果pos位置的元素仍是e，把槽位标记为已删除。出队时getAndSet取走元素，所以CAS成功时元素一定还没有被取走
+     */
+    private boolean tryRemove(long pos, Object e) {
+        int index = (int) pos & mask;
+        return sequence.get(index) == pos + 1 && buffer.compareAndSet(index, e, REMOVED);
+    }
+
+    /**
+     * 从a[from]开始入队，直到队列满，返回入队个数。入队k个元素后最多唤醒k个等待的线程
+     */
+    @SuppressWarnings("unchecked")
+    private int enqueueAll(Object[] a, int from) {
+        int i = from;
+        while (i < a.length && tryEnqueue((E) a[i]))
+            i++;
+        signal(notEmptyWaiters, i - from);
+        return i - from;
+    }
+
+    private Object[] checkedBatch(Collection<? extends E> c) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a) {
+            if (e == null)
+                throw new NullPointerException();
+        }
+        return a;
+    }
+
+    public int offerAll(Collection<? extends E> c) {
+        return enqueueAll(checkedBatch(c), 0);
+    }
+
+    /**
+     * 能放下的元素一次放入，放不下时对下一个元素按put等待空位，然后继续批量放入
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = checkedBatch(c);
+        for (int i = 0; i < a.length; ) {
+            i += enqueueAll(a, i);
+            if (i < a.length)
+                awaitEnqueue((E) a[i++], false, 0L);
+        }
+    }
+
+    public int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        E first = awaitDequeue(true, unit.toNanos(timeout));
+        if (first == null)
+            return 0;
+        c.add(first);
+        return 1 + drainTo(c, maxElements - 1);
+    }
+
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        try {
+            for (E e; n < maxElements && (e = tryDequeue()) != null; n++)
+                c.add(e);
+        } finally {
+            signal(notFullWaiters, n);
+        }
+        return n;
+    }
+
+    /**
+     * 返回调用时队列中元素的快照的迭代器，remove只在元素仍在原来的位置时删除它
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private final ArrayList<Object> items = new ArrayList<>();
+        private final ArrayList<Long> positions = new ArrayList<>();
+        private int cursor;
+        private int lastRet = -1;
+
+        Itr() {
+            long pos = dequeuePos.get();
+            long tail = enqueuePos.get();
+            for (; pos - tail < 0L; pos++) {
+                int index = (int) pos & mask;
+                // 序号不对说明该位置已被取走或者还没写完，读元素前后序号都没变才是pos位置的元素
+                if (sequence.get(index) != pos + 1)
+                    continue;
+                Object e = buffer.get(index);
+                if (e != null && e != REMOVED && sequence.get(index) == pos + 1) {
+                    items.add(e);
+                    positions.add(pos);
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return cursor < items.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= items.size())
+                throw new NoSuchElementException();
+            lastRet = cursor++;
+            return (E) items.get(lastRet);
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            tryRemove(positions.get(lastRet), items.get(lastRet));
+            lastRet = -1;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 采样式的虚拟线程 pinning 检测器。
+ * <p>
+ * 虚拟线程在持有监视器（synchronized）时阻塞，会把承载它的平台线程（carrier）一起占住，
+ * 大量任务这样阻塞时，虚拟线程执行器的并发度就退化成了 carrier 的个数。
+ * {@link ThreadPerTaskExecutor} 把正在运行任务的线程登记到这里，
+ * 后台守护线程每隔 samplePeriod 检查一遍，满足下面任意一条就认为该线程疑似 pin 住了 carrier：
+ * <ul>
+ *     <li>线程处于 BLOCKED 状态，即正在竞争进入 synchronized；</li>
+ *     <li>线程停在 {@code Object.wait()} 中；</li>
+ *     <li>线程处于 WAITING/TIMED_WAITING，并且栈上有 synchronized 方法。</li>
+ * </ul>
+ * 同一次阻塞持续超过 threshold 时记录一个 {@link Event}，按阻塞点统计次数。
+ * <p>
+ * 每次采样对所有登记的线程调用一次 getState。getStackTrace 要让目标线程到达安全点，代价高得多，只对
+ * 连续两次采样都处于阻塞状态、且已经阻塞了 threshold 的线程调用，同一次阻塞只取一次栈，每次采样最多取
+ * {@link #MAX_STACK_WALKS_PER_SAMPLE} 个线程的栈，剩下的留到下一次采样。即便如此，每次采样和每个任务的登记、
+ * 注销仍然与正在运行的任务数成正比，这是排查问题时临时打开的诊断工具，不适合在上百万个并发任务的执行器上长期开着。
+ * <p>
+ * 栈信息里看不出 synchronized 代码块持有的锁，这种情况需要配合
+ * {@code -Djdk.tracePinnedThreads=full} 或 JFR 的 {@code jdk.VirtualThreadPinned} 事件。
+ * 在不支持虚拟线程的 JVM 上检测照样进行，此时报告的是"换成虚拟线程后会 pin 住 carrier"的阻塞点。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class PinningMonitor implements AutoCloseable {
+
+    /**
+     * 最多保留的最近事件数
+     */
+    static final int MAX_RECENT_EVENTS = 64;
+
+    /**
+     * 每次采样最多取栈的线程数
+     */
+    static final int MAX_STACK_WALKS_PER_SAMPLE = 16;
+
+    private final long thresholdNanos;
+    private final long samplePeriodNanos;
+    private final Consumer<Event> listener;
+
+    /**
+     * 正在运行任务的线程 -> 该线程的阻塞探测状态
+     */
+    private final ConcurrentHashMap<Thread, Probe> running = new ConcurrentHashMap<>();
+
+    /**
+     * 类名#方法名 -> 是否为 synchronized 方法
+     */
+    private final ConcurrentHashMap<String, Boolean> synchronizedMethods = new ConcurrentHashMap<>();
+
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong stackWalks = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> eventsBySite = new ConcurrentHashMap<>();
+    private final List<Event> recent = new ArrayList<>();
+
+    private volatile Thread sampler;
+
+    /**
+     * 只由采样线程读写
+     */
+    private static final class Probe {
+        // 第一次采样到阻塞的时间，0 表示上次采样时没有阻塞
+        long since;
+        // 阻塞开始时的状态，状态变了当作新的一次阻塞
+        Thread.State state;
+        // 这次阻塞已经取过栈，不管是不是 pinning 都不再取
+        boolean checked;
+
+        void reset() {
+            since = 0;
+            state = null;
+            checked = false;
+        }
+    }
+
+    public PinningMonitor() {
+        this(20, TimeUnit.MILLISECONDS, 5, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * @param threshold    阻塞超过该时长才记录事件
+     * @param samplePeriod 采样间隔
+     * @param listener     每个事件的回调，可以为 null
+     */
+    public PinningMonitor(long threshold, TimeUnit thresholdUnit,
+                          long samplePeriod, TimeUnit samplePeriodUnit,
+                          Consumer<Event> listener) {
+        if (threshold < 0 || samplePeriod <= 0)
+            throw new IllegalArgumentException();
+        this.thresholdNanos = thresholdUnit.toNanos(threshold);
+        this.samplePeriodNanos = samplePeriodUnit.toNanos(samplePeriod);
+        this.listener = listener;
+    }
+
+    /**
+     * 启动采样线程，重复调用无效
+     */
+    public synchronized PinningMonitor start() {
+        if (sampler == null) {
+            Thread t = new Thread(this::sampleLoop, "pinning-monitor");
+            t.setDaemon(true);
+            sampler = t;
+            t.start();
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        Thread t = sampler;
+        if (t != null) {
+            sampler = null;
+            t.interrupt();
+        }
+    }
+
+    void taskStarted(Thread t) {
+        running.put(t, new Probe());
+    }
+
+    void taskFinished(Thread t) {
+        running.remove(t);
+    }
+
+    private void sampleLoop() {
+        Thread me = Thread.currentThread();
+        while (sampler == me) {
+            sample();
+            try {
+                TimeUnit.NANOSECONDS.sleep(samplePeriodNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 检查一遍所有正在运行任务的线程
+     */
+    void sample() {
+        samples.incrementAndGet();
+        long now = System.nanoTime();
+        int walks = 0;
+        for (Map.Entry<Thread, Probe> e : running.entrySet()) {
+            Thread t = e.getKey();
+            Probe p = e.getValue();
+            Thread.State state = t.getState();
+            if (state != Thread.State.BLOCKED && state != Thread.State.WAITING
+                    && state != Thread.State.TIMED_WAITING) {
+                p.reset();
+                continue;
+            }
+            if (p.since == 0 || p.state != state) {
+                // 第一次看到这次阻塞，先不取栈，下次采样还在阻塞再说
+                p.since = now;
+                p.state = state;
+                p.checked = false;
+                continue;
+            }
+            if (p.checked || now - p.since < thresholdNanos || walks == MAX_STACK_WALKS_PER_SAMPLE)
+                continue;
+            walks++;
+            p.checked = true;
+            StackTraceElement[] stack = t.getStackTrace();
+            String site = pinningSite(state, stack);
+            if (site != null)
+                record(new Event(t.getName(), VirtualThreads.isVirtual(t), state,
+                        TimeUnit.NANOSECONDS.toMillis(now - p.since), site, stack));
+        }
+        stackWalks.addAndGet(walks);
+    }
+
+    /**
+     * 返回导致 pinning 的栈帧，不是 pinning 时返回 null
+     */
+    String pinningSite(Thread.State state, StackTraceElement[] stack) {
+        if (stack.length == 0)
+            return null;
+        StackTraceElement top = stack[0];
+        if (state == Thread.State.BLOCKED)
+            return top.toString();
+        if ("java.lang.Object".equals(top.getClassName()) && "wait".equals(top.getMethodName()))
+            return stack.length > 1 ? stack[1].toString() : top.toString();
+        for (StackTraceElement f : stack) {
+            if (isSynchronizedMethod(f))
+                return f.toString();
+        }
+        return null;
+    }
+
+    private boolean isSynchronizedMethod(StackTraceElement f) {
+        String className = f.getClassName();
+        // JDK 自身的 synchronized 方法（如 PrintStream）不是我们关心的
+        if (className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun."))
+            return false;
+        String key = className + '#' + f.getMethodName();
+        Boolean r = synchronizedMethods.get(key);
+        if (r == null) {
+            r = Boolean.FALSE;
+            try {
+                Class<?> c = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+                for (Method m : c.getDeclaredMethods()) {
+                    if (m.getName().equals(f.getMethodName()) && Modifier.isSynchronized(m.getModifiers())) {
+                        r = Boolean.TRUE;
+                        break;
+                    }
+                }
+            } catch (Throwable ignore) {
+                // 类加载不到时当作非 synchronized
+            }
+            synchronizedMethods.put(key, r);
+        }
+        return r;
+    }
+
+    private void record(Event event) {
+        events.incrementAndGet();
+        eventsBySite.computeIfAbsent(event.site, k -> new AtomicLong()).incrementAndGet();
+        synchronized (recent) {
+            if (recent.size() == MAX_RECENT_EVENTS)
+                recent.remove(0);
+            recent.add(event);
+        }
+        if (listener != null)
+            listener.accept(event);
+    }
+
+    /**
+     * 导出当前的统计结果
+     */
+    public Snapshot snapshot() {
+        Map<String, Long> bySite = new LinkedHashMap<>();
+        eventsBySite.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                .forEach(e -> bySite.put(e.getKey(), e.getValue().get()));
+        List<Event> copy;
+        synchronized (recent) {
+            copy = new ArrayList<>(recent);
+        }
+        return new Snapshot(samples.get(), stackWalks.get(), running.size(), events.get(),
+                Collections.unmodifiableMap(bySite), Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * 一次疑似 pinning
+     */
+    public static final class Event {
+        public final String threadName;
+        public final boolean virtual;
+        public final Thread.State state;
+        public final long blockedMillis;
+        public final String site;
+        public final StackTraceElement[] stackTrace;
+
+        Event(String threadName, boolean virtual, Thread.State state, long blockedMillis,
+              String site, StackTraceElement[] stackTrace) {
+            this.threadName = threadName;
+            this.virtual = virtual;
+            this.state = state;
+            this.blockedMillis = blockedMillis;
+            this.site = site;
+            this.stackTrace = stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            return threadName + (virtual ? " (virtual) " : " ") + state
+                    + " >= " + blockedMillis + "ms at " + site;
+        }
+    }
+
+    /**
+     * 统计快照
+     */
+    public static final class Snapshot {
+        public final long samples;
+        /**
+         * 累计调用 getStackTrace 的次数
+         */
+        public final long stackWalks;
+        public final int runningTasks;
+        public final long events;
+        /**
+         * 按阻塞点统计的事件次数，次数多的在前
+         */
+        public final Map<String, Long> eventsBySite;
+        public final List<Event> recentEvents;
+
+        Snapshot(long samples, long stackWalks, int runningTasks, long events,
+                 Map<String, Long> eventsBySite, List<Event> recentEvents) {
+            this.samples = samples;
+            this.stackWalks = stackWalks;
+            this.runningTasks = runningTasks;
+            this.events = events;
+            this.eventsBySite = eventsBySite;
+            this.recentEvents = recentEvents;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("pinning: ").append(events).append(" events in ").append(samples)
+                    .append(" samples, ").append(stackWalks).append(" stack walks, ")
+                    .append(runningTasks).append(" tasks running");
+            for (Map.Entry<String, Long> e : eventsBySite.entrySet())
+                sb.append("\n  ").append(e.getValue()).append(" x ").append(e.getKey());
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按优先级和截止时间调度任务的线程池，工作队列是带比较器的{@link PriorityBlockingQueue}。
+ * <p>
+ * 直接把PriorityBlockingQueue交给ThreadPoolExecutor是不行的：submit会把任务包装成FutureTask，
+ * 包装后的对象没有实现Comparable，入队时就抛出ClassCastException。与ScheduledThreadPoolExecutor一样，
+ * 这里所有提交的任务（包括execute）都包装成{@link PriorityTask}，由比较器决定出队顺序。
+ * <p>
+ * 排序使用"虚拟截止时间"，越早越先执行：
+ * <ul>
+ *     <li>优先级为p的任务，虚拟截止时间 = 提交时间 + (MAX_PRIORITY + 1 - p) * agingInterval，
+ *     也就是优先级每高一级，相当于提前agingInterval提交。低优先级任务等待越久排名越靠前，
+ *     等待超过(p2 - p1) * agingInterval后就排在新提交的高优先级任务前面，不会被饿死；</li>
+ *     <li>虚拟截止时间相同时按提交顺序。</li>
+ * </ul>
+ * 排序键在提交时就确定，不随时间变化，所以堆的顺序始终有效，老化不需要重新排序。
+ * 任务的截止时间只用来丢弃过期任务，不参与排序：否则截止时间短的低优先级任务会排到高优先级任务前面，
+ * 过载时恰恰破坏了对高优先级任务的保护。
+ * <p>
+ * 过载时的处理：
+ * <ul>
+ *     <li>带截止时间的任务在开始执行时如果已经过期，不再执行，Future以{@link TimeoutException}异常完成；</li>
+ *     <li>指定了队列容量时，队列满后新任务排名更靠前就挤掉队列里排名最靠后的任务，
+ *     被挤掉的任务以{@link RejectedExecutionException}异常完成，否则拒绝新任务。</li>
+ * </ul>
+ * 这样高优先级任务的排队时长基本不受积压的低优先级任务影响，多出来的负载由低优先级任务承担（变慢或被丢弃）。
+ * <p>
+ * 工作队列无界，线程数固定为poolSize。与ScheduledThreadPoolExecutor一样，execute提交的任务也被包装，
+ * 任务抛出的异常保存在包装对象中，不会传给afterExecute和线程的UncaughtExceptionHandler。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
+
+    public static final int MIN_PRIORITY = 1;
+    public static final int NORM_PRIORITY = 5;
+    public static final int MAX_PRIORITY = 10;
+
+    /**
+     * 提交顺序，排序键相同时先提交的先执行
+     */
+    private static final AtomicLong sequencer = new AtomicLong();
+
+    private final long agingNanos;
+    private final int queueCapacity;
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * 创建队列无界的线程池
+     *
+     * @param poolSize      线程数
+     * @param agingInterval 优先级相差一级相当于提交时间相差多久
+     */
+    public PriorityThreadPoolExecutor(int poolSize, long agingInterval, TimeUnit unit) {
+        this(poolSize, agingInterval, unit, Integer.MAX_VALUE, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param poolSize      线程数
+     * @param agingInterval 优先级相差一级相当于提交时间相差多久
+     * @param queueCapacity 队列容量，满了之后按排名挤掉或拒绝任务
+     * @throws IllegalArgumentException if {@code poolSize <= 0},
+     *         {@code agingInterval <= 0} or {@code queueCapacity <= 0}
+     */
+    public PriorityThreadPoolExecutor(int poolSize, long agingInterval, TimeUnit unit,
+                                      int queueCapacity, ThreadFactory threadFactory) {
+        super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+              new PriorityBlockingQueue<Runnable>(11, PriorityThreadPoolExecutor::compareTasks),
+              threadFactory);
+        if (agingInterval <= 0 || queueCapacity <= 0)
+            throw new IllegalArgumentException();
+        this.agingNanos = unit.toNanos(agingInterval);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 带优先级和截止时间的任务
+     */
+    final class PriorityTask<V> extends FutureTask<V> {
+        final int priority;
+        /**
+         * 截止时间（System.nanoTime），0表示没有
+         */
+        final long deadline;
+        /**
+         * 虚拟截止时间，排序键
+         */
+        final long key;
+        final long seq;
+
+        PriorityTask(Callable<V> callable, int priority, long deadline) {
+            super(callable);
+            this.priority = priority;
+            this.deadline = deadline;
+            this.key = System.nanoTime() + (MAX_PRIORITY + 1 - priority) * agingNanos;
+            this.seq = sequencer.getAndIncrement();
+        }
+
+        PriorityTask(Runnable runnable, V result, int priority, long deadline) {
+            super(runnable, result);
+            this.priority = priority;
+            this.deadline = deadline;
+            this.key = System.nanoTime() + (MAX_PRIORITY + 1 - priority) * agingNanos;
+            this.seq = sequencer.getAndIncrement();
+        }
+
+        public void run() {
+            if (deadline != 0L && System.nanoTime() - deadline > 0) {
+                expired.increment();
+                shed(new TimeoutException("deadline exceeded before the task started"));
+                return;
+            }
+            super.run();
+        }
+
+        PriorityThreadPoolExecutor outer() {
+            return PriorityThreadPoolExecutor.this;
+        }
+
+        /**
+         * 不执行任务，以异常完成
+         */
+        void shed(Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    /**
+     * 工作队列的比较器，开启统计时队列中的元素包装在TimedTask中
+     */
+    private static int compareTasks(Runnable a, Runnable b) {
+        PriorityTask<?> x = (PriorityTask<?>) TimedTask.unwrap(a);
+        PriorityTask<?> y = (PriorityTask<?>) TimedTask.unwrap(b);
+        if (x == y)
+            return 0;
+        long diff = x.key - y.key;
+        if (diff != 0L)
+            return diff < 0L ? -1 : 1;
+        return x.seq < y.seq ? -1 : 1;
+    }
+
+    private static void checkPriority(int priority) {
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY)
+            throw new IllegalArgumentException("priority " + priority);
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        if (unit == null)
+            throw new NullPointerException();
+        long d = System.nanoTime() + unit.toNanos(timeout);
+        return d == 0L ? 1L : d;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PriorityTask<T>(runnable, value, NORM_PRIORITY, 0L);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PriorityTask<T>(callable, NORM_PRIORITY, 0L);
+    }
+
+    /**
+     * 以NORM_PRIORITY执行任务，任务被包装成Future，抛出的异常不会传给afterExecute
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        if (command instanceof PriorityTask && ((PriorityTask<?>) command).outer() == this)
+            enqueue((PriorityTask<?>) command);
+        else
+            enqueue(new PriorityTask<Void>(command, null, NORM_PRIORITY, 0L));
+    }
+
+    /**
+     * 以给定优先级执行任务
+     */
+    public void execute(Runnable command, int priority) {
+        submit(command, priority);
+    }
+
+    public Future<?> submit(Runnable task, int priority) {
+        if (task == null)
+            throw new NullPointerException();
+        checkPriority(priority);
+        PriorityTask<Void> t = new PriorityTask<Void>(task, null, priority, 0L);
+        enqueue(t);
+        return t;
+    }
+
+    public <T> Future<T> submit(Callable<T> task, int priority) {
+        if (task == null)
+            throw new NullPointerException();
+        checkPriority(priority);
+        PriorityTask<T> t = new PriorityTask<T>(task, priority, 0L);
+        enqueue(t);
+        return t;
+    }
+
+    /**
+     * 提交必须在timeout内开始执行的任务，超时未开始的任务不再执行，
+     * 返回的Future以{@link TimeoutException}为原因的ExecutionException完成
+     */
+    public Future<?> submit(Runnable task, int priority, long timeout, TimeUnit unit) {
+        if (task == null)
+            throw new NullPointerException();
+        checkPriority(priority);
+        PriorityTask<Void> t = new PriorityTask<Void>(task, null, priority, deadline(timeout, unit));
+        enqueue(t);
+        return t;
+    }
+
+    /**
+     * 提交必须在timeout内开始执行的任务，超时未开始的任务不再执行，
+     * 返回的Future以{@link TimeoutException}为原因的ExecutionException完成
+     */
+    public <T> Future<T> submit(Callable<T> task, int priority, long timeout, TimeUnit unit) {
+        if (task == null)
+            throw new NullPointerException();
+        checkPriority(priority);
+        PriorityTask<T> t = new PriorityTask<T>(task, priority, deadline(timeout, unit));
+        enqueue(t);
+        return t;
+    }
+
+    private void enqueue(PriorityTask<?> task) {
+        if (queueCapacity != Integer.MAX_VALUE && getQueue().size() >= queueCapacity && !evictFor(task)) {
+            reject(task);
+            return;
+        }
+        super.execute(task);
+    }
+
+    /**
+     * 队列已满，找出排名最靠后的任务，比新任务靠后就把它挤出队列。
+     * 只在过载时调用，遍历整个队列是可以接受的；并发提交时队列可能短暂超过容量
+     */
+    private boolean evictFor(PriorityTask<?> task) {
+        Runnable victim = null;
+        for (Object o : getQueue().toArray()) {
+            Runnable r = (Runnable) o;
+            if (victim == null || compareTasks(r, victim) > 0)
+                victim = r;
+        }
+        if (victim == null || compareTasks(victim, task) < 0 || !getQueue().remove(victim))
+            return false;
+        evicted.increment();
+        ((PriorityTask<?>) TimedTask.unwrap(victim)).shed(
+                new RejectedExecutionException("evicted by a higher ranked task"));
+        return true;
+    }
+
+    /**
+     * 开始执行时已经过期而被丢弃的任务数
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * 队列满时被挤出队列的任务数
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    public long getAgingInterval(TimeUnit unit) {
+        return unit.convert(agingNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+}
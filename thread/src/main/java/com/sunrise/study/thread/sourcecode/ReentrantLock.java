@@ -618,6 +618,31 @@ public class ReentrantLock implements Lock {
         return sync.getQueueLength();
     }
 
+    /**
+     * 开启竞争统计，见{@link ContentionProfile}
+     *
+     * @param name 统计的名字，同名的锁合并统计
+     * @return the profile
+     */
+    public ContentionProfile enableProfiling(String name) {
+        return sync.enableProfiling(name);
+    }
+
+    /**
+     * 关闭竞争统计，已记录的数据仍保留在{@link ContentionProfile}中
+     */
+    public void disableProfiling() {
+        sync.disableProfiling();
+    }
+
+    /**
+     * 开启或关闭自适应自旋：获取失败后先自旋一段时间再入队park，适合临界区很短（几百纳秒）的锁。
+     * 自旋时长按锁学习，详见{@link AbstractQueuedSynchronizer#setAdaptiveSpinning(boolean)}
+     */
+    public void setAdaptiveSpinning(boolean on) {
+        sync.setAdaptiveSpinning(on);
+    }
+
     /**
      * Returns a collection containing threads that may be waiting to
      * acquire this lock.  Because the actual set of threads may change
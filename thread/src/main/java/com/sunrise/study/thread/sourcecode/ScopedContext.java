@@ -0,0 +1,246 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * 不可变的上下文快照，仿照 JDK 21 的 ScopedValue，用来把请求上下文（traceId、租户、用户等）带到线程池中执行的任务里。
+ * <p>
+ * 每个线程只保存一个"当前上下文"引用。上下文是 {@link Key} 和值组成的不可变链表，
+ * {@link Carrier#run} 在当前上下文前面接上新的绑定、执行完后恢复原来的引用，所以：
+ * <ul>
+ *     <li>{@link #capture()} 只是读一次引用，O(1)，不复制任何值；</li>
+ *     <li>在另一个线程上 {@link #run} 一个快照只是两次引用赋值，O(1)，执行完恢复，不会像 ThreadLocal 那样
+ *     忘记 remove 时把值留在池线程上；</li>
+ *     <li>值不可修改，任务之间、父子线程之间不会互相影响。</li>
+ * </ul>
+ * 对比 InheritableThreadLocal：它在创建线程时复制父线程的整个 ThreadLocalMap，池线程只在创建时复制一次，
+ * 之后提交的任务看到的是过期的值；为每个任务手动复制、设置、清除若干 ThreadLocal 则是 O(n) 的。
+ * <p>
+ * {@link ThreadPoolExecutor#setContextPropagation(boolean)} 打开后，execute 时捕获提交线程的上下文，
+ * runWorker 执行任务前切换到该上下文，结束后恢复，见 {@link Executors#newContextPropagatingThreadPool(int)}。
+ * 当前上下文保存在 {@link FastThreadLocal} 中，池线程是 {@link FastThreadLocalThread} 时读写只是一次字段读和数组访问。
+ * <p>
+ * 查找按绑定的先后从新到旧遍历链表，绑定层数通常只有几层；同一个 Key 再次绑定时遮住外层的值。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public final class ScopedContext {
+
+    /**
+     * 上下文中的一个变量，通常声明为 static final，与 ScopedValue 相同
+     */
+    public static final class Key<T> {
+        private final String name;
+
+        private Key(String name) {
+            this.name = name;
+        }
+
+        public static <T> Key<T> newInstance() {
+            return new Key<>(null);
+        }
+
+        /**
+         * @param name 只用于toString
+         */
+        public static <T> Key<T> newInstance(String name) {
+            return new Key<>(name);
+        }
+
+        /**
+         * 当前上下文中的值
+         *
+         * @throws NoSuchElementException 没有绑定时
+         */
+        public T get() {
+            ScopedContext c = CURRENT.get().find(this);
+            if (c == null)
+                throw new NoSuchElementException(toString() + " not bound");
+            return value(c);
+        }
+
+        /**
+         * 当前上下文中的值，没有绑定时返回other
+         */
+        public T orElse(T other) {
+            ScopedContext c = CURRENT.get().find(this);
+            return c == null ? other : value(c);
+        }
+
+        public boolean isBound() {
+            return CURRENT.get().find(this) != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T value(ScopedContext c) {
+            return (T) c.value;
+        }
+
+        @Override
+        public String toString() {
+            return name != null ? "ScopedContext.Key[" + name + "]" : super.toString();
+        }
+    }
+
+    /**
+     * 还没有生效的一组绑定，调用run/call时接在当前上下文前面
+     */
+    public static final class Carrier {
+        private final Key<?> key;
+        private final Object value;
+        private final Carrier prev;
+
+        private Carrier(Key<?> key, Object value, Carrier prev) {
+            this.key = Objects.requireNonNull(key);
+            this.value = value;
+            this.prev = prev;
+        }
+
+        /**
+         * 再绑定一个变量
+         */
+        public <T> Carrier where(Key<T> key, T value) {
+            return new Carrier(key, value, this);
+        }
+
+        /**
+         * 把这组绑定接在base前面
+         */
+        private ScopedContext bind(ScopedContext base) {
+            ScopedContext c = prev == null ? base : prev.bind(base);
+            return new ScopedContext(key, value, c);
+        }
+
+        /**
+         * 在当前上下文加上这组绑定后执行op，结束后恢复
+         */
+        public void run(Runnable op) {
+            ScopedContext previous = CURRENT.get();
+            CURRENT.set(bind(previous));
+            try {
+                op.run();
+            } finally {
+                CURRENT.set(previous);
+            }
+        }
+
+        /**
+         * 同run，有返回值
+         */
+        public <R> R call(Callable<? extends R> op) throws Exception {
+            ScopedContext previous = CURRENT.get();
+            CURRENT.set(bind(previous));
+            try {
+                return op.call();
+            } finally {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 空的上下文
+     */
+    static final ScopedContext EMPTY = new ScopedContext(null, null, null);
+
+    /**
+     * 每个线程的当前上下文
+     */
+    private static final FastThreadLocal<ScopedContext> CURRENT = FastThreadLocal.withInitial(() -> EMPTY);
+
+    private final Key<?> key;
+    private final Object value;
+    private final ScopedContext parent;
+
+    private ScopedContext(Key<?> key, Object value, ScopedContext parent) {
+        this.key = key;
+        this.value = value;
+        this.parent = parent;
+    }
+
+    /**
+     * 绑定一个变量，返回的Carrier调用run或call时生效
+     */
+    public static <T> Carrier where(Key<T> key, T value) {
+        return new Carrier(key, value, null);
+    }
+
+    /**
+     * 当前线程的上下文快照，可以交给其他线程{@link #run}。没有绑定时返回空的上下文，不会返回null
+     */
+    public static ScopedContext capture() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 把当前线程的上下文换成next，返回原来的上下文，供runWorker在任务前后切换
+     */
+    static ScopedContext swap(ScopedContext next) {
+        ScopedContext previous = CURRENT.get();
+        CURRENT.set(next);
+        return previous;
+    }
+
+    /**
+     * 把当前线程的上下文恢复为previous
+     */
+    static void restore(ScopedContext previous) {
+        CURRENT.set(previous);
+    }
+
+    /**
+     * 以这个快照为当前上下文执行op，结束后恢复原来的上下文
+     */
+    public void run(Runnable op) {
+        ScopedContext previous = swap(this);
+        try {
+            op.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 同run，有返回值
+     */
+    public <R> R call(Callable<? extends R> op) throws Exception {
+        ScopedContext previous = swap(this);
+        try {
+            return op.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 包装op，执行时切换到这个快照。用于不支持上下文传递的执行器，例如CompletableFuture.runAsync
+     */
+    public Runnable wrap(Runnable op) {
+        Objects.requireNonNull(op);
+        return isEmpty() ? op : () -> run(op);
+    }
+
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    private ScopedContext find(Key<?> k) {
+        for (ScopedContext c = this; c != EMPTY && c != null; c = c.parent) {
+            if (c.key == k)
+                return c;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ScopedContext[");
+        for (ScopedContext c = this; c != EMPTY && c != null; c = c.parent) {
+            if (c != this)
+                sb.append(", ");
+            sb.append(c.key).append('=').append(c.value);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -4,11 +4,17 @@ import com.sunrise.study.thread.sourcecode.locks.LockSupport;
 
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 一个不存储元素的阻塞队列，每个插入操作必须等到另一个线程调用移除操作，否则插入操作一直处于阻塞状态，吞吐量通常要高于LinkedBlockingQuene；
  * 使用无锁算法，根据节点的状态判断执行，而不需要用到锁，其核心是Transfer.transfer().
+ * 高并发时所有线程都在CAS同一个head（tail），可以用{@link #SynchronousQueue(boolean, int)}选择：
+ *   1.ELIMINATION：CAS失败的线程到消除数组（elimination array）里等一小会儿，
+ *     遇到模式相反的线程就直接交换，不再回到栈（队列）上竞争；
+ *   2.COMBINING：flat combining，每个线程把请求挂到自己的发布记录上，抢到合并锁的线程扫描所有记录，
+ *     替别人配对，其余线程只需要在自己的记录上等待结果。
  */
 
 /**
@@ -272,6 +278,17 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
         /** The head (top) of the stack */
         volatile SNode head;
 
+        /** 消除数组，为null时不做消除 */
+        final EliminationArena arena;
+
+        TransferStack() {
+            this(null);
+        }
+
+        TransferStack(EliminationArena arena) {
+            this.arena = arena;
+        }
+
         boolean casHead(SNode h, SNode nh) {
             return h == head &&
                 UNSAFE.compareAndSwapObject(this, headOffset, h, nh);
@@ -337,6 +354,10 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
                         if ((h = head) != null && h.next == s)
                             casHead(h, s.next);     // help s's fulfiller
                         return (E) ((mode == REQUEST) ? m.item : s.item);
+                    } else if (arena != null) {     // 撞上了其他线程，到消除数组里找对手
+                        Object x = arena.exchange(e);
+                        if (x != null)
+                            return (E) x;
                     }
                 } else if (!isFulfilling(h.mode)) { // try to fulfill
                     if (h.isCancelled())            // already cancelled
@@ -356,6 +377,10 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
                             } else                  // lost match
                                 s.casNext(m, mn);   // help unlink
                         }
+                    } else if (arena != null) {     // 同上
+                        Object x = arena.exchange(e);
+                        if (x != null)
+                            return (E) x;
                     }
                 } else {                            // help a fulfiller
                     SNode m = h.next;               // m is h's match
@@ -575,10 +600,18 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
          */
         transient volatile QNode cleanMe;
 
+        /** 消除数组，为null时不做消除 */
+        final EliminationArena arena;
+
         TransferQueue() {
+            this(null);
+        }
+
+        TransferQueue(EliminationArena arena) {
             QNode h = new QNode(null, false); // initialize to dummy node.
             head = h;
             tail = h;
+            this.arena = arena;
         }
 
         /**
@@ -658,8 +691,15 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
                         return null;
                     if (s == null)
                         s = new QNode(e, isData);
-                    if (!t.casNext(null, s))        // failed to link in
+                    if (!t.casNext(null, s)) {      // failed to link in
+                        // 只在队列为空时消除：此时没有排队的线程，直接交换不会越过任何人，不破坏FIFO
+                        if (arena != null && h == t) {
+                            Object x = arena.exchange(e);
+                            if (x != null)
+                                return (E) x;
+                        }
                         continue;
+                    }
 
                     advanceTail(t, s);              // swing tail and wait
                     Object x = awaitFulfill(s, e, timed, nanos);
@@ -809,6 +849,348 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * 消除数组（Hendler、Shavit、Yerushalmi，"A Scalable Lock-free Stack Algorithm"）。
+     * <p>
+     * 在栈（队列）的head（tail）上CAS失败说明有竞争，这时随机选一个槽位：槽位空着就放入自己的节点等待一小段时间，
+     * 槽位上是模式相反的节点就把它取走，两个操作直接完成交换，不经过栈（队列）。模式相同或者等待超时则回去重试。
+     * 选择范围从1个槽位开始，每次碰撞后加倍，线程少时容易碰面，线程多时分散开。
+     * 槽位之间隔开{@code 1 << SHIFT}个引用，避免相邻槽位伪共享。
+     * <p>
+     * 等待只自旋不阻塞，单核机器上等不到对手，不创建消除数组。
+     */
+    static final class EliminationArena {
+        /** 槽位之间的间隔 */
+        static final int SHIFT = 4;
+        /** 最多的槽位数 */
+        static final int MAX_SLOTS = 32;
+        /** 在槽位上等待对手的自旋次数 */
+        static final int SPINS = 1 << 10;
+        /** 每次exchange最多尝试的槽位数 */
+        static final int MAX_TRIES = 4;
+
+        /** 槽位中的节点，match由对手设置：REQUEST节点得到元素，DATA节点得到节点本身 */
+        static final class Node {
+            final Object item;
+            volatile Object match;
+
+            Node(Object item) {
+                this.item = item;
+            }
+        }
+
+        final int length;
+        final Object[] slots;
+
+        EliminationArena() {
+            length = Math.min(Math.max(NCPUS >>> 1, 1), MAX_SLOTS);
+            slots = new Object[(length + 1) << SHIFT];
+        }
+
+        /**
+         * 尝试与模式相反的线程直接交换
+         *
+         * @param e 非null时交出的元素，null表示请求元素
+         * @return 交出元素时返回e，请求元素时返回得到的元素，没有碰到对手返回null
+         */
+        Object exchange(Object e) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Node s = null;
+            for (int range = 1, tries = 0; tries < MAX_TRIES; ++tries) {
+                long offset = ABASE + ((long) (random.nextInt(range) + 1) << (SHIFT + ASHIFT));
+                Node q = (Node) UNSAFE.getObjectVolatile(slots, offset);
+                if (q != null) {
+                    if ((q.item == null) != (e == null) &&
+                        UNSAFE.compareAndSwapObject(slots, offset, q, null)) {
+                        q.match = (e != null) ? e : q;
+                        return (e != null) ? e : q.item;
+                    }
+                } else {
+                    if (s == null)
+                        s = new Node(e);
+                    if (UNSAFE.compareAndSwapObject(slots, offset, null, s)) {
+                        Object m;
+                        for (int spins = SPINS; (m = s.match) == null && spins > 0; --spins)
+                            ;
+                        if (m == null && UNSAFE.compareAndSwapObject(slots, offset, s, null))
+                            return null;            // 没有等到对手，回去重试
+                        while ((m = s.match) == null) // 对手已经取走节点，马上就会设置match
+                            Thread.yield();
+                        return (e != null) ? e : m;
+                    }
+                }
+                range = Math.min(range << 1, length); // 碰撞，扩大范围
+            }
+            return null;
+        }
+
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long ABASE;
+        private static final int ASHIFT;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                ABASE = UNSAFE.arrayBaseOffset(Object[].class);
+                int scale = UNSAFE.arrayIndexScale(Object[].class);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("array index scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Flat combining（Hendler、Incze、Shavit、Tzafrir，"Scalable Flat-Combining Based Synchronous Queues"）。
+     * <p>
+     * 每个线程在每个队列上有一条发布记录（ThreadLocal），第一次使用时压入发布链表。操作时把元素写进记录，
+     * 状态置为PENDING，然后尝试获取合并锁：拿到锁的线程成为合并者，遍历链表，把PENDING的DATA记录和REQUEST记录两两配对，
+     * 把结果写进记录后唤醒双方；没拿到锁的线程在自己的记录上自旋，等待合并者，锁释放后再去抢。
+     * 热点从head上的CAS变成一把锁和一次链表遍历，合并者一次扫描可以完成很多对交换，其他线程只读自己的记录。
+     * <p>
+     * 线程完成一次（开始于自己发布之后的）合并后才能阻塞：此后到达的相反模式线程在自己的合并中一定能看到它，不会丢失唤醒。
+     * 配对时用CAS把双方从PENDING改为CLAIMED，与超时、中断的取消（PENDING改为CANCELLED）竞争，
+     * 一方取消失败时把另一方恢复为PENDING。
+     * <p>
+     * 合并者按栈的方式配对，不保证顺序。合并者每{@code CLEAN_INTERVAL}次合并清理一次长期空闲的记录，
+     * 被清理的记录状态为UNLINKED，主人下次使用时重新压入链表。
+     */
+    static final class TransferCombiner<E> extends Transferer<E> {
+        /* 记录的状态 */
+        /** 没有进行中的操作 */
+        static final int IDLE      = 0;
+        /** 等待配对 */
+        static final int PENDING   = 1;
+        /** 合并者正在配对 */
+        static final int CLAIMED   = 2;
+        /** 配对完成，结果在item中 */
+        static final int DONE      = 3;
+        /** 超时或中断，已取消 */
+        static final int CANCELLED = 4;
+        /** 不在链表中 */
+        static final int UNLINKED  = 5;
+
+        /** 每次获得合并锁后最多遍历链表的次数 */
+        static final int COMBINING_PASSES = 3;
+        /** 每隔多少次合并清理一次空闲记录 */
+        static final int CLEAN_INTERVAL = 64;
+        /** 超过多少次合并没有使用的空闲记录会被清理 */
+        static final int MAX_IDLE_PASSES = 1024;
+
+        /** 发布记录 */
+        static final class Record {
+            volatile int state = UNLINKED;
+            /** 主人在置为PENDING前写入元素，合并者在置为DONE前写入结果 */
+            Object item;
+            boolean isData;
+            /** 最近一次使用时的合并次数 */
+            int lastUsed;
+            volatile Thread waiter;
+            volatile Record next;
+            /** 合并者暂存未配对记录用 */
+            Record chain;
+
+            boolean casState(int cmp, int val) {
+                return UNSAFE.compareAndSwapInt(this, stateOffset, cmp, val);
+            }
+
+            private static final sun.misc.Unsafe UNSAFE;
+            private static final long stateOffset;
+            static {
+                try {
+                    UNSAFE = sun.misc.Unsafe.getUnsafe();
+                    stateOffset = UNSAFE.objectFieldOffset
+                        (Record.class.getDeclaredField("state"));
+                } catch (Exception e) {
+                    throw new Error(e);
+                }
+            }
+        }
+
+        /** 发布链表的头，新记录压在头部 */
+        volatile Record head;
+        /** 合并锁，1表示有合并者 */
+        volatile int combining;
+        /** 合并次数，只有合并者修改 */
+        volatile int passes;
+
+        final java.lang.ThreadLocal<Record> records = new java.lang.ThreadLocal<Record>() {
+            @Override
+            protected Record initialValue() {
+                return new Record();
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        E transfer(E e, boolean timed, long nanos) {
+            Record r = records.get();
+            r.item = e;
+            r.isData = (e != null);
+            r.lastUsed = passes;
+            if (!r.casState(IDLE, PENDING)) {   // 已被清理，重新压入链表
+                r.state = PENDING;
+                push(r);
+            }
+
+            final long deadline = timed ? System.nanoTime() + nanos : 0L;
+            Thread w = Thread.currentThread();
+            boolean combined = false;           // 发布后是否完成过一次合并
+            int spins = timed ? maxTimedSpins : maxUntimedSpins;
+            for (;;) {
+                int state = r.state;
+                if (state == DONE) {
+                    Object x = r.item;
+                    r.item = null;
+                    r.waiter = null;
+                    r.state = IDLE;
+                    return (E) x;
+                }
+                if (state == CLAIMED) {         // 合并者马上就会完成
+                    Thread.yield();
+                    continue;
+                }
+                if (w.isInterrupted() ||
+                    (combined && timed && (nanos = deadline - System.nanoTime()) <= 0L)) {
+                    if (r.casState(PENDING, CANCELLED)) {
+                        r.item = null;
+                        r.waiter = null;
+                        r.state = IDLE;
+                        return null;
+                    }
+                    continue;                   // 已被配对，等待结果
+                }
+                if (!combined) {
+                    if (combining == 0 &&
+                        UNSAFE.compareAndSwapInt(this, combiningOffset, 0, 1)) {
+                        try {
+                            combine();
+                        } finally {
+                            combining = 0;
+                        }
+                        combined = true;
+                    } else if (NCPUS < 2)       // 别人在合并，等锁释放
+                        Thread.yield();
+                } else if (spins > 0)
+                    --spins;
+                else if (r.waiter == null)
+                    r.waiter = w;               // 设置后再检查一次状态
+                else if (!timed)
+                    LockSupport.park(this);
+                else if (nanos > spinForTimeoutThreshold)
+                    LockSupport.parkNanos(this, nanos);
+            }
+        }
+
+        /**
+         * 合并：持有合并锁时调用
+         */
+        void combine() {
+            int pass = passes + 1;
+            passes = pass;
+            for (int i = 0; i < COMBINING_PASSES; ++i) {
+                if (scan() == 0)
+                    break;
+            }
+            if (pass % CLEAN_INTERVAL == 0)
+                clean(pass);
+        }
+
+        /**
+         * 遍历一次链表，返回配对的个数
+         */
+        int scan() {
+            int matched = 0;
+            Record unmatched = null;            // 未配对的同模式记录，通过chain连成栈
+            for (Record p = head; p != null; p = p.next) {
+                while (p.state == PENDING && unmatched != null && unmatched.isData != p.isData) {
+                    Record q = unmatched;
+                    if (!q.casState(PENDING, CLAIMED)) { // q已取消
+                        unmatched = q.chain;
+                        q.chain = null;
+                        continue;
+                    }
+                    if (!p.casState(PENDING, CLAIMED)) { // p已取消
+                        q.state = PENDING;
+                        break;
+                    }
+                    unmatched = q.chain;
+                    q.chain = null;
+                    fulfill(q, p);
+                    ++matched;
+                }
+                if (p.state == PENDING) {
+                    p.chain = unmatched;
+                    unmatched = p;
+                }
+            }
+            while (unmatched != null) {
+                Record q = unmatched;
+                unmatched = q.chain;
+                q.chain = null;
+            }
+            return matched;
+        }
+
+        /**
+         * 完成一对已经CLAIMED的记录
+         */
+        static void fulfill(Record a, Record b) {
+            Record data = a.isData ? a : b, request = a.isData ? b : a;
+            request.item = data.item;
+            request.state = DONE;
+            data.state = DONE;
+            Thread w;
+            if ((w = request.waiter) != null)
+                LockSupport.unpark(w);
+            if ((w = data.waiter) != null)
+                LockSupport.unpark(w);
+        }
+
+        /**
+         * 从链表中移除长期空闲的记录。不移除头节点，头节点只能通过CAS修改。
+         * 先读出next再改状态：改为UNLINKED后主人可能立刻把记录重新压入链表并修改next
+         */
+        void clean(int pass) {
+            Record pred = head;
+            if (pred == null)
+                return;
+            for (Record p = pred.next; p != null; p = pred.next) {
+                Record n = p.next;
+                if (p.state == IDLE && pass - p.lastUsed > MAX_IDLE_PASSES &&
+                    p.casState(IDLE, UNLINKED))
+                    pred.next = n;
+                else
+                    pred = p;
+            }
+        }
+
+        void push(Record r) {
+            for (;;) {
+                Record h = head;
+                r.next = h;
+                if (UNSAFE.compareAndSwapObject(this, headOffset, h, r))
+                    return;
+            }
+        }
+
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long headOffset;
+        private static final long combiningOffset;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = TransferCombiner.class;
+                headOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("head"));
+                combiningOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("combining"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
     /**
      * The transferer. Set only in constructor, but cannot be declared
      * as final without further complicating serialization.  Since
@@ -835,6 +1217,43 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
         transferer = fair ? new TransferQueue<E>() : new TransferStack<E>();
     }
 
+    /** 原始的双栈（双队列） */
+    public static final int PLAIN = 0;
+    /** 双栈（双队列）加消除数组 */
+    public static final int ELIMINATION = 1;
+    /** flat combining，不保证顺序，不能与fair同时使用 */
+    public static final int COMBINING = 2;
+
+    /**
+     * 按公平策略和竞争处理方式创建
+     * <p>
+     * ELIMINATION在公平模式下只在队列为空时消除，单核机器上等同于PLAIN。
+     * 序列化只保存公平策略，反序列化得到的都是PLAIN。
+     *
+     * @param fair 为true时等待的线程按FIFO顺序
+     * @param contention {@link #PLAIN}、{@link #ELIMINATION}或{@link #COMBINING}
+     * @throws IllegalArgumentException contention不是上述值，或者fair与COMBINING同时使用
+     */
+    public SynchronousQueue(boolean fair, int contention) {
+        EliminationArena arena = null;
+        switch (contention) {
+            case PLAIN:
+                break;
+            case ELIMINATION:
+                if (NCPUS > 1)
+                    arena = new EliminationArena();
+                break;
+            case COMBINING:
+                if (fair)
+                    throw new IllegalArgumentException("combining does not support fairness");
+                transferer = new TransferCombiner<E>();
+                return;
+            default:
+                throw new IllegalArgumentException();
+        }
+        transferer = fair ? new TransferQueue<E>(arena) : new TransferStack<E>(arena);
+    }
+
     /**
      * Adds the specified element to this queue, waiting if necessary for
      * another thread to receive it.
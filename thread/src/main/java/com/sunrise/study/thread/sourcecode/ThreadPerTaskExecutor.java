@@ -0,0 +1,179 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个任务一个新线程的执行器，没有任务队列，也不复用线程，
+ * 配合虚拟线程工厂使用（见 {@link Executors#newVirtualThreadPerTaskExecutor()}），
+ * 适合大量阻塞 I/O 的扇出场景。
+ * <p>
+ * maxConcurrency 大于 0 时限制同时存在的任务线程数：许可用完后 execute 会阻塞调用者，
+ * 直到有任务结束，相当于对提交方的背压，而不是在内存里堆积上百万个等待许可的线程。
+ * <p>
+ * 可以挂一个 {@link PinningMonitor}，执行器在任务开始和结束时登记线程，用来检测 pinning。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int TERMINATED = 2;
+
+    private final ThreadFactory factory;
+    /**
+     * 并发许可，不限制并发时为 null
+     */
+    private final Semaphore permits;
+    private final PinningMonitor pinningMonitor;
+    /**
+     * 已创建且尚未结束的任务线程
+     */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final Object terminationLock = new Object();
+    private volatile int state;
+
+    public ThreadPerTaskExecutor(ThreadFactory factory) {
+        this(factory, 0, null);
+    }
+
+    /**
+     * @param maxConcurrency 最多同时运行的任务数，0 表示不限制
+     * @param pinningMonitor 可以为 null
+     */
+    public ThreadPerTaskExecutor(ThreadFactory factory, int maxConcurrency, PinningMonitor pinningMonitor) {
+        if (factory == null)
+            throw new NullPointerException();
+        if (maxConcurrency < 0)
+            throw new IllegalArgumentException();
+        this.factory = factory;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        this.pinningMonitor = pinningMonitor;
+    }
+
+    public void execute(Runnable command) {
+        if (command == null)
+            throw new NullPointerException();
+        if (state != RUNNING)
+            throw new RejectedExecutionException("executor is shut down");
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+        Thread t = null;
+        try {
+            t = factory.newThread(new TaskRunner(command));
+            if (t == null)
+                throw new RejectedExecutionException("thread factory returned null");
+            threads.add(t);
+            // 先登记再检查状态，保证 shutdown 之后的 tryTerminate 一定能看到这个线程
+            if (state != RUNNING)
+                throw new RejectedExecutionException("executor is shut down");
+            t.start();
+        } catch (Throwable e) {
+            if (t != null)
+                threads.remove(t);
+            if (permits != null)
+                permits.release();
+            tryTerminate();
+            if (e instanceof RejectedExecutionException)
+                throw (RejectedExecutionException) e;
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    private final class TaskRunner implements Runnable {
+        private final Runnable task;
+
+        TaskRunner(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            Thread me = Thread.currentThread();
+            PinningMonitor m = pinningMonitor;
+            try {
+                if (m != null)
+                    m.taskStarted(me);
+                task.run();
+            } finally {
+                if (m != null)
+                    m.taskFinished(me);
+                threads.remove(me);
+                if (permits != null)
+                    permits.release();
+                if (state != RUNNING)
+                    tryTerminate();
+            }
+        }
+    }
+
+    private void tryTerminate() {
+        if (state == SHUTDOWN && threads.isEmpty()) {
+            synchronized (terminationLock) {
+                if (state == SHUTDOWN) {
+                    state = TERMINATED;
+                    terminationLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前存活的任务线程数
+     */
+    public int getActiveCount() {
+        return threads.size();
+    }
+
+    public void shutdown() {
+        synchronized (terminationLock) {
+            if (state == RUNNING)
+                state = SHUTDOWN;
+        }
+        tryTerminate();
+    }
+
+    /**
+     * 没有任务队列，所以返回的总是空列表；正在运行的任务线程会被中断
+     */
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        for (Thread t : threads)
+            t.interrupt();
+        return Collections.emptyList();
+    }
+
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    public boolean isTerminated() {
+        return state == TERMINATED;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            long deadline = System.nanoTime() + nanos;
+            while (state != TERMINATED) {
+                if (nanos <= 0L)
+                    return false;
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, nanos);
+                nanos = deadline - System.nanoTime();
+            }
+            return true;
+        }
+    }
+}
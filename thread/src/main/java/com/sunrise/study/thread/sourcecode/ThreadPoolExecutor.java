@@ -597,6 +597,88 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     /* The context to be used when executing the finalizer, or null. */
     private final AccessControlContext acc;
 
+    /**
+     * 工作窃取模式下，工作线程处理自己队列中任务的顺序
+     */
+    public enum LocalOrder {
+        /**
+         * 后进先出，适合分治的子任务，缓存局部性好
+         */
+        LIFO,
+        /**
+         * 先进先出，适合事件类的任务，保证提交顺序
+         */
+        FIFO
+    }
+
+    /**
+     * 工作窃取模式下本地任务的顺序，为null时是普通模式，所有工作线程共用workQueue
+     */
+    private final LocalOrder localOrder;
+
+    /**
+     * 工作窃取模式下所有可以被窃取的队列，包括存活工作线程的队列，以及异常退出时还有剩余任务的队列。
+     * 写时复制，只在持有mainLock时更新
+     */
+    private volatile WorkStealingDeque[] deques = new WorkStealingDeque[0];
+
+    /**
+     * 工作窃取模式下当前线程对应的Worker，用来判断execute是否由本线程池的工作线程调用
+     */
+    private final java.lang.ThreadLocal<Worker> currentWorker;
+
+    /**
+     * 工作窃取模式下正在等待任务的工作线程数
+     */
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+
+    /**
+     * 工作窃取模式下唤醒空闲工作线程的信号
+     */
+    private final Semaphore wakeups;
+
+    /**
+     * 运行统计，为null时不统计，见{@link #enableMetrics()}。不为null时execute把任务包装成{@link TimedTask}，
+     * 记录入队时间，runWorker取出任务时拆开包装并记录排队时长，用户的钩子方法看到的仍是原任务
+     */
+    private volatile ThreadPoolMetrics metrics;
+
+    /**
+     * 是否把提交线程的{@link ScopedContext}带到任务中，见{@link #setContextPropagation(boolean)}。
+     * 为true且提交时上下文不为空时，execute同样把任务包装成{@link TimedTask}
+     */
+    private volatile boolean propagateContext;
+
+    /**
+     * 带入队时间和提交时上下文的任务包装，没有开启统计时enqueueNanos为0，没有上下文时context为null
+     */
+    static final class TimedTask implements Runnable {
+        final Runnable task;
+        final long enqueueNanos;
+        final ScopedContext context;
+
+        TimedTask(Runnable task, long enqueueNanos) {
+            this(task, enqueueNanos, null);
+        }
+
+        TimedTask(Runnable task, long enqueueNanos, ScopedContext context) {
+            this.task = task;
+            this.enqueueNanos = enqueueNanos;
+            this.context = context;
+        }
+
+        public void run() {
+            if (context != null)
+                context.run(task);
+            else
+                task.run();
+        }
+
+        static Runnable unwrap(Runnable r) {
+            return r instanceof TimedTask ? ((TimedTask) r).task : r;
+        }
+    }
+
     /**
      * 继承了AQS类和Runnable接口，该类是具体承载任务的对象。自己实现了简单不可重入独占锁，其中
      * state=0表示锁未被获取，state=1表示锁已经被获取的状态，state=-1表示创建Worker时默认的状态，
@@ -644,6 +726,16 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          */
         volatile long completedTasks;
 
+        /**
+         * 工作窃取模式下该工作线程私有的任务队列，普通模式下为null
+         */
+        final WorkStealingDeque deque;
+
+        /**
+         * 随机选择窃取目标时使用的xorshift种子，只由本线程读写
+         */
+        int stealSeed;
+
         /**
          * 构造器
          * Creates with given first task and thread from ThreadFactory.
@@ -653,6 +745,12 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             // 初始化AQS的state为-1
             setState(-1); // inhibit interrupts until runWorker
             this.firstTask = firstTask;
+            if (localOrder != null) {
+                this.deque = new WorkStealingDeque();
+                this.stealSeed = System.identityHashCode(this) | 1;
+            } else {
+                this.deque = null;
+            }
             this.thread = getThreadFactory().newThread(this);
         }
 
@@ -738,7 +836,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             int c = ctl.get();
             if (isRunning(c) ||
                 runStateAtLeast(c, TIDYING) ||
-                (runStateOf(c) == SHUTDOWN && ! workQueue.isEmpty()))
+                (runStateOf(c) == SHUTDOWN && ! isQueueEmpty()))
                 return;
             if (workerCountOf(c) != 0) { // Eligible to terminate
                 interruptIdleWorkers(ONLY_ONE);
@@ -867,6 +965,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        ThreadPoolMetrics m = metrics;
+        if (m != null)
+            m.recordRejection(handler);
         handler.rejectedExecution(command, this);
     }
 
@@ -905,6 +1006,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     taskList.add(r);
             }
         }
+        for (WorkStealingDeque d : deques)
+            d.drainTo(taskList);
+        for (int i = 0; i < taskList.size(); i++)
+            taskList.set(i, TimedTask.unwrap(taskList.get(i)));
         return taskList;
     }
 
@@ -956,7 +1061,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             if (rs >= SHUTDOWN &&
                 ! (rs == SHUTDOWN &&
                    firstTask == null &&
-                   ! workQueue.isEmpty()))
+                   ! isQueueEmpty()))
                 return false;
 
             // 循环CAS增加线程个数
@@ -1005,6 +1110,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                             throw new IllegalThreadStateException();
                         // 添加任务
                         workers.add(w);
+                        if (w.deque != null)
+                            updateDeques();
                         int s = workers.size();
                         if (s > largestPoolSize)
                             largestPoolSize = s;
@@ -1017,6 +1124,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     // 如果添加任务成功则启动该任务
                     t.start();
                     workerStarted = true;
+                    ThreadPoolMetrics m = metrics;
+                    if (m != null)
+                        m.recordWorkerStarted();
                 }
             }
         } finally {
@@ -1040,6 +1150,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             if (w != null)
                 workers.remove(w);
             decrementWorkerCount();
+            ThreadPoolMetrics m = metrics;
+            if (m != null)
+                m.recordWorkerStartFailed();
             tryTerminate();
         } finally {
             mainLock.unlock();
@@ -1062,12 +1175,17 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     private void processWorkerExit(Worker w, boolean completedAbruptly) {
         if (completedAbruptly) // If abrupt, then workerCount wasn't adjusted
             decrementWorkerCount();
+        ThreadPoolMetrics m = metrics;
+        if (m != null)
+            m.recordWorkerExit(completedAbruptly);
 
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
             completedTaskCount += w.completedTasks;
             workers.remove(w);
+            if (w.deque != null)
+                updateDeques();
         } finally {
             mainLock.unlock();
         }
@@ -1078,7 +1196,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         if (runStateLessThan(c, STOP)) {
             if (!completedAbruptly) {
                 int min = allowCoreThreadTimeOut ? 0 : corePoolSize;
-                if (min == 0 && ! workQueue.isEmpty())
+                if (min == 0 && ! isQueueEmpty())
                     min = 1;
                 if (workerCountOf(c) >= min)
                     return; // replacement not needed
@@ -1104,7 +1222,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * @return task, or null if the worker must exit, in which case
      *         workerCount is decremented
      */
-    private Runnable getTask() {
+    private Runnable getTask(Worker w) {
+        if (w.deque != null)
+            return getStealingTask(w);
         boolean timedOut = false; // Did the last poll() time out?
 
         for (;;) {
@@ -1190,9 +1310,20 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable task = w.firstTask;
         w.firstTask = null;
         w.unlock(); // allow interrupts
+        if (w.deque != null)
+            currentWorker.set(w);
         boolean completedAbruptly = true;
         try {
-            while (task != null || (task = getTask()) != null) {
+            while (task != null || (task = getTask(w)) != null) {
+                ThreadPoolMetrics m = metrics;
+                long enqueueNanos = 0L;
+                ScopedContext context = null, previousContext = null;
+                if (task instanceof TimedTask) {
+                    TimedTask t = (TimedTask) task;
+                    enqueueNanos = t.enqueueNanos;
+                    context = t.context;
+                    task = t.task;
+                }
                 w.lock();
                 // If pool is stopping, ensure thread is interrupted;
                 // if not, ensure thread is not interrupted.  This
@@ -1203,9 +1334,22 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                       runStateAtLeast(ctl.get(), STOP))) &&
                     !wt.isInterrupted())
                     wt.interrupt();
+                // 钩子方法和任务都在提交时的上下文中执行
+                if (context != null)
+                    previousContext = ScopedContext.swap(context);
                 try {
                     beforeExecute(wt, task);
                     Throwable thrown = null;
+                    // FutureTask运行结束后会清空内部任务，所以先取出任务类型。
+                    // 排队时长的终点和执行时长的起点共用一次nanoTime
+                    Class<?> type = null;
+                    long start = 0L;
+                    if (m != null) {
+                        type = ThreadPoolMetrics.taskType(task);
+                        start = System.nanoTime();
+                        if (enqueueNanos != 0L)
+                            m.recordQueueWait(start - enqueueNanos);
+                    }
                     try {
                         task.run();
                     } catch (RuntimeException x) {
@@ -1215,9 +1359,13 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     } catch (Throwable x) {
                         thrown = x; throw new Error(x);
                     } finally {
+                        if (m != null)
+                            m.recordService(type, System.nanoTime() - start, thrown);
                         afterExecute(task, thrown);
                     }
                 } finally {
+                    if (context != null)
+                        ScopedContext.restore(previousContext);
                     task = null;
                     w.completedTasks++;
                     w.unlock();
@@ -1225,10 +1373,143 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             }
             completedAbruptly = false;
         } finally {
+            if (w.deque != null)
+                currentWorker.remove();
             processWorkerExit(w, completedAbruptly);
         }
     }
 
+    /*
+     * 工作窃取模式
+     */
+
+    /**
+     * 普通模式下等价于workQueue.isEmpty()，工作窃取模式下还要检查所有工作线程的队列
+     */
+    private boolean isQueueEmpty() {
+        if (!workQueue.isEmpty())
+            return false;
+        for (WorkStealingDeque d : deques) {
+            if (!d.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 重建可窃取队列的数组：存活工作线程的队列，加上已退出但还有剩余任务的队列。
+     * 调用方必须持有mainLock
+     */
+    private void updateDeques() {
+        ArrayList<WorkStealingDeque> list = new ArrayList<WorkStealingDeque>(workers.size());
+        for (Worker w : workers)
+            list.add(w.deque);
+        for (WorkStealingDeque d : deques) {
+            if (!d.isEmpty() && !list.contains(d))
+                list.add(d);
+        }
+        deques = list.toArray(new WorkStealingDeque[0]);
+    }
+
+    /**
+     * workQueue和所有工作线程队列中的任务数
+     */
+    private int queuedTaskCount() {
+        int n = workQueue.size();
+        for (WorkStealingDeque d : deques)
+            n += d.size();
+        return n;
+    }
+
+    /**
+     * 有空闲的工作线程并且还没有发出唤醒信号时，唤醒一个
+     */
+    private void signalWork() {
+        if (idleWorkers.get() > 0 && wakeups.availablePermits() == 0)
+            wakeups.release();
+    }
+
+    /**
+     * 依次从自己的队列、workQueue、随机选中的其他队列中取一个任务
+     */
+    private Runnable scan(Worker w) {
+        WorkStealingDeque own = w.deque;
+        Runnable r = localOrder == LocalOrder.LIFO ? own.pop() : own.poll();
+        if (r != null || (r = workQueue.poll()) != null)
+            return r;
+        WorkStealingDeque[] ds = deques;
+        int n = ds.length;
+        if (n > 1) {
+            int seed = w.stealSeed;
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            w.stealSeed = seed;
+            int origin = (seed & Integer.MAX_VALUE) % n;
+            for (int i = 0; i < n; i++) {
+                WorkStealingDeque d = ds[(origin + i) % n];
+                if (d != own && (r = d.poll()) != null)
+                    return r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 工作窃取模式下的getTask，退出条件与getTask相同。
+     * 找不到任务时先把idleWorkers加一，再扫描一次，然后才等待唤醒信号；
+     * 提交任务的一方先放入任务，再检查idleWorkers，这样两边至少有一方能看到对方，不会丢失唤醒
+     */
+    private Runnable getStealingTask(Worker w) {
+        boolean timedOut = false;
+        boolean woken = false;
+
+        for (;;) {
+            int c = ctl.get();
+            int rs = runStateOf(c);
+
+            if (rs >= SHUTDOWN && (rs >= STOP || isQueueEmpty())) {
+                decrementWorkerCount();
+                return null;
+            }
+
+            int wc = workerCountOf(c);
+            boolean timed = allowCoreThreadTimeOut || wc > corePoolSize;
+
+            if ((wc > maximumPoolSize || (timed && timedOut))
+                && (wc > 1 || isQueueEmpty())) {
+                if (compareAndDecrementWorkerCount(c))
+                    return null;
+                continue;
+            }
+
+            Runnable r = scan(w);
+            if (r != null) {
+                // 被唤醒后如果还有剩余任务，继续唤醒下一个空闲线程
+                if (woken && !isQueueEmpty())
+                    signalWork();
+                return r;
+            }
+
+            idleWorkers.incrementAndGet();
+            try {
+                if ((r = scan(w)) != null)
+                    return r;
+                if (timed) {
+                    woken = wakeups.tryAcquire(keepAliveTime, TimeUnit.NANOSECONDS);
+                    timedOut = !woken;
+                } else {
+                    wakeups.acquire();
+                    woken = true;
+                }
+            } catch (InterruptedException retry) {
+                timedOut = false;
+            } finally {
+                idleWorkers.decrementAndGet();
+            }
+        }
+    }
+
     // Public constructors and methods
 
     /**
@@ -1368,6 +1649,30 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                               BlockingQueue<Runnable> workQueue,
                               ThreadFactory threadFactory,
                               RejectedExecutionHandler handler) {
+        this(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+             threadFactory, handler, null);
+    }
+
+    /**
+     * 创建工作窃取模式的线程池。每个工作线程有自己的任务队列：
+     * 工作线程内部调用execute提交的任务放入自己的队列，按localOrder的顺序执行；
+     * 外部线程提交的任务仍然进入workQueue。工作线程依次从自己的队列、workQueue、
+     * 随机选中的其他工作线程的队列中取任务，都没有任务时才挂起。
+     * beforeExecute/afterExecute等钩子方法不受影响。
+     * <p>
+     * 注意工作线程队列中的任务不在{@link #getQueue()}中，{@link #remove}和{@link #purge}也看不到它们。
+     *
+     * @param localOrder 本地任务的顺序，为null时等价于上面的构造器
+     * @see #ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue, ThreadFactory, RejectedExecutionHandler)
+     */
+    public ThreadPoolExecutor(int corePoolSize,
+                              int maximumPoolSize,
+                              long keepAliveTime,
+                              TimeUnit unit,
+                              BlockingQueue<Runnable> workQueue,
+                              ThreadFactory threadFactory,
+                              RejectedExecutionHandler handler,
+                              LocalOrder localOrder) {
         if (corePoolSize < 0 ||
             maximumPoolSize <= 0 ||
             maximumPoolSize < corePoolSize ||
@@ -1384,6 +1689,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         this.keepAliveTime = unit.toNanos(keepAliveTime);
         this.threadFactory = threadFactory;
         this.handler = handler;
+        this.localOrder = localOrder;
+        this.currentWorker = localOrder != null ? new java.lang.ThreadLocal<Worker>() : null;
+        this.wakeups = localOrder != null ? new Semaphore(0) : null;
     }
 
     /**
@@ -1426,21 +1734,47 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          * and so reject the task.
          */
 
+        // 开启统计或者需要传递上下文时，包装任务记录入队时间和上下文，拒绝时仍然交给handler原任务
+        Runnable task = command;
+        ThreadPoolMetrics m = metrics;
+        ScopedContext context = null;
+        if (propagateContext && (context = ScopedContext.capture()).isEmpty())
+            context = null;
+        if (m != null) {
+            m.recordSubmit();
+            task = new TimedTask(command, System.nanoTime(), context);
+        } else if (context != null)
+            task = new TimedTask(command, 0L, context);
+
+        // 工作窃取模式下，本线程池的工作线程提交的任务放入自己的队列
+        if (localOrder != null) {
+            Worker w = currentWorker.get();
+            if (w != null && isRunning(ctl.get())) {
+                w.deque.push(task);
+                if (workerCountOf(ctl.get()) < corePoolSize)
+                    addWorker(null, true);
+                signalWork();
+                return;
+            }
+        }
+
         // 获取当前线程池的ctl值，即状态和线程个数
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
-            if (addWorker(command, true))
+            if (addWorker(task, true))
                 return;
             c = ctl.get();
         }
-        if (isRunning(c) && workQueue.offer(command)) {
+        if (isRunning(c) && workQueue.offer(task)) {
             int recheck = ctl.get();
-            if (! isRunning(recheck) && remove(command))
+            if (! isRunning(recheck) && remove(task))
                 reject(command);
             else if (workerCountOf(recheck) == 0)
                 addWorker(null, false);
+            else if (localOrder != null)
+                signalWork();
         }
-        else if (!addWorker(command, false))
+        else if (!addWorker(task, false))
             reject(command);
     }
 
@@ -1804,6 +2138,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * task queue is intended primarily for debugging and monitoring.
      * This queue may be in active use.  Retrieving the task queue
      * does not prevent queued tasks from executing.
+     * 开启运行统计或者传递上下文时，队列里的元素是包装后的{@link TimedTask}
      *
      * @return the task queue
      */
@@ -1811,6 +2146,58 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         return workQueue;
     }
 
+    /**
+     * 开启运行统计并返回统计对象，已经开启时直接返回，只对之后提交的任务生效。
+     * 统计内容见{@link ThreadPoolMetrics}。记录本身不分配对象，
+     * 但为了记录入队时间，execute会把每个任务包装一次
+     *
+     * @return the metrics of this pool
+     */
+    public ThreadPoolMetrics enableMetrics() {
+        ThreadPoolMetrics m = metrics;
+        if (m == null) {
+            final ReentrantLock mainLock = this.mainLock;
+            mainLock.lock();
+            try {
+                if ((m = metrics) == null)
+                    metrics = m = new ThreadPoolMetrics(this);
+            } finally {
+                mainLock.unlock();
+            }
+        }
+        return m;
+    }
+
+    /**
+     * 返回运行统计，没有调用过{@link #enableMetrics()}时返回null
+     *
+     * @return the metrics, or null if not enabled
+     */
+    public ThreadPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置是否把提交线程的{@link ScopedContext}带到任务中，只对之后提交的任务生效。
+     * 开启后execute读一次提交线程的当前上下文（O(1)，不复制值），不为空时与任务一起入队，
+     * runWorker在beforeExecute之前切换到该上下文，afterExecute之后恢复。
+     * 提交时没有上下文的任务不包装，与关闭时相同
+     *
+     * @param value true to propagate the submitter's context
+     */
+    public void setContextPropagation(boolean value) {
+        propagateContext = value;
+    }
+
+    /**
+     * 是否把提交线程的上下文带到任务中
+     *
+     * @return true if the submitter's context is propagated
+     */
+    public boolean isContextPropagation() {
+        return propagateContext;
+    }
+
     /**
      * Removes this task from the executor's internal queue if it is
      * present, thus causing it not to be run if it has not already
@@ -1829,6 +2216,15 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     public boolean remove(Runnable task) {
         boolean removed = workQueue.remove(task);
+        if (!removed && task != null && !(task instanceof TimedTask)) {
+            // 开启运行统计或者传递上下文时队列里是包装后的任务
+            for (Runnable r : workQueue.toArray(new Runnable[0])) {
+                if (r instanceof TimedTask && ((TimedTask) r).task == task) {
+                    removed = workQueue.remove(r);
+                    break;
+                }
+            }
+        }
         tryTerminate(); // In case SHUTDOWN and now empty
         return removed;
     }
@@ -1848,7 +2244,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         try {
             Iterator<Runnable> it = q.iterator();
             while (it.hasNext()) {
-                Runnable r = it.next();
+                Runnable r = TimedTask.unwrap(it.next());
                 if (r instanceof Future<?> && ((Future<?>)r).isCancelled())
                     it.remove();
             }
@@ -1856,9 +2252,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             // Take slow path if we encounter interference during traversal.
             // Make copy for traversal and call remove for cancelled entries.
             // The slow path is more likely to be O(N*N).
-            for (Object r : q.toArray())
-                if (r instanceof Future<?> && ((Future<?>)r).isCancelled())
+            for (Object r : q.toArray()) {
+                Object t = r instanceof TimedTask ? ((TimedTask) r).task : r;
+                if (t instanceof Future<?> && ((Future<?>)t).isCancelled())
                     q.remove(r);
+            }
         }
 
         tryTerminate(); // In case SHUTDOWN and now empty
@@ -1938,7 +2336,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (w.isLocked())
                     ++n;
             }
-            return n + workQueue.size();
+            return n + queuedTaskCount();
         } finally {
             mainLock.unlock();
         }
@@ -1998,7 +2396,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             "[" + rs +
             ", pool size = " + nworkers +
             ", active threads = " + nactive +
-            ", queued tasks = " + workQueue.size() +
+            ", queued tasks = " + queuedTaskCount() +
             ", completed tasks = " + ncompleted +
             "]";
     }
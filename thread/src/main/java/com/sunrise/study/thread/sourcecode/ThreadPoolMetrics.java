@@ -0,0 +1,380 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ThreadPoolExecutor} 的运行统计，由 {@link ThreadPoolExecutor#enableMetrics()} 创建并挂到线程池上。
+ * <p>
+ * 线程池在下面几个位置回调这里的 record 方法：
+ * <ul>
+ *     <li>execute：提交数；任务被包装上入队时间；</li>
+ *     <li>task.run 前后（位于 beforeExecute 和 afterExecute 之间）：排队时长直方图（入队到开始执行）、执行时长直方图、
+ *     失败数，以及按任务类型的次数和总耗时；</li>
+ *     <li>reject：按拒绝策略类名统计的拒绝次数；</li>
+ *     <li>addWorker / addWorkerFailed / processWorkerExit：工作线程的创建、创建失败、退出和异常退出次数。</li>
+ * </ul>
+ * 计数用 LongAdder，直方图用 {@link LatencyHistogram}，任务类型第一次出现之后的记录都不分配对象。
+ * 任务类型最多记录 {@link #MAX_TASK_TYPES} 种，之后出现的类型合并为 "other"。
+ * <p>
+ * 活跃线程数的时间序列由后台采样线程记录，调用 {@link #startSampling} 启动，
+ * 保留最近 {@link #SERIES_CAPACITY} 个采样点，线程池终止后采样线程自动退出。
+ * {@link #snapshot()} 导出以上所有数据的不可变快照。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ThreadPoolMetrics implements AutoCloseable {
+
+    /**
+     * 最多单独统计的任务类型数
+     */
+    static final int MAX_TASK_TYPES = 64;
+
+    /**
+     * 时间序列保留的采样点数
+     */
+    static final int SERIES_CAPACITY = 256;
+
+    private final ThreadPoolExecutor executor;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final ConcurrentHashMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+
+    private final LongAdder workersStarted = new LongAdder();
+    private final LongAdder workerStartFailures = new LongAdder();
+    private final LongAdder workerExits = new LongAdder();
+    private final LongAdder abruptWorkerExits = new LongAdder();
+
+    private final ConcurrentHashMap<Class<?>, TaskTypeCounter> taskTypes = new ConcurrentHashMap<>();
+    private final TaskTypeCounter otherTaskTypes = new TaskTypeCounter();
+
+    // 时间序列的环形缓冲，由 this 保护
+    private final long[] sampleTimes = new long[SERIES_CAPACITY];
+    private final int[] activeSeries = new int[SERIES_CAPACITY];
+    private final int[] poolSizeSeries = new int[SERIES_CAPACITY];
+    private final int[] queuedSeries = new int[SERIES_CAPACITY];
+    private long sampleCount;
+
+    private volatile Thread sampler;
+
+    ThreadPoolMetrics(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    private static final class TaskTypeCounter {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+
+    /**
+     * 任务的类型，submit 提交的任务取 FutureTask 内部的实际任务
+     */
+    static Class<?> taskType(Runnable task) {
+        if (task instanceof FutureTask)
+            return ((FutureTask<?>) task).taskClass();
+        return task.getClass();
+    }
+
+    void recordSubmit() {
+        submitted.increment();
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    void recordService(Class<?> type, long nanos, Throwable thrown) {
+        serviceTime.record(nanos);
+        TaskTypeCounter c = taskTypes.get(type);
+        if (c == null)
+            c = newTaskType(type);
+        c.count.increment();
+        c.nanos.add(nanos);
+        if (thrown != null) {
+            failed.increment();
+            c.failed.increment();
+        }
+    }
+
+    private TaskTypeCounter newTaskType(Class<?> type) {
+        if (taskTypes.size() >= MAX_TASK_TYPES)
+            return otherTaskTypes;
+        return taskTypes.computeIfAbsent(type, k -> new TaskTypeCounter());
+    }
+
+    void recordRejection(Object handler) {
+        String policy = handler.getClass().getName();
+        LongAdder c = rejections.get(policy);
+        if (c == null)
+            c = rejections.computeIfAbsent(policy, k -> new LongAdder());
+        c.increment();
+    }
+
+    void recordWorkerStarted() {
+        workersStarted.increment();
+    }
+
+    void recordWorkerStartFailed() {
+        workerStartFailures.increment();
+    }
+
+    void recordWorkerExit(boolean abrupt) {
+        workerExits.increment();
+        if (abrupt)
+            abruptWorkerExits.increment();
+    }
+
+    /**
+     * 启动采样线程，每隔 period 记录一次活跃线程数、线程数和排队任务数，重复调用无效
+     */
+    public synchronized ThreadPoolMetrics startSampling(long period, TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException();
+        if (sampler == null) {
+            long periodNanos = unit.toNanos(period);
+            Thread t = new Thread(() -> sampleLoop(periodNanos), "thread-pool-metrics");
+            t.setDaemon(true);
+            sampler = t;
+            t.start();
+        }
+        return this;
+    }
+
+    /**
+     * 停止采样线程，已有的统计数据保留
+     */
+    @Override
+    public synchronized void close() {
+        Thread t = sampler;
+        if (t != null) {
+            sampler = null;
+            t.interrupt();
+        }
+    }
+
+    private void sampleLoop(long periodNanos) {
+        Thread me = Thread.currentThread();
+        while (sampler == me && !executor.isTerminated()) {
+            sample();
+            try {
+                TimeUnit.NANOSECONDS.sleep(periodNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 记录一个时间序列采样点
+     */
+    void sample() {
+        long now = System.currentTimeMillis();
+        int active = executor.getActiveCount();
+        int poolSize = executor.getPoolSize();
+        int queued = executor.getQueue().size();
+        synchronized (this) {
+            int i = (int) (sampleCount++ % SERIES_CAPACITY);
+            sampleTimes[i] = now;
+            activeSeries[i] = active;
+            poolSizeSeries[i] = poolSize;
+            queuedSeries[i] = queued;
+        }
+    }
+
+    /**
+     * 排队时长的累计快照，纳秒
+     */
+    public LatencyHistogram.Snapshot queueWaitSnapshot() {
+        return queueWait.snapshot();
+    }
+
+    /**
+     * 导出当前统计数据的快照
+     */
+    public Snapshot snapshot() {
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> e : rejections.entrySet())
+            rejected.put(e.getKey(), e.getValue().sum());
+
+        List<TaskTypeStats> types = new ArrayList<>();
+        for (Map.Entry<Class<?>, TaskTypeCounter> e : taskTypes.entrySet())
+            types.add(new TaskTypeStats(e.getKey().getName(), e.getValue()));
+        if (otherTaskTypes.count.sum() > 0)
+            types.add(new TaskTypeStats("other", otherTaskTypes));
+        // 总耗时多的在前
+        types.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+
+        long[] times;
+        int[] active, poolSizes, queued;
+        synchronized (this) {
+            int n = (int) Math.min(sampleCount, SERIES_CAPACITY);
+            int first = (int) ((sampleCount - n) % SERIES_CAPACITY);
+            times = new long[n];
+            active = new int[n];
+            poolSizes = new int[n];
+            queued = new int[n];
+            for (int k = 0; k < n; k++) {
+                int i = (first + k) % SERIES_CAPACITY;
+                times[k] = sampleTimes[i];
+                active[k] = activeSeries[i];
+                poolSizes[k] = poolSizeSeries[i];
+                queued[k] = queuedSeries[i];
+            }
+        }
+
+        return new Snapshot(queueWait.snapshot(), serviceTime.snapshot(),
+                submitted.sum(), failed.sum(),
+                Collections.unmodifiableMap(rejected),
+                workersStarted.sum(), workerStartFailures.sum(),
+                workerExits.sum(), abruptWorkerExits.sum(),
+                Collections.unmodifiableList(types),
+                times, active, poolSizes, queued);
+    }
+
+    /**
+     * 某一类任务的统计
+     */
+    public static final class TaskTypeStats {
+        public final String type;
+        public final long count;
+        public final long totalNanos;
+        public final long failed;
+
+        TaskTypeStats(String type, TaskTypeCounter c) {
+            this.type = type;
+            this.count = c.count.sum();
+            this.totalNanos = c.nanos.sum();
+            this.failed = c.failed.sum();
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s count=%d total=%.2fms mean=%.2fus failed=%d",
+                    type, count, totalNanos / 1e6, meanNanos() / 1e3, failed);
+        }
+    }
+
+    /**
+     * 统计快照，时长单位都是纳秒
+     */
+    public static final class Snapshot {
+        public final LatencyHistogram.Snapshot queueWait;
+        public final LatencyHistogram.Snapshot serviceTime;
+        public final long submitted;
+        public final long completed;
+        public final long failed;
+        /**
+         * 拒绝策略类名 -> 拒绝次数
+         */
+        public final Map<String, Long> rejections;
+        public final long workersStarted;
+        public final long workerStartFailures;
+        public final long workerExits;
+        public final long abruptWorkerExits;
+        /**
+         * 按总执行时长从大到小排列
+         */
+        public final List<TaskTypeStats> taskTypes;
+        /**
+         * 时间序列，下标相同的元素属于同一个采样点，按时间先后排列
+         */
+        private final long[] sampleTimeMillis;
+        private final int[] activeWorkers;
+        private final int[] poolSizes;
+        private final int[] queuedTasks;
+
+        Snapshot(LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot serviceTime,
+                 long submitted, long failed, Map<String, Long> rejections,
+                 long workersStarted, long workerStartFailures, long workerExits, long abruptWorkerExits,
+                 List<TaskTypeStats> taskTypes,
+                 long[] sampleTimeMillis, int[] activeWorkers, int[] poolSizes, int[] queuedTasks) {
+            this.queueWait = queueWait;
+            this.serviceTime = serviceTime;
+            this.submitted = submitted;
+            this.completed = serviceTime.getTotalCount();
+            this.failed = failed;
+            this.rejections = rejections;
+            this.workersStarted = workersStarted;
+            this.workerStartFailures = workerStartFailures;
+            this.workerExits = workerExits;
+            this.abruptWorkerExits = abruptWorkerExits;
+            this.taskTypes = taskTypes;
+            this.sampleTimeMillis = sampleTimeMillis;
+            this.activeWorkers = activeWorkers;
+            this.poolSizes = poolSizes;
+            this.queuedTasks = queuedTasks;
+        }
+
+        /**
+         * 采样点个数
+         */
+        public int getSampleCount() {
+            return sampleTimeMillis.length;
+        }
+
+        /**
+         * 各采样点的时间，按时间先后排列，返回副本
+         */
+        public long[] getSampleTimeMillis() {
+            return sampleTimeMillis.clone();
+        }
+
+        /**
+         * 各采样点的活跃线程数，返回副本
+         */
+        public int[] getActiveWorkers() {
+            return activeWorkers.clone();
+        }
+
+        /**
+         * 各采样点的线程数，返回副本
+         */
+        public int[] getPoolSizes() {
+            return poolSizes.clone();
+        }
+
+        /**
+         * 各采样点的排队任务数，返回副本
+         */
+        public int[] getQueuedTasks() {
+            return queuedTasks.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("submitted=").append(submitted).append(" completed=").append(completed)
+                    .append(" failed=").append(failed).append(" rejections=").append(rejections)
+                    .append("\nworkers started=").append(workersStarted)
+                    .append(" startFailures=").append(workerStartFailures)
+                    .append(" exits=").append(workerExits).append(" abrupt=").append(abruptWorkerExits)
+                    .append("\nqueue wait   ").append(queueWait)
+                    .append("\nservice time ").append(serviceTime);
+            for (TaskTypeStats t : taskTypes)
+                sb.append("\n  ").append(t);
+            if (sampleTimeMillis.length > 0) {
+                int last = sampleTimeMillis.length - 1;
+                sb.append("\nsamples=").append(sampleTimeMillis.length)
+                        .append(" last active=").append(activeWorkers[last])
+                        .append(" pool=").append(poolSizes[last])
+                        .append(" queued=").append(queuedTasks[last]);
+            }
+            return sb.toString();
+        }
+    }
+}
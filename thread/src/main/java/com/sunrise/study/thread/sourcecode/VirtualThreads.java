@@ -0,0 +1,109 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程的适配层。
+ * <p>
+ * 本模块按 Java 8 编译，不能直接引用 {@code Thread.ofVirtual()}，这里在类加载时通过反射探测：
+ * 运行在 JDK 21+ 上时返回真正的虚拟线程工厂；在更早的 JDK 上（或 JDK 19/20 没有打开 preview 时）
+ * 退化为平台线程工厂，守护线程并使用较小的栈，保证上层的 thread-per-task 执行器仍然可用。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public final class VirtualThreads {
+
+    /**
+     * 退化为平台线程时使用的栈大小
+     */
+    static final long FALLBACK_STACK_SIZE = 256 * 1024;
+
+    // Thread.ofVirtual()、Thread.Builder.name(String, long)、Thread.Builder.factory()
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    // Thread.isVirtual()
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, isVirtual = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            isVirtual = Thread.class.getMethod("isVirtual");
+            // JDK 19/20 上没有 --enable-preview 时 ofVirtual() 会抛出 UnsupportedOperationException
+            ofVirtual.invoke(null);
+        } catch (Throwable e) {
+            ofVirtual = name = factory = isVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前 JVM 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 判断线程是否是虚拟线程，不支持虚拟线程的 JVM 上总是返回 false
+     */
+    public static boolean isVirtual(Thread t) {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(t);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建一个线程工厂，线程名为 prefix 加上从 0 开始的序号。
+     * 支持虚拟线程时创建虚拟线程，否则创建平台守护线程
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (prefix == null)
+            throw new NullPointerException();
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, prefix, 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                // 探测时已经调用成功过，这里不应该失败，失败时退化为平台线程
+            }
+        }
+        return new PlatformThreadFactory(prefix);
+    }
+
+    /**
+     * 退化时使用的平台线程工厂
+     */
+    static final class PlatformThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicLong threadNumber = new AtomicLong();
+
+        PlatformThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(null, r, prefix + threadNumber.getAndIncrement(), FALLBACK_STACK_SIZE);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.sunrise.study.thread.sourcecode;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 工作窃取线程池中每个工作线程私有的双端队列，参考 ForkJoinPool.WorkQueue 实现。
+ * <p>
+ * 只有所属线程调用 {@link #push}、{@link #pop}，在 top 端操作，不需要加锁；
+ * 其他线程调用 {@link #poll} 从 base 端窃取。push 只写 top，窃取只写 base，
+ * 真正取出某个槽位靠的是对这个槽位做 CAS(task, null)，同一个任务只会被一方拿到。
+ * <p>
+ * 所属线程也可以调用 poll，这样本地任务就是 FIFO 顺序。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+final class WorkStealingDeque {
+
+    /**
+     * 初始容量，必须是 2 的幂
+     */
+    static final int INITIAL_CAPACITY = 1 << 6;
+
+    /**
+     * 最大容量，超过后 push 抛出 RejectedExecutionException
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 26;
+
+    /**
+     * 下一个被窃取（poll）的位置
+     */
+    volatile int base;
+
+    /**
+     * 下一个 push 的位置，只有所属线程修改
+     */
+    volatile int top;
+
+    volatile AtomicReferenceArray<Runnable> array;
+
+    WorkStealingDeque() {
+        array = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    }
+
+    /**
+     * 只能由所属线程调用
+     */
+    void push(Runnable task) {
+        AtomicReferenceArray<Runnable> a = array;
+        int s = top, n = a.length();
+        if (s - base >= n - 1)
+            a = growArray();
+        a.lazySet(s & (a.length() - 1), task);
+        // volatile 写 top，保证窃取线程看到 top 时也能看到槽位中的任务
+        top = s + 1;
+    }
+
+    /**
+     * 只能由所属线程调用，取出最后 push 的任务（LIFO）
+     */
+    Runnable pop() {
+        AtomicReferenceArray<Runnable> a = array;
+        int s;
+        while ((s = top - 1) - base >= 0) {
+            int j = s & (a.length() - 1);
+            Runnable t = a.get(j);
+            if (t == null)
+                break;
+            if (a.compareAndSet(j, t, null)) {
+                top = s;
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 任意线程都可以调用，取出最早 push 的任务（FIFO）
+     */
+    Runnable poll() {
+        AtomicReferenceArray<Runnable> a;
+        int b;
+        while ((b = base) - top < 0 && (a = array) != null) {
+            int j = b & (a.length() - 1);
+            Runnable t = a.get(j);
+            if (base == b) {
+                if (t != null) {
+                    if (a.compareAndSet(j, t, null)) {
+                        base = b + 1;
+                        return t;
+                    }
+                } else if (b + 1 == top) {
+                    // 另一个线程刚刚取走了最后一个任务
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 只能由所属线程调用。容量翻倍，并把旧数组中的任务逐个 CAS 搬到新数组，
+     * 与窃取线程竞争同一个槽位时，谁 CAS 成功归谁
+     */
+    private AtomicReferenceArray<Runnable> growArray() {
+        AtomicReferenceArray<Runnable> oldA = array;
+        int oldCap = oldA.length();
+        int size = oldCap << 1;
+        if (size > MAXIMUM_CAPACITY)
+            throw new java.util.concurrent.RejectedExecutionException("Queue capacity exceeded");
+        AtomicReferenceArray<Runnable> a = new AtomicReferenceArray<>(size);
+        int oldMask = oldCap - 1, mask = size - 1;
+        int t = top, b = base;
+        for (int i = b; i != t; i++) {
+            Runnable x = oldA.get(i & oldMask);
+            if (x != null && oldA.compareAndSet(i & oldMask, x, null))
+                a.lazySet(i & mask, x);
+        }
+        array = a;
+        return a;
+    }
+
+    boolean isEmpty() {
+        return top - base <= 0;
+    }
+
+    int size() {
+        int n = top - base;
+        return n < 0 ? 0 : n;
+    }
+
+    /**
+     * 取出所有任务，shutdownNow 使用
+     */
+    void drainTo(Collection<Runnable> c) {
+        Runnable t;
+        while ((t = poll()) != null)
+            c.add(t);
+    }
+}
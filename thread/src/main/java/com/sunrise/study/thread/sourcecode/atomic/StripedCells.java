@@ -0,0 +1,182 @@
+package com.sunrise.study.thread.sourcecode.atomic;
+
+import com.sunrise.study.thread.sourcecode.random.ThreadLocalRandom;
+
+/**
+ * 把{@link Striped64}的分散机制推广到任意类型的cell：Striped64的cell只有一个long，
+ * 直方图、计数加最值、count-min sketch这类指标每个cell要有一组计数器。
+ * <p>
+ * 结构与Striped64相同：没有竞争时只更新base，第一次竞争时创建大小为2的cells数组，之后发现冲突就扩容，
+ * 直到不小于CPU个数，冲突时用advanceProbe给线程换一个cell。区别在于：
+ * <ul>
+ *     <li>base本身也是一个cell，由子类在构造时传入；</li>
+ *     <li>子类实现{@link #tryUpdate}，对cell中作为竞争标志的那个字段只CAS一次，失败返回false，
+ *     其余字段直接原子更新，这样能像Striped64一样发现竞争；</li>
+ *     <li>新建cell由子类的{@link #newCell()}完成，只在扩容时分配，稳定后记录不分配对象。</li>
+ * </ul>
+ * 读取时用{@link #base}和{@link #cells}合并所有cell。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+abstract class StripedCells<C> {
+
+    /** Number of CPUS, to place bound on table size */
+    static final int NCPU = Striped64.NCPU;
+
+    /** base cell，没有竞争时使用 */
+    final C base;
+
+    /** cells数组，不为null时大小是2的幂 */
+    transient volatile Object[] cells;
+
+    /** 自旋锁，创建或者扩容cells数组时用到 */
+    transient volatile int cellsBusy;
+
+    StripedCells(C base) {
+        this.base = base;
+    }
+
+    /**
+     * 新建一个空的cell
+     */
+    abstract C newCell();
+
+    /**
+     * 在cell上记录一次
+     *
+     * @return false表示竞争标志的CAS失败，什么也没有记录
+     */
+    abstract boolean tryUpdate(C cell, long x, long y);
+
+    final boolean casCellsBusy() {
+        return UNSAFE.compareAndSwapInt(this, CELLSBUSY, 0, 1);
+    }
+
+    /**
+     * 记录一次，与LongAdder.add的快路径相同
+     */
+    @SuppressWarnings("unchecked")
+    final void update(long x, long y) {
+        Object[] as; C c; int m;
+        if ((as = cells) != null || !tryUpdate(base, x, y)) {
+            boolean uncontended = true;
+            if (as == null || (m = as.length - 1) < 0 ||
+                (c = (C) as[Striped64.getProbe() & m]) == null ||
+                !(uncontended = tryUpdate(c, x, y)))
+                accumulate(x, y, uncontended);
+        }
+    }
+
+    /**
+     * 同Striped64.longAccumulate
+     */
+    @SuppressWarnings("unchecked")
+    private void accumulate(long x, long y, boolean wasUncontended) {
+        int h;
+        if ((h = Striped64.getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+            wasUncontended = true;
+        }
+        boolean collide = false;                // True if last slot nonempty
+        for (;;) {
+            Object[] as; C a; int n;
+            if ((as = cells) != null && (n = as.length) > 0) {
+                if ((a = (C) as[(n - 1) & h]) == null) {
+                    if (cellsBusy == 0) {       // Try to attach new cell
+                        C r = newCell();        // Optimistically create
+                        tryUpdate(r, x, y);     // 还没有发布，不会失败
+                        if (cellsBusy == 0 && casCellsBusy()) {
+                            boolean created = false;
+                            try {               // Recheck under lock
+                                Object[] rs; int m, j;
+                                if ((rs = cells) != null &&
+                                    (m = rs.length) > 0 &&
+                                    rs[j = (m - 1) & h] == null) {
+                                    rs[j] = r;
+                                    created = true;
+                                }
+                            } finally {
+                                cellsBusy = 0;
+                            }
+                            if (created)
+                                break;
+                            continue;           // Slot is now non-empty
+                        }
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)       // CAS already known to fail
+                    wasUncontended = true;      // Continue after rehash
+                else if (tryUpdate(a, x, y))
+                    break;
+                else if (n >= NCPU || cells != as)
+                    collide = false;            // At max size or stale
+                else if (!collide)
+                    collide = true;
+                else if (cellsBusy == 0 && casCellsBusy()) {
+                    try {
+                        if (cells == as) {      // Expand table unless stale
+                            Object[] rs = new Object[n << 1];
+                            for (int i = 0; i < n; ++i)
+                                rs[i] = as[i];
+                            cells = rs;
+                        }
+                    } finally {
+                        cellsBusy = 0;
+                    }
+                    collide = false;
+                    continue;                   // Retry with expanded table
+                }
+                h = Striped64.advanceProbe(h);
+            }
+            else if (cellsBusy == 0 && cells == as && casCellsBusy()) {
+                boolean init = false;
+                try {                           // Initialize table
+                    if (cells == as) {
+                        Object[] rs = new Object[2];
+                        C r = newCell();
+                        tryUpdate(r, x, y);
+                        rs[h & 1] = r;
+                        cells = rs;
+                        init = true;
+                    }
+                } finally {
+                    cellsBusy = 0;
+                }
+                if (init)
+                    break;
+            }
+            else if (tryUpdate(base, x, y))
+                break;                          // Fall back on using base
+        }
+    }
+
+    /**
+     * 已创建的cell个数，不含base
+     */
+    public int getCellCount() {
+        Object[] as = cells;
+        int n = 0;
+        if (as != null) {
+            for (Object a : as) {
+                if (a != null)
+                    ++n;
+            }
+        }
+        return n;
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long CELLSBUSY;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            CELLSBUSY = UNSAFE.objectFieldOffset
+                (StripedCells.class.getDeclaredField("cellsBusy"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.sunrise.study.thread.sourcecode.atomic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分散记录的count-min sketch，用固定的内存统计每个key出现的次数，找出高频key（heavy hitter）。
+ * <p>
+ * sketch是depth行、width列的计数器，每个key在每行按不同的哈希选一列加上次数，估计值取各行的最小值。
+ * 估计值不会小于真实值，超出的部分以1 - e^-depth的概率不超过 e / width * 总次数。
+ * 每行的列由一个64位哈希的高低两半按 h1 + i * h2 算出（Kirsch-Mitzenmacher），不需要depth个哈希函数。
+ * <p>
+ * 每个cell是一个完整的sketch，最后多一个位置记录总次数，记录时先CAS总次数（失败说明有竞争，换一个cell），
+ * 再对各行getAndAdd。计数器按位置相加就能合并，所以读取时把所有cell加起来得到{@link Snapshot}，
+ * 不同实例（维度相同）的快照也可以再合并，例如每台机器一个sketch、汇总后找全局的高频key。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class StripedCountMinSketch extends StripedCells<AtomicLongArray> {
+
+    private final int depth;
+    private final int width;
+
+    /**
+     * 4行1024列，误差约为总次数的0.27%，概率约98%
+     */
+    public StripedCountMinSketch() {
+        this(4, 1024);
+    }
+
+    /**
+     * @param depth 行数，取值 1 ~ 16
+     * @param width 每行的列数，向上取2的幂
+     */
+    public StripedCountMinSketch(int depth, int width) {
+        super(newTable(depth, width));
+        this.depth = depth;
+        this.width = tableSizeFor(width);
+    }
+
+    private static int tableSizeFor(int width) {
+        return width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+    }
+
+    private static AtomicLongArray newTable(int depth, int width) {
+        if (depth < 1 || depth > 16 || width < 1 || width > 1 << 24)
+            throw new IllegalArgumentException();
+        return new AtomicLongArray(depth * tableSizeFor(width) + 1);
+    }
+
+    /**
+     * 把key打散成64位哈希，同SplittableRandom.mix64
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 第row行的列下标
+     */
+    static int indexOf(long hash, int row, int width) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+
+    @Override
+    AtomicLongArray newCell() {
+        return new AtomicLongArray(depth * width + 1);
+    }
+
+    @Override
+    boolean tryUpdate(AtomicLongArray cell, long hash, long count) {
+        int t = depth * width;
+        long total = cell.get(t);
+        if (!cell.compareAndSet(t, total, total + count))
+            return false;
+        for (int i = 0; i < depth; ++i)
+            cell.getAndAdd(indexOf(hash, i, width), count);
+        return true;
+    }
+
+    /**
+     * 记录key出现一次
+     */
+    public void record(long key) {
+        update(mix64(key), 1L);
+    }
+
+    /**
+     * 记录key出现count次
+     */
+    public void record(long key, long count) {
+        if (count < 0)
+            throw new IllegalArgumentException();
+        update(mix64(key), count);
+    }
+
+    /**
+     * 记录key出现一次，按hashCode统计，hashCode相同的key视为同一个
+     */
+    public void record(Object key) {
+        update(mix64(key.hashCode()), 1L);
+    }
+
+    /**
+     * 合并所有cell的当前数据，不影响后续记录
+     */
+    public Snapshot snapshot() {
+        long[] c = new long[depth * width + 1];
+        AtomicLongArray a = base;
+        Object[] as = cells;
+        for (int i = -1; ; ) {
+            if (a != null) {
+                for (int j = 0; j < c.length; ++j)
+                    c[j] += a.get(j);
+            }
+            if (as == null || ++i >= as.length)
+                break;
+            a = (AtomicLongArray) as[i];
+        }
+        return new Snapshot(depth, width, c);
+    }
+
+    /**
+     * 取出所有cell自上次重置以来的数据并清零，每次计数只会出现在一次快照中，
+     * 但快照中的总次数与各行的计数可能相差几次正在进行的记录
+     */
+    public Snapshot snapshotAndReset() {
+        long[] c = new long[depth * width + 1];
+        AtomicLongArray a = base;
+        Object[] as = cells;
+        for (int i = -1; ; ) {
+            if (a != null) {
+                for (int j = 0; j < c.length; ++j) {
+                    if (a.get(j) != 0L)
+                        c[j] += a.getAndSet(j, 0L);
+                }
+            }
+            if (as == null || ++i >= as.length)
+                break;
+            a = (AtomicLongArray) as[i];
+        }
+        return new Snapshot(depth, width, c);
+    }
+
+    /**
+     * sketch的不可变快照
+     */
+    public static final class Snapshot {
+        private final int depth;
+        private final int width;
+        /** depth * width个计数器，最后一个是总次数 */
+        private final long[] counts;
+
+        Snapshot(int depth, int width, long[] counts) {
+            this.depth = depth;
+            this.width = width;
+            this.counts = counts;
+        }
+
+        /**
+         * 所有key的总次数
+         */
+        public long getTotalCount() {
+            return counts[depth * width];
+        }
+
+        /**
+         * key出现次数的估计值，不小于真实值
+         */
+        public long estimate(long key) {
+            long hash = mix64(key), min = Long.MAX_VALUE;
+            for (int i = 0; i < depth; ++i)
+                min = Math.min(min, counts[indexOf(hash, i, width)]);
+            return min;
+        }
+
+        /**
+         * 同estimate(long)，按hashCode估计，只用于record(Object)记录的key
+         */
+        public long estimate(Object key) {
+            return estimate((long) key.hashCode());
+        }
+
+        /**
+         * 估计值是否不小于总次数的fraction，例如0.01表示是否占到1%以上。可能误判为是，不会误判为否
+         */
+        public boolean isHeavyHitter(Object key, double fraction) {
+            return estimate(key) >= fraction * getTotalCount();
+        }
+
+        /**
+         * sketch本身不保存key，从调用方提供的候选key（例如最近见过的key的采样）中选出占比不小于fraction的，
+         * 按估计值从大到小排列。候选key按estimate(Object)估计，用record(long)记录的key要自己调用estimate(long)
+         */
+        public <K> List<K> heavyHitters(Collection<? extends K> candidates, double fraction) {
+            List<K> result = new ArrayList<>();
+            for (K k : candidates) {
+                if (isHeavyHitter(k, fraction))
+                    result.add(k);
+            }
+            result.sort(Comparator.comparingLong(this::estimate).reversed());
+            return result;
+        }
+
+        /**
+         * 合并两个快照，维度必须相同
+         */
+        public Snapshot merge(Snapshot other) {
+            if (other.depth != depth || other.width != width)
+                throw new IllegalArgumentException();
+            long[] c = new long[counts.length];
+            for (int i = 0; i < c.length; ++i)
+                c[i] = counts[i] + other.counts[i];
+            return new Snapshot(depth, width, c);
+        }
+
+        @Override
+        public String toString() {
+            return "[depth = " + depth + ", width = " + width + ", totalCount = " + getTotalCount() + "]";
+        }
+    }
+}
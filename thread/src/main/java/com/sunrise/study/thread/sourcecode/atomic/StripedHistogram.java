@@ -0,0 +1,88 @@
+package com.sunrise.study.thread.sourcecode.atomic;
+
+import com.sunrise.study.thread.sourcecode.LatencyHistogram;
+
+/**
+ * 分散记录的{@link LatencyHistogram}：每个cell是一个完整的直方图（自己的桶数组、sum和max），
+ * 线程在sum上CAS失败时像LongAdder一样换一个cell，竞争激烈时每个CPU大致各用一个直方图。
+ * <p>
+ * 记录不分配对象（cells数组扩容时除外），读取时把base和所有cell的快照合并成一个
+ * {@link LatencyHistogram.Snapshot}，分位数的计算与单个直方图相同。合并出来的快照都沿用base直方图，
+ * 所以同一个StripedHistogram先后两次snapshot的结果可以调用since。
+ * <p>
+ * 代价是内存：每个cell (64 - precision) * 2^precision个long，默认精度下约15KB，
+ * 最多NCPU个cell，记录频率不高的地方直接用LatencyHistogram。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class StripedHistogram extends StripedCells<LatencyHistogram> {
+
+    /** 默认精度，同LatencyHistogram */
+    static final int DEFAULT_PRECISION = 5;
+
+    private final int precision;
+
+    public StripedHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision 子桶位数，取值 1 ~ 10，同LatencyHistogram
+     */
+    public StripedHistogram(int precision) {
+        super(new LatencyHistogram(precision));
+        this.precision = precision;
+    }
+
+    @Override
+    LatencyHistogram newCell() {
+        return new LatencyHistogram(precision);
+    }
+
+    @Override
+    boolean tryUpdate(LatencyHistogram cell, long value, long unused) {
+        return cell.tryRecord(value);
+    }
+
+    /**
+     * 记录一个值，负数按 0 处理
+     */
+    public void record(long value) {
+        update(value, 0L);
+    }
+
+    /**
+     * 合并所有cell的当前数据，不影响后续记录。与并发的record不是原子的，同LongAdder.sum
+     */
+    public LatencyHistogram.Snapshot snapshot() {
+        LatencyHistogram.Snapshot s = base.snapshot();
+        Object[] as = cells;
+        if (as != null) {
+            for (Object a : as) {
+                if (a != null)
+                    s = s.plus(((LatencyHistogram) a).snapshot());
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 取出所有cell自上次重置以来的数据并清零，每个样本只会出现在一次快照中
+     */
+    public LatencyHistogram.Snapshot snapshotAndReset() {
+        LatencyHistogram.Snapshot s = base.snapshotAndReset();
+        Object[] as = cells;
+        if (as != null) {
+            for (Object a : as) {
+                if (a != null)
+                    s = s.plus(((LatencyHistogram) a).snapshotAndReset());
+            }
+        }
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,183 @@
+package com.sunrise.study.thread.sourcecode.atomic;
+
+/**
+ * 分散记录的count/sum/min/max，相当于可以并发记录的{@link java.util.LongSummaryStatistics}。
+ * <p>
+ * 用LongAdder分别统计个数和总和时，读到的两个值可能来自不同的时刻；这里每个cell把四个值放在一起，
+ * 记录时先CAS count（失败说明有竞争，换一个cell），再原子地更新sum、min和max。
+ * 读取时合并所有cell，与并发的record不是原子的，同LongAdder.sum。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class StripedLongSummary extends StripedCells<StripedLongSummary.Cell> {
+
+    /**
+     * 一组计数器，用@Contended避免与相邻cell伪共享
+     */
+    @sun.misc.Contended static final class Cell {
+        volatile long count;
+        volatile long sum;
+        volatile long min = Long.MAX_VALUE;
+        volatile long max = Long.MIN_VALUE;
+
+        boolean tryRecord(long x) {
+            long c = count;
+            if (!UNSAFE.compareAndSwapLong(this, COUNT, c, c + 1))
+                return false;
+            UNSAFE.getAndAddLong(this, SUM, x);
+            long m;
+            while (x < (m = min) && !UNSAFE.compareAndSwapLong(this, MIN, m, x))
+                ;
+            while (x > (m = max) && !UNSAFE.compareAndSwapLong(this, MAX, m, x))
+                ;
+            return true;
+        }
+
+        void reset() {
+            count = 0L;
+            sum = 0L;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long COUNT;
+        private static final long SUM;
+        private static final long MIN;
+        private static final long MAX;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class<?> ak = Cell.class;
+                COUNT = UNSAFE.objectFieldOffset(ak.getDeclaredField("count"));
+                SUM = UNSAFE.objectFieldOffset(ak.getDeclaredField("sum"));
+                MIN = UNSAFE.objectFieldOffset(ak.getDeclaredField("min"));
+                MAX = UNSAFE.objectFieldOffset(ak.getDeclaredField("max"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    public StripedLongSummary() {
+        super(new Cell());
+    }
+
+    @Override
+    Cell newCell() {
+        return new Cell();
+    }
+
+    @Override
+    boolean tryUpdate(Cell cell, long x, long unused) {
+        return cell.tryRecord(x);
+    }
+
+    /**
+     * 记录一个值
+     */
+    public void record(long x) {
+        update(x, 0L);
+    }
+
+    /**
+     * 合并所有cell的当前数据，不影响后续记录
+     */
+    public Snapshot snapshot() {
+        long count = 0L, sum = 0L, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        Cell a = base;
+        Object[] as = cells;
+        for (int i = -1; ; ) {
+            if (a != null) {
+                count += a.count;
+                sum += a.sum;
+                min = Math.min(min, a.min);
+                max = Math.max(max, a.max);
+            }
+            if (as == null || ++i >= as.length)
+                break;
+            a = (Cell) as[i];
+        }
+        return new Snapshot(count, sum, min, max);
+    }
+
+    /**
+     * 合并后把所有cell清零。与并发的record交错时可能丢失正在记录的样本，同LongAdder.sumThenReset，
+     * 需要精确的按间隔统计时在没有并发记录的时候调用
+     */
+    public Snapshot snapshotAndReset() {
+        long count = 0L, sum = 0L, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        Cell a = base;
+        Object[] as = cells;
+        for (int i = -1; ; ) {
+            if (a != null) {
+                count += a.count;
+                sum += a.sum;
+                min = Math.min(min, a.min);
+                max = Math.max(max, a.max);
+                a.reset();
+            }
+            if (as == null || ++i >= as.length)
+                break;
+            a = (Cell) as[i];
+        }
+        return new Snapshot(count, sum, min, max);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * 不可变的统计结果。没有样本时min为Long.MAX_VALUE、max为Long.MIN_VALUE，同LongSummaryStatistics
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long count, long sum, long min, long max) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getAverage() {
+            return count == 0 ? 0.0d : (double) sum / count;
+        }
+
+        /**
+         * 合并两个快照，例如多个实例或多个时间段的结果
+         */
+        public Snapshot merge(Snapshot other) {
+            return new Snapshot(count + other.count, sum + other.sum,
+                    Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d sum=%d min=%d average=%f max=%d",
+                    count, sum, min, getAverage(), max);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.sunrise.study.thread.sourcecode.atomic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按时间窗口计数的LongAdder，用于统计QPS这类"最近一段时间"的次数。
+ * <p>
+ * 后台线程定时读LongAdder.sum()再减去上一次的值也能得到速率，但读的时刻有抖动，两次读之间的增量
+ * 与时间段对不齐。这里把窗口分成intervals个等长的时间片，每个时间片一个{@link LongAdder}（即一组Striped64的cell），
+ * 放在长度为intervals + 1的环里，按 (nanoTime - 起点) / 时间片长度 选位置，多出的一个位置保证
+ * 正在计数的时间片之外还有完整的intervals个时间片可读。
+ * <p>
+ * 计数时如果位置上的LongAdder属于更早的时间片，就CAS换成新的，不需要全局锁，也不会清零别人正在加的计数器：
+ * 同一个时间片只有一个线程能换成功，其他线程都加到换上去的那个LongAdder上。
+ * 被换掉的LongAdder属于窗口之外的时间片，此时还在往它上面加的线程（在上面停留了整个窗口）的计数直接丢弃。
+ * 所以内存固定为intervals + 1个LongAdder，每个时间片最多分配一次，计数的快路径是一次nanoTime、
+ * 一次数组读和LongAdder.add。已经取过nanoTime的调用方可以用{@link #add(long, long)}省掉这一次。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class WindowedLongAdder {
+
+    /**
+     * 一个时间片的计数
+     */
+    static final class Bucket extends LongAdder {
+        private static final long serialVersionUID = -2452867346387236413L;
+
+        /** 时间片序号 */
+        final long interval;
+
+        Bucket(long interval) {
+            this.interval = interval;
+        }
+    }
+
+    private final long intervalNanos;
+    private final int intervals;
+    private final long origin;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    /**
+     * 窗口为1秒，分成10个时间片
+     */
+    public WindowedLongAdder() {
+        this(1, TimeUnit.SECONDS, 10);
+    }
+
+    /**
+     * @param window    窗口长度
+     * @param unit      window的单位
+     * @param intervals 窗口分成几个时间片，越多读数越平滑，内存越多
+     */
+    public WindowedLongAdder(long window, TimeUnit unit, int intervals) {
+        long nanos = unit.toNanos(window);
+        if (intervals < 1 || nanos < intervals)
+            throw new IllegalArgumentException();
+        this.intervals = intervals;
+        this.intervalNanos = nanos / intervals;
+        this.ring = new AtomicReferenceArray<>(intervals + 1);
+        this.origin = System.nanoTime();
+    }
+
+    private long intervalAt(long nanoTime) {
+        return (nanoTime - origin) / intervalNanos;
+    }
+
+    /**
+     * 加上x，计入当前时间片
+     */
+    public void add(long x) {
+        add(x, System.nanoTime());
+    }
+
+    /**
+     * 加上x，计入nanoTime所在的时间片。nanoTime为System.nanoTime()的值，早于窗口的计数被丢弃
+     */
+    public void add(long x, long nanoTime) {
+        long t = intervalAt(nanoTime);
+        if (t < 0L)
+            return;
+        int i = (int) (t % (intervals + 1));
+        Bucket b = ring.get(i);
+        if (b == null || b.interval != t)
+            b = roll(i, t);
+        if (b != null)
+            b.add(x);
+    }
+
+    /**
+     * 把第i个位置换成时间片t的计数器，返回当前属于时间片t的计数器，位置已经属于更新的时间片时返回null
+     */
+    private Bucket roll(int i, long t) {
+        Bucket created = null;
+        for (;;) {
+            Bucket b = ring.get(i);
+            if (b != null && b.interval >= t)
+                return b.interval == t ? b : null;
+            if (created == null)
+                created = new Bucket(t);
+            if (ring.compareAndSet(i, b, created))
+                return created;
+        }
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void decrement() {
+        add(-1L);
+    }
+
+    /**
+     * 时间片序号在 (last - n, last] 内的计数之和
+     */
+    private long sumIntervals(long last, int n) {
+        long sum = 0L;
+        for (int i = 0; i <= intervals; ++i) {
+            Bucket b = ring.get(i);
+            if (b != null && b.interval <= last && b.interval > last - n)
+                sum += b.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * 窗口内的计数：当前时间片（还没有结束）加上之前的intervals - 1个时间片。
+     * 与LongAdder.sum相同，并发计数时不是某一时刻的准确值
+     */
+    public long sum() {
+        return sumIntervals(intervalAt(System.nanoTime()), intervals);
+    }
+
+    /**
+     * 最近time时间内的计数，按时间片向上取整，包括当前时间片，最多为整个窗口
+     */
+    public long sum(long time, TimeUnit unit) {
+        long n = (unit.toNanos(time) + intervalNanos - 1) / intervalNanos;
+        return sumIntervals(intervalAt(System.nanoTime()), (int) Math.max(1, Math.min(n, intervals)));
+    }
+
+    /**
+     * 最近intervals个完整时间片的平均速率，不包括当前时间片，所以读数不会随当前时间片的进度跳动，
+     * 但落后最多一个时间片
+     *
+     * @param unit 速率的时间单位，例如TimeUnit.SECONDS表示每秒的次数
+     */
+    public double rate(TimeUnit unit) {
+        long sum = sumIntervals(intervalAt(System.nanoTime()) - 1, intervals);
+        return (double) sum * unit.toNanos(1) / (intervalNanos * intervals);
+    }
+
+    /**
+     * 清空所有时间片。与并发的计数交错时，正在计数的线程可能加到被清掉的计数器上
+     */
+    public void reset() {
+        for (int i = 0; i <= intervals; ++i)
+            ring.set(i, null);
+    }
+
+    /**
+     * 时间片长度，单位纳秒
+     */
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    public int getIntervals() {
+        return intervals;
+    }
+
+    @Override
+    public String toString() {
+        return "[sum = " + sum() + ", rate = " + rate(TimeUnit.SECONDS) + "/s]";
+    }
+}
@@ -0,0 +1,339 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import com.sunrise.study.thread.sourcecode.Condition;
+import com.sunrise.study.thread.sourcecode.Lock;
+import com.sunrise.study.thread.sourcecode.ReentrantReadWriteLock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 偏向读的读写锁（Dice、Kogan，BRAVO: Biased Locking for Reader-Writer Locks），包装一个ReentrantReadWriteLock。
+ * <p>
+ * ReentrantReadWriteLock每次获取读锁都要CAS同一个state，读多写少时读锁本身就成了瓶颈，核数再多也上不去。
+ * 这里在偏向读（readBias为true）时，读线程只在一组分散的计数器（类似Striped64的cell，每个独占一个缓存行）中
+ * 把自己的那个加一，再确认readBias仍为true，就算拿到了读锁，不碰底层的读写锁：
+ * <ul>
+ *     <li>写线程先获取底层的写锁（挡住慢路径上的读线程），把readBias改为false，再等所有计数器回到0。
+ *     读线程先加计数再读readBias，写线程先写readBias再读计数，两者之中至少有一个能看到对方，
+ *     读线程看到false就撤回计数走慢路径；</li>
+ *     <li>撤销偏向的代价与读线程数有关，撤销后在撤销耗时的{@link #INHIBIT_MULTIPLIER}倍时间内不再偏向，
+ *     这段时间读线程走底层读锁的慢路径，之后由慢路径上的读线程重新打开偏向。写多的场景下大部分时间不偏向，
+ *     退化为ReentrantReadWriteLock。</li>
+ * </ul>
+ * 读锁可重入：线程记录自己是在快路径还是慢路径上持有读锁，重入时走同一条路径，避免写线程等待计数归零时，
+ * 已经持有读锁的线程又在底层读锁上排到写线程后面。与ReentrantReadWriteLock一样不支持从读锁升级为写锁，
+ * 支持写锁降级。写锁的Condition由底层写锁提供，读锁不支持Condition。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class BiasedReadWriteLock implements ReadWriteLock {
+
+    /** Number of CPUS, to place bounds on sizing */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** 撤销偏向后不再偏向的时间是撤销耗时的倍数，BRAVO论文中取9，读写锁的慢路径开销最多多出10% */
+    static final int INHIBIT_MULTIPLIER = 9;
+
+    /** 每个计数器占16个long，即128字节，避免相邻计数器的伪共享 */
+    private static final int STRIDE = 16;
+
+    /** 写线程等待计数归零时，先自旋这么多次再让出CPU */
+    private static final int DRAIN_SPINS = (NCPU > 1) ? 1 << 8 : 0;
+
+    private final ReentrantReadWriteLock rw;
+    private final ReadLock readerLock;
+    private final WriteLock writerLock;
+
+    /** 分散的读计数器，第i个在下标i * STRIDE */
+    private final AtomicLongArray readers;
+    private final int mask;
+
+    private volatile boolean readBias = true;
+    /** 在此之前不重新打开偏向 */
+    private volatile long inhibitUntil;
+
+    /** 撤销偏向的次数，只由持有写锁的线程修改 */
+    private long revocations;
+
+    /**
+     * 每个线程在这把锁上的读锁持有情况
+     */
+    static final class ReadHolds {
+        /** 快路径上的重入次数 */
+        int fast;
+        /** 慢路径上的重入次数 */
+        int slow;
+        /** 计数器的下标，CAS失败时换一个 */
+        int cell;
+    }
+
+    private final ThreadLocal<ReadHolds> readHolds = new ThreadLocal<ReadHolds>() {
+        @Override
+        protected ReadHolds initialValue() {
+            ReadHolds h = new ReadHolds();
+            h.cell = mix((int) Thread.currentThread().getId());
+            return h;
+        }
+    };
+
+    public BiasedReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * @param fair 底层ReentrantReadWriteLock是否公平
+     */
+    public BiasedReadWriteLock(boolean fair) {
+        // 计数器个数取不小于2倍CPU数的2的幂，减少线程之间的冲突
+        int n = 1;
+        while (n < NCPU << 1)
+            n <<= 1;
+        rw = new ReentrantReadWriteLock(fair);
+        readers = new AtomicLongArray(n * STRIDE);
+        mask = n - 1;
+        readerLock = new ReadLock();
+        writerLock = new WriteLock();
+    }
+
+    @Override
+    public Lock readLock() {
+        return readerLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writerLock;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * 快路径：加计数后确认仍然偏向
+     */
+    private boolean tryFastRead(ReadHolds h) {
+        if (!readBias)
+            return false;
+        int i;
+        for (;;) {
+            i = (h.cell & mask) * STRIDE;
+            long v = readers.get(i);
+            if (readers.compareAndSet(i, v, v + 1))
+                break;
+            // 与其他线程共用了一个计数器，换一个
+            h.cell = mix(h.cell + 0x9e3779b9);
+        }
+        if (readBias) {
+            h.fast = 1;
+            return true;
+        }
+        readers.decrementAndGet(i);
+        return false;
+    }
+
+    /**
+     * 慢路径拿到读锁后，过了抑制期就重新打开偏向。持有底层读锁时只有降级的写线程可能持有写锁，此时不能打开
+     */
+    private void slowReadAcquired(ReadHolds h) {
+        h.slow++;
+        if (!readBias && System.nanoTime() - inhibitUntil >= 0L && !rw.isWriteLocked())
+            readBias = true;
+    }
+
+    /**
+     * 写线程第一次获取写锁后撤销偏向，等快路径上的读线程全部释放
+     *
+     * @return false表示等待超时，调用方释放写锁
+     */
+    private boolean revokeBias(boolean timed, long deadline) {
+        if (!readBias || rw.getWriteHoldCount() > 1)
+            return true;
+        long start = System.nanoTime();
+        readBias = false;
+        revocations++;
+        int spins = DRAIN_SPINS;
+        for (int i = 0; i < readers.length(); i += STRIDE) {
+            while (readers.get(i) != 0L) {
+                if (timed && deadline - System.nanoTime() <= 0L) {
+                    // 还有读线程在快路径上，恢复偏向，否则后来的写线程看到readBias为false就不会再等它们
+                    readBias = true;
+                    return false;
+                }
+                if (spins > 0)
+                    --spins;
+                else
+                    Thread.yield();
+            }
+        }
+        long now = System.nanoTime();
+        inhibitUntil = now + (now - start) * INHIBIT_MULTIPLIER;
+        return true;
+    }
+
+    /**
+     * 当前是否偏向读
+     */
+    public boolean isReadBiased() {
+        return readBias;
+    }
+
+    /**
+     * 撤销偏向的次数，近似值
+     */
+    public long getRevocations() {
+        return revocations;
+    }
+
+    public boolean isWriteLocked() {
+        return rw.isWriteLocked();
+    }
+
+    public boolean isWriteLockedByCurrentThread() {
+        return rw.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * 当前线程持有读锁的次数
+     */
+    public int getReadHoldCount() {
+        ReadHolds h = readHolds.get();
+        return h.fast + h.slow;
+    }
+
+    final class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            ReadHolds h = readHolds.get();
+            if (h.fast > 0)
+                h.fast++;
+            else if (h.slow > 0 || !tryFastRead(h)) {
+                rw.readLock().lock();
+                slowReadAcquired(h);
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            ReadHolds h = readHolds.get();
+            if (h.fast > 0)
+                h.fast++;
+            else if (h.slow > 0 || !tryFastRead(h)) {
+                rw.readLock().lockInterruptibly();
+                slowReadAcquired(h);
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            ReadHolds h = readHolds.get();
+            if (h.fast > 0)
+                h.fast++;
+            else if (h.slow > 0 || !tryFastRead(h)) {
+                if (!rw.readLock().tryLock())
+                    return false;
+                slowReadAcquired(h);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            ReadHolds h = readHolds.get();
+            if (h.fast > 0)
+                h.fast++;
+            else if (h.slow > 0 || !tryFastRead(h)) {
+                if (!rw.readLock().tryLock(timeout, unit))
+                    return false;
+                slowReadAcquired(h);
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            ReadHolds h = readHolds.get();
+            if (h.fast > 0) {
+                if (--h.fast == 0)
+                    readers.decrementAndGet((h.cell & mask) * STRIDE);
+            } else if (h.slow > 0) {
+                h.slow--;
+                rw.readLock().unlock();
+            } else
+                throw new IllegalMonitorStateException();
+        }
+
+        /**
+         * 读锁不支持Condition
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    final class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            rw.writeLock().lock();
+            revokeBias(false, 0L);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            rw.writeLock().lockInterruptibly();
+            revokeBias(false, 0L);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!rw.writeLock().tryLock())
+                return false;
+            // 有快路径上的读线程时不等待
+            if (!revokeBias(true, System.nanoTime())) {
+                rw.writeLock().unlock();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!rw.writeLock().tryLock(timeout, unit))
+                return false;
+            if (!revokeBias(true, deadline)) {
+                rw.writeLock().unlock();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            rw.writeLock().unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return rw.writeLock().newCondition();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[readBias = " + readBias + ", revocations = " + revocations + ", " + rw + "]";
+    }
+}
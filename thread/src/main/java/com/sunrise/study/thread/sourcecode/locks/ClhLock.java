@@ -0,0 +1,193 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import com.sunrise.study.thread.sourcecode.Condition;
+import com.sunrise.study.thread.sourcecode.Lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CLH队列锁（Craig、Landin、Hagersten），不可重入，FIFO。AQS的等待队列就是CLH队列的变体。
+ * <p>
+ * 与{@link McsLock}相反，CLH的等待者在前驱节点的status上等待：入队时把tail换成自己的节点，
+ * 拿到的旧tail就是前驱，前驱释放时把自己节点的status改为RELEASED。入队只需一次getAndSet，不需要再挂next。
+ * <p>
+ * 在前驱节点上自旋SPINS次后，把自己登记到前驱的waiter上再park，前驱释放时unpark登记的线程。
+ * 超时或被中断时按Scott的CLH-try：把前驱记到自己节点的prev上，再把自己的status改为ABANDONED，
+ * 后继看到ABANDONED就改为在prev上等待，放弃的节点就这样被跳过。节点的status只由节点的主人写，不需要CAS。
+ * <p>
+ * 不支持Condition。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class ClhLock implements Lock {
+
+    /** Number of processors, for spin control */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** park之前在前驱节点上自旋的次数 */
+    static final int SPINS = (NCPU > 1) ? 1 << 10 : 0;
+
+    /** 剩余时间少于这个值时不再parkNanos，直接自旋 */
+    static final long SPIN_FOR_TIMEOUT_THRESHOLD = 1000L;
+
+    // 节点状态
+    static final int WAITING = 0;
+    static final int RELEASED = 1;
+    static final int ABANDONED = 2;
+
+    static final class Node {
+        volatile int status;
+        /** 放弃时的前驱 */
+        volatile Node prev;
+        /** 在本节点上park的后继 */
+        volatile Thread waiter;
+        final Thread thread;
+
+        Node(Thread thread, int status) {
+            this.thread = thread;
+            this.status = status;
+        }
+    }
+
+    private volatile Node tail = new Node(null, RELEASED);
+
+    /** 持有者的节点，只由持有者读写 */
+    private Node holder;
+
+    @Override
+    public void lock() {
+        try {
+            acquire(false, false, 0L);
+        } catch (InterruptedException e) {
+            // 不可中断的获取不会抛出
+            throw new Error(e);
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        acquire(true, false, 0L);
+    }
+
+    @Override
+    public boolean tryLock() {
+        Node t = tail, p = t;
+        while (p.status == ABANDONED)
+            p = p.prev;
+        if (p.status == RELEASED) {
+            Node node = new Node(Thread.currentThread(), WAITING);
+            if (U.compareAndSwapObject(this, TAIL, t, node)) {
+                holder = node;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return acquire(true, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * @return false表示超时
+     */
+    private boolean acquire(boolean interruptible, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Thread current = Thread.currentThread();
+        Node node = new Node(current, WAITING);
+        Node pred = (Node) U.getAndSetObject(this, TAIL, node);
+        boolean interrupted = false;
+        int spins = SPINS;
+        for (;;) {
+            int s = pred.status;
+            if (s == RELEASED)
+                break;
+            if (s == ABANDONED) {
+                pred = pred.prev;
+                spins = SPINS;
+            } else if (Thread.interrupted()) {
+                if (interruptible) {
+                    abandon(node, pred);
+                    throw new InterruptedException();
+                }
+                interrupted = true;
+            } else if (timed && (nanos = deadline - System.nanoTime()) <= 0L) {
+                abandon(node, pred);
+                return false;
+            } else if (spins > 0) {
+                --spins;
+            } else {
+                pred.waiter = current;
+                if (pred.status == WAITING) {
+                    if (!timed)
+                        LockSupport.park(this);
+                    else if (nanos > SPIN_FOR_TIMEOUT_THRESHOLD)
+                        LockSupport.parkNanos(this, nanos);
+                }
+            }
+        }
+        holder = node;
+        if (interrupted)
+            current.interrupt();
+        return true;
+    }
+
+    /**
+     * 放弃等待，后继改为在pred上等待
+     */
+    private static void abandon(Node node, Node pred) {
+        node.prev = pred;
+        node.status = ABANDONED;
+        Thread w = node.waiter;
+        if (w != null)
+            LockSupport.unpark(w);
+    }
+
+    @Override
+    public void unlock() {
+        Node node = holder;
+        if (node == null || node.thread != Thread.currentThread())
+            throw new IllegalMonitorStateException();
+        holder = null;
+        node.status = RELEASED;
+        Thread w = node.waiter;
+        if (w != null)
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * 是否有线程持有锁，或者有等待者在排队
+     */
+    public boolean isLocked() {
+        return tail.status != RELEASED;
+    }
+
+    /**
+     * 不支持Condition
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long TAIL;
+
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            TAIL = U.objectFieldOffset
+                (ClhLock.class.getDeclaredField("tail"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
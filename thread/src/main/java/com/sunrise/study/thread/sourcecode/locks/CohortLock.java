@@ -0,0 +1,296 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import com.sunrise.study.thread.sourcecode.AbstractQueuedSynchronizer;
+import com.sunrise.study.thread.sourcecode.Condition;
+import com.sunrise.study.thread.sourcecode.Lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cohort锁（Dice、Marathe、Shavit，Lock Cohorting），按NonReentrantLock的写法基于AQS实现的不可重入独占锁。
+ * <p>
+ * NonReentrantLock和FIFOMutex把锁交给任意一个等待者，多路服务器上锁和临界区数据所在的缓存行几乎每次交接都要跨socket。
+ * Cohort锁由一把全局锁和每个cluster（socket）一把本地锁组成：
+ * <ul>
+ *     <li>加锁：先获取本线程所在cluster的本地锁，如果全局锁已经由本cluster持有（前一个持有者交接过来的）就直接返回，
+ *     否则再获取全局锁；</li>
+ *     <li>解锁：本地锁上还有线程在等待，并且连续交接次数没有超过上限时，保留全局锁，只释放本地锁，
+ *     把全局锁连同本地锁一起交给同一个cluster的等待者；否则先释放全局锁再释放本地锁。</li>
+ * </ul>
+ * 全局锁在同一个cluster的线程之间传递，由获取它的线程以外的线程释放，所以全局锁不记录持有线程。
+ * 全局锁是公平的，连续交接达到上限后按到达顺序让给其他cluster，保证各cluster都能前进。
+ * <p>
+ * 线程属于哪个cluster由构造时传入的函数决定，JDK没有提供查询线程所在NUMA节点的接口，需要调用方结合绑核方式给出，
+ * 在单socket的机器上也可以人为指定，用于测试。同一个线程每次必须映射到同一个cluster。
+ * <p>
+ * 等待本地锁的线程超时或者被中断放弃时，持有者可能刚刚保留全局锁把本地锁交给了它，
+ * 这时本地锁空闲而全局锁仍被本cluster持有，其他cluster会一直拿不到锁。
+ * 交接的一方在释放本地锁后、放弃的一方在取消等待后都检查一次：本地锁空闲且没有线程在等待，就代为获取本地锁再按正常流程释放。
+ * AQS取消等待时先清空节点的thread，再由双方各自检查，总有一方能看到对方的操作。
+ * <p>
+ * 不支持Condition。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class CohortLock implements Lock {
+
+    /** 默认的连续交接次数上限 */
+    public static final int DEFAULT_MAX_HANDOFFS = 64;
+
+    /**
+     * 全局锁，公平，不记录持有线程
+     */
+    private static final class GlobalSync extends AbstractQueuedSynchronizer {
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            return !hasQueuedPredecessors() && compareAndSetState(0, 1);
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            if (getState() == 0)
+                throw new IllegalMonitorStateException();
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getState() == 1;
+        }
+    }
+
+    /**
+     * 一个cluster的本地锁
+     */
+    private static final class Cohort extends AbstractQueuedSynchronizer {
+        /** 全局锁是否由本cluster持有，只由本地锁的持有者读写 */
+        boolean globalHeld;
+        /** 连续交接的次数，只由本地锁的持有者读写 */
+        int handoffs;
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            if (getExclusiveOwnerThread() != Thread.currentThread())
+                throw new IllegalMonitorStateException();
+            setExclusiveOwnerThread(null);
+            setState(0);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+
+        boolean isFree() {
+            return getState() == 0;
+        }
+    }
+
+    private final GlobalSync global = new GlobalSync();
+    private final Cohort[] cohorts;
+    private final ToIntFunction<Thread> clusterOf;
+    private final int maxHandoffs;
+
+    /** 当前持有者所在的cluster，只由持有者读写 */
+    private Cohort current;
+
+    // 统计，只由持有者修改，读取的是近似值
+    private long localHandoffs;
+    private long globalReleases;
+
+    /**
+     * 按线程id把线程分到clusters个cluster，连续交接上限为{@link #DEFAULT_MAX_HANDOFFS}
+     */
+    public CohortLock(int clusters) {
+        this(clusters, t -> (int) t.getId(), DEFAULT_MAX_HANDOFFS);
+    }
+
+    /**
+     * @param clusters    cluster个数
+     * @param clusterOf   线程所在的cluster，结果对clusters取模
+     * @param maxHandoffs 全局锁在一个cluster内连续交接的次数上限，0表示不交接
+     */
+    public CohortLock(int clusters, ToIntFunction<Thread> clusterOf, int maxHandoffs) {
+        if (clusters <= 0 || maxHandoffs < 0)
+            throw new IllegalArgumentException();
+        if (clusterOf == null)
+            throw new NullPointerException();
+        this.cohorts = new Cohort[clusters];
+        for (int i = 0; i < clusters; i++)
+            cohorts[i] = new Cohort();
+        this.clusterOf = clusterOf;
+        this.maxHandoffs = maxHandoffs;
+    }
+
+    private Cohort cohortOf(Thread t) {
+        return cohorts[Math.floorMod(clusterOf.applyAsInt(t), cohorts.length)];
+    }
+
+    @Override
+    public void lock() {
+        Cohort c = cohortOf(Thread.currentThread());
+        c.acquire(1);
+        if (!c.globalHeld) {
+            global.acquire(1);
+            c.globalHeld = true;
+        }
+        current = c;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        Cohort c = cohortOf(Thread.currentThread());
+        try {
+            c.acquireInterruptibly(1);
+        } catch (InterruptedException e) {
+            releaseIfAbandoned(c);
+            throw e;
+        }
+        if (!c.globalHeld) {
+            try {
+                global.acquireInterruptibly(1);
+            } catch (InterruptedException e) {
+                c.release(1);
+                throw e;
+            }
+            c.globalHeld = true;
+        }
+        current = c;
+    }
+
+    @Override
+    public boolean tryLock() {
+        Cohort c = cohortOf(Thread.currentThread());
+        if (!c.tryAcquire(1))
+            return false;
+        if (!c.globalHeld) {
+            if (!global.tryAcquire(1)) {
+                c.release(1);
+                return false;
+            }
+            c.globalHeld = true;
+        }
+        current = c;
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanosTimeout = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanosTimeout;
+        Cohort c = cohortOf(Thread.currentThread());
+        boolean acquired = false;
+        try {
+            acquired = c.tryAcquireNanos(1, nanosTimeout);
+        } finally {
+            if (!acquired)
+                releaseIfAbandoned(c);
+        }
+        if (!acquired)
+            return false;
+        if (!c.globalHeld) {
+            boolean globalAcquired = false;
+            try {
+                globalAcquired = global.tryAcquireNanos(1, deadline - System.nanoTime());
+            } finally {
+                if (!globalAcquired)
+                    c.release(1);
+            }
+            if (!globalAcquired)
+                return false;
+            c.globalHeld = true;
+        }
+        current = c;
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        Cohort c = current;
+        if (c == null || !c.isHeldExclusively())
+            throw new IllegalMonitorStateException();
+        current = null;
+        release(c);
+    }
+
+    /**
+     * 释放本地锁，必要时先释放全局锁。调用时持有c
+     */
+    private void release(Cohort c) {
+        if (c.globalHeld && c.handoffs < maxHandoffs && c.hasQueuedThreads()) {
+            // 保留全局锁，交给同一个cluster的等待者
+            c.handoffs++;
+            localHandoffs++;
+            c.release(1);
+            releaseIfAbandoned(c);
+        } else {
+            if (c.globalHeld) {
+                c.globalHeld = false;
+                c.handoffs = 0;
+                globalReleases++;
+                global.release(1);
+            }
+            c.release(1);
+        }
+    }
+
+    /**
+     * 本地锁空闲并且没有线程在等待时，代为获取本地锁再释放，避免保留下来的全局锁无人释放。
+     * getQueueLength只统计thread不为null的节点，已取消的等待者不计入
+     */
+    private void releaseIfAbandoned(Cohort c) {
+        if (c.isFree() && c.getQueueLength() == 0 && c.tryAcquire(1))
+            release(c);
+    }
+
+    /**
+     * 不支持Condition
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isLocked() {
+        return global.isHeldExclusively();
+    }
+
+    public int getClusters() {
+        return cohorts.length;
+    }
+
+    /**
+     * 保留全局锁、在cluster内交接的次数
+     */
+    public long getLocalHandoffs() {
+        return localHandoffs;
+    }
+
+    /**
+     * 释放全局锁的次数，即锁离开一个cluster的次数
+     */
+    public long getGlobalReleases() {
+        return globalReleases;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[clusters = " + cohorts.length + ", localHandoffs = " + localHandoffs
+                + ", globalReleases = " + globalReleases + "]";
+    }
+}
@@ -0,0 +1,238 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import com.sunrise.study.thread.sourcecode.Condition;
+import com.sunrise.study.thread.sourcecode.Lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCS队列锁（Mellor-Crummey、Scott），不可重入，FIFO。
+ * <p>
+ * FIFOMutex把等待线程放进ConcurrentLinkedQueue，每个等待者都要读队首，解锁时还要再读一次队首。
+ * MCS锁的每个等待者有自己的节点，入队时把tail换成自己的节点并挂到前驱的next上，然后只在自己节点的status上等待，
+ * 解锁时持有者把锁直接交给next，各线程的自旋互不干扰，交接只写一个缓存行。
+ * <p>
+ * 在自己的节点上自旋SPINS次后park，持有者交接时看到parked标记再unpark，单核机器上不自旋。
+ * 超时或被中断的等待者把自己节点的status从WAITING CAS为ABANDONED后直接返回，节点留在队列中，
+ * 持有者交接时与之CAS竞争，失败说明节点已放弃，就越过它交给下一个节点。
+ * <p>
+ * 不支持Condition。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class McsLock implements Lock {
+
+    /** Number of processors, for spin control */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** park之前在自己节点上自旋的次数 */
+    static final int SPINS = (NCPU > 1) ? 1 << 10 : 0;
+
+    /** 剩余时间少于这个值时不再parkNanos，直接自旋 */
+    static final long SPIN_FOR_TIMEOUT_THRESHOLD = 1000L;
+
+    // 节点状态
+    static final int WAITING = 0;
+    static final int GRANTED = 1;
+    static final int ABANDONED = 2;
+    /** 被持有者移出队列，需要重新入队，见TimePublishedLock */
+    static final int REMOVED = 3;
+
+    static final class Node {
+        volatile int status;
+        volatile Node next;
+        volatile boolean parked;
+        /** 等待者最近一次发布的时间，见TimePublishedLock */
+        volatile long published;
+        final Thread thread;
+        /** 之前被移出队列的次数 */
+        final int removals;
+
+        Node(Thread thread, int removals) {
+            this.thread = thread;
+            this.removals = removals;
+        }
+
+        boolean casStatus(int cmp, int val) {
+            return U.compareAndSwapInt(this, STATUS, cmp, val);
+        }
+    }
+
+    private volatile Node tail;
+
+    /** 持有者的节点，只由持有者读写 */
+    private Node holder;
+
+    @Override
+    public void lock() {
+        try {
+            acquire(false, false, 0L);
+        } catch (InterruptedException e) {
+            // 不可中断的获取不会抛出
+            throw new Error(e);
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        acquire(true, false, 0L);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (tail == null) {
+            Node node = new Node(Thread.currentThread(), 0);
+            if (U.compareAndSwapObject(this, TAIL, null, node)) {
+                holder = node;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        return acquire(true, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * 入队并等待，被移出队列时重新入队
+     *
+     * @return false表示超时
+     */
+    private boolean acquire(boolean interruptible, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        boolean interrupted = false;
+        for (int removals = 0; ; removals++) {
+            Node node = new Node(Thread.currentThread(), removals);
+            Node pred = (Node) U.getAndSetObject(this, TAIL, node);
+            if (pred == null) {
+                holder = node;
+                break;
+            }
+            node.published = System.nanoTime();
+            pred.next = node;
+            int spins = SPINS;
+            int s;
+            while ((s = node.status) == WAITING) {
+                if (Thread.interrupted()) {
+                    if (interruptible && node.casStatus(WAITING, ABANDONED))
+                        throw new InterruptedException();
+                    interrupted = true;
+                } else if (timed && (nanos = deadline - System.nanoTime()) <= 0L) {
+                    if (node.casStatus(WAITING, ABANDONED))
+                        return false;
+                } else if (spins > 0) {
+                    --spins;
+                    spinning(node, spins);
+                } else {
+                    node.parked = true;
+                    if (node.status == WAITING) {
+                        if (!timed)
+                            LockSupport.park(this);
+                        else if (nanos > SPIN_FOR_TIMEOUT_THRESHOLD)
+                            LockSupport.parkNanos(this, nanos);
+                    }
+                    node.parked = false;
+                    node.published = System.nanoTime();
+                }
+            }
+            if (s == GRANTED) {
+                holder = node;
+                break;
+            }
+            // REMOVED
+            if (interruptible && interrupted)
+                throw new InterruptedException();
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        Node node = holder;
+        if (node == null || node.thread != Thread.currentThread())
+            throw new IllegalMonitorStateException();
+        holder = null;
+        int skipped = 0;
+        for (;;) {
+            Node next = node.next;
+            if (next == null) {
+                if (U.compareAndSwapObject(this, TAIL, node, null))
+                    return;
+                // 后继已经换了tail，还没有挂到next上
+                while ((next = node.next) == null)
+                    Thread.yield();
+            }
+            if (shouldSkip(next, skipped) && next.casStatus(WAITING, REMOVED)) {
+                ++skipped;
+                wake(next);
+            } else if (next.casStatus(WAITING, GRANTED)) {
+                wake(next);
+                return;
+            }
+            // 已放弃或者被移出，交给下一个
+            node = next;
+        }
+    }
+
+    private static void wake(Node node) {
+        if (node.parked)
+            LockSupport.unpark(node.thread);
+    }
+
+    /**
+     * 等待者每自旋一次调用一次
+     */
+    void spinning(Node node, int spins) {
+    }
+
+    /**
+     * 交接时是否把等待者移出队列，让它重新入队
+     *
+     * @param skipped 这次交接已经移出的节点数
+     */
+    boolean shouldSkip(Node node, int skipped) {
+        return false;
+    }
+
+    /**
+     * 是否有线程持有锁或者在等待
+     */
+    public boolean isLocked() {
+        return tail != null;
+    }
+
+    /**
+     * 不支持Condition
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long TAIL;
+    private static final long STATUS;
+
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            TAIL = U.objectFieldOffset
+                (McsLock.class.getDeclaredField("tail"));
+            STATUS = U.objectFieldOffset
+                (Node.class.getDeclaredField("status"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -1,17 +1,19 @@
 package com.sunrise.study.thread.sourcecode.locks;
 
-import java.io.Serializable;
+import com.sunrise.study.thread.sourcecode.AbstractQueuedSynchronizer;
+import com.sunrise.study.thread.sourcecode.Condition;
+import com.sunrise.study.thread.sourcecode.ContentionProfile;
+import com.sunrise.study.thread.sourcecode.Lock;
+
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.AbstractQueuedSynchronizer;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
 
 /**
  * 基于AQS实现自定义的不可重入独占锁
+ * 使用sourcecode包中的AQS，可以开启竞争统计，见{@link #enableProfiling(String)}
  * @author huangzihua
  * @date 2021-09-16
  */
-public class NonReentrantLock implements Lock, Serializable {
+public class NonReentrantLock implements Lock {
     private static class Sync extends AbstractQueuedSynchronizer {
 
         @Override
@@ -79,4 +81,29 @@ public class NonReentrantLock implements Lock, Serializable {
     public boolean isLocked() {
         return sync.isHeldExclusively();
     }
+
+    /**
+     * 开启竞争统计，见{@link ContentionProfile}
+     *
+     * @param name 统计的名字，同名的锁合并统计
+     * @return the profile
+     */
+    public ContentionProfile enableProfiling(String name) {
+        return sync.enableProfiling(name);
+    }
+
+    /**
+     * 关闭竞争统计，已记录的数据仍保留在{@link ContentionProfile}中
+     */
+    public void disableProfiling() {
+        sync.disableProfiling();
+    }
+
+    /**
+     * 开启或关闭自适应自旋：获取失败后先自旋一段时间再入队park，适合临界区很短（几百纳秒）的锁。
+     * 自旋时长按锁学习，详见{@link AbstractQueuedSynchronizer#setAdaptiveSpinning(boolean)}
+     */
+    public void setAdaptiveSpinning(boolean on) {
+        sync.setAdaptiveSpinning(on);
+    }
 }
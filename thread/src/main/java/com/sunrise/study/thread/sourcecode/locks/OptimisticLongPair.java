@@ -0,0 +1,181 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 用{@link StampedLock}保护的两个long，两个值总是一起读、一起写，例如坐标、区间、计数和总和。
+ * 乐观读的重试和退化规则与{@link OptimisticRef}相同。读函数的参数和结果都是基本类型，
+ * 传入不捕获变量的lambda时读写都不分配对象。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class OptimisticLongPair extends OptimisticSupport {
+
+    /**
+     * 两个long到对象的函数
+     */
+    @FunctionalInterface
+    public interface LongPairFunction<R> {
+        R apply(long first, long second);
+    }
+
+    private long first;
+    private long second;
+
+    public OptimisticLongPair() {
+        this(0L, 0L);
+    }
+
+    public OptimisticLongPair(long first, long second) {
+        this(first, second, DEFAULT_OPTIMISTIC_RETRIES);
+    }
+
+    /**
+     * @param optimisticRetries 乐观读校验失败后重试的次数，0表示失败一次就加读锁
+     */
+    public OptimisticLongPair(long first, long second, int optimisticRetries) {
+        super(optimisticRetries);
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * 在乐观模式下用一致的两个值计算结果，多次校验失败后加读锁计算
+     */
+    public long readAsLong(LongBinaryOperator reader) {
+        for (int i = 0; ; ++i) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0L)
+                break;
+            long a = first, b = second;
+            if (lock.validate(stamp))
+                return reader.applyAsLong(a, b);
+            if (i >= optimisticRetries)
+                break;
+            recordRetry();
+        }
+        recordFallback();
+        long stamp = lock.readLock();
+        try {
+            return reader.applyAsLong(first, second);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 同readAsLong，结果为对象
+     */
+    public <R> R read(LongPairFunction<? extends R> reader) {
+        for (int i = 0; ; ++i) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0L)
+                break;
+            long a = first, b = second;
+            if (lock.validate(stamp))
+                return reader.apply(a, b);
+            if (i >= optimisticRetries)
+                break;
+            recordRetry();
+        }
+        recordFallback();
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(first, second);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getFirst() {
+        return readAsLong((a, b) -> a);
+    }
+
+    public long getSecond() {
+        return readAsLong((a, b) -> b);
+    }
+
+    public void set(long newFirst, long newSecond) {
+        long stamp = lock.writeLock();
+        try {
+            first = newFirst;
+            second = newSecond;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 两个值分别加上delta
+     */
+    public void add(long firstDelta, long secondDelta) {
+        long stamp = lock.writeLock();
+        try {
+            first += firstDelta;
+            second += secondDelta;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 加写锁，用旧的两个值分别计算新值
+     */
+    public void update(LongBinaryOperator firstUpdater, LongBinaryOperator secondUpdater) {
+        long stamp = lock.writeLock();
+        try {
+            long a = first, b = second;
+            first = firstUpdater.applyAsLong(a, b);
+            second = secondUpdater.applyAsLong(a, b);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 两个值都等于期望值时更新。先乐观比较，相等时把乐观戳记升级为写锁，不相等时不加锁
+     */
+    public boolean compareAndSet(long expectFirst, long expectSecond, long newFirst, long newSecond) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            long a = first, b = second;
+            if (lock.validate(stamp)) {
+                if (a != expectFirst || b != expectSecond)
+                    return false;
+                long ws = lock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    first = newFirst;
+                    second = newSecond;
+                    lock.unlockWrite(ws);
+                    return true;
+                }
+                recordFailedConversion();
+            } else
+                recordFallback();
+        } else
+            recordFallback();
+        stamp = lock.readLock();
+        try {
+            for (;;) {
+                if (first != expectFirst || second != expectSecond)
+                    return false;
+                long ws = lock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    stamp = ws;
+                    first = newFirst;
+                    second = newSecond;
+                    return true;
+                }
+                lock.unlockRead(stamp);
+                stamp = lock.writeLock();
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + read((a, b) -> "[first = " + a + ", second = " + b + "]");
+    }
+}
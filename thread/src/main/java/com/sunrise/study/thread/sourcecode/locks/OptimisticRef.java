@@ -0,0 +1,184 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 用{@link StampedLock}保护的一个引用，把tryOptimisticRead、validate、失败后加读锁这套写法封装起来
+ * （见juc_demo中StampedLockTest.distanceFromOrigin）。
+ * <p>
+ * {@link #read(Function)}先以乐观模式执行读函数，校验失败时最多重试optimisticRetries次，再失败就加读锁执行。
+ * 获取戳记时已经有线程持有写锁则直接加读锁，不空转。乐观模式下读函数可能看到写了一半的数据（{@link #mutate}原地修改时），
+ * 所以读函数不能有副作用，也不能依赖读到的数据一致，例如不能根据读到的下标访问数组而不检查范围；
+ * 乐观模式下读函数抛出的RuntimeException在校验失败时被忽略并重试，校验成功才抛给调用方。
+ * <p>
+ * {@link #updateIf}先乐观地检查条件，条件成立时用tryConvertToWriteLock把乐观戳记直接升级为写锁，
+ * 升级失败再按StampedLock文档中moveIfAtOrigin的方式先加读锁检查、再升级或者改加写锁。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class OptimisticRef<T> extends OptimisticSupport {
+
+    private T value;
+
+    public OptimisticRef(T initialValue) {
+        this(initialValue, DEFAULT_OPTIMISTIC_RETRIES);
+    }
+
+    /**
+     * @param optimisticRetries 乐观读校验失败后重试的次数，0表示失败一次就加读锁
+     */
+    public OptimisticRef(T initialValue, int optimisticRetries) {
+        super(optimisticRetries);
+        this.value = initialValue;
+    }
+
+    /**
+     * 在乐观模式下执行读函数，多次校验失败后加读锁执行
+     */
+    public <R> R read(Function<? super T, ? extends R> reader) {
+        for (int i = 0; ; ++i) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0L)
+                break;
+            R r;
+            try {
+                r = reader.apply(value);
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp))
+                    throw e;
+                r = null;
+            }
+            if (lock.validate(stamp))
+                return r;
+            if (i >= optimisticRetries)
+                break;
+            recordRetry();
+        }
+        recordFallback();
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public T get() {
+        return read(Function.identity());
+    }
+
+    public void set(T newValue) {
+        long stamp = lock.writeLock();
+        try {
+            value = newValue;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public T getAndSet(T newValue) {
+        long stamp = lock.writeLock();
+        try {
+            T old = value;
+            value = newValue;
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 加写锁，用旧值计算新值
+     *
+     * @return 新值
+     */
+    public T update(UnaryOperator<T> updater) {
+        long stamp = lock.writeLock();
+        try {
+            return value = updater.apply(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 加写锁，原地修改当前值。乐观读可能看到修改了一半的对象，见类注释
+     */
+    public void mutate(Consumer<? super T> mutator) {
+        long stamp = lock.writeLock();
+        try {
+            mutator.accept(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 条件成立时更新，条件不成立时不加写锁
+     *
+     * @param condition 在乐观模式或读锁下检查，同read的读函数
+     * @param updater   在写锁下执行
+     * @return 是否更新了
+     */
+    public boolean updateIf(Predicate<? super T> condition, UnaryOperator<T> updater) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            boolean test;
+            try {
+                test = condition.test(value);
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp))
+                    throw e;
+                test = false;
+            }
+            if (lock.validate(stamp)) {
+                if (!test)
+                    return false;
+                long ws = lock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    try {
+                        value = updater.apply(value);
+                        return true;
+                    } finally {
+                        lock.unlockWrite(ws);
+                    }
+                }
+                recordFailedConversion();
+            } else
+                recordFallback();
+        } else
+            recordFallback();
+        stamp = lock.readLock();
+        try {
+            for (;;) {
+                if (!condition.test(value))
+                    return false;
+                long ws = lock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    stamp = ws;
+                    value = updater.apply(value);
+                    return true;
+                }
+                lock.unlockRead(stamp);
+                stamp = lock.writeLock();
+            }
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * 期望值比较用==
+     */
+    public boolean compareAndSet(T expect, T update) {
+        return updateIf(v -> v == expect, v -> update);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[value = " + get() + "]";
+    }
+}
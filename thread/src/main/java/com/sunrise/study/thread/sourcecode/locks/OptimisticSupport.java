@@ -0,0 +1,87 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link OptimisticRef}和{@link OptimisticLongPair}共用的StampedLock和统计。
+ * <p>
+ * 乐观读本身不写共享内存，所以成功的乐观读不计数，只统计少见的情况：校验失败后重试、重试用完后退化为悲观读锁、
+ * 条件更新时乐观戳记升级为写锁失败。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+abstract class OptimisticSupport {
+
+    /** 默认的乐观读重试次数，不含第一次 */
+    public static final int DEFAULT_OPTIMISTIC_RETRIES = 2;
+
+    final StampedLock lock = new StampedLock();
+
+    /** 校验失败后再试几次乐观读 */
+    final int optimisticRetries;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder failedConversions = new LongAdder();
+
+    OptimisticSupport(int optimisticRetries) {
+        if (optimisticRetries < 0)
+            throw new IllegalArgumentException();
+        this.optimisticRetries = optimisticRetries;
+    }
+
+    final void recordRetry() {
+        retries.increment();
+    }
+
+    final void recordFallback() {
+        fallbacks.increment();
+    }
+
+    final void recordFailedConversion() {
+        failedConversions.increment();
+    }
+
+    /**
+     * 乐观读校验失败后重试的次数
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * 退化为悲观读锁的次数，包括获取戳记时已有线程持有写锁、直接加读锁的情况
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * 条件更新时tryConvertToWriteLock失败、改为先加读锁再加写锁的次数
+     */
+    public long getFailedConversions() {
+        return failedConversions.sum();
+    }
+
+    /**
+     * 统计清零
+     */
+    public void resetStats() {
+        retries.reset();
+        fallbacks.reset();
+        failedConversions.reset();
+    }
+
+    /**
+     * 底层的StampedLock，需要与其他数据一起加锁时使用
+     */
+    public StampedLock getLock() {
+        return lock;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[retries = " + getRetries() + ", fallbacks = " + getFallbacks()
+                + ", failedConversions = " + getFailedConversions() + "]";
+    }
+}
@@ -0,0 +1,53 @@
+package com.sunrise.study.thread.sourcecode.locks;
+
+/**
+ * 时间发布的MCS锁（He、Scherer、Scott，TP-MCS），不可重入，有界公平。
+ * <p>
+ * 严格FIFO的队列锁在线程数超过CPU数时表现很差：锁交给了一个被抢占（或者已经park）的等待者，
+ * 它被调度回来之前后面的线程都只能等着。这里的等待者在自旋时每隔64次把当前时间写到自己节点的published上，
+ * 持有者交接时如果发现next超过patience没有发布时间，就认为它没有在运行，把它移出队列（唤醒它自己重新入队），
+ * 把锁交给后面还在运行的等待者。
+ * <p>
+ * 公平性有界：一次交接最多移出{@link #MAX_SKIPS}个节点，同一个线程在一次获取中最多被移出{@link #MAX_REMOVALS}次，
+ * 之后不再被越过。超时、中断和park与{@link McsLock}相同。
+ * @author huangzihua
+ * @date 2026-10-19
+ */
+public class TimePublishedLock extends McsLock {
+
+    /** 默认的发布时间容忍度 */
+    public static final long DEFAULT_PATIENCE_NANOS = 50_000L;
+
+    /** 一次交接最多移出的节点数 */
+    static final int MAX_SKIPS = 8;
+
+    /** 一个线程在一次获取中最多被移出的次数 */
+    static final int MAX_REMOVALS = 2;
+
+    private final long patienceNanos;
+
+    public TimePublishedLock() {
+        this(DEFAULT_PATIENCE_NANOS);
+    }
+
+    /**
+     * @param patienceNanos 等待者超过这个时间没有发布时间就可能被越过
+     */
+    public TimePublishedLock(long patienceNanos) {
+        if (patienceNanos <= 0L)
+            throw new IllegalArgumentException();
+        this.patienceNanos = patienceNanos;
+    }
+
+    @Override
+    void spinning(Node node, int spins) {
+        if ((spins & 63) == 0)
+            node.published = System.nanoTime();
+    }
+
+    @Override
+    boolean shouldSkip(Node node, int skipped) {
+        return skipped < MAX_SKIPS && node.removals < MAX_REMOVALS
+                && System.nanoTime() - node.published > patienceNanos;
+    }
+}
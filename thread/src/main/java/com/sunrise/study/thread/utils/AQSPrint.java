@@ -7,6 +7,8 @@ import java.lang.reflect.Field;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * 用反射打印AQS某一时刻的state和等待队列，只适合调试时观察。
+ * 需要长期统计等待时长、park次数、队列深度和持有时长时，用{@link com.sunrise.study.thread.sourcecode.ContentionProfile}。
  * @author huangzihua
  * @date 2021-08-16
  */